@@ -1,3 +1,4 @@
+import uuid
 from typing import Iterable, List
 from decimal import Decimal
 from dataclasses import dataclass
@@ -31,13 +32,36 @@ def fetch_all_ratings(conn) -> List[tuple[int, int, float]]:
 
 
 def write_recommendations(conn, rows: Iterable[RecommendationRow]) -> None:
-    infos = [(r.user_id, r.item_id, r.score, r.algo_version, r.rank) for r in rows]
+    # each algo_version gets a new active run (the API only serves active runs);
+    # runs of other algo_versions are left alone, so that several can be served side by side
+    run_ids: dict[str, uuid.UUID] = {}
+    row_counts: dict[str, int] = {}
+    infos = []
+    for r in rows:
+        run_id = run_ids.setdefault(r.algo_version, uuid.uuid4())
+        row_counts[r.algo_version] = row_counts.get(r.algo_version, 0) + 1
+        infos.append((r.user_id, r.item_id, r.score, r.algo_version, r.rank, run_id))
     with conn.cursor() as cur:
-        cur.execute("TRUNCATE TABLE recommendations RESTART IDENTITY;")
+        algos = list(run_ids)
+        cur.execute(
+            """
+            DELETE FROM recommendations
+            WHERE run_id IN (SELECT run_id FROM recommendation_runs WHERE algo_version = ANY(%s));
+            """,
+            (algos,),
+        )
+        cur.execute("DELETE FROM recommendation_runs WHERE algo_version = ANY(%s);", (algos,))
+        cur.executemany(
+            """
+            INSERT INTO recommendation_runs (run_id, algo_version, active, row_count, activated_at)
+            VALUES (%s, %s, TRUE, %s, NOW());
+            """,
+            [(run_id, algo, row_counts[algo]) for algo, run_id in run_ids.items()],
+        )
         cur.executemany(
             """
-            INSERT INTO recommendations (user_id, item_id, score, algo_version, rank)
-            VALUES (%s, %s, %s, %s, %s);
+            INSERT INTO recommendations (user_id, item_id, score, algo_version, rank, run_id)
+            VALUES (%s, %s, %s, %s, %s, %s);
             """,
             infos,
         )
@@ -31,4 +31,12 @@ public class ApiExceptionHandler {
         problemDetail.setDetail(ex.getMessage());
         return problemDetail;
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ProblemDetail handleTooManyRequestsException(TooManyRequestsException ex) {
+        ProblemDetail problemDetail = ProblemDetail.forStatus(HttpStatus.TOO_MANY_REQUESTS);
+        problemDetail.setTitle("Too many requests");
+        problemDetail.setDetail(ex.getMessage());
+        return problemDetail;
+    }
 }
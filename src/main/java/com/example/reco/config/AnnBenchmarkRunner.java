@@ -0,0 +1,80 @@
+package com.example.reco.config;
+
+import com.example.reco.engine.AlsTrainer;
+import com.example.reco.engine.AnnBenchmark;
+import com.example.reco.engine.FactorModel;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.ItemEmbeddingIndex;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.engine.MfConfig;
+import com.example.reco.engine.RatingsLoader;
+import com.example.reco.engine.RatingsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-shot ANN benchmark, run with the "ann-benchmark" profile (see make
+ * ann-benchmark): trains ALS on the ratings in the database, builds the item
+ * embedding indexes and logs recall@n and query latency against the exact scan,
+ * then exits. Nothing is written to the recommendations table.
+ */
+@Component
+@Profile("ann-benchmark")
+public class AnnBenchmarkRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(AnnBenchmarkRunner.class);
+
+    private final RatingsLoader ratingsLoader;
+    private final HybridConfig hybridConfig;
+    private final MfConfig mfConfig;
+    private final ItemEmbeddingIndex itemEmbeddingIndex;
+    private final ConfigurableApplicationContext context;
+    private final int parallelism;
+    private final int users;
+    private final int n;
+
+    public AnnBenchmarkRunner(RatingsLoader ratingsLoader,
+                              HybridConfig hybridConfig,
+                              MfConfig mfConfig,
+                              ItemEmbeddingIndex itemEmbeddingIndex,
+                              ConfigurableApplicationContext context,
+                              @Value("${app.reco.engine.batch-parallelism:0}") int parallelism,
+                              @Value("${app.reco.ann.benchmark.users:1000}") int users,
+                              @Value("${app.reco.ann.benchmark.n:20}") int n) {
+        this.ratingsLoader = ratingsLoader;
+        this.hybridConfig = hybridConfig;
+        this.mfConfig = mfConfig;
+        this.itemEmbeddingIndex = itemEmbeddingIndex;
+        this.context = context;
+        this.parallelism = parallelism;
+        this.users = users;
+        this.n = n;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        RatingsSnapshot data = ratingsLoader.load();
+        log.info("Loaded {} ratings ({} users, {} items)", data.getRatingCount(), data.numUsers(), data.numItems());
+        HybridModel biases = new HybridRecommender(hybridConfig).fit(data);
+        FactorModel factors = new AlsTrainer(mfConfig, parallelism).train(data.getMatrix(), biases, JobProgress.NONE);
+        itemEmbeddingIndex.rebuild(factors, biases, data);
+        if (!itemEmbeddingIndex.isAvailable()) {
+            log.warn("app.reco.ann.enabled is false: nothing to benchmark");
+        } else {
+            // the first pass only warms up the JIT
+            AnnBenchmark.run(itemEmbeddingIndex, factors, biases, data, Math.min(users, 200), n, 1);
+            log.info("ANN benchmark: {}", AnnBenchmark.run(itemEmbeddingIndex, factors, biases, data, users, n, 2));
+        }
+        // the schedulers of the engine would keep the process alive
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.reco.config;
+
+import com.example.reco.services.DatasetImportMode;
+import com.example.reco.services.DatasetImportResult;
+import com.example.reco.services.DatasetImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * One-shot MovieLens import, run with the "import" profile (see make import):
+ * imports app.reco.import.dir and exits.
+ */
+@Component
+@Profile("import")
+public class DatasetImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetImportRunner.class);
+
+    private final DatasetImportService datasetImportService;
+    private final ConfigurableApplicationContext context;
+    private final Path directory;
+    private final DatasetImportMode mode;
+
+    public DatasetImportRunner(DatasetImportService datasetImportService,
+                               ConfigurableApplicationContext context,
+                               @Value("${app.reco.import.dir:datasets/raw_data}") Path directory,
+                               @Value("${app.reco.import.mode:REPLACE}") DatasetImportMode mode) {
+        this.datasetImportService = datasetImportService;
+        this.context = context;
+        this.directory = directory;
+        this.mode = mode;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        log.info("Importing {} ({})", directory.toAbsolutePath(), mode);
+        DatasetImportResult result = datasetImportService.importMovieLens(directory, mode);
+        log.info("Import done in {} s | items={}, ratings={}, skipped lines={}",
+                (System.nanoTime() - start) / 1_000_000_000, result.items(), result.ratings(), result.skippedLines());
+        // the schedulers of the engine would keep the process alive
+        System.exit(SpringApplication.exit(context));
+    }
+}
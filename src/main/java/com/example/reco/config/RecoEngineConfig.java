@@ -0,0 +1,41 @@
+package com.example.reco.config;
+
+import com.example.reco.engine.BprConfig;
+import com.example.reco.engine.HnswConfig;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.MfConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(RecoEngineProperties.class)
+public class RecoEngineConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.reco.hybrid")
+    public HybridConfig hybridConfig() {
+        return new HybridConfig();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.reco.mf")
+    public MfConfig mfConfig() {
+        return new MfConfig();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.reco.bpr")
+    public BprConfig bprConfig() {
+        return new BprConfig();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.reco.ann")
+    public HnswConfig hnswConfig() {
+        return new HnswConfig();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.reco.config;
+
+import com.example.reco.engine.EngineMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.reco.engine")
+public class RecoEngineProperties {
+
+    private EngineMode mode = EngineMode.JVM;
+
+    public EngineMode getMode() {
+        return mode;
+    }
+
+    public void setMode(EngineMode mode) {
+        this.mode = mode;
+    }
+}
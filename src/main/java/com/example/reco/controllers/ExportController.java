@@ -0,0 +1,112 @@
+package com.example.reco.controllers;
+
+import com.example.reco.common.exceptions.BadRequestException;
+import com.example.reco.services.ExportFormat;
+import com.example.reco.services.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/v1/admin/export")
+public class ExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final int GZIP_BUFFER = 64 * 1024;
+    private static final String TIMEOUT_INTERCEPTOR = ExportController.class.getName() + ".timeout";
+
+    private final ExportService exportService;
+    private final long timeoutMillis;
+
+    public ExportController(ExportService exportService,
+                            @Value("${app.reco.export.timeout:PT2H}") Duration timeout) {
+        this.exportService = exportService;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @GetMapping("/ratings")
+    public ResponseEntity<StreamingResponseBody> exportRatings(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            HttpServletRequest request
+    ) {
+        ExportFormat exportFormat = parseFormat(format);
+        extendTimeout(request);
+        return respond("ratings", exportFormat, gzip, exportService.exportRatings(exportFormat, from, to));
+    }
+
+    @GetMapping("/recommendations")
+    public ResponseEntity<StreamingResponseBody> exportRecommendations(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) UUID runId,
+            HttpServletRequest request
+    ) {
+        ExportFormat exportFormat = parseFormat(format);
+        extendTimeout(request);
+        return respond("recommendations", exportFormat, gzip, exportService.exportRecommendations(exportFormat, runId));
+    }
+
+    // the streaming body runs as async processing of this request only: the timeout is raised
+    // right before it starts, instead of globally for every async request of the application
+    private void extendTimeout(HttpServletRequest request) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(TIMEOUT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        if (webRequest instanceof AsyncWebRequest asyncRequest) {
+                            asyncRequest.setTimeout(timeoutMillis);
+                        }
+                    }
+                });
+    }
+
+    private static ExportFormat parseFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown export format: " + format);
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> respond(String name, ExportFormat format, boolean gzip,
+                                                          StreamingResponseBody body) {
+        String extension = format == ExportFormat.CSV ? ".csv" : ".ndjson";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                                                      .contentType(format == ExportFormat.CSV ? CSV : NDJSON)
+                                                      .header(HttpHeaders.CONTENT_DISPOSITION,
+                                                              "attachment; filename=\"" + name + extension + "\"");
+        if (!gzip) {
+            return response.body(body);
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                       .body(out -> {
+                           GZIPOutputStream zipped = new GZIPOutputStream(out, GZIP_BUFFER);
+                           body.writeTo(zipped);
+                           // writes the trailer; the response stream is closed by the container
+                           zipped.finish();
+                       });
+    }
+}
@@ -2,6 +2,8 @@ package com.example.reco.controllers;
 
 import com.example.reco.controllers.dto.CreateItemRequest;
 import com.example.reco.controllers.dto.ItemResponse;
+import com.example.reco.controllers.dto.SimilarItemResponse;
+import com.example.reco.model.ItemType;
 import com.example.reco.services.ItemService;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -30,9 +32,22 @@ public class ItemsController {
         return itemService.getItemById(id);
     }
 
+    @GetMapping("/{id}/similar")
+    public List<SimilarItemResponse> getSimilarItems(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        return itemService.getSimilarItems(id, limit);
+    }
+
+    @GetMapping("/popular")
+    public List<ItemResponse> getPopularItems(@RequestParam(required = false) ItemType type,
+                                              @RequestParam(defaultValue = "20") int limit) {
+        return itemService.getPopularItems(type, limit);
+    }
+
     @GetMapping
-    public List<ItemResponse> getAllItems(@RequestParam(defaultValue = "50") int limit) {
-        return itemService.getAllItems(limit);
+    public List<ItemResponse> getAllItems(@RequestParam(defaultValue = "50") int limit,
+                                          @RequestParam(required = false) Long after) {
+        return itemService.getAllItems(limit, after);
     }
 
     @PostMapping
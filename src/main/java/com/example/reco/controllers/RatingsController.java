@@ -1,10 +1,13 @@
 package com.example.reco.controllers;
 
 import com.example.reco.controllers.dto.CreateRatingRequest;
+import com.example.reco.controllers.dto.RatingBatchRequest;
+import com.example.reco.controllers.dto.RatingBatchResponse;
 import com.example.reco.controllers.dto.RatingResponse;
 import com.example.reco.services.RatingService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,7 +15,6 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
@@ -29,8 +31,9 @@ public class RatingsController {
     }
 
     @GetMapping("/ratings")
-    public List<RatingResponse> getAllRatings(@RequestParam(defaultValue = "50") int limit) {
-        return ratingService.getAllRatings(limit);
+    public List<RatingResponse> getAllRatings(@RequestParam(defaultValue = "50") int limit,
+                                              @RequestParam(required = false) Long after) {
+        return ratingService.getAllRatings(limit, after);
     }
 
     @GetMapping("/ratings/{id}")
@@ -39,19 +42,28 @@ public class RatingsController {
     }
 
     @GetMapping("/users/{userId}/ratings")
-    public List<RatingResponse> getRatingsByUser(@PathVariable Long userId, @RequestParam(defaultValue = "50") int limit) {
-        return ratingService.getRatingsByUser(userId, limit);
+    public List<RatingResponse> getRatingsByUser(@PathVariable Long userId, @RequestParam(defaultValue = "50") int limit,
+                                                 @RequestParam(required = false) Long after) {
+        return ratingService.getRatingsByUser(userId, limit, after);
     }
 
     @GetMapping("/items/{itemId}/ratings")
-    public List<RatingResponse> getRatingsByItem(@PathVariable Long itemId, @RequestParam(defaultValue = "50") int limit) {
-        return ratingService.getRatingsByItem(itemId, limit);
+    public List<RatingResponse> getRatingsByItem(@PathVariable Long itemId, @RequestParam(defaultValue = "50") int limit,
+                                                 @RequestParam(required = false) Long after) {
+        return ratingService.getRatingsByItem(itemId, limit, after);
     }
 
     @PostMapping("/ratings/{itemId}")
-    @ResponseStatus(HttpStatus.CREATED)
-    public RatingResponse rateItem(@PathVariable Long itemId, @Valid @RequestBody CreateRatingRequest request) {
-        return ratingService.rateItem(itemId, request.getUserId(), request.getGrade());
+    public ResponseEntity<RatingResponse> rateItem(@PathVariable Long itemId, @Valid @RequestBody CreateRatingRequest request) {
+        RatingResponse rating = ratingService.rateItem(itemId, request.getUserId(), request.getGrade());
+        // write-behind mode: queued, committed shortly after
+        HttpStatus status = rating.getId() != null ? HttpStatus.CREATED : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(rating);
+    }
+
+    @PostMapping("/ratings:batch")
+    public RatingBatchResponse rateItems(@Valid @RequestBody RatingBatchRequest request) {
+        return ratingService.rateItems(request.getRatings());
     }
 
     @PutMapping("/ratings/{id}")
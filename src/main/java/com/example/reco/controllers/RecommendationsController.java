@@ -1,45 +1,90 @@
 package com.example.reco.controllers;
 
+import com.example.reco.controllers.dto.ArmStatsResponse;
+import com.example.reco.controllers.dto.CacheStatsResponse;
+import com.example.reco.controllers.dto.JobResponse;
+import com.example.reco.controllers.dto.RecommendationBatchGetRequest;
 import com.example.reco.controllers.dto.RecommendationResponse;
+import com.example.reco.services.JobService;
 import com.example.reco.services.RecommendationService;
+import com.example.reco.services.RecommendationSource;
+import com.example.reco.services.ServedRecommendations;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1")
 public class RecommendationsController {
 
+    static final String SOURCE_HEADER = "X-Recommendation-Source";
+
     private RecommendationService recommendationService;
+    private JobService jobService;
 
-    public RecommendationsController(RecommendationService recommendationService) {
+    public RecommendationsController(RecommendationService recommendationService, JobService jobService) {
         this.recommendationService = recommendationService;
+        this.jobService = jobService;
     }
 
     @GetMapping("/admin/recommendations")
     public List<RecommendationResponse> getAllRecommendations(
             @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Long after,
             @RequestParam(name = "includeReason", defaultValue = "false") boolean includeReason
     ) {
-        return recommendationService.getAllRecommendations(limit, includeReason);
+        return recommendationService.getAllRecommendations(limit, after, includeReason);
+    }
+
+    @GetMapping("/admin/recommendations/cache")
+    public CacheStatsResponse getRecommendationCacheStats() {
+        return recommendationService.getRecommendationCacheStats();
     }
 
+    @GetMapping("/admin/recommendations/arms")
+    public List<ArmStatsResponse> getArmStats() {
+        return recommendationService.getArmStats();
+    }
+
+    // X-Recommendation-Source tells whether the rows were scored for this request (live) or read from a run
     @GetMapping("/users/{userId}/recommendations")
-    public List<RecommendationResponse> getUserRecommendations(
+    public ResponseEntity<List<RecommendationResponse>> getUserRecommendations(
             @PathVariable Long userId,
             @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit,
             @RequestParam(name = "includeReason", defaultValue = "false") boolean includeReason,
-            @RequestParam(name = "algo", required = false) String algo
+            @RequestParam(name = "algo", required = false) String algo,
+            @RequestParam(name = "fresh", defaultValue = "false") boolean fresh
     ) {
-        return recommendationService.getUserRecommendations(userId, limit, includeReason, algo);
+        ServedRecommendations served = fresh
+                ? recommendationService.getFreshUserRecommendations(userId, limit, includeReason, algo)
+                : new ServedRecommendations(recommendationService.getUserRecommendations(userId, limit, includeReason, algo),
+                        RecommendationSource.PRECOMPUTED);
+        return ResponseEntity.ok()
+                       .header(SOURCE_HEADER, served.source().name().toLowerCase())
+                       .body(served.recommendations());
+    }
+
+    @PostMapping("/recommendations:batchGet")
+    public ResponseEntity<StreamingResponseBody> getRecommendationsForUsers(
+            @Valid @RequestBody RecommendationBatchGetRequest request
+    ) {
+        StreamingResponseBody body = recommendationService.getRecommendationsForUsers(
+                request.getUserIds(), request.getLimit(), request.isIncludeReason(), request.getAlgo());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @PostMapping("/users/{userId}/recommendations/recompute")
@@ -53,9 +98,16 @@ public class RecommendationsController {
     }
 
     @PostMapping("/admin/recommendations/recompute")
-    public ResponseEntity<Void> recomputeAllRecommendations() {
-        recommendationService.recomputeAllRecommendations();
-        return ResponseEntity.accepted().build();
+    public ResponseEntity<JobResponse> recomputeAllRecommendations() {
+        JobResponse job = jobService.submitRecomputeAll();
+        return ResponseEntity.accepted()
+                       .location(URI.create("/api/v1/admin/jobs/" + job.getId()))
+                       .body(job);
+    }
+
+    @GetMapping("/admin/jobs/{jobId}")
+    public JobResponse getJob(@PathVariable UUID jobId) {
+        return jobService.getJob(jobId);
     }
 
 }
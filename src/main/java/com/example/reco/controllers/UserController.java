@@ -32,8 +32,9 @@ public class UserController {
     }
 
     @GetMapping
-    public List<UserResponse> getAllUsers(@RequestParam(defaultValue = "50") int limit) {
-        return userService.getAllUsers(limit);
+    public List<UserResponse> getAllUsers(@RequestParam(defaultValue = "50") int limit,
+                                          @RequestParam(required = false) Long after) {
+        return userService.getAllUsers(limit, after);
     }
 
     @PostMapping
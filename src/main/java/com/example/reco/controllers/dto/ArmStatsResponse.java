@@ -0,0 +1,76 @@
+package com.example.reco.controllers.dto;
+
+public class ArmStatsResponse {
+    private String algo;
+    private int weight;
+    private long requests;
+    private long allocatedRequests;
+    private long emptyResponses;
+    private double meanSize;
+    private long medianSize;
+    // latencies in microseconds, within 1/64 of their value
+    private long latencyP50Micros;
+    private long latencyP95Micros;
+    private long latencyP99Micros;
+    private long latencyMaxMicros;
+
+    public ArmStatsResponse(String algo, int weight, long requests, long allocatedRequests, long emptyResponses,
+                            double meanSize, long medianSize, long latencyP50Micros, long latencyP95Micros,
+                            long latencyP99Micros, long latencyMaxMicros) {
+        this.algo = algo;
+        this.weight = weight;
+        this.requests = requests;
+        this.allocatedRequests = allocatedRequests;
+        this.emptyResponses = emptyResponses;
+        this.meanSize = meanSize;
+        this.medianSize = medianSize;
+        this.latencyP50Micros = latencyP50Micros;
+        this.latencyP95Micros = latencyP95Micros;
+        this.latencyP99Micros = latencyP99Micros;
+        this.latencyMaxMicros = latencyMaxMicros;
+    }
+
+    public String getAlgo() {
+        return algo;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getAllocatedRequests() {
+        return allocatedRequests;
+    }
+
+    public long getEmptyResponses() {
+        return emptyResponses;
+    }
+
+    public double getMeanSize() {
+        return meanSize;
+    }
+
+    public long getMedianSize() {
+        return medianSize;
+    }
+
+    public long getLatencyP50Micros() {
+        return latencyP50Micros;
+    }
+
+    public long getLatencyP95Micros() {
+        return latencyP95Micros;
+    }
+
+    public long getLatencyP99Micros() {
+        return latencyP99Micros;
+    }
+
+    public long getLatencyMaxMicros() {
+        return latencyMaxMicros;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.reco.controllers.dto;
+
+import com.example.reco.model.JobStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class JobResponse {
+
+    private UUID id;
+    private String type;
+    private JobStatus status;
+    private String phase;
+    private long processed;
+    private long total;
+    private Double progress;
+    private int requests;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Long durationMs;
+    private String error;
+
+    public JobResponse(UUID id, String type, JobStatus status, String phase, long processed, long total,
+                       Double progress, int requests, Instant submittedAt, Instant startedAt, Instant finishedAt,
+                       Long durationMs, String error) {
+        this.id = id;
+        this.type = type;
+        this.status = status;
+        this.phase = phase;
+        this.processed = processed;
+        this.total = total;
+        this.progress = progress;
+        this.requests = requests;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.durationMs = durationMs;
+        this.error = error;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Double getProgress() {
+        return progress;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
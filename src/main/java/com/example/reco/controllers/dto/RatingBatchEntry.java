@@ -0,0 +1,43 @@
+package com.example.reco.controllers.dto;
+
+import java.math.BigDecimal;
+
+public class RatingBatchEntry {
+
+    private Long userId;
+    private Long itemId;
+    private BigDecimal grade;
+
+    public RatingBatchEntry() {
+    }
+
+    public RatingBatchEntry(Long userId, Long itemId, BigDecimal grade) {
+        this.userId = userId;
+        this.itemId = itemId;
+        this.grade = grade;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public BigDecimal getGrade() {
+        return grade;
+    }
+
+    public void setGrade(BigDecimal grade) {
+        this.grade = grade;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.reco.controllers.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class RatingBatchRequest {
+
+    // rows are validated one by one by the service, an invalid row does not fail the batch
+    @NotNull(message = "ratings is required")
+    private List<RatingBatchEntry> ratings;
+
+    public RatingBatchRequest() {
+    }
+
+    public RatingBatchRequest(List<RatingBatchEntry> ratings) {
+        this.ratings = ratings;
+    }
+
+    public List<RatingBatchEntry> getRatings() {
+        return ratings;
+    }
+
+    public void setRatings(List<RatingBatchEntry> ratings) {
+        this.ratings = ratings;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.reco.controllers.dto;
+
+import java.util.List;
+
+public class RatingBatchResponse {
+
+    private final int received;
+    private final int inserted;
+    private final int updated;
+    private final int unchanged;
+    private final int rejected;
+    private final List<RatingBatchRowResult> results;
+
+    public RatingBatchResponse(int received, int inserted, int updated, int unchanged, int rejected,
+                               List<RatingBatchRowResult> results) {
+        this.received = received;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.unchanged = unchanged;
+        this.rejected = rejected;
+        this.results = results;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<RatingBatchRowResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.reco.controllers.dto;
+
+import com.example.reco.model.RatingWriteStatus;
+
+public class RatingBatchRowResult {
+
+    private final int index;
+    private final Long userId;
+    private final Long itemId;
+    private final RatingWriteStatus status;
+    private final String error;
+
+    public RatingBatchRowResult(int index, Long userId, Long itemId, RatingWriteStatus status, String error) {
+        this.index = index;
+        this.userId = userId;
+        this.itemId = itemId;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public RatingWriteStatus getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.reco.controllers.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class RecommendationBatchGetRequest {
+
+    // the maximum count is checked by the service
+    @NotNull(message = "userIds is required")
+    private List<@NotNull Long> userIds;
+
+    @Min(1)
+    @Max(100)
+    private int limit = 20;
+
+    private boolean includeReason;
+
+    private String algo;
+
+    public RecommendationBatchGetRequest() {
+    }
+
+    public RecommendationBatchGetRequest(List<Long> userIds, int limit, boolean includeReason, String algo) {
+        this.userIds = userIds;
+        this.limit = limit;
+        this.includeReason = includeReason;
+        this.algo = algo;
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isIncludeReason() {
+        return includeReason;
+    }
+
+    public void setIncludeReason(boolean includeReason) {
+        this.includeReason = includeReason;
+    }
+
+    public String getAlgo() {
+        return algo;
+    }
+
+    public void setAlgo(String algo) {
+        this.algo = algo;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.reco.controllers.dto;
+
+import com.example.reco.model.ItemType;
+
+public class SimilarItemResponse {
+    private Long itemId;
+    private String title;
+    private ItemType type;
+    private double score;
+
+    public SimilarItemResponse(Long itemId, String title, ItemType type, double score) {
+        this.itemId = itemId;
+        this.title = title;
+        this.type = type;
+        this.score = score;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public ItemType getType() {
+        return type;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.reco.controllers.dto;
+
+import java.util.List;
+
+public class UserRecommendationsResponse {
+
+    private final Long userId;
+    private final List<RecommendationResponse> recommendations;
+
+    public UserRecommendationsResponse(Long userId, List<RecommendationResponse> recommendations) {
+        this.userId = userId;
+        this.recommendations = recommendations;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public List<RecommendationResponse> getRecommendations() {
+        return recommendations;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Alternating least squares (ALS-WR) over the explicit ratings of a
+ * {@link RatingMatrix}: the residuals r_ui - (mu + b_u + b_i) of the given
+ * biases are approximated by p_u . q_i.
+ *
+ * Each half-iteration fixes one side and solves every row of the other
+ * independently, (sum q_i q_i^T + lambda n_u I) p_u = sum res_ui q_i, with a
+ * Cholesky factorization of the k x k system. Rows are solved in parallel on a
+ * dedicated fork-join pool, one chunk of rows per task with its own workspace,
+ * reading the row (users) or column (items) layout of the matrix.
+ */
+public final class AlsTrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(AlsTrainer.class);
+
+    private static final int CHUNK_ROWS = 256;
+
+    private final MfConfig config;
+    private final int parallelism;
+
+    public AlsTrainer(MfConfig config, int parallelism) {
+        if (config.getFactors() <= 0) {
+            throw new IllegalArgumentException("factors must be positive, got " + config.getFactors());
+        }
+        this.config = config;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public MfConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Trains factors on every rating of the matrix; {@code progress} advances by
+     * one per iteration.
+     */
+    public FactorModel train(RatingMatrix m, Biases biases, JobProgress progress) {
+        long start = System.nanoTime();
+        int rank = config.getFactors();
+        int numUsers = m.numUsers();
+        int numItems = m.numItems();
+        double mu = biases.getMu();
+        double[] userBias = new double[numUsers];
+        for (int u = 0; u < numUsers; u++) {
+            userBias[u] = biases.userBias(u);
+        }
+        double[] itemBias = new double[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemBias[i] = biases.itemBias(i);
+        }
+
+        // users are solved first: only the item side needs a starting point
+        float[] userFactors = new float[numUsers * rank];
+        float[] itemFactors = new float[numItems * rank];
+        int[] candidates = new int[numItems];
+        int count = 0;
+        Random random = new Random(config.getSeed());
+        for (int i = 0; i < numItems; i++) {
+            if (m.itemDegree(i) > 0) {
+                candidates[count++] = i;
+                for (int k = i * rank; k < (i + 1) * rank; k++) {
+                    itemFactors[k] = (float) (random.nextGaussian() * config.getInitStd());
+                }
+            }
+        }
+
+        progress.phase("training", config.getIterations());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int iteration = 0; iteration < config.getIterations(); iteration++) {
+                solveAll(pool, m.userOffsets(), m.userItems(), m.userValues(), itemFactors, userFactors,
+                        mu, userBias, itemBias);
+                solveAll(pool, m.itemOffsets(), m.itemUsers(), m.itemValues(), userFactors, itemFactors,
+                        mu, itemBias, userBias);
+                progress.advance(1);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        FactorModel model = new FactorModel(rank, numUsers, numItems, userFactors, itemFactors,
+                Arrays.copyOf(candidates, count));
+        log.info("ALS trained in {} ms (rank={}, iterations={}, ratings={}, train RMSE={})",
+                (System.nanoTime() - start) / 1_000_000, rank, config.getIterations(), m.nnz(),
+                String.format("%.4f", rmse(m, model, biases)));
+        return model;
+    }
+
+    /**
+     * Factors of one user from its current ratings, with the item factors of the
+     * model fixed: the user half-step of training, for a single row.
+     */
+    public float[] foldIn(FactorModel model, Biases biases, int u, UserProfile profile) {
+        int rank = model.rank();
+        int n = profile.size();
+        int[] items = new int[n];
+        byte[] values = new byte[n];
+        // bias of each rated position, not of each item of the catalogue
+        double[] itemBias = new double[n];
+        int count = 0;
+        for (int k = 0; k < n; k++) {
+            int i = profile.item(k);
+            // items added since the model was trained have no factors
+            if (i >= 0 && i < model.numItems()) {
+                items[count] = i;
+                itemBias[count] = biases.itemBias(i);
+                values[count++] = profile.halfStars(k);
+            }
+        }
+        float[] factors = new float[rank];
+        new Workspace(rank).solveRow(count, items, values, model.itemFactors(), factors,
+                biases.getMu() + biases.userBias(u), itemBias, config.getLambda());
+        return factors;
+    }
+
+    private void solveAll(ForkJoinPool pool, int[] offsets, int[] indices, byte[] values, float[] fixed,
+                          float[] target, double mu, double[] rowBias, double[] colBias) {
+        int rows = offsets.length - 1;
+        int rank = config.getFactors();
+        int chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        try {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+                Workspace ws = new Workspace(rank);
+                for (int row = c * CHUNK_ROWS; row < Math.min(rows, (c + 1) * CHUNK_ROWS); row++) {
+                    ws.solveRow(row, offsets, indices, values, fixed, target, mu, rowBias, colBias, config.getLambda());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ALS training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ALS training failed", e.getCause());
+        }
+    }
+
+    private static double rmse(RatingMatrix m, FactorModel model, Biases biases) {
+        if (m.nnz() == 0) {
+            return 0.0;
+        }
+        double sum = IntStream.range(0, m.numUsers()).parallel().mapToDouble(u -> {
+            double s = 0.0;
+            for (int p = m.userStart(u); p < m.userEnd(u); p++) {
+                double error = m.rowRating(p) - model.predict(biases, u, m.rowItem(p));
+                s += error * error;
+            }
+            return s;
+        }).sum();
+        return Math.sqrt(sum / m.nnz());
+    }
+
+    // normal equations of one row, reused for every row of a chunk
+    private static final class Workspace {
+
+        private final int rank;
+        // upper triangle holds the system, the factorization overwrites the lower one
+        private final double[] a;
+        private final double[] b;
+
+        Workspace(int rank) {
+            this.rank = rank;
+            this.a = new double[rank * rank];
+            this.b = new double[rank];
+        }
+
+        void solveRow(int row, int[] offsets, int[] indices, byte[] values, float[] fixed, float[] target,
+                      double mu, double[] rowBias, double[] colBias, double lambda) {
+            int start = offsets[row];
+            int end = offsets[row + 1];
+            int out = row * rank;
+            if (start == end) {
+                Arrays.fill(target, out, out + rank, 0f);
+                return;
+            }
+            Arrays.fill(a, 0.0);
+            Arrays.fill(b, 0.0);
+            double base = mu + rowBias[row];
+            for (int p = start; p < end; p++) {
+                int col = indices[p];
+                add(fixed, col, values[p] * 0.5 - base - colBias[col]);
+            }
+            finish(target, out, lambda * (end - start));
+        }
+
+        // one row given by its first count columns, with the column biases indexed by position
+        void solveRow(int count, int[] indices, byte[] values, float[] fixed, float[] target,
+                      double base, double[] positionBias, double lambda) {
+            if (count == 0) {
+                Arrays.fill(target, 0, rank, 0f);
+                return;
+            }
+            Arrays.fill(a, 0.0);
+            Arrays.fill(b, 0.0);
+            for (int p = 0; p < count; p++) {
+                add(fixed, indices[p], values[p] * 0.5 - base - positionBias[p]);
+            }
+            finish(target, 0, lambda * count);
+        }
+
+        private void add(float[] fixed, int col, double residual) {
+            int q = col * rank;
+            for (int x = 0; x < rank; x++) {
+                double qx = fixed[q + x];
+                b[x] += residual * qx;
+                int ax = x * rank;
+                for (int y = x; y < rank; y++) {
+                    a[ax + y] += qx * fixed[q + y];
+                }
+            }
+        }
+
+        private void finish(float[] target, int out, double reg) {
+            for (int x = 0; x < rank; x++) {
+                a[x * rank + x] += reg;
+            }
+            solve();
+            for (int x = 0; x < rank; x++) {
+                target[out + x] = (float) b[x];
+            }
+        }
+
+        // Cholesky A = L L^T (L below the diagonal), then L y = b and L^T x = y; x replaces b
+        private void solve() {
+            for (int j = 0; j < rank; j++) {
+                double d = a[j * rank + j];
+                for (int p = 0; p < j; p++) {
+                    d -= a[j * rank + p] * a[j * rank + p];
+                }
+                // lambda n > 0 keeps the system positive definite; guard against rounding anyway
+                double ljj = Math.sqrt(Math.max(d, 1e-12));
+                a[j * rank + j] = ljj;
+                for (int i = j + 1; i < rank; i++) {
+                    double s = a[j * rank + i];
+                    for (int p = 0; p < j; p++) {
+                        s -= a[i * rank + p] * a[j * rank + p];
+                    }
+                    a[i * rank + j] = s / ljj;
+                }
+            }
+            for (int i = 0; i < rank; i++) {
+                double s = b[i];
+                for (int p = 0; p < i; p++) {
+                    s -= a[i * rank + p] * b[p];
+                }
+                b[i] = s / a[i * rank + i];
+            }
+            for (int i = rank - 1; i >= 0; i--) {
+                double s = b[i];
+                for (int p = i + 1; p < rank; p++) {
+                    s -= a[p * rank + i] * b[p];
+                }
+                b[i] = s / a[i * rank + i];
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.reco.engine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Recall@n and latency of the {@link ItemEmbeddingIndex} against the exact scan
+ * of every item, on a sample of users: recall is the share of the exact top n
+ * that the index also returns, latencies are per query in microseconds.
+ */
+public final class AnnBenchmark {
+
+    public record Report(int users, int items, int n, int efSearch, double recall, double similarRecall,
+                         long exactP50Micros, long exactP99Micros, long annP50Micros, long annP99Micros) {
+
+        @Override
+        public String toString() {
+            return String.format("users=%d items=%d n=%d efSearch=%d | recall@%d=%.4f similar-items recall@%d=%.4f"
+                            + " | exact p50=%d us p99=%d us | ann p50=%d us p99=%d us (x%.1f at p50)",
+                    users, items, n, efSearch, n, recall, n, similarRecall,
+                    exactP50Micros, exactP99Micros, annP50Micros, annP99Micros,
+                    annP50Micros > 0 ? (double) exactP50Micros / annP50Micros : 0.0);
+        }
+    }
+
+    private AnnBenchmark() {
+    }
+
+    /**
+     * Queries the index for {@code users} random users with ratings (and as many
+     * random items for similar items, against an exact cosine scan). The index
+     * must have been built from these factors.
+     */
+    public static Report run(ItemEmbeddingIndex index, FactorModel factors, Biases biases, RatingsSnapshot data,
+                             int users, int n, long seed) {
+        RatingMatrix m = data.getMatrix();
+        SplittableRandom random = new SplittableRandom(seed);
+        CountHistogram exactLatency = new CountHistogram();
+        CountHistogram annLatency = new CountHistogram();
+        long found = 0;
+        long expected = 0;
+        int sampled = 0;
+        for (int attempt = 0; sampled < users && attempt < 20 * users && m.numUsers() > 0; attempt++) {
+            int u = random.nextInt(m.numUsers());
+            if (m.userDegree(u) == 0) {
+                continue;
+            }
+            sampled++;
+            UserProfile rated = UserProfile.ofRow(m, u);
+            long start = System.nanoTime();
+            List<ScoredItem> exact = factors.recommend(biases, data, u, factors.userFactors(), u * factors.rank(), rated, n);
+            exactLatency.add((System.nanoTime() - start) / 1_000);
+            start = System.nanoTime();
+            List<ScoredItem> approximate = index.recommend(factors, biases, data, u, factors.userFactors(),
+                    u * factors.rank(), rated, n);
+            annLatency.add((System.nanoTime() - start) / 1_000);
+            found += overlap(exact, approximate);
+            expected += exact.size();
+        }
+
+        long similarFound = 0;
+        long similarExpected = 0;
+        int[] candidates = factors.candidates();
+        for (int q = 0; q < users && candidates.length > 1; q++) {
+            int i = candidates[random.nextInt(candidates.length)];
+            List<ScoredItem> exact = exactSimilar(factors, data, i, n);
+            similarFound += overlap(exact, index.similarTo(data.itemId(i), n));
+            similarExpected += exact.size();
+        }
+        return new Report(sampled, factors.candidateCount(), n, index.getConfig().getEfSearch(),
+                expected == 0 ? 1.0 : (double) found / expected,
+                similarExpected == 0 ? 1.0 : (double) similarFound / similarExpected,
+                quantile(exactLatency, 0.5), quantile(exactLatency, 0.99),
+                quantile(annLatency, 0.5), quantile(annLatency, 0.99));
+    }
+
+    private static long quantile(CountHistogram latencies, double q) {
+        return latencies.size() == 0 ? 0 : latencies.quantile(q);
+    }
+
+    private static long overlap(List<ScoredItem> exact, List<ScoredItem> approximate) {
+        Set<Long> ids = new HashSet<>();
+        for (ScoredItem item : approximate) {
+            ids.add(item.getItemId());
+        }
+        return exact.stream().filter(item -> ids.contains(item.getItemId())).count();
+    }
+
+    private static List<ScoredItem> exactSimilar(FactorModel factors, RatingsSnapshot data, int i, int n) {
+        int rank = factors.rank();
+        float[] itemFactors = factors.itemFactors();
+        double norm = Math.sqrt(FactorModel.dot(itemFactors, i * rank, itemFactors, i * rank, rank));
+        TopK top = new TopK(n);
+        for (int j : factors.candidates()) {
+            if (j == i) {
+                continue;
+            }
+            double other = Math.sqrt(FactorModel.dot(itemFactors, j * rank, itemFactors, j * rank, rank));
+            double cosine = FactorModel.dot(itemFactors, i * rank, itemFactors, j * rank, rank) / (norm * other);
+            top.offer(j, Double.isNaN(cosine) ? -1.0 : cosine, j);
+        }
+        int[] ids = new int[top.size()];
+        double[] scores = new double[top.size()];
+        int count = top.drainTo(ids, scores);
+        List<ScoredItem> similar = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            similar.add(new ScoredItem(data.itemId(ids[k]), scores[k]));
+        }
+        return similar;
+    }
+}
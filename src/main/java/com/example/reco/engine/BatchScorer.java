@@ -0,0 +1,123 @@
+package com.example.reco.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Scores every active user of a snapshot on a dedicated pool of
+ * {@link ScoringWorkerThread}s and hands the rows to the calling thread one
+ * chunk of users at a time. The scoring function (one algo_version) maps a
+ * dense user index to its ranked items.
+ *
+ * Workers only read the model, so they share it without locking. Chunks go
+ * through a bounded queue: when the consumer (the database writer) falls behind,
+ * workers block instead of piling up rows, so at most
+ * (queue capacity + parallelism) chunks are in memory whatever the user count.
+ */
+final class BatchScorer {
+
+    private static final Object END = new Object();
+
+    private final int parallelism;
+    private final int chunkUsers;
+
+    BatchScorer(int parallelism, int chunkUsers) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkUsers = Math.max(1, chunkUsers);
+    }
+
+    /**
+     * Runs {@code sink} on the calling thread for every chunk, in no particular
+     * order (the rows of one user are always in the same chunk). Returns the number
+     * of rows produced; a failure on either side stops both and is rethrown here.
+     * {@code progress} advances by the number of users of every scored chunk.
+     */
+    long run(RatingsSnapshot data, String algoVersion, IntFunction<List<ScoredItem>> scoring,
+             Consumer<List<RecommendationRow>> sink, JobProgress progress) {
+        int[] users = new int[data.activeUserCount()];
+        int n = 0;
+        for (int u = data.nextActiveUser(0); u >= 0; u = data.nextActiveUser(u + 1)) {
+            users[n++] = u;
+        }
+        int chunks = (users.length + chunkUsers - 1) / chunkUsers;
+
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(2 * parallelism);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinPool pool = ScoringWorkerThread.newPool(parallelism);
+        try {
+            pool.execute(() -> {
+                Object last = END;
+                try {
+                    IntStream.range(0, chunks).parallel().forEach(c -> {
+                        if (!cancelled.get()) {
+                            put(queue, score(data, algoVersion, scoring, users, c), cancelled);
+                            progress.advance(Math.min(chunkUsers, users.length - c * chunkUsers));
+                        }
+                    });
+                } catch (Throwable e) {
+                    last = e;
+                }
+                put(queue, last, cancelled);
+            });
+
+            long rows = 0;
+            while (true) {
+                Object next = queue.take();
+                if (next == END) {
+                    return rows;
+                }
+                if (next instanceof Throwable e) {
+                    throw new IllegalStateException("Batch scoring failed", e);
+                }
+                @SuppressWarnings("unchecked")
+                List<RecommendationRow> chunk = (List<RecommendationRow>) next;
+                sink.accept(chunk);
+                rows += chunk.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch scoring interrupted", e);
+        } finally {
+            cancelled.set(true);
+            queue.clear();
+            pool.shutdownNow();
+        }
+    }
+
+    private List<RecommendationRow> score(RatingsSnapshot data, String algoVersion,
+                                          IntFunction<List<ScoredItem>> scoring, int[] users, int chunk) {
+        int from = chunk * chunkUsers;
+        int to = Math.min(users.length, from + chunkUsers);
+        List<RecommendationRow> rows = new ArrayList<>();
+        for (int k = from; k < to; k++) {
+            int u = users[k];
+            long userId = data.userId(u);
+            int rank = 1;
+            for (ScoredItem rec : scoring.apply(u)) {
+                rows.add(new RecommendationRow(userId, rec.getItemId(), rec.getScore(), algoVersion, rank++));
+            }
+        }
+        return rows;
+    }
+
+    // gives up once the consumer is gone, so that no worker stays blocked on a full queue
+    private static void put(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.reco.engine;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live version of the baseline biases of {@link HybridRecommender#fit}, kept up to
+ * date by every rating write instead of a full scan.
+ *
+ * Per item it keeps the rating count and sum, so mu and
+ * b_i = sum(r_ui - mu) / (reg_item + n_i) are exact at any time. The user term
+ * b_u = sum(r_ui - mu - b_i) / (reg_user + n_u) depends on the biases of every
+ * item the user rated; it is kept as n_u, sum(r_ui) and sum(b_i), where each b_i
+ * is taken when the rating is recorded. That sum drifts as the items collect more
+ * ratings, and is made exact again by {@link #rebuild}, which the engine runs on
+ * every model load.
+ *
+ * It also keeps the distributions of ratings per item and per user in
+ * {@link CountHistogram}s, for the popularity prior m and the profile maturity
+ * threshold (see {@link PopularityIndex}).
+ *
+ * Writes are serialized; reads are lock-free and may lag a concurrent write.
+ */
+@Component
+public class BiasModel implements Biases {
+
+    private final IdRegistry idRegistry;
+    private final HybridConfig config;
+
+    private volatile boolean ready;
+    // updates seen while a rebuild is scanning the ratings table, replayed on top of it
+    private List<int[]> pending;
+
+    private volatile long totalHalfStars;
+    private volatile long totalCount;
+    private volatile int[] itemCount = new int[0];
+    private volatile long[] itemHalfStars = new long[0];
+    private volatile int[] userCount = new int[0];
+    private volatile long[] userHalfStars = new long[0];
+    private volatile double[] userItemBiasSum = new double[0];
+
+    // distributions over rated items / users with at least one rating
+    private final CountHistogram itemCounts = new CountHistogram();
+    private final CountHistogram userCounts = new CountHistogram();
+    private volatile long version;
+
+    public BiasModel(IdRegistry idRegistry, HybridConfig config) {
+        this.idRegistry = idRegistry;
+        this.config = config;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // bumped by every applied write and rebuild
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public double getMu() {
+        long n = totalCount;
+        return n == 0 ? 0.0 : totalHalfStars * 0.5 / n;
+    }
+
+    @Override
+    public double itemBias(int i) {
+        int[] counts = itemCount;
+        long[] sums = itemHalfStars;
+        if (i < 0 || i >= counts.length || i >= sums.length || counts[i] == 0) {
+            return 0.0;
+        }
+        return itemBias(sums[i] * 0.5, counts[i], getMu());
+    }
+
+    @Override
+    public double userBias(int u) {
+        int[] counts = userCount;
+        long[] sums = userHalfStars;
+        double[] biasSums = userItemBiasSum;
+        if (u < 0 || u >= counts.length || u >= sums.length || u >= biasSums.length || counts[u] == 0) {
+            return 0.0;
+        }
+        int n = counts[u];
+        return (sums[u] * 0.5 - n * getMu() - biasSums[u]) / (config.getRegUser() + n);
+    }
+
+    /**
+     * Records a committed rating write; oldRating is null for a new rating.
+     */
+    public synchronized void recordRating(long userId, long itemId, Double oldRating, double newRating) {
+        int u = idRegistry.registerUser(userId);
+        int i = idRegistry.registerItem(itemId);
+        byte value = RatingMatrix.toHalfStars(newRating);
+        if (pending != null) {
+            pending.add(new int[]{u, i, value});
+        }
+        if (!ready) {
+            return;
+        }
+        ensureCapacity(u, i);
+        if (oldRating == null) {
+            add(u, i, value);
+        } else {
+            change(u, i, RatingMatrix.toHalfStars(oldRating), value);
+        }
+    }
+
+    /**
+     * Called before the ratings table is scanned for a rebuild.
+     */
+    public synchronized void beginRebuild() {
+        pending = new ArrayList<>();
+    }
+
+    public synchronized void cancelRebuild() {
+        pending = null;
+    }
+
+    /**
+     * Replaces the running sums with exact ones from a freshly loaded snapshot and
+     * its fitted model, then replays the writes recorded since {@link #beginRebuild}.
+     * A write is applied relative to the value the snapshot actually holds, so a
+     * rating committed while the table was being scanned is never counted twice.
+     */
+    public synchronized void rebuild(HybridModel model) {
+        RatingsSnapshot data = model.getData();
+        RatingMatrix m = data.getMatrix();
+        int numUsers = Math.max(m.numUsers(), idRegistry.users().size());
+        int numItems = Math.max(m.numItems(), idRegistry.items().size());
+
+        long total = 0;
+        int[] iCount = new int[numItems];
+        long[] iSum = new long[numItems];
+        int[] uCount = new int[numUsers];
+        long[] uSum = new long[numUsers];
+        double[] uBiasSum = new double[numUsers];
+        byte[] values = m.userValues();
+        for (int u = 0; u < m.numUsers(); u++) {
+            for (int p = m.userStart(u); p < m.userEnd(u); p++) {
+                int i = m.rowItem(p);
+                byte v = values[p];
+                iCount[i]++;
+                iSum[i] += v;
+                uCount[u]++;
+                uSum[u] += v;
+                uBiasSum[u] += model.itemBias(i);
+                total += v;
+            }
+        }
+
+        itemCounts.clear();
+        for (int c : iCount) {
+            if (c > 0) {
+                itemCounts.add(c);
+            }
+        }
+        userCounts.clear();
+        for (int c : uCount) {
+            if (c > 0) {
+                userCounts.add(c);
+            }
+        }
+
+        totalHalfStars = total;
+        totalCount = m.nnz();
+        itemCount = iCount;
+        itemHalfStars = iSum;
+        userCount = uCount;
+        userHalfStars = uSum;
+        userItemBiasSum = uBiasSum;
+
+        if (pending != null) {
+            Map<Long, Byte> current = new HashMap<>();
+            for (int[] write : pending) {
+                int u = write[0];
+                int i = write[1];
+                byte value = (byte) write[2];
+                long key = ((long) u << 32) | i;
+                Byte old = current.get(key);
+                if (old == null && u < m.numUsers() && i < m.numItems()) {
+                    double r = m.rating(u, i);
+                    old = Double.isNaN(r) ? null : RatingMatrix.toHalfStars(r);
+                }
+                ensureCapacity(u, i);
+                if (old == null) {
+                    add(u, i, value);
+                } else {
+                    change(u, i, old, value);
+                }
+                current.put(key, value);
+            }
+            pending = null;
+        }
+        ready = true;
+        version++;
+    }
+
+    /**
+     * Consistent copy of the per-item accumulators and count quantiles, for
+     * {@link PopularityIndex} refreshes. Null until the first rebuild.
+     */
+    synchronized ItemStats itemStats(double popQuantile) {
+        if (!ready || itemCounts.size() == 0) {
+            return null;
+        }
+        return new ItemStats(
+                itemCount.clone(),
+                itemHalfStars.clone(),
+                getMu(),
+                itemCounts.quantile(popQuantile),
+                (int) userCounts.median(),
+                version);
+    }
+
+    static final class ItemStats {
+        final int[] counts;
+        final long[] halfStarSums;
+        final double mu;
+        final long m;
+        final int profileThreshold;
+        final long version;
+
+        ItemStats(int[] counts, long[] halfStarSums, double mu, long m, int profileThreshold, long version) {
+            this.counts = counts;
+            this.halfStarSums = halfStarSums;
+            this.mu = mu;
+            this.m = m;
+            this.profileThreshold = profileThreshold;
+            this.version = version;
+        }
+    }
+
+    private void add(int u, int i, byte value) {
+        totalHalfStars += value;
+        totalCount++;
+        moveCount(itemCounts, itemCount[i]);
+        moveCount(userCounts, userCount[u]);
+        itemCount[i]++;
+        itemHalfStars[i] += value;
+        userCount[u]++;
+        userHalfStars[u] += value;
+        userItemBiasSum[u] += itemBias(i);
+        version++;
+    }
+
+    private static void moveCount(CountHistogram histogram, int before) {
+        if (before == 0) {
+            histogram.add(1);
+        } else {
+            histogram.move(before, before + 1);
+        }
+    }
+
+    private void change(int u, int i, byte oldValue, byte newValue) {
+        int delta = newValue - oldValue;
+        totalHalfStars += delta;
+        itemHalfStars[i] += delta;
+        userHalfStars[u] += delta;
+        version++;
+    }
+
+    // arrays grow with the id registry; growth copies, so readers keep a consistent old view
+    private void ensureCapacity(int u, int i) {
+        if (i >= itemCount.length) {
+            int size = Math.max(i + 1, itemCount.length + (itemCount.length >> 1));
+            itemHalfStars = Arrays.copyOf(itemHalfStars, size);
+            itemCount = Arrays.copyOf(itemCount, size);
+        }
+        if (u >= userCount.length) {
+            int size = Math.max(u + 1, userCount.length + (userCount.length >> 1));
+            userHalfStars = Arrays.copyOf(userHalfStars, size);
+            userItemBiasSum = Arrays.copyOf(userItemBiasSum, size);
+            userCount = Arrays.copyOf(userCount, size);
+        }
+    }
+
+    private double itemBias(double sum, int n, double mu) {
+        return (sum - n * mu) / (config.getRegItem() + n);
+    }
+}
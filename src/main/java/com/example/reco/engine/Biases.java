@@ -0,0 +1,14 @@
+package com.example.reco.engine;
+
+/**
+ * Baseline predictor r_ui ~ mu + b_u + b_i, indexed by dense user/item indices.
+ * u = -1 stands for a user without ratings and has a zero bias.
+ */
+public interface Biases {
+
+    double getMu();
+
+    double itemBias(int i);
+
+    double userBias(int u);
+}
@@ -0,0 +1,113 @@
+package com.example.reco.engine;
+
+/**
+ * Hyper-parameters of the pairwise ranking recommender ({@link BprTrainer}):
+ * every rating is an implicit positive, whatever its value.
+ */
+public class BprConfig {
+
+    // off: full runs do not train it
+    private boolean enabled = false;
+    private String algoVersion = "bpr_hogwild";
+    private int topN = 20;
+    private int factors = 64;
+    private int epochs = 20;
+    // (user, positive, negative) triples per epoch; 0 = one per rating
+    private long samplesPerEpoch = 0;
+    private double learningRate = 0.05;
+    private double regularization = 0.0025;
+    private double biasRegularization = 0.0025;
+    private double initStd = 0.1;
+    private long seed = 42;
+
+    public BprConfig() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getAlgoVersion() {
+        return algoVersion;
+    }
+
+    public void setAlgoVersion(String algoVersion) {
+        this.algoVersion = algoVersion;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    public void setTopN(int topN) {
+        this.topN = topN;
+    }
+
+    public int getFactors() {
+        return factors;
+    }
+
+    public void setFactors(int factors) {
+        this.factors = factors;
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    public void setEpochs(int epochs) {
+        this.epochs = epochs;
+    }
+
+    public long getSamplesPerEpoch() {
+        return samplesPerEpoch;
+    }
+
+    public void setSamplesPerEpoch(long samplesPerEpoch) {
+        this.samplesPerEpoch = samplesPerEpoch;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    public double getRegularization() {
+        return regularization;
+    }
+
+    public void setRegularization(double regularization) {
+        this.regularization = regularization;
+    }
+
+    public double getBiasRegularization() {
+        return biasRegularization;
+    }
+
+    public void setBiasRegularization(double biasRegularization) {
+        this.biasRegularization = biasRegularization;
+    }
+
+    public double getInitStd() {
+        return initStd;
+    }
+
+    public void setInitStd(double initStd) {
+        this.initStd = initStd;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
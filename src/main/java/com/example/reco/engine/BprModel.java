@@ -0,0 +1,51 @@
+package com.example.reco.engine;
+
+import java.util.List;
+
+/**
+ * Factors and item biases learned by {@link BprTrainer}. Scores only rank items
+ * for a user: they are b_i + p_u . q_i, on no rating scale, so the model is its
+ * own {@link Biases} with no global or user term.
+ */
+public final class BprModel implements Biases {
+
+    private final FactorModel factors;
+    private final float[] itemBias;
+
+    BprModel(FactorModel factors, float[] itemBias) {
+        this.factors = factors;
+        this.itemBias = itemBias;
+    }
+
+    public FactorModel getFactors() {
+        return factors;
+    }
+
+    // updated in place by the trainer
+    float[] itemBiases() {
+        return itemBias;
+    }
+
+    @Override
+    public double getMu() {
+        return 0.0;
+    }
+
+    @Override
+    public double itemBias(int i) {
+        return i >= 0 && i < itemBias.length ? itemBias[i] : 0.0;
+    }
+
+    @Override
+    public double userBias(int u) {
+        return 0.0;
+    }
+
+    public double score(int u, int i) {
+        return factors.predict(this, u, i);
+    }
+
+    public List<ScoredItem> recommendForUserIndex(RatingsSnapshot data, int u, int n) {
+        return factors.recommendForUserIndex(this, data, u, n);
+    }
+}
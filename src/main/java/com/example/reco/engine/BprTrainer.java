@@ -0,0 +1,214 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Bayesian personalized ranking over the ratings as implicit feedback: for a
+ * rated item i and an unrated item j of the same user, b_i + p_u . q_i should
+ * exceed b_j + p_u . q_j.
+ *
+ * Hogwild SGD: every worker samples its own (u, i, j) triples (one
+ * {@link SplittableRandom} each) and updates the shared float[] factors in
+ * place without any lock. Each triple touches 3 rows out of hundreds of
+ * thousands, so concurrent writes to the same row are rare and only lose an
+ * update; indices are always in range, so a race never throws. Workers are
+ * joined at the end of every epoch, which publishes their writes.
+ */
+public final class BprTrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(BprTrainer.class);
+
+    // draws of a negative item before the sample is skipped (users who rated almost everything)
+    private static final int NEGATIVE_TRIES = 8;
+
+    private final BprConfig config;
+    private final int parallelism;
+
+    public BprTrainer(BprConfig config, int parallelism) {
+        if (config.getFactors() <= 0) {
+            throw new IllegalArgumentException("factors must be positive, got " + config.getFactors());
+        }
+        this.config = config;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public BprConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Trains on every rating of the matrix as a positive; {@code progress}
+     * advances by one per epoch, and every epoch logs its throughput.
+     */
+    public BprModel train(RatingMatrix m, JobProgress progress) {
+        long start = System.nanoTime();
+        int rank = config.getFactors();
+        int numUsers = m.numUsers();
+        int numItems = m.numItems();
+        float[] userFactors = new float[numUsers * rank];
+        float[] itemFactors = new float[numItems * rank];
+        float[] itemBias = new float[numItems];
+        int[] candidates = new int[numItems];
+        int count = 0;
+        Random random = new Random(config.getSeed());
+        for (int u = 0; u < numUsers; u++) {
+            if (m.userDegree(u) > 0) {
+                fillGaussian(userFactors, u * rank, rank, random);
+            }
+        }
+        for (int i = 0; i < numItems; i++) {
+            if (m.itemDegree(i) > 0) {
+                candidates[count++] = i;
+                fillGaussian(itemFactors, i * rank, rank, random);
+            }
+        }
+        candidates = Arrays.copyOf(candidates, count);
+        BprModel model = new BprModel(
+                new FactorModel(rank, numUsers, numItems, userFactors, itemFactors, candidates), itemBias);
+        if (m.nnz() == 0 || count < 2) {
+            return model;
+        }
+
+        long samples = config.getSamplesPerEpoch() > 0 ? config.getSamplesPerEpoch() : m.nnz();
+        progress.phase("training", config.getEpochs());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int epoch = 0; epoch < config.getEpochs(); epoch++) {
+                long epochStart = System.nanoTime();
+                List<Future<Long>> workers = new ArrayList<>(parallelism);
+                for (int w = 0; w < parallelism; w++) {
+                    long share = samples / parallelism + (w < samples % parallelism ? 1 : 0);
+                    Worker worker = new Worker(m, model, candidates,
+                            new SplittableRandom(config.getSeed() * 31 + (long) epoch * parallelism + w));
+                    workers.add(pool.submit(() -> worker.run(share)));
+                }
+                long done = 0;
+                for (Future<Long> worker : workers) {
+                    done += worker.get();
+                }
+                long nanos = Math.max(1, System.nanoTime() - epochStart);
+                log.info("BPR epoch {}/{}: {} samples in {} ms ({} samples/s)", epoch + 1, config.getEpochs(), done,
+                        nanos / 1_000_000, Math.round(done * 1e9 / nanos));
+                progress.advance(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("BPR training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("BPR training failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("BPR trained in {} ms (rank={}, epochs={}, samples/epoch={}, threads={})",
+                (System.nanoTime() - start) / 1_000_000, rank, config.getEpochs(), samples, parallelism);
+        return model;
+    }
+
+    private void fillGaussian(float[] factors, int offset, int length, Random random) {
+        for (int k = offset; k < offset + length; k++) {
+            factors[k] = (float) (random.nextGaussian() * config.getInitStd());
+        }
+    }
+
+    // one SGD thread: its own sampler, no shared state besides the factor arrays
+    private final class Worker {
+
+        private final int rank = config.getFactors();
+        private final float learningRate = (float) config.getLearningRate();
+        private final float reg = (float) config.getRegularization();
+        private final float biasReg = (float) config.getBiasRegularization();
+        private final int[] userOffsets;
+        private final int[] userItems;
+        private final float[] userFactors;
+        private final float[] itemFactors;
+        private final float[] itemBias;
+        private final int[] candidates;
+        private final SplittableRandom random;
+
+        Worker(RatingMatrix m, BprModel model, int[] candidates, SplittableRandom random) {
+            this.userOffsets = m.userOffsets();
+            this.userItems = m.userItems();
+            this.userFactors = model.getFactors().userFactors();
+            this.itemFactors = model.getFactors().itemFactors();
+            this.itemBias = model.itemBiases();
+            this.candidates = candidates;
+            this.random = random;
+        }
+
+        // returns the number of triples applied
+        long run(long samples) {
+            int nnz = userItems.length;
+            long done = 0;
+            for (long s = 0; s < samples; s++) {
+                // a uniform rating, so users weigh as much as their ratings
+                int pos = random.nextInt(nnz);
+                int u = userOf(pos);
+                int j = negative(u);
+                if (j >= 0) {
+                    step(u, userItems[pos], j);
+                    done++;
+                }
+            }
+            return done;
+        }
+
+        private int userOf(int pos) {
+            // last user whose row starts at or before pos (rows of users without ratings are empty)
+            int lo = 0;
+            int hi = userOffsets.length - 2;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (userOffsets[mid] <= pos) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+
+        private int negative(int u) {
+            int start = userOffsets[u];
+            int end = userOffsets[u + 1];
+            for (int t = 0; t < NEGATIVE_TRIES; t++) {
+                int j = candidates[random.nextInt(candidates.length)];
+                if (Arrays.binarySearch(userItems, start, end, j) < 0) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        private void step(int u, int i, int j) {
+            int pu = u * rank;
+            int qi = i * rank;
+            int qj = j * rank;
+            float x = itemBias[i] - itemBias[j];
+            for (int f = 0; f < rank; f++) {
+                x += userFactors[pu + f] * (itemFactors[qi + f] - itemFactors[qj + f]);
+            }
+            // d/dx ln sigmoid(x) = sigmoid(-x); exp overflows to infinity, which gives 0
+            float g = (float) (1.0 / (1.0 + Math.exp(x)));
+            for (int f = 0; f < rank; f++) {
+                float p = userFactors[pu + f];
+                float a = itemFactors[qi + f];
+                float b = itemFactors[qj + f];
+                userFactors[pu + f] = p + learningRate * (g * (a - b) - reg * p);
+                itemFactors[qi + f] = a + learningRate * (g * p - reg * a);
+                itemFactors[qj + f] = b + learningRate * (-g * p - reg * b);
+            }
+            itemBias[i] += learningRate * (g - biasReg * itemBias[i]);
+            itemBias[j] += learningRate * (-g - biasReg * itemBias[j]);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.reco.engine;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantile sketch over non-negative counts (ratings per item, ratings
+ * per user) that also supports removals, so a value can move from c to c + 1
+ * when a rating is added.
+ *
+ * Log-linear buckets: values below 128 are counted exactly, larger values fall
+ * into 64 sub-buckets per power of two, so a quantile is off by less than 1/64 of
+ * its value. Memory is fixed (~30 KB) whatever the number of values.
+ * Not thread-safe; the owner serializes access.
+ */
+public final class CountHistogram {
+
+    private static final int EXACT = 128;
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int FIRST_EXPONENT = 7;
+    private static final int BUCKETS = EXACT + (63 - FIRST_EXPONENT) * SUB;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long size;
+
+    public void add(long value) {
+        buckets[bucket(value)]++;
+        size++;
+    }
+
+    public void remove(long value) {
+        int b = bucket(value);
+        if (buckets[b] == 0) {
+            throw new IllegalStateException("value " + value + " was never added");
+        }
+        buckets[b]--;
+        size--;
+    }
+
+    public void move(long from, long to) {
+        remove(from);
+        add(to);
+    }
+
+    public void clear() {
+        Arrays.fill(buckets, 0);
+        size = 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The k-th smallest value (0-based), rounded down to its bucket.
+     */
+    public long valueAtRank(long k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("rank " + k + " outside 0.." + (size - 1));
+        }
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets[b];
+            if (seen > k) {
+                return lowerBound(b);
+            }
+        }
+        throw new IllegalStateException("inconsistent histogram");
+    }
+
+    /**
+     * Same rank rule as {@link HybridRecommender#chooseM}: sorted[ceil(q * n) - 1].
+     */
+    public long quantile(double q) {
+        if (size == 0) {
+            throw new IllegalStateException("histogram is empty");
+        }
+        long index = (long) Math.ceil(q * size) - 1;
+        return valueAtRank(Math.max(0, Math.min(index, size - 1)));
+    }
+
+    /**
+     * Same rule as {@link HybridRecommender#computeProfileMaturityThreshold}.
+     */
+    public double median() {
+        if (size == 0) {
+            throw new IllegalStateException("histogram is empty");
+        }
+        long mid = size / 2;
+        return (size % 2 == 1) ? valueAtRank(mid) : (valueAtRank(mid - 1) + valueAtRank(mid)) / 2.0;
+    }
+
+    private static int bucket(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value " + value);
+        }
+        if (value < EXACT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return EXACT + (exponent - FIRST_EXPONENT) * SUB + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int exponent = FIRST_EXPONENT + (bucket - EXACT) / SUB;
+        int sub = (bucket - EXACT) % SUB;
+        return (long) (SUB + sub) << (exponent - SUB_BITS);
+    }
+}
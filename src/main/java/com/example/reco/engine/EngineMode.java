@@ -0,0 +1,8 @@
+package com.example.reco.engine;
+
+public enum EngineMode {
+    // native Java engine running inside the Spring process
+    JVM,
+    // legacy `docker compose run reco-job python -m jobs.run_reco`
+    SUBPROCESS
+}
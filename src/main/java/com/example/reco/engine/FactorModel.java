@@ -0,0 +1,220 @@
+package com.example.reco.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * User and item factor matrices of a matrix factorization, as flat row-major
+ * float arrays: the factors of user u are userFactors[u * rank, (u + 1) * rank),
+ * same for items. Indexed by the dense indices of the snapshot it was trained
+ * on; only items that had ratings (the candidates) have factors.
+ *
+ * A rating is predicted as mu + b_u + b_i + p_u . q_i, the biases coming from
+ * the {@link Biases} it is scored with.
+ */
+public final class FactorModel {
+
+    private static final int MAGIC = 0x4d46414c; // "MFAL"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int rank;
+    private final int numUsers;
+    private final int numItems;
+    private final float[] userFactors;
+    private final float[] itemFactors;
+    // items with factors, ascending
+    private final int[] candidates;
+
+    FactorModel(int rank, int numUsers, int numItems, float[] userFactors, float[] itemFactors, int[] candidates) {
+        this.rank = rank;
+        this.numUsers = numUsers;
+        this.numItems = numItems;
+        this.userFactors = userFactors;
+        this.itemFactors = itemFactors;
+        this.candidates = candidates;
+    }
+
+    public int rank() {
+        return rank;
+    }
+
+    public int numUsers() {
+        return numUsers;
+    }
+
+    public int numItems() {
+        return numItems;
+    }
+
+    public int candidateCount() {
+        return candidates.length;
+    }
+
+    // raw arrays for the trainer, never mutated once the model is built
+
+    float[] userFactors() {
+        return userFactors;
+    }
+
+    float[] itemFactors() {
+        return itemFactors;
+    }
+
+    int[] candidates() {
+        return candidates;
+    }
+
+    /**
+     * Predicted rating of user u for item i; a user unknown to the model
+     * (u = -1) has no factors and gets the baseline.
+     */
+    public double predict(Biases biases, int u, int i) {
+        double baseline = biases.getMu() + biases.userBias(u) + biases.itemBias(i);
+        if (u < 0 || u >= numUsers || i < 0 || i >= numItems) {
+            return baseline;
+        }
+        return baseline + dot(userFactors, u * rank, itemFactors, i * rank, rank);
+    }
+
+    /**
+     * The n candidates of highest predicted rating that are not in {@code rated},
+     * best first, for a user with the given factors (a row of this model or a
+     * folded-in vector). Ties are broken by ascending item index.
+     */
+    public List<ScoredItem> recommend(Biases biases, RatingsSnapshot data, int u, float[] factors, int offset,
+                                      UserProfile rated, int n) {
+        double base = biases.getMu() + biases.userBias(u);
+        TopK top = new TopK(n);
+        int r = 0;
+        int ratedCount = rated.size();
+        for (int i : candidates) {
+            // both are sorted: skipping the rated items is a merge
+            while (r < ratedCount && rated.item(r) < i) {
+                r++;
+            }
+            if (r < ratedCount && rated.item(r) == i) {
+                continue;
+            }
+            double score = base + biases.itemBias(i) + dot(factors, offset, itemFactors, i * rank, rank);
+            top.offer(i, score, i);
+        }
+        int[] ids = new int[top.size()];
+        double[] scores = new double[top.size()];
+        int count = top.drainTo(ids, scores);
+        List<ScoredItem> recs = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            recs.add(new ScoredItem(data.itemId(ids[k]), scores[k]));
+        }
+        return recs;
+    }
+
+    public List<ScoredItem> recommendForUserIndex(Biases biases, RatingsSnapshot data, int u, int n) {
+        return recommend(biases, data, u, userFactors, u * rank, UserProfile.ofRow(data.getMatrix(), u), n);
+    }
+
+    public long memoryBytes() {
+        return 4L * (userFactors.length + itemFactors.length + candidates.length);
+    }
+
+    // four independent sums, so that the additions do not wait on each other
+    static double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int k = 0;
+        for (; k + 3 < length; k += 4) {
+            s0 += a[aOffset + k] * b[bOffset + k];
+            s1 += a[aOffset + k + 1] * b[bOffset + k + 1];
+            s2 += a[aOffset + k + 2] * b[bOffset + k + 2];
+            s3 += a[aOffset + k + 3] * b[bOffset + k + 3];
+        }
+        for (; k < length; k++) {
+            s0 += a[aOffset + k] * b[bOffset + k];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Writes the factors with the database ids of their rows (4 bytes per factor,
+     * 8 per id): header, users, then candidate items.
+     */
+    public void writeTo(OutputStream out, RatingsSnapshot data) throws IOException {
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        stream.writeInt(MAGIC);
+        stream.writeInt(FORMAT_VERSION);
+        stream.writeInt(rank);
+        stream.writeInt(numUsers);
+        stream.writeInt(candidates.length);
+        for (int u = 0; u < numUsers; u++) {
+            stream.writeLong(data.userId(u));
+            writeRow(stream, userFactors, u);
+        }
+        for (int i : candidates) {
+            stream.writeLong(data.itemId(i));
+            writeRow(stream, itemFactors, i);
+        }
+        stream.flush();
+    }
+
+    /**
+     * Reads factors written by {@link #writeTo} onto the indices of {@code data};
+     * rows of ids unknown to it are dropped, and its users or items missing from
+     * the file have no factors.
+     */
+    public static FactorModel readFrom(InputStream in, RatingsSnapshot data) throws IOException {
+        DataInputStream stream = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (stream.readInt() != MAGIC || stream.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a factor model (or unsupported version)");
+        }
+        int rank = stream.readInt();
+        int fileUsers = stream.readInt();
+        int fileItems = stream.readInt();
+        if (rank <= 0 || fileUsers < 0 || fileItems < 0) {
+            throw new IOException("Corrupted factor model");
+        }
+        float[] row = new float[rank];
+        float[] userFactors = new float[data.numUsers() * rank];
+        for (int k = 0; k < fileUsers; k++) {
+            int u = data.userIndex(stream.readLong());
+            readRow(stream, row);
+            if (u >= 0) {
+                System.arraycopy(row, 0, userFactors, u * rank, rank);
+            }
+        }
+        float[] itemFactors = new float[data.numItems() * rank];
+        int[] candidates = new int[fileItems];
+        int count = 0;
+        for (int k = 0; k < fileItems; k++) {
+            int i = data.itemIndex(stream.readLong());
+            readRow(stream, row);
+            if (i >= 0) {
+                System.arraycopy(row, 0, itemFactors, i * rank, rank);
+                candidates[count++] = i;
+            }
+        }
+        candidates = Arrays.copyOf(candidates, count);
+        Arrays.sort(candidates);
+        return new FactorModel(rank, data.numUsers(), data.numItems(), userFactors, itemFactors, candidates);
+    }
+
+    private void writeRow(DataOutputStream stream, float[] factors, int index) throws IOException {
+        for (int k = index * rank, end = k + rank; k < end; k++) {
+            stream.writeFloat(factors[k]);
+        }
+    }
+
+    private static void readRow(DataInputStream stream, float[] row) throws IOException {
+        for (int k = 0; k < row.length; k++) {
+            row[k] = stream.readFloat();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.reco.engine;
+
+/**
+ * Parameters of the approximate nearest neighbor indexes over the item factors
+ * ({@link HnswIndex}, {@link ItemEmbeddingIndex}).
+ */
+public class HnswConfig {
+
+    // off: mf_als scores every item exactly and similar items come from the rating index
+    private boolean enabled = false;
+    // links per node and layer (2 * m on the bottom layer)
+    private int m = 16;
+    // candidate list size while inserting, and while searching (raised to the number of results asked)
+    private int efConstruction = 200;
+    private int efSearch = 100;
+    private long seed = 42;
+    // directory of the memory-mapped index files, rewritten by every full run (empty = memory only)
+    private String path = "";
+
+    public HnswConfig() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public void setM(int m) {
+        this.m = m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public void setEfConstruction(int efConstruction) {
+        this.efConstruction = efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+}
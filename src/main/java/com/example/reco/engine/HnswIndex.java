@@ -0,0 +1,609 @@
+package com.example.reco.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over fixed-size
+ * float vectors, for approximate nearest neighbors by squared euclidean distance.
+ * Every node carries a long label (a database id).
+ *
+ * Stored in flat buffers so that a built index and one memory-mapped from its
+ * file are searched by the same code: vectors, then the bottom layer as
+ * (count, up to 2m neighbors) per node, then the upper layers of every node as
+ * (count, up to m neighbors) per level. Levels are drawn upfront, which fixes
+ * the layout before any insert.
+ *
+ * Nodes are inserted in parallel: a node's links are only read or written under
+ * its lock stripe, and the entry point is swapped under a global lock held by
+ * the (rare) inserts that raise the top level. Once built, the index is
+ * immutable and searches take no lock; each searching thread needs its own
+ * {@link Searcher}.
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x57534e48; // "HNSW"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int MAX_LEVEL = 16;
+    private static final int LOCK_STRIPES = 1024;
+
+    private final int size;
+    private final int dim;
+    private final int m;
+    private final int m0;
+    private final LongBuffer labels;
+    private final FloatBuffer vectors;
+    private final IntBuffer links0;
+    // upper layers of node n are at [upperOffsets[n], upperOffsets[n + 1]), (m + 1) ints per level
+    private final IntBuffer upperOffsets;
+    private final IntBuffer upper;
+
+    private volatile int entryPoint;
+    private volatile int maxLevel;
+    // only while building: the graph is immutable afterwards
+    private volatile ReentrantLock[] locks;
+    private final ReentrantLock entryLock = new ReentrantLock();
+
+    private HnswIndex(int size, int dim, int m, LongBuffer labels, FloatBuffer vectors, IntBuffer links0,
+                      IntBuffer upperOffsets, IntBuffer upper, int entryPoint, int maxLevel) {
+        this.size = size;
+        this.dim = dim;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.labels = labels;
+        this.vectors = vectors;
+        this.links0 = links0;
+        this.upperOffsets = upperOffsets;
+        this.upper = upper;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Indexes {@code labels.length} vectors stored row after row in
+     * {@code vectors}, inserting on {@code parallelism} threads (0 = one per core).
+     */
+    public static HnswIndex build(float[] vectors, int dim, long[] labels, HnswConfig config, int parallelism) {
+        int n = labels.length;
+        int m = Math.max(2, config.getM());
+        if (vectors.length != n * dim) {
+            throw new IllegalArgumentException("expected " + n + " vectors of " + dim + " floats, got " + vectors.length);
+        }
+        // level l with probability ~ m^-l
+        Random random = new Random(config.getSeed());
+        double levelFactor = 1.0 / Math.log(m);
+        int[] upperOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            int level = Math.min(MAX_LEVEL, (int) (-Math.log(1.0 - random.nextDouble()) * levelFactor));
+            upperOffsets[node + 1] = upperOffsets[node] + level * (m + 1);
+        }
+        HnswIndex index = new HnswIndex(n, dim, m,
+                LongBuffer.wrap(labels.clone()), FloatBuffer.wrap(vectors.clone()),
+                IntBuffer.wrap(new int[n * (2 * m + 1)]), IntBuffer.wrap(upperOffsets),
+                IntBuffer.wrap(new int[upperOffsets[n]]), -1, -1);
+        ReentrantLock[] locks = new ReentrantLock[Math.min(LOCK_STRIPES, Math.max(1, n))];
+        for (int k = 0; k < locks.length; k++) {
+            locks[k] = new ReentrantLock();
+        }
+        index.locks = locks;
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        int efConstruction = Math.max(config.getEfConstruction(), m);
+        ThreadLocal<Searcher> searchers = ThreadLocal.withInitial(index::newSearcher);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel()
+                                       .forEach(node -> index.insert(node, searchers.get(), efConstruction)))
+                .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("HNSW build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("HNSW build failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        index.locks = null;
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public long label(int node) {
+        return labels.get(node);
+    }
+
+    public void copyVector(int node, float[] out) {
+        for (int k = 0; k < dim; k++) {
+            out[k] = vectors.get(node * dim + k);
+        }
+    }
+
+    public long memoryBytes() {
+        return 8L * size + 4L * ((long) size * dim + links0.capacity() + upperOffsets.capacity() + upper.capacity());
+    }
+
+    // search state of one thread, reused by its searches
+    public Searcher newSearcher() {
+        return new Searcher();
+    }
+
+    /**
+     * The k nearest nodes of {@code query}, nearest first, exploring ef
+     * candidates on the bottom layer (at least k). Returns how many were found.
+     */
+    public int search(Searcher searcher, float[] query, int k, int ef, int[] outNodes, float[] outDistances) {
+        int ep = entryPoint;
+        if (ep < 0 || k <= 0) {
+            return 0;
+        }
+        for (int level = maxLevel; level > 0; level--) {
+            ep = searcher.greedy(query, ep, level);
+        }
+        searcher.searchLayer(query, ep, Math.max(ef, k), 0);
+        int count = Math.min(k, searcher.resultCount);
+        System.arraycopy(searcher.resultNodes, 0, outNodes, 0, count);
+        if (outDistances != null) {
+            System.arraycopy(searcher.resultDistances, 0, outDistances, 0, count);
+        }
+        return count;
+    }
+
+    public float distance(float[] query, int node) {
+        float sum = 0f;
+        int base = node * dim;
+        for (int k = 0; k < dim; k++) {
+            float d = query[k] - vectors.get(base + k);
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private float distance(int a, int b) {
+        float sum = 0f;
+        int baseA = a * dim;
+        int baseB = b * dim;
+        for (int k = 0; k < dim; k++) {
+            float d = vectors.get(baseA + k) - vectors.get(baseB + k);
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private int levelOf(int node) {
+        return (upperOffsets.get(node + 1) - upperOffsets.get(node)) / (m + 1);
+    }
+
+    private IntBuffer layer(int level) {
+        return level == 0 ? links0 : upper;
+    }
+
+    // position of the count of node's links on the level, followed by the links
+    private int linkBase(int node, int level) {
+        return level == 0 ? node * (m0 + 1) : upperOffsets.get(node) + (level - 1) * (m + 1);
+    }
+
+    private int copyLinks(int node, int level, int[] out) {
+        ReentrantLock[] building = locks;
+        if (building == null) {
+            return readLinks(node, level, out);
+        }
+        ReentrantLock lock = building[node % building.length];
+        lock.lock();
+        try {
+            return readLinks(node, level, out);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int readLinks(int node, int level, int[] out) {
+        IntBuffer links = layer(level);
+        int base = linkBase(node, level);
+        int count = links.get(base);
+        for (int k = 0; k < count; k++) {
+            out[k] = links.get(base + 1 + k);
+        }
+        return count;
+    }
+
+    private void insert(int node, Searcher searcher, int efConstruction) {
+        int level = levelOf(node);
+        entryLock.lock();
+        boolean holding = true;
+        try {
+            int ep = entryPoint;
+            int top = maxLevel;
+            if (ep < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+            // only an insert above the top level keeps the lock (it will move the entry point)
+            if (level <= top) {
+                entryLock.unlock();
+                holding = false;
+            }
+            float[] query = searcher.query;
+            for (int k = 0; k < dim; k++) {
+                query[k] = vectors.get(node * dim + k);
+            }
+            for (int lc = top; lc > level; lc--) {
+                ep = searcher.greedy(query, ep, lc);
+            }
+            for (int lc = Math.min(level, top); lc >= 0; lc--) {
+                searcher.searchLayer(query, ep, efConstruction, lc);
+                int count = selectNeighbors(searcher.resultNodes, searcher.resultDistances, searcher.resultCount,
+                        m, searcher.selected);
+                setLinks(node, lc, searcher.selected, count);
+                for (int k = 0; k < count; k++) {
+                    addLink(searcher.selected[k], lc, node, searcher);
+                }
+                ep = searcher.resultNodes[0];
+            }
+            if (level > top) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        } finally {
+            if (holding) {
+                entryLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the base than to every kept one
+     * (candidates sorted by distance to the base), so that links spread in every
+     * direction instead of piling up in one cluster.
+     */
+    private int selectNeighbors(int[] nodes, float[] distances, int count, int max, int[] out) {
+        int selected = 0;
+        for (int k = 0; k < count && selected < max; k++) {
+            int candidate = nodes[k];
+            boolean keep = true;
+            for (int s = 0; s < selected; s++) {
+                if (distance(candidate, out[s]) < distances[k]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                out[selected++] = candidate;
+            }
+        }
+        return selected;
+    }
+
+    private void setLinks(int node, int level, int[] neighbors, int count) {
+        ReentrantLock lock = locks[node % locks.length];
+        lock.lock();
+        try {
+            IntBuffer links = layer(level);
+            int base = linkBase(node, level);
+            for (int k = 0; k < count; k++) {
+                links.put(base + 1 + k, neighbors[k]);
+            }
+            links.put(base, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // adds the reverse link target -> node, re-selecting target's links when it has too many
+    private void addLink(int target, int level, int node, Searcher searcher) {
+        int max = level == 0 ? m0 : m;
+        ReentrantLock lock = locks[target % locks.length];
+        lock.lock();
+        try {
+            IntBuffer links = layer(level);
+            int base = linkBase(target, level);
+            int count = links.get(base);
+            if (count < max) {
+                links.put(base + 1 + count, node);
+                links.put(base, count + 1);
+                return;
+            }
+            int[] nodes = searcher.pruneNodes;
+            float[] distances = searcher.pruneDistances;
+            for (int k = 0; k < count; k++) {
+                nodes[k] = links.get(base + 1 + k);
+                distances[k] = distance(target, nodes[k]);
+            }
+            nodes[count] = node;
+            distances[count] = distance(target, node);
+            sortByDistance(nodes, distances, count + 1);
+            int kept = selectNeighbors(nodes, distances, count + 1, max, searcher.selectedPrune);
+            for (int k = 0; k < kept; k++) {
+                links.put(base + 1 + k, searcher.selectedPrune[k]);
+            }
+            links.put(base, kept);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void sortByDistance(int[] nodes, float[] distances, int count) {
+        for (int k = 1; k < count; k++) {
+            int node = nodes[k];
+            float d = distances[k];
+            int j = k - 1;
+            while (j >= 0 && distances[j] > d) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = d;
+        }
+    }
+
+    /**
+     * Writes the index in its mapped layout (little-endian): header, labels,
+     * vectors, bottom layer, upper layer offsets, upper layers.
+     */
+    public void writeTo(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(dim).putInt(m).putInt(m0)
+                  .putInt(entryPoint).putInt(maxLevel).putInt(upper.capacity()).putInt(0);
+            writeFully(channel, header.flip());
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < size; k++) {
+                flushIfFull(channel, chunk, 8).putLong(labels.get(k));
+            }
+            for (int k = 0; k < vectors.capacity(); k++) {
+                flushIfFull(channel, chunk, 4).putFloat(vectors.get(k));
+            }
+            for (IntBuffer section : new IntBuffer[]{links0, upperOffsets, upper}) {
+                for (int k = 0; k < section.capacity(); k++) {
+                    flushIfFull(channel, chunk, 4).putInt(section.get(k));
+                }
+            }
+            writeFully(channel, chunk.flip());
+        }
+    }
+
+    /**
+     * Maps an index written by {@link #writeTo}; its pages are read from the
+     * file on demand and shared with the page cache, not copied to the heap.
+     */
+    public static HnswIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an HNSW index (or larger than 2 GB): " + path);
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            if (file.getInt(0) != MAGIC || file.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not an HNSW index (or unsupported version): " + path);
+            }
+            int size = file.getInt(8);
+            int dim = file.getInt(12);
+            int m = file.getInt(16);
+            int m0 = file.getInt(20);
+            int entryPoint = file.getInt(24);
+            int maxLevel = file.getInt(28);
+            int upperSize = file.getInt(32);
+            long labelsAt = HEADER_BYTES;
+            long vectorsAt = labelsAt + 8L * size;
+            long links0At = vectorsAt + 4L * size * dim;
+            long offsetsAt = links0At + 4L * size * (m0 + 1);
+            long upperAt = offsetsAt + 4L * (size + 1);
+            if (size < 0 || dim <= 0 || m < 2 || m0 != 2 * m || upperSize < 0 || upperAt + 4L * upperSize != length) {
+                throw new IOException("Corrupted HNSW index: " + path);
+            }
+            return new HnswIndex(size, dim, m,
+                    slice(file, labelsAt, 8L * size).asLongBuffer(),
+                    slice(file, vectorsAt, 4L * size * dim).asFloatBuffer(),
+                    slice(file, links0At, 4L * size * (m0 + 1)).asIntBuffer(),
+                    slice(file, offsetsAt, 4L * (size + 1)).asIntBuffer(),
+                    slice(file, upperAt, 4L * upperSize).asIntBuffer(),
+                    entryPoint, maxLevel);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, long offset, long length) {
+        return file.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer chunk, int needed) throws IOException {
+        if (chunk.remaining() < needed) {
+            writeFully(channel, chunk.flip());
+            chunk.clear();
+        }
+        return chunk;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Visited marks, candidate queues and scratch arrays of one thread.
+     */
+    public final class Searcher {
+
+        private final int[] visited = new int[size];
+        private int stamp;
+        private final NodeHeap candidates = new NodeHeap(64);
+        private final NodeHeap results = new NodeHeap(64);
+        private final int[] links = new int[m0 + 1];
+        private final float[] query = new float[dim];
+        private final int[] selected = new int[m0 + 1];
+        private final int[] pruneNodes = new int[m0 + 1];
+        private final float[] pruneDistances = new float[m0 + 1];
+        private final int[] selectedPrune = new int[m0 + 1];
+        private int[] resultNodes = new int[64];
+        private float[] resultDistances = new float[64];
+        private int resultCount;
+
+        private Searcher() {
+        }
+
+        // closest node of the level reachable by always moving to a closer neighbor
+        private int greedy(float[] query, int ep, int level) {
+            int current = ep;
+            float best = distance(query, current);
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                int count = copyLinks(current, level, links);
+                for (int k = 0; k < count; k++) {
+                    float d = distance(query, links[k]);
+                    if (d < best) {
+                        best = d;
+                        current = links[k];
+                        moved = true;
+                    }
+                }
+            }
+            return current;
+        }
+
+        // best-first search of the level; the ef nearest nodes found end up in resultNodes, nearest first
+        private void searchLayer(float[] query, int ep, int ef, int level) {
+            if (++stamp == 0) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+            candidates.clear();
+            results.clear();
+            visited[ep] = stamp;
+            float d = distance(query, ep);
+            candidates.push(d, ep);
+            results.push(-d, ep);
+            while (candidates.size() > 0) {
+                float closest = candidates.peekKey();
+                if (results.size() >= ef && closest > -results.peekKey()) {
+                    break;
+                }
+                int current = candidates.pop();
+                int count = copyLinks(current, level, links);
+                for (int k = 0; k < count; k++) {
+                    int next = links[k];
+                    if (visited[next] == stamp) {
+                        continue;
+                    }
+                    visited[next] = stamp;
+                    float dn = distance(query, next);
+                    if (results.size() < ef || dn < -results.peekKey()) {
+                        candidates.push(dn, next);
+                        results.push(-dn, next);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+            int count = results.size();
+            if (resultNodes.length < count) {
+                resultNodes = new int[count];
+                resultDistances = new float[count];
+            }
+            // the max-heap pops the farthest first
+            for (int k = count - 1; k >= 0; k--) {
+                resultDistances[k] = -results.peekKey();
+                resultNodes[k] = results.pop();
+            }
+            resultCount = count;
+        }
+    }
+
+    // binary min-heap of (key, node); max-heaps store negated keys
+    private static final class NodeHeap {
+
+        private float[] keys;
+        private int[] nodes;
+        private int size;
+
+        NodeHeap(int capacity) {
+            keys = new float[capacity];
+            nodes = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        float peekKey() {
+            return keys[0];
+        }
+
+        void push(float key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int k = size++;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[k] = keys[parent];
+                nodes[k] = nodes[parent];
+                k = parent;
+            }
+            keys[k] = key;
+            nodes[k] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                float key = keys[size];
+                int node = nodes[size];
+                int k = 0;
+                while (true) {
+                    int child = 2 * k + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    keys[k] = keys[child];
+                    nodes[k] = nodes[child];
+                    k = child;
+                }
+                keys[k] = key;
+                nodes[k] = node;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.reco.engine;
+
+/**
+ * Hyper-parameters of the hybrid popularity + user-CF recommender.
+ * Defaults mirror DEMO_CONFIG in reco-ml/reco_ml/algo.py.
+ */
+public class HybridConfig {
+
+    private String algoVersion = "hybrid_usercf_pop";
+    private int topN = 20;
+    private int popP = 300;
+    private double popQuantile = 0.80;
+    private int neighborPool = 30;
+    private int maxSeedItems = 20;
+    private int maxRatersPerItem = 30;
+    private int maxCandidatesCf = 600;
+    private double ratingThreshold = 4.0;
+    private double regItem = 10.0;
+    private double regUser = 15.0;
+    private double alphaMax = 0.9;
+    // item-item index (not part of the Python job): neighbors kept per item (0 disables it),
+    // raters scanned per item while building it, and item-CF candidates per user (0 = off)
+    private int itemNeighbors = 50;
+    private int itemSimMaxRaters = 5000;
+    private int maxCandidatesItemCf = 0;
+    // inner loops of per-user scoring (same results either way)
+    private KernelMode kernels = KernelMode.AUTO;
+    // idle scoring workspaces kept for threads outside the batch pools (about 32 B per user + 44 B per item each)
+    private int sharedWorkspaces = 4;
+
+    public HybridConfig() {
+    }
+
+    public String getAlgoVersion() {
+        return algoVersion;
+    }
+
+    public void setAlgoVersion(String algoVersion) {
+        this.algoVersion = algoVersion;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    public void setTopN(int topN) {
+        this.topN = topN;
+    }
+
+    public int getPopP() {
+        return popP;
+    }
+
+    public void setPopP(int popP) {
+        this.popP = popP;
+    }
+
+    public double getPopQuantile() {
+        return popQuantile;
+    }
+
+    public void setPopQuantile(double popQuantile) {
+        this.popQuantile = popQuantile;
+    }
+
+    public int getNeighborPool() {
+        return neighborPool;
+    }
+
+    public void setNeighborPool(int neighborPool) {
+        this.neighborPool = neighborPool;
+    }
+
+    public int getMaxSeedItems() {
+        return maxSeedItems;
+    }
+
+    public void setMaxSeedItems(int maxSeedItems) {
+        this.maxSeedItems = maxSeedItems;
+    }
+
+    public int getMaxRatersPerItem() {
+        return maxRatersPerItem;
+    }
+
+    public void setMaxRatersPerItem(int maxRatersPerItem) {
+        this.maxRatersPerItem = maxRatersPerItem;
+    }
+
+    public int getMaxCandidatesCf() {
+        return maxCandidatesCf;
+    }
+
+    public void setMaxCandidatesCf(int maxCandidatesCf) {
+        this.maxCandidatesCf = maxCandidatesCf;
+    }
+
+    public double getRatingThreshold() {
+        return ratingThreshold;
+    }
+
+    public void setRatingThreshold(double ratingThreshold) {
+        this.ratingThreshold = ratingThreshold;
+    }
+
+    public double getRegItem() {
+        return regItem;
+    }
+
+    public void setRegItem(double regItem) {
+        this.regItem = regItem;
+    }
+
+    public double getRegUser() {
+        return regUser;
+    }
+
+    public void setRegUser(double regUser) {
+        this.regUser = regUser;
+    }
+
+    public double getAlphaMax() {
+        return alphaMax;
+    }
+
+    public void setAlphaMax(double alphaMax) {
+        this.alphaMax = alphaMax;
+    }
+
+    public int getItemNeighbors() {
+        return itemNeighbors;
+    }
+
+    public void setItemNeighbors(int itemNeighbors) {
+        this.itemNeighbors = itemNeighbors;
+    }
+
+    public int getItemSimMaxRaters() {
+        return itemSimMaxRaters;
+    }
+
+    public void setItemSimMaxRaters(int itemSimMaxRaters) {
+        this.itemSimMaxRaters = itemSimMaxRaters;
+    }
+
+    public KernelMode getKernels() {
+        return kernels;
+    }
+
+    public void setKernels(KernelMode kernels) {
+        this.kernels = kernels;
+    }
+
+    public int getSharedWorkspaces() {
+        return sharedWorkspaces;
+    }
+
+    public void setSharedWorkspaces(int sharedWorkspaces) {
+        this.sharedWorkspaces = sharedWorkspaces;
+    }
+
+    public int getMaxCandidatesItemCf() {
+        return maxCandidatesItemCf;
+    }
+
+    public void setMaxCandidatesItemCf(int maxCandidatesItemCf) {
+        this.maxCandidatesItemCf = maxCandidatesItemCf;
+    }
+}
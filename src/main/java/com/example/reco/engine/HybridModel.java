@@ -0,0 +1,74 @@
+package com.example.reco.engine;
+
+/**
+ * Global state shared by every per-user scoring call: baseline biases,
+ * normalized popularity scores and the profile maturity threshold.
+ * All vectors are indexed by the dense user/item indices of the snapshot.
+ */
+public class HybridModel implements ScoringState {
+
+    private final RatingsSnapshot data;
+    private final double mu;
+    private final double[] itemBias;
+    private final double[] userBias;
+    private final double[] popScores;
+    private final int[] popTopItems;
+    private final int profileThreshold;
+
+    public HybridModel(
+            RatingsSnapshot data,
+            double mu,
+            double[] itemBias,
+            double[] userBias,
+            double[] popScores,
+            int[] popTopItems,
+            int profileThreshold
+    ) {
+        this.data = data;
+        this.mu = mu;
+        this.itemBias = itemBias;
+        this.userBias = userBias;
+        this.popScores = popScores;
+        this.popTopItems = popTopItems;
+        this.profileThreshold = profileThreshold;
+    }
+
+    public RatingsSnapshot getData() {
+        return data;
+    }
+
+    @Override
+    public double getMu() {
+        return mu;
+    }
+
+    @Override
+    public double itemBias(int i) {
+        return itemBias[i];
+    }
+
+    // u = -1 stands for a user unknown to the snapshot (no bias)
+    @Override
+    public double userBias(int u) {
+        return u >= 0 ? userBias[u] : 0.0;
+    }
+
+    @Override
+    public double popScore(int i) {
+        return popScores[i];
+    }
+
+    @Override
+    public int[] getPopTopItems() {
+        return popTopItems;
+    }
+
+    @Override
+    public int getProfileThreshold() {
+        return profileThreshold;
+    }
+
+    public double baseline(int u, int i) {
+        return mu + userBias(u) + itemBias[i];
+    }
+}
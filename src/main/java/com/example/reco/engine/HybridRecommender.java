@@ -0,0 +1,553 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Java port of the Bayesian popularity + bias-corrected user-CF blend
+ * implemented in reco-ml/reco_ml/algo.py, running on a {@link RatingMatrix}.
+ * Every "sorted"/"heapq.nlargest" of the Python code is a stable selection here
+ * (see {@link TopK}), so ties are resolved by row order like in the Python job.
+ */
+public class HybridRecommender {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridRecommender.class);
+
+    private final HybridConfig config;
+    private final ScoringKernels kernels;
+    // workers of a batch pool keep a workspace each (see ScoringWorkerThread); any other thread
+    // (requests, live scoring, the common pool) borrows one of a few shared ones, or allocates it when none is idle
+    private final BlockingQueue<ScoringWorkspace> sharedWorkspaces;
+    private volatile ItemNeighbors itemNeighbors;
+
+    public HybridRecommender(HybridConfig config) {
+        this.config = config;
+        this.kernels = selectKernels(config.getKernels());
+        this.sharedWorkspaces = new ArrayBlockingQueue<>(Math.max(1, config.getSharedWorkspaces()));
+    }
+
+    public HybridConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Kernels actually in use, SCALAR or VECTOR.
+     */
+    public KernelMode getKernelMode() {
+        return kernels instanceof ScalarKernels ? KernelMode.SCALAR : KernelMode.VECTOR;
+    }
+
+    /**
+     * Item-item index used for item-CF candidates (see maxCandidatesItemCf); may be null.
+     */
+    public void setItemNeighbors(ItemNeighbors itemNeighbors) {
+        this.itemNeighbors = itemNeighbors;
+    }
+
+    // model fitting
+
+    public HybridModel fit(RatingsSnapshot data) {
+        RatingMatrix m = data.getMatrix();
+        if (m.nnz() == 0) {
+            throw new IllegalStateException("No ratings available");
+        }
+
+        // ratings are half-stars, so the global sum is exact in a long
+        long halfStarSum = 0;
+        byte[] values = m.userValues();
+        for (byte v : values) {
+            halfStarSum += v;
+        }
+        double mu = halfStarSum * 0.5 / m.nnz();
+
+        // b_i = sum(r_ui - mu) / (reg_item + n_i)
+        int numItems = m.numItems();
+        double[] itemBias = new double[numItems];
+        double[] itemMean = new double[numItems];
+        int ratedItems = 0;
+        for (int i = 0; i < numItems; i++) {
+            int n = m.itemDegree(i);
+            if (n == 0) {
+                continue;
+            }
+            double s = 0.0;
+            for (int p = m.itemStart(i); p < m.itemEnd(i); p++) {
+                s += m.colRating(p);
+            }
+            itemBias[i] = (s - n * mu) / (config.getRegItem() + n);
+            itemMean[i] = s / n;
+            ratedItems++;
+        }
+
+        // b_u = sum(r_ui - mu - b_i) / (reg_user + n_u)
+        int numUsers = m.numUsers();
+        double[] userBias = new double[numUsers];
+        int[] ratingsPerUser = new int[numUsers];
+        int activeUsers = 0;
+        for (int u = 0; u < numUsers; u++) {
+            int n = m.userDegree(u);
+            if (n == 0) {
+                continue;
+            }
+            double s = 0.0;
+            for (int p = m.userStart(u); p < m.userEnd(u); p++) {
+                s += m.rowRating(p) - mu - itemBias[m.rowItem(p)];
+            }
+            userBias[u] = s / (config.getRegUser() + n);
+            ratingsPerUser[activeUsers++] = n;
+        }
+
+        double[] popScores = computePopularity(m, itemMean, ratedItems, mu);
+        int[] popTopItems = topPItems(m, popScores, config.getPopP());
+        int threshold = computeProfileMaturityThreshold(Arrays.copyOf(ratingsPerUser, activeUsers));
+
+        return new HybridModel(data, mu, itemBias, userBias, popScores, popTopItems, threshold);
+    }
+
+    private double[] computePopularity(RatingMatrix m, double[] itemMean, int ratedItems, double globalRating) {
+        int numItems = m.numItems();
+        long[] counts = new long[ratedItems];
+        for (int i = 0, k = 0; i < numItems; i++) {
+            if (m.itemDegree(i) > 0) {
+                counts[k++] = m.itemDegree(i);
+            }
+        }
+        double mThreshold = chooseM(counts, config.getPopQuantile());
+
+        double[] pop = new double[numItems];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numItems; i++) {
+            int v = m.itemDegree(i);
+            if (v == 0) {
+                continue;
+            }
+            pop[i] = bayesianScore(v, itemMean[i], globalRating, mThreshold);
+            min = Math.min(min, pop[i]);
+            max = Math.max(max, pop[i]);
+        }
+        // min-max normalization over rated items; unrated items keep 0.0 like pop_scores_all.get(i, 0.0)
+        for (int i = 0; i < numItems; i++) {
+            if (m.itemDegree(i) > 0) {
+                pop[i] = (max == min) ? 0.0 : (pop[i] - min) / (max - min);
+            }
+        }
+        return pop;
+    }
+
+    private static int[] topPItems(RatingMatrix m, double[] popScores, int p) {
+        TopK top = new TopK(p);
+        for (int i = 0; i < m.numItems(); i++) {
+            if (m.itemDegree(i) > 0) {
+                top.offer(i, popScores[i], i);
+            }
+        }
+        int[] items = new int[top.size()];
+        top.drainTo(items, null);
+        return items;
+    }
+
+    // per-user scoring
+
+    public List<ScoredItem> recommendForUser(HybridModel model, long userId, int n) {
+        return recommendForUserIndex(model, model.getData().userIndex(userId), n);
+    }
+
+    /**
+     * Scores one user given by dense index; u = -1 is a user without any rating.
+     */
+    public List<ScoredItem> recommendForUserIndex(HybridModel model, int u, int n) {
+        return recommendForUserIndex(model, null, u, n);
+    }
+
+    /**
+     * Same as above, reading u's neighbor pool from {@code neighbors} when it holds
+     * one for the model's snapshot instead of recomputing the similarities.
+     */
+    public List<ScoredItem> recommendForUserIndex(HybridModel model, UserNeighbors neighbors, int u, int n) {
+        RatingMatrix m = model.getData().getMatrix();
+        UserNeighbors.Pool pool = neighbors != null && neighbors.isFor(model.getData()) ? neighbors.pool(u) : null;
+        return recommend(model, model, u, UserProfile.ofRow(m, u), model.userBias(u), n, pool);
+    }
+
+    /**
+     * Scores a user from ratings that may be newer than the model (the row of u in
+     * the snapshot, if any, is ignored). u is the user's index in the snapshot or -1;
+     * the user bias is recomputed from the profile against the model's item biases.
+     */
+    public List<ScoredItem> recommendForProfile(HybridModel model, int u, UserProfile profile, int n) {
+        return recommendForProfile(model, model, u, profile, n);
+    }
+
+    /**
+     * Same as above with biases and popularity taken from {@code state} (e.g. the live
+     * {@link PopularityIndex} state) instead of the ones fitted with the model.
+     * The model still provides the rating matrix used for neighbors and CF candidates.
+     */
+    public List<ScoredItem> recommendForProfile(HybridModel model, ScoringState state, int u, UserProfile profile, int n) {
+        return recommendForProfile(model, state, u, profile, null, n);
+    }
+
+    /**
+     * Same as above with a neighbor pool already computed for this profile
+     * (see {@link #neighborPool}); null computes it.
+     */
+    public List<ScoredItem> recommendForProfile(HybridModel model, ScoringState state, int u, UserProfile profile,
+                                                UserNeighbors.Pool pool, int n) {
+        double s = 0.0;
+        for (int k = 0; k < profile.size(); k++) {
+            s += profile.rating(k) - state.getMu() - state.itemBias(profile.item(k));
+        }
+        double userBias = profile.size() > 0 ? s / (config.getRegUser() + profile.size()) : 0.0;
+        return recommend(model, state, u, profile, userBias, n, pool);
+    }
+
+    private List<ScoredItem> recommend(HybridModel model, ScoringState state, int u, UserProfile profile,
+                                       double userBias, int n, UserNeighbors.Pool pool) {
+        if (n <= 0) {
+            return List.of();
+        }
+        RatingMatrix m = model.getData().getMatrix();
+        ScoringWorkspace ws = acquireWorkspace(m);
+        try {
+            return recommend(ws, m, model, state, u, profile, userBias, n, pool);
+        } finally {
+            releaseWorkspace(ws);
+        }
+    }
+
+    private List<ScoredItem> recommend(ScoringWorkspace ws, RatingMatrix m, HybridModel model, ScoringState state,
+                                       int u, UserProfile profile, double userBias, int n, UserNeighbors.Pool pool) {
+        ws.begin();
+
+        int nRatings = profile.size();
+        if (nRatings > 0) {
+            for (int k = 0; k < nRatings; k++) {
+                ws.seenStamp[profile.item(k)] = ws.stamp;
+            }
+            selectSeeds(profile, ws);
+            if (pool != null) {
+                copyPool(pool, ws);
+            } else {
+                buildNeighborPool(m, u, profile, ws);
+            }
+        }
+        buildCandidates(state, m, nRatings, ws);
+
+        double alpha = computeAlpha(nRatings, state.getProfileThreshold(), config.getAlphaMax());
+
+        if (nRatings > 0) {
+            aggregateResiduals(state, m, ws);
+        }
+
+        double[] cf = new double[ws.candidateCount];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double userBase = state.getMu() + userBias;
+        for (int c = 0; c < ws.candidateCount; c++) {
+            int i = ws.candidates[c];
+            double baseline = userBase + state.itemBias(i);
+            cf[c] = (nRatings > 0 && ws.den[i] > 0.0) ? baseline + ws.num[i] / ws.den[i] : baseline;
+            min = Math.min(min, cf[c]);
+            max = Math.max(max, cf[c]);
+        }
+
+        TopK top = new TopK(n);
+        for (int c = 0; c < ws.candidateCount; c++) {
+            int i = ws.candidates[c];
+            double cfNorm = (max == min) ? 0.0 : (cf[c] - min) / (max - min);
+            top.offer(i, alpha * cfNorm + (1.0 - alpha) * state.popScore(i), c);
+        }
+
+        int size = top.size();
+        int[] items = new int[size];
+        double[] scores = new double[size];
+        top.drainTo(items, scores);
+
+        List<ScoredItem> recs = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            recs.add(new ScoredItem(model.getData().itemId(items[k]), scores[k]));
+        }
+        return recs;
+    }
+
+    // neighbor pools
+
+    /**
+     * Neighbor pools of all active users, computed in parallel on a pool of
+     * scoring workers (each reusing its own workspace) shut down afterwards.
+     */
+    public UserNeighbors buildUserNeighbors(HybridModel model) {
+        RatingsSnapshot data = model.getData();
+        RatingMatrix m = data.getMatrix();
+        UserNeighbors neighbors = new UserNeighbors(data, config.getNeighborPool());
+        ForkJoinPool pool = ScoringWorkerThread.newPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> IntStream.range(0, data.numUsers()).parallel()
+                    .filter(data::isActiveUser)
+                    .forEach(u -> neighbors.set(u, neighborPool(model, u, UserProfile.ofRow(m, u))))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Neighbor pool build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Neighbor pool build failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return neighbors;
+    }
+
+    /**
+     * The users whose rows are aggregated when scoring this profile, with their
+     * similarities (u, the profile owner's index or -1, is never its own neighbor).
+     */
+    public UserNeighbors.Pool neighborPool(HybridModel model, int u, UserProfile profile) {
+        if (profile.size() == 0) {
+            return UserNeighbors.Pool.EMPTY;
+        }
+        RatingMatrix m = model.getData().getMatrix();
+        ScoringWorkspace ws = acquireWorkspace(m);
+        try {
+            ws.begin();
+            selectSeeds(profile, ws);
+            buildNeighborPool(m, u, profile, ws);
+            return new UserNeighbors.Pool(Arrays.copyOf(ws.poolUsers, ws.poolSize),
+                    Arrays.copyOf(ws.poolSims, ws.poolSize));
+        } finally {
+            releaseWorkspace(ws);
+        }
+    }
+
+    private void selectSeeds(UserProfile profile, ScoringWorkspace ws) {
+        TopK seeds = new TopK(config.getMaxSeedItems());
+        for (int k = 0; k < profile.size(); k++) {
+            seeds.offer(profile.item(k), profile.rating(k), k);
+        }
+        ws.seedCount = seeds.drainTo(ws.seedItems, null);
+    }
+
+    private static void copyPool(UserNeighbors.Pool pool, ScoringWorkspace ws) {
+        int size = Math.min(pool.size(), ws.poolUsers.length);
+        for (int k = 0; k < size; k++) {
+            ws.poolUsers[k] = pool.user(k);
+            ws.poolSims[k] = pool.similarity(k);
+        }
+        ws.poolSize = size;
+    }
+
+    private void buildNeighborPool(RatingMatrix m, int u, UserProfile profile, ScoringWorkspace ws) {
+        for (int k = 0; k < profile.size(); k++) {
+            ws.profileHalfStars[profile.item(k)] = profile.halfStars(k);
+        }
+        TopK raters = new TopK(config.getMaxRatersPerItem());
+        int seq = 0;
+        for (int s = 0; s < ws.seedCount; s++) {
+            int item = ws.seedItems[s];
+            raters.clear();
+            for (int p = m.itemStart(item); p < m.itemEnd(item); p++) {
+                raters.offer(m.colUser(p), m.colRating(p), p);
+            }
+            int raterCount = raters.drainTo(ws.raterUsers, null);
+
+            for (int r = 0; r < raterCount; r++) {
+                int v = ws.raterUsers[r];
+                if (v == u) {
+                    continue;
+                }
+                double sim;
+                if (ws.simStamp[v] == ws.stamp) {
+                    sim = ws.simValue[v];
+                } else {
+                    sim = kernels.cosine(ws.profileHalfStars, m.userItems(), m.userValues(), m.userStart(v), m.userEnd(v));
+                    ws.simStamp[v] = ws.stamp;
+                    ws.simValue[v] = sim;
+                }
+                boolean known = ws.neighborStamp[v] == ws.stamp;
+                if (sim > (known ? ws.neighborBest[v] : 0.0)) {
+                    if (!known) {
+                        ws.neighborStamp[v] = ws.stamp;
+                        ws.neighborSeq[v] = seq++;
+                        ws.touchedUsers[ws.touchedCount++] = v;
+                    }
+                    ws.neighborBest[v] = sim;
+                }
+            }
+        }
+
+        TopK pool = new TopK(config.getNeighborPool());
+        for (int t = 0; t < ws.touchedCount; t++) {
+            int v = ws.touchedUsers[t];
+            pool.offer(v, ws.neighborBest[v], ws.neighborSeq[v]);
+        }
+        ws.poolSize = pool.drainTo(ws.poolUsers, ws.poolSims);
+
+        for (int k = 0; k < profile.size(); k++) {
+            ws.profileHalfStars[profile.item(k)] = 0;
+        }
+    }
+
+    private void buildCandidates(ScoringState state, RatingMatrix m, int nRatings, ScoringWorkspace ws) {
+        int numItems = m.numItems();
+        for (int i : state.getPopTopItems()) {
+            // a live popularity list may hold items created after the snapshot was loaded
+            if (i < numItems && ws.seenStamp[i] != ws.stamp) {
+                ws.addCandidate(i);
+            }
+        }
+        if (nRatings == 0) {
+            return;
+        }
+
+        int cfCount = 0;
+        int maxCf = config.getMaxCandidatesCf();
+        double threshold = config.getRatingThreshold();
+        outer:
+        for (int k = 0; k < ws.poolSize; k++) {
+            int v = ws.poolUsers[k];
+            for (int p = m.userStart(v); p < m.userEnd(v); p++) {
+                int i = m.rowItem(p);
+                if (ws.seenStamp[i] == ws.stamp || m.rowRating(p) < threshold) {
+                    continue;
+                }
+                if (ws.cfStamp[i] != ws.stamp) {
+                    ws.cfStamp[i] = ws.stamp;
+                    cfCount++;
+                    ws.addCandidate(i);
+                }
+                if (cfCount >= maxCf) {
+                    break outer;
+                }
+            }
+        }
+
+        addItemCfCandidates(numItems, ws);
+    }
+
+    // neighbors of the user's seed items in the item-item index, off unless configured
+    private void addItemCfCandidates(int numItems, ScoringWorkspace ws) {
+        ItemNeighbors neighbors = itemNeighbors;
+        int maxItemCf = config.getMaxCandidatesItemCf();
+        if (neighbors == null || maxItemCf <= 0) {
+            return;
+        }
+        int added = 0;
+        for (int s = 0; s < ws.seedCount; s++) {
+            int seed = ws.seedItems[s];
+            for (int pos = neighbors.start(seed); pos < neighbors.end(seed); pos++) {
+                int j = neighbors.neighbor(pos);
+                if (j >= numItems || ws.seenStamp[j] == ws.stamp || ws.candidateStamp[j] == ws.stamp) {
+                    continue;
+                }
+                ws.addCandidate(j);
+                if (++added >= maxItemCf) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // score_cf_with_bias_from_pool for all candidates at once: walk each neighbor's row
+    // once (in pool order) and scatter sim * residual into the candidate accumulators
+    private void aggregateResiduals(ScoringState state, RatingMatrix m, ScoringWorkspace ws) {
+        for (int c = 0; c < ws.candidateCount; c++) {
+            ws.candidateBias[ws.candidates[c]] = state.itemBias(ws.candidates[c]);
+        }
+        for (int k = 0; k < ws.poolSize; k++) {
+            int v = ws.poolUsers[k];
+            double vBase = state.getMu() + state.userBias(v);
+            kernels.accumulateResiduals(m.userItems(), m.userValues(), m.userStart(v), m.userEnd(v), ws.poolSims[k],
+                    vBase, ws.candidateStamp, ws.stamp, ws.candidateBias, ws.num, ws.den);
+        }
+    }
+
+    private ScoringWorkspace acquireWorkspace(RatingMatrix m) {
+        if (Thread.currentThread() instanceof ScoringWorkerThread worker) {
+            if (worker.workspace == null || !worker.workspace.fits(m.numUsers(), m.numItems())) {
+                worker.workspace = new ScoringWorkspace(m.numUsers(), m.numItems(), config);
+            }
+            return worker.workspace;
+        }
+        ScoringWorkspace ws = sharedWorkspaces.poll();
+        // one sized for an older, smaller snapshot is left to the GC
+        return ws != null && ws.fits(m.numUsers(), m.numItems())
+                ? ws
+                : new ScoringWorkspace(m.numUsers(), m.numItems(), config);
+    }
+
+    private void releaseWorkspace(ScoringWorkspace ws) {
+        if (!(Thread.currentThread() instanceof ScoringWorkerThread)) {
+            // dropped when enough are idle already
+            sharedWorkspaces.offer(ws);
+        }
+    }
+
+    private static ScoringKernels selectKernels(KernelMode mode) {
+        if (mode == KernelMode.SCALAR) {
+            return new ScalarKernels();
+        }
+        try {
+            if (mode == KernelMode.VECTOR || VectorKernels.isProfitable()) {
+                return new VectorKernels();
+            }
+        } catch (LinkageError e) {
+            if (mode == KernelMode.VECTOR) {
+                log.warn("Vector kernels unavailable (start the JVM with --add-modules jdk.incubator.vector), using scalar loops");
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    // pure helpers, same contracts as their Python counterparts
+
+    /**
+     * Cosine over co-rated items only (both norms are restricted to the
+     * intersection), computed by merging the two sorted rows.
+     */
+    public static double cosineSimilarity(RatingMatrix m, int u, int v) {
+        return UserProfile.ofRow(m, u).cosine(m, v);
+    }
+
+    public static double chooseM(long[] counts, double quantile) {
+        if (counts.length == 0) {
+            throw new IllegalArgumentException("counts must not be empty");
+        }
+        if (!(quantile > 0.0 && quantile < 1.0)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        long[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        index = Math.max(0, Math.min(index, sorted.length - 1));
+        return sorted[index];
+    }
+
+    public static double bayesianScore(long v, double r, double globalRating, double m) {
+        return (v / (v + m)) * r + (m / (v + m)) * globalRating;
+    }
+
+    public static int computeProfileMaturityThreshold(int[] ratingsPerUser) {
+        if (ratingsPerUser.length == 0) {
+            throw new IllegalArgumentException("No ratings available");
+        }
+        int[] sorted = ratingsPerUser.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        double median = (sorted.length % 2 == 1) ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+        return (int) median;
+    }
+
+    public static double computeAlpha(int nRatings, int profileMaturityThreshold, double alphaMax) {
+        int k = Math.max(1, profileMaturityThreshold);
+        double alpha = (double) nRatings / (nRatings + k);
+        return Math.min(alpha, alphaMax);
+    }
+}
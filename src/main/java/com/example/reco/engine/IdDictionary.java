@@ -0,0 +1,161 @@
+package com.example.reco.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Bidirectional mapping between database ids (BIGSERIAL, with gaps) and dense
+ * int indices 0..size-1 assigned in insertion order, so that model state can
+ * live in plain arrays.
+ *
+ * The hash table is open-addressing with linear probing and only stores
+ * index + 1 (0 = empty slot); the key itself is read back from the dense id
+ * array, which is also the reverse mapping. That is 8 bytes per id plus 4 bytes
+ * per slot, with no boxing.
+ *
+ * Writers are serialized; readers never lock. A reader racing with an insert
+ * either sees the new id fully or not at all (the slot is published with release
+ * semantics after the id is written), so a missing id simply reads as unknown.
+ */
+public final class IdDictionary {
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class State {
+        final long[] ids;
+        final int[] table;
+        final int mask;
+
+        State(long[] ids, int[] table) {
+            this.ids = ids;
+            this.table = table;
+            this.mask = table.length - 1;
+        }
+    }
+
+    private volatile State state;
+    private volatile int size;
+
+    public IdDictionary() {
+        this(MIN_CAPACITY);
+    }
+
+    public IdDictionary(int expectedSize) {
+        int ids = Math.max(MIN_CAPACITY, expectedSize);
+        this.state = new State(new long[ids], new int[tableSizeFor(ids)]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Dense index of the id, or -1 when the id was never added.
+     */
+    public int indexOf(long id) {
+        State s = state;
+        int slot = mix(id) & s.mask;
+        while (true) {
+            int entry = (int) SLOT.getAcquire(s.table, slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (s.ids[entry - 1] == id) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & s.mask;
+        }
+    }
+
+    public long idAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " outside 0.." + (size - 1));
+        }
+        return state.ids[index];
+    }
+
+    public boolean contains(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Returns the index of the id, assigning the next free index when it is new.
+     */
+    public int getOrAdd(long id) {
+        int existing = indexOf(id);
+        if (existing >= 0) {
+            return existing;
+        }
+        synchronized (this) {
+            State s = state;
+            int slot = mix(id) & s.mask;
+            while (true) {
+                int entry = (int) SLOT.getAcquire(s.table, slot);
+                if (entry == 0) {
+                    break;
+                }
+                if (s.ids[entry - 1] == id) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & s.mask;
+            }
+
+            int index = size;
+            if (index == s.ids.length || (index + 1) * 2 > s.table.length) {
+                s = grow(s, index + 1);
+                slot = mix(id) & s.mask;
+                while ((int) SLOT.getAcquire(s.table, slot) != 0) {
+                    slot = (slot + 1) & s.mask;
+                }
+            }
+            s.ids[index] = id;
+            SLOT.setRelease(s.table, slot, index + 1);
+            size = index + 1;
+            return index;
+        }
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(state.ids, size);
+    }
+
+    // caller holds the lock; rebuilds both arrays and publishes them at once
+    private State grow(State s, int needed) {
+        int idCapacity = s.ids.length;
+        while (idCapacity < needed) {
+            idCapacity = idCapacity + (idCapacity >> 1);
+        }
+        long[] ids = Arrays.copyOf(s.ids, idCapacity);
+        int[] table = new int[tableSizeFor(idCapacity)];
+        int mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = mix(ids[index]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+        State grown = new State(ids, table);
+        state = grown;
+        return grown;
+    }
+
+    // load factor <= 0.5
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) * 2 - 1) << 1;
+        return Math.max(MIN_CAPACITY * 2, n);
+    }
+
+    // murmur3 finalizer: sequential ids would otherwise cluster in neighbouring slots
+    private static int mix(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
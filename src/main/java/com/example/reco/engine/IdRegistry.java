@@ -0,0 +1,50 @@
+package com.example.reco.engine;
+
+import com.example.reco.model.ItemType;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Process-wide dense index space for users and items. Indices are never reused
+ * or reassigned, so arrays sized by {@link IdDictionary#size()} stay valid when
+ * new users/items are created between two model loads.
+ */
+@Component
+public class IdRegistry {
+
+    private final IdDictionary users = new IdDictionary(1 << 12);
+    private final IdDictionary items = new IdDictionary(1 << 12);
+    // item type by dense item index, null until known
+    private volatile ItemType[] itemTypes = new ItemType[1 << 12];
+
+    public IdDictionary users() {
+        return users;
+    }
+
+    public IdDictionary items() {
+        return items;
+    }
+
+    public int registerUser(long userId) {
+        return users.getOrAdd(userId);
+    }
+
+    public int registerItem(long itemId) {
+        return items.getOrAdd(itemId);
+    }
+
+    public synchronized int registerItem(long itemId, ItemType type) {
+        int i = items.getOrAdd(itemId);
+        if (i >= itemTypes.length) {
+            itemTypes = Arrays.copyOf(itemTypes, Math.max(i + 1, itemTypes.length + (itemTypes.length >> 1)));
+        }
+        itemTypes[i] = type;
+        return i;
+    }
+
+    public ItemType itemType(int i) {
+        ItemType[] types = itemTypes;
+        return i >= 0 && i < types.length ? types[i] : null;
+    }
+}
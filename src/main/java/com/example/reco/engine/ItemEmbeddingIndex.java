@@ -0,0 +1,314 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Approximate nearest neighbor indexes over the item factors of the last ALS
+ * training, rebuilt with them by full runs and written to
+ * {@code app.reco.ann.path} (when set) as memory-mapped {@link HnswIndex} files:
+ *
+ * - candidates for mf_als: the best p_u . q_i + b_i is a maximum inner product
+ *   search, turned into a nearest neighbor one by indexing
+ *   [q_i, b_i, sqrt(M^2 - |q_i|^2 - b_i^2)] (M the largest norm) and querying
+ *   [p_u, 1, 0]. The candidates found are rescored exactly with the current
+ *   biases before the top n is kept;
+ * - similar items: cosine similarity of the normalized q_i.
+ */
+@Component
+public class ItemEmbeddingIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemEmbeddingIndex.class);
+
+    static final String MIPS_FILE = "items-mips.hnsw";
+    static final String COSINE_FILE = "items-cosine.hnsw";
+
+    private final IdRegistry idRegistry;
+    private final HnswConfig config;
+    private final int parallelism;
+    private final Path directory;
+
+    private volatile Indexes current;
+    private volatile boolean loadAttempted;
+
+    public ItemEmbeddingIndex(IdRegistry idRegistry,
+                              HnswConfig config,
+                              @Value("${app.reco.engine.batch-parallelism:0}") int parallelism) {
+        this.idRegistry = idRegistry;
+        this.config = config;
+        this.parallelism = parallelism;
+        String path = config.getPath();
+        this.directory = path == null || path.isBlank() ? null : Path.of(path);
+    }
+
+    public HnswConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Whether lookups are served from the indexes: enabled, and built or read
+     * from disk (on first access).
+     */
+    public boolean isAvailable() {
+        return config.isEnabled() && current() != null;
+    }
+
+    private Indexes current() {
+        if (current == null && !loadAttempted) {
+            loadFromDisk();
+        }
+        return current;
+    }
+
+    public void rebuild(FactorModel factors, Biases biases, RatingsSnapshot data) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int rank = factors.rank();
+        int[] items = factors.candidates();
+        float[] itemFactors = factors.itemFactors();
+        int n = items.length;
+        long[] labels = new long[n];
+        double maxNorm = 0.0;
+        double[] norms = new double[n];
+        for (int node = 0; node < n; node++) {
+            int i = items[node];
+            labels[node] = data.itemId(i);
+            double norm = FactorModel.dot(itemFactors, i * rank, itemFactors, i * rank, rank);
+            norms[node] = norm;
+            maxNorm = Math.max(maxNorm, norm + biases.itemBias(i) * biases.itemBias(i));
+        }
+        int mipsDim = rank + 2;
+        float[] mipsVectors = new float[n * mipsDim];
+        float[] cosineVectors = new float[n * rank];
+        for (int node = 0; node < n; node++) {
+            int i = items[node];
+            double bias = biases.itemBias(i);
+            float scale = norms[node] > 0 ? (float) (1.0 / Math.sqrt(norms[node])) : 0f;
+            for (int k = 0; k < rank; k++) {
+                mipsVectors[node * mipsDim + k] = itemFactors[i * rank + k];
+                cosineVectors[node * rank + k] = itemFactors[i * rank + k] * scale;
+            }
+            mipsVectors[node * mipsDim + rank] = (float) bias;
+            mipsVectors[node * mipsDim + rank + 1] = (float) Math.sqrt(Math.max(0.0, maxNorm - norms[node] - bias * bias));
+        }
+        HnswIndex mips = HnswIndex.build(mipsVectors, mipsDim, labels, config, parallelism);
+        HnswIndex cosine = HnswIndex.build(cosineVectors, rank, labels, config, parallelism);
+        Indexes indexes = new Indexes(mips, items, cosine, items, idleSearchers());
+        current = indexes;
+        loadAttempted = true;
+        log.info("Item embedding indexes built in {} ms ({} items, rank={}, {} MB)",
+                (System.nanoTime() - start) / 1_000_000, n, rank,
+                (mips.memoryBytes() + cosine.memoryBytes()) >> 20);
+        writeToDisk(mips, cosine);
+    }
+
+    /**
+     * Same as {@link FactorModel#recommend}, from the candidates of the inner
+     * product index rather than a scan of every item. Scans anyway when there is
+     * no index for these factors, or when the user rated so many items that the
+     * index would be asked for most of them.
+     */
+    public List<ScoredItem> recommend(FactorModel factors, Biases biases, RatingsSnapshot data, int u,
+                                      float[] userFactors, int offset, UserProfile rated, int n) {
+        Indexes indexes = config.isEnabled() ? current() : null;
+        int rank = factors.rank();
+        int k = n + rated.size();
+        if (indexes == null || indexes.mips.dim() != rank + 2 || 2 * k > indexes.mips.size()) {
+            return factors.recommend(biases, data, u, userFactors, offset, rated, n);
+        }
+        float[] query = new float[rank + 2];
+        System.arraycopy(userFactors, offset, query, 0, rank);
+        query[rank] = 1f;
+        int[] nodes = new int[k];
+        HnswIndex.Searcher searcher = indexes.borrowMipsSearcher();
+        int found;
+        try {
+            found = indexes.mips.search(searcher, query, k, Math.max(config.getEfSearch(), k), nodes, null);
+        } finally {
+            indexes.mipsSearchers.offer(searcher);
+        }
+
+        double base = biases.getMu() + biases.userBias(u);
+        float[] itemFactors = factors.itemFactors();
+        TopK top = new TopK(n);
+        for (int p = 0; p < found; p++) {
+            int i = indexes.mipsItems[nodes[p]];
+            if (i < 0 || i >= factors.numItems() || isRated(rated, i)) {
+                continue;
+            }
+            double score = base + biases.itemBias(i) + FactorModel.dot(userFactors, offset, itemFactors, i * rank, rank);
+            top.offer(i, score, i);
+        }
+        int[] ids = new int[top.size()];
+        double[] scores = new double[top.size()];
+        int count = top.drainTo(ids, scores);
+        List<ScoredItem> recs = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            recs.add(new ScoredItem(data.itemId(ids[p]), scores[p]));
+        }
+        return recs;
+    }
+
+    public List<ScoredItem> recommendForUserIndex(FactorModel factors, Biases biases, RatingsSnapshot data, int u, int n) {
+        return recommend(factors, biases, data, u, factors.userFactors(), u * factors.rank(),
+                UserProfile.ofRow(data.getMatrix(), u), n);
+    }
+
+    /**
+     * The n items whose factors point the most in the same direction as the
+     * given item's, by cosine similarity, best first (empty when the item or the
+     * index is unknown).
+     */
+    public List<ScoredItem> similarTo(long itemId, int n) {
+        Indexes indexes = current();
+        int i = idRegistry.items().indexOf(itemId);
+        if (indexes == null || i < 0 || i >= indexes.cosineNodes.length || indexes.cosineNodes[i] < 0 || n <= 0) {
+            return List.of();
+        }
+        HnswIndex cosine = indexes.cosine;
+        float[] query = new float[cosine.dim()];
+        cosine.copyVector(indexes.cosineNodes[i], query);
+        // the item itself comes back first
+        int[] nodes = new int[n + 1];
+        float[] distances = new float[n + 1];
+        HnswIndex.Searcher searcher = indexes.borrowCosineSearcher();
+        int found;
+        try {
+            found = cosine.search(searcher, query, n + 1, Math.max(config.getEfSearch(), n + 1), nodes, distances);
+        } finally {
+            indexes.cosineSearchers.offer(searcher);
+        }
+        List<ScoredItem> similar = new ArrayList<>(n);
+        for (int p = 0; p < found && similar.size() < n; p++) {
+            long neighbor = cosine.label(nodes[p]);
+            if (neighbor != itemId) {
+                // |a - b|^2 = 2 - 2 cos for unit vectors
+                similar.add(new ScoredItem(neighbor, 1.0 - distances[p] / 2.0));
+            }
+        }
+        return similar;
+    }
+
+    private static boolean isRated(UserProfile rated, int i) {
+        int low = 0;
+        int high = rated.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int item = rated.item(mid);
+            if (item < i) {
+                low = mid + 1;
+            } else if (item > i) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void loadFromDisk() {
+        if (loadAttempted) {
+            return;
+        }
+        loadAttempted = true;
+        if (directory == null || !config.isEnabled()
+                || !Files.exists(directory.resolve(MIPS_FILE)) || !Files.exists(directory.resolve(COSINE_FILE))) {
+            return;
+        }
+        try {
+            HnswIndex mips = HnswIndex.open(directory.resolve(MIPS_FILE));
+            HnswIndex cosine = HnswIndex.open(directory.resolve(COSINE_FILE));
+            current = new Indexes(mips, itemIndices(mips), cosine, itemIndices(cosine), idleSearchers());
+            log.info("Item embedding indexes mapped from {} ({} items)", directory, mips.size());
+        } catch (IOException e) {
+            log.warn("Could not read item embedding indexes from {}", directory, e);
+        }
+    }
+
+    // as many as batch scoring threads, so that a full run does not allocate one per user
+    private int idleSearchers() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    // the index's ids onto the dense indices of the registry, which every snapshot shares
+    private int[] itemIndices(HnswIndex index) {
+        int[] items = new int[index.size()];
+        for (int node = 0; node < items.length; node++) {
+            items[node] = idRegistry.items().getOrAdd(index.label(node));
+        }
+        return items;
+    }
+
+    // write-then-rename so a crash never leaves a truncated index behind
+    private void writeToDisk(HnswIndex mips, HnswIndex cosine) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            for (String file : new String[]{MIPS_FILE, COSINE_FILE}) {
+                Path path = directory.resolve(file);
+                Path tmp = directory.resolve(file + ".tmp");
+                (file.equals(MIPS_FILE) ? mips : cosine).writeTo(tmp);
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write item embedding indexes to {}", directory, e);
+        }
+    }
+
+    // one pair of indexes with their dense item indices and idle searchers: a search borrows one,
+    // or allocates it when none is idle, instead of every request thread pinning its own
+    private static final class Indexes {
+
+        final HnswIndex mips;
+        final int[] mipsItems;
+        final HnswIndex cosine;
+        // node of the cosine index by dense item index, -1 for items without factors
+        final int[] cosineNodes;
+        final BlockingQueue<HnswIndex.Searcher> mipsSearchers;
+        final BlockingQueue<HnswIndex.Searcher> cosineSearchers;
+
+        Indexes(HnswIndex mips, int[] mipsItems, HnswIndex cosine, int[] cosineItems, int idleSearchers) {
+            this.mips = mips;
+            this.mipsItems = mipsItems;
+            this.cosine = cosine;
+            int size = 0;
+            for (int i : cosineItems) {
+                size = Math.max(size, i + 1);
+            }
+            this.cosineNodes = new int[size];
+            Arrays.fill(cosineNodes, -1);
+            for (int node = 0; node < cosineItems.length; node++) {
+                cosineNodes[cosineItems[node]] = node;
+            }
+            this.mipsSearchers = new ArrayBlockingQueue<>(Math.max(1, idleSearchers));
+            this.cosineSearchers = new ArrayBlockingQueue<>(Math.max(1, idleSearchers));
+        }
+
+        // given back with offer(), dropped when enough are idle already
+        HnswIndex.Searcher borrowMipsSearcher() {
+            HnswIndex.Searcher searcher = mipsSearchers.poll();
+            return searcher != null ? searcher : mips.newSearcher();
+        }
+
+        HnswIndex.Searcher borrowCosineSearcher() {
+            HnswIndex.Searcher searcher = cosineSearchers.poll();
+            return searcher != null ? searcher : cosine.newSearcher();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.reco.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Top-K most similar items of every item, by adjusted cosine (ratings centered
+ * on the rater's mean) over the rating matrix.
+ * Stored CSR-like: neighbors of item i are at [offsets[i], offsets[i + 1]),
+ * best first, as int item indices and float similarities (8 bytes per edge).
+ */
+public final class ItemNeighbors {
+
+    private static final int MAGIC = 0x4953494d; // "ISIM"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final float[] sims;
+
+    private ItemNeighbors(int[] offsets, int[] neighbors, float[] sims) {
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.sims = sims;
+    }
+
+    public int numItems() {
+        return offsets.length - 1;
+    }
+
+    public int size() {
+        return neighbors.length;
+    }
+
+    public int start(int i) {
+        return i >= 0 && i < numItems() ? offsets[i] : 0;
+    }
+
+    public int end(int i) {
+        return i >= 0 && i < numItems() ? offsets[i + 1] : 0;
+    }
+
+    public int neighbor(int pos) {
+        return neighbors[pos];
+    }
+
+    public float similarity(int pos) {
+        return sims[pos];
+    }
+
+    /**
+     * Builds the index on a dedicated fork-join pool, shut down once done.
+     * For item i, the dot products with every co-rated item are accumulated by
+     * walking the rows of its raters, so the cost is the sum of their degrees,
+     * not numItems^2. Items with more than maxRaters raters walk an evenly spaced
+     * sample of them instead, and both norms are then taken over that sample.
+     */
+    public static ItemNeighbors build(RatingMatrix m, int k, int maxRaters) {
+        int numUsers = m.numUsers();
+        int numItems = m.numItems();
+
+        double[] userMean = new double[numUsers];
+        for (int u = 0; u < numUsers; u++) {
+            int n = m.userDegree(u);
+            if (n == 0) {
+                continue;
+            }
+            double s = 0.0;
+            for (int p = m.userStart(u); p < m.userEnd(u); p++) {
+                s += m.rowRating(p);
+            }
+            userMean[u] = s / n;
+        }
+
+        double[] norm = new double[numItems];
+        for (int i = 0; i < numItems; i++) {
+            double s = 0.0;
+            for (int p = m.itemStart(i); p < m.itemEnd(i); p++) {
+                double c = m.colRating(p) - userMean[m.colUser(p)];
+                s += c * c;
+            }
+            norm[i] = Math.sqrt(s);
+        }
+
+        int[][] rowNeighbors = new int[numItems][];
+        float[][] rowSims = new float[numItems][];
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        // a few chunks per worker, each with its own scratch arrays, dropped with the chunk
+        int chunks = Math.min(numItems, 4 * parallelism);
+        int chunkItems = chunks == 0 ? 0 : (numItems + chunks - 1) / chunks;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+                Scratch scratch = new Scratch(numItems, k);
+                for (int i = c * chunkItems; i < Math.min(numItems, (c + 1) * chunkItems); i++) {
+                    if (norm[i] == 0.0) {
+                        rowNeighbors[i] = new int[0];
+                        rowSims[i] = new float[0];
+                        continue;
+                    }
+                    double[] dot = scratch.dots;
+                    double[] sampledNorm = scratch.sampledNorms;
+                    int[] seen = scratch.touched;
+                    int[] mark = scratch.marks;
+                    int seenCount = 0;
+                    int degree = m.itemDegree(i);
+                    // columns are sorted by user index: the first maxRaters would only be the oldest users
+                    boolean sampled = degree > maxRaters;
+                    int raters = sampled ? Math.max(1, maxRaters) : degree;
+                    double normI = 0.0;
+                    for (int t = 0; t < raters; t++) {
+                        int p = m.itemStart(i) + (sampled ? (int) ((long) t * degree / raters) : t);
+                        int u = m.colUser(p);
+                        double ci = m.colRating(p) - userMean[u];
+                        normI += ci * ci;
+                        // a sampled rater still counts in the norm of the items it rated
+                        if (ci == 0.0 && !sampled) {
+                            continue;
+                        }
+                        for (int q = m.userStart(u); q < m.userEnd(u); q++) {
+                            int j = m.rowItem(q);
+                            if (j == i) {
+                                continue;
+                            }
+                            if (mark[j] != i + 1) {
+                                mark[j] = i + 1;
+                                seen[seenCount++] = j;
+                            }
+                            double cj = m.rowRating(q) - userMean[u];
+                            dot[j] += ci * cj;
+                            if (sampled) {
+                                sampledNorm[j] += cj * cj;
+                            }
+                        }
+                    }
+                    double ni = sampled ? Math.sqrt(normI) : norm[i];
+
+                    TopK top = scratch.top;
+                    top.clear();
+                    for (int t = 0; t < seenCount; t++) {
+                        int j = seen[t];
+                        double nj = sampled ? Math.sqrt(sampledNorm[j]) : norm[j];
+                        double sim = ni > 0.0 && nj > 0.0 ? dot[j] / (ni * nj) : 0.0;
+                        if (sim > 0.0) {
+                            top.offer(j, sim, j);
+                        }
+                        dot[j] = 0.0;
+                        sampledNorm[j] = 0.0;
+                    }
+                    int[] ids = new int[top.size()];
+                    double[] scores = new double[top.size()];
+                    top.drainTo(ids, scores);
+                    float[] f = new float[ids.length];
+                    for (int t = 0; t < ids.length; t++) {
+                        f[t] = (float) scores[t];
+                    }
+                    rowNeighbors[i] = ids;
+                    rowSims[i] = f;
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Item similarity build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Item similarity build failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return compact(rowNeighbors, rowSims);
+    }
+
+    private static final class Scratch {
+
+        final double[] dots;
+        // squared norms of the co-rated items over the sampled raters of a capped item
+        final double[] sampledNorms;
+        final int[] touched;
+        // marks[j] == i + 1 once j has been listed in touched for item i
+        final int[] marks;
+        final TopK top;
+
+        Scratch(int numItems, int k) {
+            this.dots = new double[numItems];
+            this.sampledNorms = new double[numItems];
+            this.touched = new int[numItems];
+            this.marks = new int[numItems];
+            this.top = new TopK(k);
+        }
+    }
+
+    private static ItemNeighbors compact(int[][] rowNeighbors, float[][] rowSims) {
+        int[] offsets = new int[rowNeighbors.length + 1];
+        for (int i = 0; i < rowNeighbors.length; i++) {
+            offsets[i + 1] = offsets[i] + rowNeighbors[i].length;
+        }
+        int[] neighbors = new int[offsets[rowNeighbors.length]];
+        float[] sims = new float[neighbors.length];
+        for (int i = 0; i < rowNeighbors.length; i++) {
+            System.arraycopy(rowNeighbors[i], 0, neighbors, offsets[i], rowNeighbors[i].length);
+            System.arraycopy(rowSims[i], 0, sims, offsets[i], rowSims[i].length);
+        }
+        return new ItemNeighbors(offsets, neighbors, sims);
+    }
+
+    /**
+     * Writes the index with the database id of every dense index, so it can be
+     * read back by a process whose dense indices differ.
+     */
+    public void writeTo(OutputStream out, IdDictionary items) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(numItems());
+        data.writeInt(size());
+        for (int i = 0; i < numItems(); i++) {
+            data.writeLong(items.idAt(i));
+        }
+        for (int i = 0; i <= numItems(); i++) {
+            data.writeInt(offsets[i]);
+        }
+        for (int pos = 0; pos < size(); pos++) {
+            data.writeInt(neighbors[pos]);
+            data.writeFloat(sims[pos]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}, remapping its ids onto
+     * {@code items} (ids unknown to it are added).
+     */
+    public static ItemNeighbors readFrom(InputStream in, IdDictionary items) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not an item similarity index (or unsupported version)");
+        }
+        int numItems = data.readInt();
+        int size = data.readInt();
+        int[] remap = new int[numItems];
+        for (int i = 0; i < numItems; i++) {
+            remap[i] = items.getOrAdd(data.readLong());
+        }
+        int[] fileOffsets = new int[numItems + 1];
+        for (int i = 0; i <= numItems; i++) {
+            fileOffsets[i] = data.readInt();
+        }
+
+        int[][] rowNeighbors = new int[items.size()][];
+        float[][] rowSims = new float[items.size()][];
+        for (int i = 0; i < numItems; i++) {
+            int n = fileOffsets[i + 1] - fileOffsets[i];
+            int[] ids = new int[n];
+            float[] f = new float[n];
+            for (int t = 0; t < n; t++) {
+                ids[t] = remap[data.readInt()];
+                f[t] = data.readFloat();
+            }
+            rowNeighbors[remap[i]] = ids;
+            rowSims[remap[i]] = f;
+        }
+        if (fileOffsets[numItems] != size) {
+            throw new IOException("Corrupted item similarity index");
+        }
+        for (int i = 0; i < rowNeighbors.length; i++) {
+            if (rowNeighbors[i] == null) {
+                rowNeighbors[i] = new int[0];
+                rowSims[i] = new float[0];
+            }
+        }
+        return compact(rowNeighbors, rowSims);
+    }
+}
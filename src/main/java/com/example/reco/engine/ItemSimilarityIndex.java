@@ -0,0 +1,118 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the current {@link ItemNeighbors}, rebuilt by full recomputations and
+ * persisted to {@code app.reco.engine.item-similarity-path} (when set) so that a
+ * restarted process can serve similar items before the next batch run.
+ */
+@Component
+public class ItemSimilarityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSimilarityIndex.class);
+
+    private final IdRegistry idRegistry;
+    private final HybridConfig config;
+    private final Path path;
+
+    private volatile ItemNeighbors current;
+    private volatile boolean loadAttempted;
+
+    public ItemSimilarityIndex(IdRegistry idRegistry,
+                               HybridConfig config,
+                               @Value("${app.reco.engine.item-similarity-path:}") String path) {
+        this.idRegistry = idRegistry;
+        this.config = config;
+        this.path = path == null || path.isBlank() ? null : Path.of(path);
+    }
+
+    /**
+     * Current index, read from disk on first access; null when none was built yet.
+     */
+    public ItemNeighbors current() {
+        if (current == null && !loadAttempted) {
+            loadFromDisk();
+        }
+        return current;
+    }
+
+    /**
+     * The n items most similar to the given one, best first (empty when the item
+     * or the index is unknown).
+     */
+    public List<ScoredItem> similarTo(long itemId, int n) {
+        ItemNeighbors index = current();
+        int i = idRegistry.items().indexOf(itemId);
+        if (index == null || i < 0) {
+            return List.of();
+        }
+        int end = Math.min(index.end(i), index.start(i) + Math.max(n, 0));
+        List<ScoredItem> similar = new ArrayList<>(Math.max(0, end - index.start(i)));
+        for (int pos = index.start(i); pos < end; pos++) {
+            similar.add(new ScoredItem(idRegistry.items().idAt(index.neighbor(pos)), index.similarity(pos)));
+        }
+        return similar;
+    }
+
+    public ItemNeighbors rebuild(RatingsSnapshot data) {
+        if (config.getItemNeighbors() <= 0) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ItemNeighbors index = ItemNeighbors.build(data.getMatrix(), config.getItemNeighbors(), config.getItemSimMaxRaters());
+        current = index;
+        loadAttempted = true;
+        log.info("Item similarity index built in {} ms ({} items, {} edges)",
+                (System.nanoTime() - start) / 1_000_000, index.numItems(), index.size());
+        writeToDisk(index, data.getItems());
+        return index;
+    }
+
+    private synchronized void loadFromDisk() {
+        if (loadAttempted) {
+            return;
+        }
+        loadAttempted = true;
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            current = ItemNeighbors.readFrom(in, idRegistry.items());
+            log.info("Item similarity index loaded from {}", path);
+        } catch (IOException e) {
+            log.warn("Could not read item similarity index {}", path, e);
+        }
+    }
+
+    // write-then-rename so a crash never leaves a truncated index behind
+    private void writeToDisk(ItemNeighbors index, IdDictionary items) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                index.writeTo(out, items);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write item similarity index {}", path, e);
+        }
+    }
+}
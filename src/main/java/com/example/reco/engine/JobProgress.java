@@ -0,0 +1,18 @@
+package com.example.reco.engine;
+
+/**
+ * Receives the progress of a long-running computation. Called from worker
+ * threads, so implementations must be thread-safe.
+ */
+public interface JobProgress {
+
+    JobProgress NONE = new JobProgress() {
+    };
+
+    // starts a new phase of {@code total} units of work (0 when unknown)
+    default void phase(String phase, long total) {
+    }
+
+    default void advance(long done) {
+    }
+}
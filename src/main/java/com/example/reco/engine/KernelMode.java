@@ -0,0 +1,10 @@
+package com.example.reco.engine;
+
+public enum KernelMode {
+    // vector kernels when jdk.incubator.vector is available and the CPU has 256-bit lanes
+    AUTO,
+    // jdk.incubator.vector kernels (falls back to SCALAR when the module is not loaded)
+    VECTOR,
+    // plain loops
+    SCALAR
+}
@@ -0,0 +1,99 @@
+package com.example.reco.engine;
+
+/**
+ * Hyper-parameters of the matrix factorization recommender ({@link AlsTrainer}).
+ * Factors model the residuals r_ui - (mu + b_u + b_i) of the hybrid's
+ * regularized baseline, so the biases are not learned twice.
+ */
+public class MfConfig {
+
+    // off: full runs only write the hybrid algo_version
+    private boolean enabled = false;
+    private String algoVersion = "mf_als";
+    private int topN = 20;
+    // latent dimensions, stored as floats (4 bytes per user / item and factor)
+    private int factors = 64;
+    private int iterations = 10;
+    // weighted-lambda regularization: a user (item) with n ratings is penalized by lambda * n
+    private double lambda = 0.05;
+    // standard deviation of the initial item factors, drawn from a fixed seed
+    private double initStd = 0.1;
+    private long seed = 42;
+    // factor matrices of the last training, rewritten by every full run (empty = memory only)
+    private String factorsPath = "";
+
+    public MfConfig() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getAlgoVersion() {
+        return algoVersion;
+    }
+
+    public void setAlgoVersion(String algoVersion) {
+        this.algoVersion = algoVersion;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    public void setTopN(int topN) {
+        this.topN = topN;
+    }
+
+    public int getFactors() {
+        return factors;
+    }
+
+    public void setFactors(int factors) {
+        this.factors = factors;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public double getLambda() {
+        return lambda;
+    }
+
+    public void setLambda(double lambda) {
+        this.lambda = lambda;
+    }
+
+    public double getInitStd() {
+        return initStd;
+    }
+
+    public void setInitStd(double initStd) {
+        this.initStd = initStd;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public String getFactorsPath() {
+        return factorsPath;
+    }
+
+    public void setFactorsPath(String factorsPath) {
+        this.factorsPath = factorsPath;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.reco.engine;
+
+import com.example.reco.model.ItemType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Live Bayesian popularity: the same scores as the batch fit
+ * (v / (v + m) * R + m / (v + m) * C, min-max normalized), computed from the
+ * per-item accumulators of {@link BiasModel} instead of a GROUP BY over the
+ * ratings table, with m and the profile maturity threshold read from its
+ * streaming count sketches.
+ *
+ * Scores and the top-P lists (overall and per {@link ItemType}) are published as
+ * an immutable {@link State}; refreshing is O(items) and only happens when ratings
+ * changed since the last refresh, so readers never compute anything.
+ */
+@Component
+public class PopularityIndex {
+
+    private static final ItemType[] TYPES = ItemType.values();
+
+    private final BiasModel biasModel;
+    private final IdRegistry idRegistry;
+    private final HybridConfig config;
+
+    private volatile State state;
+
+    public PopularityIndex(BiasModel biasModel, IdRegistry idRegistry, HybridConfig config) {
+        this.biasModel = biasModel;
+        this.idRegistry = idRegistry;
+        this.config = config;
+    }
+
+    /**
+     * Latest published state, or null before the first model load.
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Ids of the n most popular items of the given type (all types when null), best first.
+     */
+    public long[] topItems(ItemType type, int n) {
+        State s = state;
+        if (s == null) {
+            return new long[0];
+        }
+        int[] top = type == null ? s.topAll : s.topByType[type.ordinal()];
+        long[] ids = new long[Math.min(Math.max(n, 0), top.length)];
+        for (int k = 0; k < ids.length; k++) {
+            ids[k] = idRegistry.items().idAt(top[k]);
+        }
+        return ids;
+    }
+
+    @Scheduled(fixedDelayString = "${app.reco.engine.popularity-refresh-interval:PT1S}")
+    public void refreshIfStale() {
+        State s = state;
+        if (biasModel.isReady() && (s == null || s.version != biasModel.getVersion())) {
+            refresh();
+        }
+    }
+
+    public synchronized void refresh() {
+        BiasModel.ItemStats stats = biasModel.itemStats(config.getPopQuantile());
+        if (stats == null) {
+            return;
+        }
+        int numItems = stats.counts.length;
+        double[] pop = new double[numItems];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numItems; i++) {
+            int v = stats.counts[i];
+            if (v == 0) {
+                continue;
+            }
+            pop[i] = HybridRecommender.bayesianScore(v, stats.halfStarSums[i] * 0.5 / v, stats.mu, stats.m);
+            min = Math.min(min, pop[i]);
+            max = Math.max(max, pop[i]);
+        }
+
+        int p = config.getPopP();
+        TopK all = new TopK(p);
+        TopK[] byType = new TopK[TYPES.length];
+        for (int t = 0; t < TYPES.length; t++) {
+            byType[t] = new TopK(p);
+        }
+        for (int i = 0; i < numItems; i++) {
+            if (stats.counts[i] == 0) {
+                continue;
+            }
+            pop[i] = (max == min) ? 0.0 : (pop[i] - min) / (max - min);
+            all.offer(i, pop[i], i);
+            ItemType type = idRegistry.itemType(i);
+            if (type != null) {
+                byType[type.ordinal()].offer(i, pop[i], i);
+            }
+        }
+
+        int[] topAll = drain(all);
+        int[][] topByType = new int[TYPES.length][];
+        for (int t = 0; t < TYPES.length; t++) {
+            topByType[t] = drain(byType[t]);
+        }
+        state = new State(biasModel, pop, topAll, topByType, stats.profileThreshold, stats.m, stats.version);
+    }
+
+    private static int[] drain(TopK top) {
+        int[] items = new int[top.size()];
+        top.drainTo(items, null);
+        return items;
+    }
+
+    /**
+     * Popularity as of the last refresh; baselines are read through to the live
+     * {@link BiasModel}.
+     */
+    public static final class State implements ScoringState {
+
+        private final Biases biases;
+        private final double[] popScores;
+        private final int[] topAll;
+        private final int[][] topByType;
+        private final int profileThreshold;
+        private final long m;
+        private final long version;
+
+        private State(Biases biases, double[] popScores, int[] topAll, int[][] topByType,
+                      int profileThreshold, long m, long version) {
+            this.biases = biases;
+            this.popScores = popScores;
+            this.topAll = topAll;
+            this.topByType = topByType;
+            this.profileThreshold = profileThreshold;
+            this.m = m;
+            this.version = version;
+        }
+
+        @Override
+        public double getMu() {
+            return biases.getMu();
+        }
+
+        @Override
+        public double itemBias(int i) {
+            return biases.itemBias(i);
+        }
+
+        @Override
+        public double userBias(int u) {
+            return biases.userBias(u);
+        }
+
+        @Override
+        public double popScore(int i) {
+            return i >= 0 && i < popScores.length ? popScores[i] : 0.0;
+        }
+
+        @Override
+        public int[] getPopTopItems() {
+            return topAll;
+        }
+
+        @Override
+        public int getProfileThreshold() {
+            return profileThreshold;
+        }
+
+        public long getM() {
+            return m;
+        }
+    }
+}
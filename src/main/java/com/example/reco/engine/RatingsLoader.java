@@ -0,0 +1,109 @@
+package com.example.reco.engine;
+
+import com.example.reco.model.ItemType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class RatingsLoader {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final IdRegistry idRegistry;
+
+    public RatingsLoader(JdbcTemplate jdbcTemplate, DataSource dataSource, IdRegistry idRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.idRegistry = idRegistry;
+    }
+
+    public RatingsSnapshot load() {
+        // ORDER BY id keeps dense indices in id order on the first load, which is also
+        // the row order the Python job sees; later loads only append new ids
+        List<Integer> active = new ArrayList<>();
+        jdbcTemplate.query("SELECT id FROM users ORDER BY id",
+                rs -> {
+                    active.add(idRegistry.registerUser(rs.getLong(1)));
+                });
+        jdbcTemplate.query("SELECT id, type FROM items ORDER BY id",
+                rs -> {
+                    idRegistry.registerItem(rs.getLong(1), ItemType.valueOf(rs.getString(2)));
+                });
+
+        // planner estimate, only used to pre-size the matrix builder
+        Long estimate = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = 'ratings'", Long.class);
+        int expected = (int) Math.min(Integer.MAX_VALUE - 8, estimate == null ? 0 : estimate);
+
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(idRegistry.users(), idRegistry.items(), expected);
+        active.forEach(builder::markActive);
+        streamRatings(builder);
+        return builder.build();
+    }
+
+    public boolean userExists(long userId) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)", Boolean.class, userId);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Current ratings of one user, mapped onto the snapshot's item indices.
+     * Items created after the snapshot was loaded cannot be scored yet and are dropped.
+     */
+    public UserProfile loadUserProfile(long userId, RatingsSnapshot snapshot) {
+        List<long[]> rows = new ArrayList<>();
+        jdbcTemplate.query("SELECT item_id, rating FROM ratings WHERE user_id = ?",
+                rs -> {
+                    int i = snapshot.itemIndex(rs.getLong(1));
+                    if (i >= 0) {
+                        rows.add(new long[]{i, RatingMatrix.toHalfStars(rs.getDouble(2))});
+                    }
+                },
+                userId);
+        rows.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        int[] items = new int[rows.size()];
+        byte[] halfStars = new byte[rows.size()];
+        for (int k = 0; k < items.length; k++) {
+            items[k] = (int) rows.get(k)[0];
+            halfStars[k] = (byte) rows.get(k)[1];
+        }
+        return UserProfile.of(items, halfStars);
+    }
+
+    // the PostgreSQL driver only uses a server-side cursor (fetchSize rows per round trip)
+    // when autocommit is off; otherwise it buffers the whole result set in memory
+    private void streamRatings(RatingsSnapshot.Builder builder) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT user_id, item_id, rating FROM ratings",
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        builder.addRating(rs.getLong(1), rs.getLong(2), rs.getDouble(3));
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load ratings", e);
+        }
+    }
+}
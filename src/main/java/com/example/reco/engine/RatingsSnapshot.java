@@ -0,0 +1,153 @@
+package com.example.reco.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Users, items and ratings of one engine run. Database ids are mapped to dense
+ * indices through {@link IdDictionary}, so the model can be stored in plain
+ * arrays and the ratings in a {@link RatingMatrix}.
+ * The matrix covers the indices known when the snapshot was built; ids added to
+ * the dictionaries afterwards read as unknown (-1) here.
+ */
+public class RatingsSnapshot {
+
+    private final IdDictionary users;
+    private final IdDictionary items;
+    private final BitSet activeUsers;
+    private final RatingMatrix matrix;
+
+    private RatingsSnapshot(IdDictionary users, IdDictionary items, BitSet activeUsers, RatingMatrix matrix) {
+        this.users = users;
+        this.items = items;
+        this.activeUsers = activeUsers;
+        this.matrix = matrix;
+    }
+
+    public int numUsers() {
+        return matrix.numUsers();
+    }
+
+    public int numItems() {
+        return matrix.numItems();
+    }
+
+    public long userId(int u) {
+        return users.idAt(u);
+    }
+
+    public long itemId(int i) {
+        return items.idAt(i);
+    }
+
+    // -1 when the id is unknown to this snapshot
+    public int userIndex(long userId) {
+        int u = users.indexOf(userId);
+        return u >= 0 && u < matrix.numUsers() ? u : -1;
+    }
+
+    public int itemIndex(long itemId) {
+        int i = items.indexOf(itemId);
+        return i >= 0 && i < matrix.numItems() ? i : -1;
+    }
+
+    // users present in the users table at load time (deleted users keep their index)
+    public boolean isActiveUser(int u) {
+        return activeUsers.get(u);
+    }
+
+    public int nextActiveUser(int fromIndex) {
+        return activeUsers.nextSetBit(fromIndex);
+    }
+
+    public int activeUserCount() {
+        return activeUsers.cardinality();
+    }
+
+    public IdDictionary getUsers() {
+        return users;
+    }
+
+    public IdDictionary getItems() {
+        return items;
+    }
+
+    public RatingMatrix getMatrix() {
+        return matrix;
+    }
+
+    public long getRatingCount() {
+        return matrix.nnz();
+    }
+
+    /**
+     * Builder over fresh dictionaries holding exactly the given ids, in ascending order.
+     */
+    public static Builder builder(long[] userIds, long[] itemIds) {
+        IdDictionary users = new IdDictionary(userIds.length);
+        IdDictionary items = new IdDictionary(itemIds.length);
+        long[] sortedUsers = userIds.clone();
+        Arrays.sort(sortedUsers);
+        for (long id : sortedUsers) {
+            users.getOrAdd(id);
+        }
+        long[] sortedItems = itemIds.clone();
+        Arrays.sort(sortedItems);
+        for (long id : sortedItems) {
+            items.getOrAdd(id);
+        }
+        Builder builder = new Builder(users, items, 1024);
+        for (int u = 0; u < users.size(); u++) {
+            builder.markActive(u);
+        }
+        return builder;
+    }
+
+    public static Builder builder(IdDictionary users, IdDictionary items, int expectedRatings) {
+        return new Builder(users, items, expectedRatings);
+    }
+
+    public static class Builder {
+
+        private final IdDictionary users;
+        private final IdDictionary items;
+        private final int numUsers;
+        private final int numItems;
+        private final BitSet activeUsers;
+        private final RatingMatrix.Builder matrix;
+
+        private Builder(IdDictionary users, IdDictionary items, int expectedRatings) {
+            this.users = users;
+            this.items = items;
+            this.numUsers = users.size();
+            this.numItems = items.size();
+            this.activeUsers = new BitSet(numUsers);
+            this.matrix = RatingMatrix.builder(numUsers, numItems, expectedRatings);
+        }
+
+        public Builder markActive(int u) {
+            if (u >= 0 && u < numUsers) {
+                activeUsers.set(u);
+            }
+            return this;
+        }
+
+        /**
+         * Returns false (and skips the row) when the user or the item is not covered by
+         * this snapshot, e.g. a row inserted between the id scans and the ratings scan.
+         */
+        public boolean addRating(long userId, long itemId, double rating) {
+            int u = users.indexOf(userId);
+            int i = items.indexOf(itemId);
+            if (u < 0 || u >= numUsers || i < 0 || i >= numItems) {
+                return false;
+            }
+            matrix.add(u, i, RatingMatrix.toHalfStars(rating));
+            return true;
+        }
+
+        public RatingsSnapshot build() {
+            return new RatingsSnapshot(users, items, activeUsers, matrix.build());
+        }
+    }
+}
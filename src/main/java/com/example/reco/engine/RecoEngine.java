@@ -0,0 +1,325 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Runs the hybrid recommender inside the Spring process, replacing
+ * `docker compose run reco-job python -m jobs.run_reco`. When enabled, full runs
+ * also train an ALS factorization and a BPR ranking model on the same snapshot
+ * and write each as its own algo_version; ALS candidates come from the
+ * {@link ItemEmbeddingIndex} when it is enabled.
+ */
+@Component
+public class RecoEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RecoEngine.class);
+
+    private final RatingsLoader ratingsLoader;
+    private final RecommendationWriter recommendationWriter;
+    private final HybridRecommender recommender;
+    private final AlsTrainer alsTrainer;
+    private final BprTrainer bprTrainer;
+    private final Path factorsPath;
+    private final BiasModel biasModel;
+    private final PopularityIndex popularityIndex;
+    private final ItemSimilarityIndex itemSimilarityIndex;
+    private final ItemEmbeddingIndex itemEmbeddingIndex;
+    private final UserNeighborIndex userNeighborIndex;
+    private final int batchParallelism;
+    private final int batchChunkUsers;
+
+    // model of the last full run, reused by per-user recomputes
+    private volatile HybridModel currentModel;
+    // factors of the last training (or of the file it wrote), indexed like every snapshot of the registry
+    private volatile FactorModel currentFactors;
+    private volatile boolean factorsLoadAttempted;
+
+    public RecoEngine(RatingsLoader ratingsLoader,
+                      RecommendationWriter recommendationWriter,
+                      BiasModel biasModel,
+                      PopularityIndex popularityIndex,
+                      ItemSimilarityIndex itemSimilarityIndex,
+                      ItemEmbeddingIndex itemEmbeddingIndex,
+                      UserNeighborIndex userNeighborIndex,
+                      HybridConfig hybridConfig,
+                      MfConfig mfConfig,
+                      BprConfig bprConfig,
+                      @Value("${app.reco.engine.batch-parallelism:0}") int batchParallelism,
+                      @Value("${app.reco.engine.batch-chunk-users:1000}") int batchChunkUsers) {
+        this.ratingsLoader = ratingsLoader;
+        this.recommendationWriter = recommendationWriter;
+        this.biasModel = biasModel;
+        this.popularityIndex = popularityIndex;
+        this.itemSimilarityIndex = itemSimilarityIndex;
+        this.itemEmbeddingIndex = itemEmbeddingIndex;
+        this.userNeighborIndex = userNeighborIndex;
+        this.recommender = new HybridRecommender(hybridConfig);
+        this.alsTrainer = new AlsTrainer(mfConfig, batchParallelism);
+        this.bprTrainer = new BprTrainer(bprConfig, batchParallelism);
+        String path = mfConfig.getFactorsPath();
+        this.factorsPath = path == null || path.isBlank() ? null : Path.of(path);
+        this.batchParallelism = batchParallelism;
+        this.batchChunkUsers = batchChunkUsers;
+    }
+
+    public void recomputeAll() {
+        recomputeAll(JobProgress.NONE);
+    }
+
+    // one full run at a time: finishing a run discards the runs that started before it
+    public synchronized void recomputeAll(JobProgress progress) {
+        long start = System.nanoTime();
+
+        progress.phase("loading", 0);
+        HybridModel model = loadModel();
+        RatingsSnapshot data = model.getData();
+        progress.phase("indexing", 0);
+        ItemNeighbors itemNeighbors = itemSimilarityIndex.rebuild(data);
+        if (itemNeighbors != null) {
+            recommender.setItemNeighbors(itemNeighbors);
+        }
+        UserNeighbors userNeighbors = userNeighborIndex.rebuild(recommender, model);
+
+        // dense indices of deleted users stay allocated; only users still in the table get rows
+        BatchScorer scorer = new BatchScorer(batchParallelism, batchChunkUsers);
+        HybridConfig config = recommender.getConfig();
+        long rows = writeRun(scorer, data, config.getAlgoVersion(),
+                u -> recommender.recommendForUserIndex(model, userNeighbors, u, config.getTopN()), progress);
+
+        MfConfig mfConfig = alsTrainer.getConfig();
+        if (mfConfig.isEnabled()) {
+            // the hybrid's regularized biases are the offsets of the factorization
+            FactorModel factors = alsTrainer.train(data.getMatrix(), model, progress);
+            currentFactors = factors;
+            factorsLoadAttempted = true;
+            writeFactors(factors, data);
+            progress.phase("indexing", 0);
+            itemEmbeddingIndex.rebuild(factors, model, data);
+            rows += writeRun(scorer, data, mfConfig.getAlgoVersion(),
+                    u -> itemEmbeddingIndex.recommendForUserIndex(factors, model, data, u, mfConfig.getTopN()), progress);
+        }
+        BprConfig bprConfig = bprTrainer.getConfig();
+        if (bprConfig.isEnabled()) {
+            BprModel bpr = bprTrainer.train(data.getMatrix(), progress);
+            rows += writeRun(scorer, data, bprConfig.getAlgoVersion(),
+                    u -> bpr.recommendForUserIndex(data, u, bprConfig.getTopN()), progress);
+        }
+        log.info("Recomputation finished in {} ms (users={}, rows={})",
+                (System.nanoTime() - start) / 1_000_000, data.activeUserCount(), rows);
+    }
+
+    // scores every active user into a new run of algoVersion, activated once complete
+    private long writeRun(BatchScorer scorer, RatingsSnapshot data, String algoVersion,
+                          IntFunction<List<ScoredItem>> scoring, JobProgress progress) {
+        long[] rows = new long[1];
+        progress.phase("scoring", data.activeUserCount());
+        recommendationWriter.replaceAll(algoVersion, sink -> {
+            rows[0] = scorer.run(data, algoVersion, scoring, sink, progress);
+            progress.phase("activating", 0);
+        });
+        return rows[0];
+    }
+
+    /**
+     * Scores one user with their current ratings against the global model of the
+     * last full run and replaces only that user's rows. The first call after startup
+     * has to load and fit the model once. With matrix factorization enabled, the
+     * user is also folded into the last factors (item factors fixed); BPR rows
+     * are only rewritten by full runs.
+     */
+    public List<RecommendationRow> recomputeUser(long userId) {
+        long start = System.nanoTime();
+        HybridConfig config = recommender.getConfig();
+
+        HybridModel model = currentModel();
+        RatingsSnapshot data = model.getData();
+        int u = data.userIndex(userId);
+        UserProfile profile = ratingsLoader.loadUserProfile(userId, data);
+        UserNeighbors.Pool pool = recommender.neighborPool(model, u, profile);
+        userNeighborIndex.store(model, u, pool);
+        List<RecommendationRow> rows = toRows(userId, config.getAlgoVersion(),
+                scoreHybrid(model, u, profile, pool, config.getTopN()));
+        recommendationWriter.replaceForUser(userId, config.getAlgoVersion(), rows);
+
+        MfConfig mfConfig = alsTrainer.getConfig();
+        List<ScoredItem> mfRecs = mfConfig.isEnabled() ? scoreFactors(model, u, profile, mfConfig.getTopN()) : null;
+        if (mfRecs != null) {
+            List<RecommendationRow> mfRows = toRows(userId, mfConfig.getAlgoVersion(), mfRecs);
+            recommendationWriter.replaceForUser(userId, mfConfig.getAlgoVersion(), mfRows);
+            rows.addAll(mfRows);
+        }
+        log.debug("Recomputed user {} in {} ms (ratings={}, rows={})",
+                userId, (System.nanoTime() - start) / 1_000_000, profile.size(), rows.size());
+        return rows;
+    }
+
+    /**
+     * Scores one user like {@link #recomputeUser} but writes nothing: the n best
+     * rows of algo (null = the hybrid) from the current ratings. Returns null when
+     * it cannot be done live: no model in memory yet (loading one takes far longer
+     * than a request should wait), or an algo only full runs produce.
+     */
+    public List<RecommendationRow> scoreUser(long userId, String algo, int n) {
+        HybridModel model = currentModel;
+        HybridConfig config = recommender.getConfig();
+        MfConfig mfConfig = alsTrainer.getConfig();
+        boolean hybrid = algo == null || algo.equals(config.getAlgoVersion());
+        boolean mf = !hybrid && mfConfig.isEnabled() && algo.equals(mfConfig.getAlgoVersion());
+        if (model == null || (!hybrid && !mf)) {
+            return null;
+        }
+        RatingsSnapshot data = model.getData();
+        int u = data.userIndex(userId);
+        if (u < 0 && !ratingsLoader.userExists(userId)) {
+            return List.of();
+        }
+        UserProfile profile = ratingsLoader.loadUserProfile(userId, data);
+        if (mf) {
+            List<ScoredItem> recs = scoreFactors(model, u, profile, n);
+            return recs != null ? toRows(userId, mfConfig.getAlgoVersion(), recs) : null;
+        }
+        return toRows(userId, config.getAlgoVersion(),
+                scoreHybrid(model, u, profile, recommender.neighborPool(model, u, profile), n));
+    }
+
+    // baselines and popularity from the live indexes, which include writes made since the load
+    private List<ScoredItem> scoreHybrid(HybridModel model, int u, UserProfile profile, UserNeighbors.Pool pool, int n) {
+        ScoringState state = popularityIndex.state();
+        return recommender.recommendForProfile(model, state != null ? state : model, u, profile, pool, n);
+    }
+
+    // null when no factors were trained (or written) yet
+    private List<ScoredItem> scoreFactors(HybridModel model, int u, UserProfile profile, int n) {
+        RatingsSnapshot data = model.getData();
+        FactorModel factors = currentFactors(data);
+        if (factors == null) {
+            return null;
+        }
+        ScoringState state = popularityIndex.state();
+        Biases biases = state != null ? state : model;
+        float[] userFactors = alsTrainer.foldIn(factors, biases, u, profile);
+        return itemEmbeddingIndex.recommend(factors, biases, data, u, userFactors, 0, profile, n);
+    }
+
+    private static List<RecommendationRow> toRows(long userId, String algoVersion, List<ScoredItem> recs) {
+        List<RecommendationRow> rows = new ArrayList<>(recs.size());
+        int rank = 1;
+        for (ScoredItem rec : recs) {
+            rows.add(new RecommendationRow(userId, rec.getItemId(), rec.getScore(), algoVersion, rank++));
+        }
+        return rows;
+    }
+
+    public boolean userExists(long userId) {
+        return ratingsLoader.userExists(userId);
+    }
+
+    private HybridModel currentModel() {
+        HybridModel model = currentModel;
+        if (model != null) {
+            return model;
+        }
+        synchronized (this) {
+            return currentModel != null ? currentModel : loadModel();
+        }
+    }
+
+    private FactorModel currentFactors(RatingsSnapshot data) {
+        FactorModel factors = currentFactors;
+        if (factors != null || factorsLoadAttempted) {
+            return factors;
+        }
+        synchronized (this) {
+            if (!factorsLoadAttempted) {
+                factorsLoadAttempted = true;
+                currentFactors = readFactors(data);
+            }
+            return currentFactors;
+        }
+    }
+
+    private FactorModel readFactors(RatingsSnapshot data) {
+        if (factorsPath == null || !Files.exists(factorsPath)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(factorsPath)) {
+            FactorModel factors = FactorModel.readFrom(in, data);
+            log.info("Factor model loaded from {} (rank={}, items={})", factorsPath, factors.rank(), factors.candidateCount());
+            return factors;
+        } catch (IOException e) {
+            log.warn("Could not read factor model {}", factorsPath, e);
+            return null;
+        }
+    }
+
+    // write-then-rename so a crash never leaves a truncated file behind
+    private void writeFactors(FactorModel factors, RatingsSnapshot data) {
+        if (factorsPath == null) {
+            return;
+        }
+        try {
+            Path tmp = factorsPath.resolveSibling(factorsPath.getFileName() + ".tmp");
+            if (factorsPath.getParent() != null) {
+                Files.createDirectories(factorsPath.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                factors.writeTo(out, data);
+            }
+            Files.move(tmp, factorsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write factor model {}", factorsPath, e);
+        }
+    }
+
+    /**
+     * Periodic exact rebuild: reloads the model (and with it the live bias sums) so
+     * that drift from incremental updates stays bounded. Only runs once the engine
+     * has been used, so SUBPROCESS deployments never load the ratings in-process.
+     */
+    @Scheduled(fixedDelayString = "${app.reco.engine.model-refresh-interval:PT6H}",
+            initialDelayString = "${app.reco.engine.model-refresh-interval:PT6H}")
+    public void refreshModel() {
+        if (currentModel == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        HybridModel model = loadModel();
+        if (userNeighborIndex.isBuilt()) {
+            userNeighborIndex.rebuild(recommender, model);
+        }
+        log.info("Model refreshed in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private synchronized HybridModel loadModel() {
+        biasModel.beginRebuild();
+        HybridModel model;
+        try {
+            RatingsSnapshot data = ratingsLoader.load();
+            log.info("Loaded {} ratings ({} users, {} items, matrix {} MB)",
+                    data.getRatingCount(), data.numUsers(), data.numItems(), data.getMatrix().memoryBytes() >> 20);
+            model = recommender.fit(data);
+        } catch (RuntimeException e) {
+            biasModel.cancelRebuild();
+            throw e;
+        }
+        biasModel.rebuild(model);
+        popularityIndex.refresh();
+        recommender.setItemNeighbors(itemSimilarityIndex.current());
+        currentModel = model;
+        return model;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.reco.engine;
+
+public class RecommendationRow {
+    private final long userId;
+    private final long itemId;
+    private final double score;
+    private final String algoVersion;
+    private final int rank;
+
+    public RecommendationRow(long userId, long itemId, double score, String algoVersion, int rank) {
+        this.userId = userId;
+        this.itemId = itemId;
+        this.score = score;
+        this.algoVersion = algoVersion;
+        this.rank = rank;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getAlgoVersion() {
+        return algoVersion;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.reco.engine;
+
+/**
+ * Notified by {@link RecommendationWriter} once the rows it wrote are visible to
+ * readers (after commit), e.g. to drop cached copies of them.
+ */
+public interface RecommendationWriteListener {
+
+    void userRecommendationsReplaced(long userId);
+
+    // algoVersion is null when it is not known which runs changed
+    void activeRunChanged(String algoVersion);
+}
@@ -0,0 +1,184 @@
+package com.example.reco.engine;
+
+import com.example.reco.common.Transactions;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Writes recommendations as runs (see V5__add_recommendation_runs.sql): a full
+ * recomputation is copied into a new, inactive run while readers keep being
+ * served the active one, then becomes the active run in one short transaction.
+ */
+@Component
+public class RecommendationWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationWriter.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_SQL =
+            "INSERT INTO recommendations (user_id, item_id, score, algo_version, rank, run_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String COPY_SQL =
+            "COPY recommendations (user_id, item_id, score, algo_version, rank, run_id) FROM STDIN (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<RecommendationWriteListener> listeners;
+
+    public RecommendationWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                ObjectProvider<RecommendationWriteListener> listeners) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.listeners = listeners;
+    }
+
+    /**
+     * Replaces all recommendations of {@code algoVersion} with the rows that
+     * {@code producer} passes to its sink. The rows are streamed through COPY into a
+     * staging run outside of any transaction, so nothing is held open while they are
+     * computed, and readers see the previous run until the final swap.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void replaceAll(String algoVersion, Consumer<Consumer<List<RecommendationRow>>> producer) {
+        UUID runId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO recommendation_runs (run_id, algo_version) VALUES (?, ?)", runId, algoVersion);
+        long rows;
+        try {
+            rows = copy(runId, producer);
+        } catch (RuntimeException e) {
+            discard(runId);
+            throw e;
+        }
+
+        UUID previous = transactionTemplate.execute(status -> activate(algoVersion, runId, rows));
+        listeners.forEach(listener -> listener.activeRunChanged(algoVersion));
+
+        // old rows are invisible from here on, removing them does not hold up readers
+        jdbcTemplate.update(
+                "DELETE FROM recommendations WHERE run_id IN "
+                        + "(SELECT run_id FROM recommendation_runs WHERE algo_version = ? AND NOT active AND started_at <= "
+                        + "(SELECT started_at FROM recommendation_runs WHERE run_id = ?))",
+                algoVersion, runId);
+        jdbcTemplate.update(
+                "DELETE FROM recommendation_runs WHERE algo_version = ? AND NOT active AND started_at <= "
+                        + "(SELECT started_at FROM recommendation_runs WHERE run_id = ?)",
+                algoVersion, runId);
+        log.info("Recommendation run {} activated ({} rows, replaces {})", runId, rows, previous);
+    }
+
+    /**
+     * Replaces the rows of one user in the active run of {@code algoVersion}; readers
+     * see either the old or the new list. Waits for a concurrent swap, so the rows
+     * always land in the run that is active once this commits.
+     */
+    @Transactional
+    public void replaceForUser(long userId, String algoVersion, List<RecommendationRow> rows) {
+        UUID runId = activeRun(algoVersion);
+        jdbcTemplate.update("DELETE FROM recommendations WHERE user_id = ? AND run_id = ?", userId, runId);
+        insert(rows, runId);
+        Transactions.afterCommit(() -> listeners.forEach(listener -> listener.userRecommendationsReplaced(userId)));
+    }
+
+    private long copy(UUID runId, Consumer<Consumer<List<RecommendationRow>>> producer) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            long[] count = new long[1];
+            StringBuilder csv = new StringBuilder();
+            String run = runId.toString();
+            try {
+                producer.accept(chunk -> {
+                    csv.setLength(0);
+                    for (RecommendationRow row : chunk) {
+                        csv.append(row.getUserId()).append(',')
+                                .append(row.getItemId()).append(',')
+                                .append(row.getScore()).append(',')
+                                .append('"').append(row.getAlgoVersion().replace("\"", "\"\"")).append("\",")
+                                .append(row.getRank()).append(',')
+                                .append(run).append('\n');
+                    }
+                    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+                    try {
+                        copyIn.writeToCopy(bytes, 0, bytes.length);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("COPY into recommendations failed", e);
+                    }
+                    count[0] += chunk.size();
+                });
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            return count[0];
+        });
+    }
+
+    // returns the run that was active before
+    private UUID activate(String algoVersion, UUID runId, long rows) {
+        List<UUID> previous = jdbcTemplate.queryForList(
+                "UPDATE recommendation_runs SET active = FALSE WHERE algo_version = ? AND active RETURNING run_id",
+                UUID.class, algoVersion);
+        jdbcTemplate.update(
+                "UPDATE recommendation_runs SET active = TRUE, activated_at = NOW(), row_count = ? WHERE run_id = ?",
+                rows, runId);
+        return previous.isEmpty() ? null : previous.get(0);
+    }
+
+    private UUID activeRun(String algoVersion) {
+        List<UUID> active = jdbcTemplate.queryForList(
+                "SELECT run_id FROM recommendation_runs WHERE algo_version = ? AND active FOR SHARE",
+                UUID.class, algoVersion);
+        if (!active.isEmpty()) {
+            return active.get(0);
+        }
+        // no full run yet for this algo_version: start an active run made of per-user writes
+        jdbcTemplate.update(
+                "INSERT INTO recommendation_runs (run_id, algo_version, active, activated_at) VALUES (?, ?, TRUE, NOW()) "
+                        + "ON CONFLICT (algo_version) WHERE active DO NOTHING",
+                UUID.randomUUID(), algoVersion);
+        return jdbcTemplate.queryForObject(
+                "SELECT run_id FROM recommendation_runs WHERE algo_version = ? AND active FOR SHARE",
+                UUID.class, algoVersion);
+    }
+
+    private void discard(UUID runId) {
+        try {
+            jdbcTemplate.update("DELETE FROM recommendations WHERE run_id = ?", runId);
+            jdbcTemplate.update("DELETE FROM recommendation_runs WHERE run_id = ?", runId);
+        } catch (RuntimeException e) {
+            log.warn("Could not discard staging run {}", runId, e);
+        }
+    }
+
+    private void insert(List<RecommendationRow> rows, UUID runId) {
+        jdbcTemplate.batchUpdate(
+                INSERT_SQL,
+                rows,
+                BATCH_SIZE,
+                (ps, row) -> {
+                    ps.setLong(1, row.getUserId());
+                    ps.setLong(2, row.getItemId());
+                    ps.setDouble(3, row.getScore());
+                    ps.setString(4, row.getAlgoVersion());
+                    ps.setInt(5, row.getRank());
+                    ps.setObject(6, runId);
+                }
+        );
+    }
+}
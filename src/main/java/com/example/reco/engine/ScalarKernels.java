@@ -0,0 +1,35 @@
+package com.example.reco.engine;
+
+final class ScalarKernels implements ScoringKernels {
+
+    @Override
+    public double cosine(int[] profile, int[] rowItems, byte[] rowValues, int start, int end) {
+        long dot = 0;
+        long normProfile = 0;
+        long normRow = 0;
+        for (int p = start; p < end; p++) {
+            int a = profile[rowItems[p]];
+            if (a != 0) {
+                int b = rowValues[p];
+                dot += a * b;
+                normProfile += a * a;
+                normRow += b * b;
+            }
+        }
+        return ScoringKernels.cosine(dot, normProfile, normRow);
+    }
+
+    @Override
+    public void accumulateResiduals(int[] rowItems, byte[] rowValues, int start, int end, double sim, double base,
+                                    int[] candidateStamp, int stamp, double[] itemBias, double[] num, double[] den) {
+        for (int p = start; p < end; p++) {
+            int i = rowItems[p];
+            if (candidateStamp[i] != stamp) {
+                continue;
+            }
+            double resid = RatingMatrix.toRating(rowValues[p]) - (base + itemBias[i]);
+            num[i] += sim * resid;
+            den[i] += sim;
+        }
+    }
+}
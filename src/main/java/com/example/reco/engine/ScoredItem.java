@@ -0,0 +1,19 @@
+package com.example.reco.engine;
+
+public class ScoredItem {
+    private final long itemId;
+    private final double score;
+
+    public ScoredItem(long itemId, double score) {
+        this.itemId = itemId;
+        this.score = score;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.reco.engine;
+
+/**
+ * Inner loops of per-user scoring, implemented with plain loops
+ * ({@link ScalarKernels}) and with the incubating Vector API
+ * ({@link VectorKernels}). Both compute exactly the same values: ratings are
+ * summed as integer half-stars and residuals use the same operation order.
+ */
+interface ScoringKernels {
+
+    /**
+     * Cosine between a profile, scattered as half-stars into {@code profile}
+     * (indexed by item, 0 = not rated), and the row [start, end) of the rating
+     * matrix, over co-rated items only.
+     */
+    double cosine(int[] profile, int[] rowItems, byte[] rowValues, int start, int end);
+
+    /**
+     * For every item of the row [start, end) marked as a candidate, adds
+     * sim * (r - (base + itemBias[i])) to num[i] and sim to den[i].
+     */
+    void accumulateResiduals(int[] rowItems, byte[] rowValues, int start, int end, double sim, double base,
+                             int[] candidateStamp, int stamp, double[] itemBias, double[] num, double[] den);
+
+    // sums are in half-stars^2, i.e. 4x the rating sums; the scaling is exact
+    static double cosine(long dot, long normProfile, long normRow) {
+        if (normProfile <= 0 || normRow <= 0) {
+            return 0.0;
+        }
+        return (dot * 0.25) / (Math.sqrt(normProfile * 0.25) * Math.sqrt(normRow * 0.25));
+    }
+}
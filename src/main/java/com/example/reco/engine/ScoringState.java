@@ -0,0 +1,16 @@
+package com.example.reco.engine;
+
+/**
+ * Global inputs of per-user scoring besides the rating matrix: baselines,
+ * normalized popularity, the top-P popular items and the profile maturity threshold.
+ * Implemented by the batch {@link HybridModel} and by the live
+ * {@link PopularityIndex} state.
+ */
+public interface ScoringState extends Biases {
+
+    double popScore(int i);
+
+    int[] getPopTopItems();
+
+    int getProfileThreshold();
+}
@@ -0,0 +1,26 @@
+package com.example.reco.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Worker of a pool owned by a batch computation (full recomputation, neighbor
+ * pool build): it keeps one {@link ScoringWorkspace} for every user it scores,
+ * and the workspace goes away with the pool. Any other thread, including the
+ * common pool, scores with the shared workspaces of {@link HybridRecommender}.
+ */
+final class ScoringWorkerThread extends ForkJoinWorkerThread {
+
+    ScoringWorkspace workspace;
+
+    private ScoringWorkerThread(ForkJoinPool pool) {
+        super(pool);
+    }
+
+    /**
+     * A pool of scoring workers, to be shut down by the caller once done.
+     */
+    static ForkJoinPool newPool(int parallelism) {
+        return new ForkJoinPool(parallelism, ScoringWorkerThread::new, null, false);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.reco.engine;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for one per-user scoring call, used by one thread at a time
+ * (see {@link HybridRecommender} for how threads get one).
+ * Arrays are indexed by dense user/item index and invalidated by bumping
+ * {@link #stamp} instead of being cleared, so a call only pays for what it touches.
+ */
+final class ScoringWorkspace {
+
+    final int numUsers;
+    final int numItems;
+
+    int stamp;
+
+    // cosine cache and best similarity per candidate neighbor
+    final int[] simStamp;
+    final double[] simValue;
+    final int[] neighborStamp;
+    final double[] neighborBest;
+    final int[] neighborSeq;
+    final int[] touchedUsers;
+    int touchedCount;
+
+    // item marks: seen by the target user, in the candidate set, in the CF candidate set
+    final int[] seenStamp;
+    final int[] candidateStamp;
+    final int[] cfStamp;
+    final int[] candidates;
+    int candidateCount;
+
+    // residual aggregation accumulators, reset for every new candidate
+    final double[] num;
+    final double[] den;
+    final double[] candidateBias;
+
+    // half-stars of the profile being scored by item, all 0 between calls
+    final int[] profileHalfStars;
+
+    final int[] poolUsers;
+    final double[] poolSims;
+    int poolSize;
+
+    final int[] seedItems;
+    int seedCount;
+    final int[] raterUsers;
+
+    ScoringWorkspace(int numUsers, int numItems, HybridConfig config) {
+        this.numUsers = numUsers;
+        this.numItems = numItems;
+        this.simStamp = new int[numUsers];
+        this.simValue = new double[numUsers];
+        this.neighborStamp = new int[numUsers];
+        this.neighborBest = new double[numUsers];
+        this.neighborSeq = new int[numUsers];
+        this.touchedUsers = new int[numUsers];
+        this.seenStamp = new int[numItems];
+        this.candidateStamp = new int[numItems];
+        this.cfStamp = new int[numItems];
+        this.candidates = new int[numItems];
+        this.num = new double[numItems];
+        this.den = new double[numItems];
+        this.candidateBias = new double[numItems];
+        this.profileHalfStars = new int[numItems];
+        this.poolUsers = new int[Math.max(0, config.getNeighborPool())];
+        this.poolSims = new double[Math.max(0, config.getNeighborPool())];
+        this.seedItems = new int[Math.max(0, config.getMaxSeedItems())];
+        this.raterUsers = new int[Math.max(0, config.getMaxRatersPerItem())];
+    }
+
+    boolean fits(int users, int items) {
+        return users <= numUsers && items <= numItems;
+    }
+
+    void begin() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(simStamp, 0);
+            Arrays.fill(neighborStamp, 0);
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(candidateStamp, 0);
+            Arrays.fill(cfStamp, 0);
+            stamp = 1;
+        }
+        touchedCount = 0;
+        candidateCount = 0;
+        poolSize = 0;
+        seedCount = 0;
+    }
+
+    void addCandidate(int i) {
+        if (candidateStamp[i] != stamp) {
+            candidateStamp[i] = stamp;
+            candidates[candidateCount++] = i;
+            num[i] = 0.0;
+            den[i] = 0.0;
+        }
+    }
+}
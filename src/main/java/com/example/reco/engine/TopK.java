@@ -0,0 +1,118 @@
+package com.example.reco.engine;
+
+/**
+ * Bounded selection of the k best (id, score) pairs without boxing.
+ * Equal scores are ordered by ascending seq, which reproduces the stability of
+ * Python's heapq.nlargest / sorted when seq is the insertion position.
+ */
+final class TopK {
+
+    private final int capacity;
+    private final int[] ids;
+    private final double[] scores;
+    private final long[] seqs;
+    private int size;
+
+    TopK(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.ids = new int[this.capacity];
+        this.scores = new double[this.capacity];
+        this.seqs = new long[this.capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void offer(int id, double score, long seq) {
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            seqs[size] = seq;
+            siftUp(size++);
+        } else if (capacity > 0 && isWorse(0, score, seq)) {
+            ids[0] = id;
+            scores[0] = score;
+            seqs[0] = seq;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Empties the selection into the output arrays, best first, and returns the count.
+     */
+    int drainTo(int[] outIds, double[] outScores) {
+        int n = size;
+        for (int k = n - 1; k >= 0; k--) {
+            outIds[k] = ids[0];
+            if (outScores != null) {
+                outScores[k] = scores[0];
+            }
+            size--;
+            if (size > 0) {
+                move(size, 0);
+                siftDown(0);
+            }
+        }
+        return n;
+    }
+
+    // the heap root is the worst retained entry
+    private boolean isWorse(int slot, double score, long seq) {
+        return scores[slot] < score || (scores[slot] == score && seqs[slot] > seq);
+    }
+
+    private boolean worse(int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && seqs[a] > seqs[b]);
+    }
+
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!worse(k, parent)) {
+                break;
+            }
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    private void siftDown(int k) {
+        while (true) {
+            int left = 2 * k + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && worse(right, left)) {
+                worst = right;
+            }
+            if (!worse(worst, k)) {
+                return;
+            }
+            swap(k, worst);
+            k = worst;
+        }
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        scores[to] = scores[from];
+        seqs[to] = seqs[from];
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        double score = scores[a];
+        long seq = seqs[a];
+        move(b, a);
+        ids[b] = id;
+        scores[b] = score;
+        seqs[b] = seq;
+    }
+}
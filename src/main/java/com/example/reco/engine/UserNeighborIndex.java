@@ -0,0 +1,130 @@
+package com.example.reco.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link UserNeighbors} of the current snapshot, built once by a full
+ * run and kept up to date between runs: a rating of u on item i only changes
+ * the similarity of u with the users who also rated i, so only u's own pool and
+ * u's entry in the pools of those co-raters are refreshed.
+ *
+ * Ratings are queued by {@link #onRating} and applied by {@link #refreshDirty}
+ * in the background, once per user however many ratings they wrote meanwhile.
+ */
+@Component
+public class UserNeighborIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserNeighborIndex.class);
+
+    private final RatingsLoader ratingsLoader;
+
+    // user id -> ids of the items they rated since the last refresh, only ever modified inside compute
+    private final Map<Long, Set<Long>> dirty = new ConcurrentHashMap<>();
+
+    private volatile Built current;
+
+    public UserNeighborIndex(RatingsLoader ratingsLoader) {
+        this.ratingsLoader = ratingsLoader;
+    }
+
+    /**
+     * Pools for the given model's snapshot, or null when they were built for another one.
+     */
+    public UserNeighbors neighbors(HybridModel model) {
+        Built b = current;
+        return b != null && b.neighbors.isFor(model.getData()) ? b.neighbors : null;
+    }
+
+    public boolean isBuilt() {
+        return current != null;
+    }
+
+    public synchronized UserNeighbors rebuild(HybridRecommender recommender, HybridModel model) {
+        long start = System.nanoTime();
+        UserNeighbors neighbors = recommender.buildUserNeighbors(model);
+        // ratings queued meanwhile may predate the snapshot; replaying them is harmless
+        current = new Built(recommender, model, neighbors);
+        log.info("User neighbor pools built in {} ms ({} users)",
+                (System.nanoTime() - start) / 1_000_000, model.getData().activeUserCount());
+        return neighbors;
+    }
+
+    /**
+     * Stores a pool just computed for u from its current ratings.
+     */
+    public void store(HybridModel model, int u, UserNeighbors.Pool pool) {
+        UserNeighbors neighbors = neighbors(model);
+        if (neighbors != null) {
+            neighbors.set(u, pool);
+        }
+    }
+
+    public void onRating(long userId, long itemId) {
+        if (current != null) {
+            // added under the lock of the entry: refreshDirty's remove either takes the item with it or comes first
+            dirty.compute(userId, (k, items) -> {
+                Set<Long> set = items != null ? items : new HashSet<>();
+                set.add(itemId);
+                return set;
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reco.engine.neighbor-refresh-interval:PT5S}")
+    public synchronized void refreshDirty() {
+        Built b = current;
+        if (b == null || dirty.isEmpty()) {
+            return;
+        }
+        RatingsSnapshot data = b.model.getData();
+        RatingMatrix m = data.getMatrix();
+        int users = 0;
+        long updates = 0;
+        for (long userId : dirty.keySet()) {
+            Set<Long> items = dirty.remove(userId);
+            int u = data.userIndex(userId);
+            // a user missing from the snapshot has no row, so is nobody's neighbor yet
+            if (items == null || u < 0) {
+                continue;
+            }
+            UserProfile profile = ratingsLoader.loadUserProfile(userId, data);
+            b.neighbors.set(u, b.recommender.neighborPool(b.model, u, profile));
+            for (long itemId : items) {
+                int i = data.itemIndex(itemId);
+                if (i < 0) {
+                    continue;
+                }
+                for (int p = m.itemStart(i); p < m.itemEnd(i); p++) {
+                    int v = m.colUser(p);
+                    if (v != u) {
+                        b.neighbors.update(v, u, profile.cosine(m, v));
+                        updates++;
+                    }
+                }
+            }
+            users++;
+        }
+        log.debug("Refreshed neighbor pools of {} users ({} co-rater updates)", users, updates);
+    }
+
+    private static final class Built {
+
+        final HybridRecommender recommender;
+        final HybridModel model;
+        final UserNeighbors neighbors;
+
+        Built(HybridRecommender recommender, HybridModel model, UserNeighbors neighbors) {
+            this.recommender = recommender;
+            this.model = model;
+            this.neighbors = neighbors;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.reco.engine;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stored neighbor pool of every user of a snapshot: the users and cosine
+ * similarities that per-user scoring aggregates residuals over, best first.
+ * Pools are immutable and swapped one user at a time, so they can be refreshed
+ * incrementally while other threads score.
+ */
+public final class UserNeighbors {
+
+    private final RatingsSnapshot data;
+    private final AtomicReferenceArray<Pool> pools;
+    private final int capacity;
+
+    UserNeighbors(RatingsSnapshot data, int capacity) {
+        this.data = data;
+        this.pools = new AtomicReferenceArray<>(data.numUsers());
+        this.capacity = capacity;
+    }
+
+    /**
+     * True when the pools were built from this snapshot (dense indices of another
+     * snapshot point to different matrix rows).
+     */
+    public boolean isFor(RatingsSnapshot snapshot) {
+        return data == snapshot;
+    }
+
+    public int numUsers() {
+        return pools.length();
+    }
+
+    /**
+     * Pool of user u, or null when it was never computed.
+     */
+    public Pool pool(int u) {
+        return u >= 0 && u < pools.length() ? pools.get(u) : null;
+    }
+
+    public void set(int u, Pool pool) {
+        if (u >= 0 && u < pools.length()) {
+            pools.set(u, pool);
+        }
+    }
+
+    /**
+     * Records that the similarity between v and u is now {@code sim}: u is moved to
+     * its new rank in v's pool, or dropped when no longer positive. A user that did
+     * not make it into a full pool only enters it by beating the weakest neighbor.
+     */
+    public void update(int v, int u, double sim) {
+        Pool current;
+        Pool updated;
+        do {
+            current = pool(v);
+            if (current == null) {
+                return;
+            }
+            updated = current.with(u, sim, capacity);
+            if (updated == current) {
+                return;
+            }
+        } while (!pools.compareAndSet(v, current, updated));
+    }
+
+    public static final class Pool {
+
+        static final Pool EMPTY = new Pool(new int[0], new double[0]);
+
+        private final int[] users;
+        private final double[] sims;
+
+        Pool(int[] users, double[] sims) {
+            this.users = users;
+            this.sims = sims;
+        }
+
+        public int size() {
+            return users.length;
+        }
+
+        public int user(int k) {
+            return users[k];
+        }
+
+        public double similarity(int k) {
+            return sims[k];
+        }
+
+        // copy with u at its rank for sim (after equal similarities), or this when unchanged
+        Pool with(int u, double sim, int capacity) {
+            int old = -1;
+            for (int k = 0; k < users.length; k++) {
+                if (users[k] == u) {
+                    old = k;
+                    break;
+                }
+            }
+            int kept = old >= 0 ? users.length - 1 : users.length;
+            boolean insert = sim > 0.0 && capacity > 0 && (kept < capacity || sim > sims[users.length - 1]);
+            if (old < 0 && !insert) {
+                return this;
+            }
+
+            int size = insert ? Math.min(kept + 1, capacity) : kept;
+            int[] newUsers = new int[size];
+            double[] newSims = new double[size];
+            int n = 0;
+            boolean placed = !insert;
+            for (int k = 0; k < users.length && n < size; k++) {
+                if (k == old) {
+                    continue;
+                }
+                if (!placed && sim > sims[k]) {
+                    newUsers[n] = u;
+                    newSims[n++] = sim;
+                    placed = true;
+                    if (n == size) {
+                        break;
+                    }
+                }
+                newUsers[n] = users[k];
+                newSims[n++] = sims[k];
+            }
+            if (!placed && n < size) {
+                newUsers[n] = u;
+                newSims[n] = sim;
+            }
+            return new Pool(newUsers, newSims);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.reco.engine;
+
+/**
+ * Ratings of the user being scored, sorted by dense item index.
+ * Either a slice of a {@link RatingMatrix} row (batch runs) or the user's current
+ * ratings read from the database (per-user recompute), so that a single user can
+ * be scored with fresh ratings against an older global model.
+ */
+public final class UserProfile {
+
+    private static final UserProfile EMPTY = new UserProfile(new int[0], new byte[0], 0, 0);
+
+    private final int[] items;
+    private final byte[] halfStars;
+    private final int start;
+    private final int end;
+
+    private UserProfile(int[] items, byte[] halfStars, int start, int end) {
+        this.items = items;
+        this.halfStars = halfStars;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static UserProfile empty() {
+        return EMPTY;
+    }
+
+    public static UserProfile ofRow(RatingMatrix m, int u) {
+        if (u < 0) {
+            return EMPTY;
+        }
+        return new UserProfile(m.userItems(), m.userValues(), m.userStart(u), m.userEnd(u));
+    }
+
+    /**
+     * Item indices must be distinct and sorted ascending.
+     */
+    public static UserProfile of(int[] items, byte[] halfStars) {
+        if (items.length != halfStars.length) {
+            throw new IllegalArgumentException("items and ratings must have the same length");
+        }
+        for (int k = 1; k < items.length; k++) {
+            if (items[k - 1] >= items[k]) {
+                throw new IllegalArgumentException("item indices must be sorted and distinct");
+            }
+        }
+        return new UserProfile(items, halfStars, 0, items.length);
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public int item(int k) {
+        return items[start + k];
+    }
+
+    byte halfStars(int k) {
+        return halfStars[start + k];
+    }
+
+    public double rating(int k) {
+        return RatingMatrix.toRating(halfStars[start + k]);
+    }
+
+    /**
+     * Cosine with row v of the matrix over co-rated items only, like
+     * {@link HybridRecommender#cosineSimilarity(RatingMatrix, int, int)}.
+     */
+    double cosine(RatingMatrix m, int v) {
+        int a = start;
+        int b = m.userStart(v);
+        int bEnd = m.userEnd(v);
+        if (a == end || b == bEnd) {
+            return 0.0;
+        }
+        int[] rowItems = m.userItems();
+        byte[] rowValues = m.userValues();
+
+        double num = 0.0;
+        double denU = 0.0;
+        double denV = 0.0;
+        while (a < end && b < bEnd) {
+            int ia = items[a];
+            int ib = rowItems[b];
+            if (ia < ib) {
+                a++;
+            } else if (ia > ib) {
+                b++;
+            } else {
+                double rU = RatingMatrix.toRating(halfStars[a++]);
+                double rV = RatingMatrix.toRating(rowValues[b++]);
+                num += rU * rV;
+                denU += rU * rU;
+                denV += rV * rV;
+            }
+        }
+
+        if (denU <= 0.0 || denV <= 0.0) {
+            return 0.0;
+        }
+        return num / (Math.sqrt(denU) * Math.sqrt(denV));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.reco.engine;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ScoringKernels} on 256-bit vectors. The profile side of the cosine is
+ * gathered from its dense half-star array by the row's item indices, so a row
+ * is processed 8 items at a time without the branchy sorted merge; residuals
+ * are gathered, accumulated and scattered back 4 items at a time (items of one
+ * row are distinct, so a scatter never has two lanes on the same item).
+ *
+ * Loading this class fails with a {@link LinkageError} when the JVM was started
+ * without {@code --add-modules jdk.incubator.vector}.
+ */
+final class VectorKernels implements ScoringKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_256;
+    private static final VectorSpecies<Integer> INDICES = IntVector.SPECIES_128;
+
+    /**
+     * False on CPUs whose widest vectors are narrower than 256 bits (the species
+     * above would then be emulated, slower than the scalar loops).
+     */
+    static boolean isProfitable() {
+        return IntVector.SPECIES_PREFERRED.vectorBitSize() >= 256;
+    }
+
+    @Override
+    public double cosine(int[] profile, int[] rowItems, byte[] rowValues, int start, int end) {
+        IntVector dot = IntVector.zero(INTS);
+        IntVector normProfile = IntVector.zero(INTS);
+        IntVector normRow = IntVector.zero(INTS);
+        int p = start;
+        int bound = start + INTS.loopBound(end - start);
+        for (; p < bound; p += INTS.length()) {
+            IntVector a = IntVector.fromArray(INTS, profile, 0, rowItems, p);
+            VectorMask<Integer> coRated = a.compare(VectorOperators.NE, 0);
+            if (!coRated.anyTrue()) {
+                continue;
+            }
+            IntVector b = (IntVector) ByteVector.fromArray(BYTES, rowValues, p)
+                    .convertShape(VectorOperators.B2I, INTS, 0);
+            // a is 0 outside co-rated items, only the row norm needs the mask
+            dot = dot.add(a.mul(b));
+            normProfile = normProfile.add(a.mul(a));
+            normRow = normRow.add(b.mul(b), coRated);
+        }
+        long d = dot.reduceLanesToLong(VectorOperators.ADD);
+        long np = normProfile.reduceLanesToLong(VectorOperators.ADD);
+        long nr = normRow.reduceLanesToLong(VectorOperators.ADD);
+        for (; p < end; p++) {
+            int a = profile[rowItems[p]];
+            if (a != 0) {
+                int b = rowValues[p];
+                d += a * b;
+                np += a * a;
+                nr += b * b;
+            }
+        }
+        return ScoringKernels.cosine(d, np, nr);
+    }
+
+    @Override
+    public void accumulateResiduals(int[] rowItems, byte[] rowValues, int start, int end, double sim, double base,
+                                    int[] candidateStamp, int stamp, double[] itemBias, double[] num, double[] den) {
+        int p = start;
+        // the byte load reads 8 ratings to fill 4 lanes, so stop 8 before the end
+        int bound = end - BYTES.length();
+        for (; p <= bound; p += DOUBLES.length()) {
+            VectorMask<Double> hit = IntVector.fromArray(INDICES, candidateStamp, 0, rowItems, p)
+                    .compare(VectorOperators.EQ, stamp)
+                    .cast(DOUBLES);
+            if (!hit.anyTrue()) {
+                continue;
+            }
+            DoubleVector r = ((DoubleVector) ByteVector.fromArray(BYTES, rowValues, p)
+                    .convertShape(VectorOperators.B2D, DOUBLES, 0)).mul(0.5);
+            DoubleVector bias = DoubleVector.fromArray(DOUBLES, itemBias, 0, rowItems, p, hit);
+            DoubleVector resid = r.sub(bias.add(base));
+            DoubleVector.fromArray(DOUBLES, num, 0, rowItems, p, hit)
+                    .add(resid.mul(sim))
+                    .intoArray(num, 0, rowItems, p, hit);
+            DoubleVector.fromArray(DOUBLES, den, 0, rowItems, p, hit)
+                    .add(sim)
+                    .intoArray(den, 0, rowItems, p, hit);
+        }
+        for (; p < end; p++) {
+            int i = rowItems[p];
+            if (candidateStamp[i] != stamp) {
+                continue;
+            }
+            double resid = RatingMatrix.toRating(rowValues[p]) - (base + itemBias[i]);
+            num[i] += sim * resid;
+            den[i] += sim;
+        }
+    }
+}
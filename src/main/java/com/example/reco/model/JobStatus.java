@@ -0,0 +1,8 @@
+package com.example.reco.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,9 @@
+package com.example.reco.model;
+
+public enum RatingWriteStatus {
+    INSERTED,
+    UPDATED,
+    // same grade as the stored one, nothing written
+    UNCHANGED,
+    REJECTED
+}
@@ -18,7 +18,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "recommendations", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "item_id"}))
+@Table(name = "recommendations", uniqueConstraints = @UniqueConstraint(columnNames = {"run_id", "user_id", "item_id"}))
 public class Recommendation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
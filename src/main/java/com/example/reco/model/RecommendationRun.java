@@ -0,0 +1,63 @@
+package com.example.reco.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One generation of recommendations of an algo_version. Rows are written by
+ * RecommendationWriter; exactly one run per algo_version is active and served.
+ */
+@Entity
+@Table(name = "recommendation_runs")
+public class RecommendationRun {
+    @Id
+    @Column(name = "run_id")
+    private UUID runId;
+
+    @Column(name = "algo_version", nullable = false)
+    private String algoVersion;
+
+    @Column(nullable = false)
+    private boolean active;
+
+    @Column(name = "row_count")
+    private Long rowCount;
+
+    @Column(name = "started_at", nullable = false, updatable = false)
+    private Instant startedAt;
+
+    @Column(name = "activated_at")
+    private Instant activatedAt;
+
+    public RecommendationRun() {
+    }
+
+    public UUID getRunId() {
+        return runId;
+    }
+
+    public String getAlgoVersion() {
+        return algoVersion;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Long getRowCount() {
+        return rowCount;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getActivatedAt() {
+        return activatedAt;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.reco.repositories;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Bulk loading of a rating dataset. Rows are sent with COPY (text format) into a
+ * temporary staging table and moved into place with one set-based INSERT, which
+ * is both the fast path of PostgreSQL and the only place where conflicts with
+ * existing rows have to be handled.
+ */
+@Repository
+public class DatasetImportRepository {
+
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    public DatasetImportRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Writes COPY text rows (tab separated, \N for NULL, one row per line) to the
+     * given stream.
+     */
+    @FunctionalInterface
+    public interface CopyData {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Sorted external ids and the database ids they map to.
+     */
+    public record IdMapping(long[] externalIds, long[] ids) {
+
+        public static final IdMapping EMPTY = new IdMapping(new long[0], new long[0]);
+
+        // database id of an external id, -1 when unknown
+        public long idOf(long externalId) {
+            int k = Arrays.binarySearch(externalIds, externalId);
+            return k >= 0 ? ids[k] : -1;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    public void truncateAll() {
+        jdbcTemplate.execute(
+                "TRUNCATE TABLE ratings, users, items, recommendations, recommendation_runs RESTART IDENTITY CASCADE");
+    }
+
+    /**
+     * Loads movies given as (external_id, title, metadata) rows; existing movies
+     * with the same external id are updated. Returns the number of rows written.
+     */
+    public long upsertMovies(CopyData rows) {
+        return copyAndInsert(
+                "CREATE TEMP TABLE import_items (external_id BIGINT, title TEXT, metadata JSONB) ON COMMIT DROP",
+                "COPY import_items (external_id, title, metadata) FROM STDIN",
+                "INSERT INTO items (external_id, title, type, metadata) "
+                        + "SELECT external_id, LEFT(title, 255), 'MOVIE', metadata FROM import_items "
+                        + "ON CONFLICT (type, external_id) DO UPDATE "
+                        + "SET title = EXCLUDED.title, metadata = EXCLUDED.metadata "
+                        + "WHERE (items.title, items.metadata) IS DISTINCT FROM (EXCLUDED.title, EXCLUDED.metadata)",
+                rows);
+    }
+
+    public IdMapping findMovieIds() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM items WHERE type = 'MOVIE' AND external_id IS NOT NULL", Long.class);
+        int n = count == null ? 0 : Math.toIntExact(count);
+        long[] externalIds = new long[n];
+        long[] ids = new long[n];
+        int[] size = {0};
+        jdbcTemplate.query(
+                "SELECT external_id, id FROM items WHERE type = 'MOVIE' AND external_id IS NOT NULL "
+                        + "ORDER BY external_id",
+                rs -> {
+                    int k = size[0]++;
+                    externalIds[k] = rs.getLong(1);
+                    ids[k] = rs.getLong(2);
+                });
+        return new IdMapping(externalIds, ids);
+    }
+
+    /**
+     * Creates the dataset users that do not exist yet (as user&lt;id&gt;@example.com)
+     * and returns the mapping of all of them. externalIds must be sorted and
+     * distinct; concurrent calls with overlapping ids are safe.
+     */
+    public IdMapping upsertUsers(long[] externalIds) {
+        if (externalIds.length == 0) {
+            return IdMapping.EMPTY;
+        }
+        Long[] boxed = Arrays.stream(externalIds).boxed().toArray(Long[]::new);
+        // sorted inserts: two imports never wait on each other's rows in opposite orders
+        jdbcTemplate.update(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "INSERT INTO users (email, external_id) "
+                                    + "SELECT 'user' || e || '@example.com', e FROM UNNEST(?) AS t(e) ORDER BY e "
+                                    + "ON CONFLICT DO NOTHING");
+                    ps.setArray(1, con.createArrayOf("bigint", boxed));
+                    return ps;
+                });
+        long[] mappedExternalIds = new long[externalIds.length];
+        long[] ids = new long[externalIds.length];
+        int[] size = {0};
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT external_id, id FROM users WHERE external_id = ANY(?) ORDER BY external_id");
+                    ps.setArray(1, con.createArrayOf("bigint", boxed));
+                    return ps;
+                },
+                rs -> {
+                    int k = size[0]++;
+                    mappedExternalIds[k] = rs.getLong(1);
+                    ids[k] = rs.getLong(2);
+                });
+        // an email taken by a user without external id leaves a gap
+        return new IdMapping(Arrays.copyOf(mappedExternalIds, size[0]), Arrays.copyOf(ids, size[0]));
+    }
+
+    /**
+     * Loads (user_id, item_id, rating, epoch seconds or \N) rows in one transaction.
+     * With update, an existing rating of the same user and item is replaced;
+     * otherwise the ratings table is expected not to contain them yet.
+     * Returns the number of rows written.
+     */
+    public long copyRatings(CopyData rows, boolean update) {
+        String insert = "INSERT INTO ratings (user_id, item_id, rating, created_at) "
+                + "SELECT user_id, item_id, rating, "
+                + "COALESCE(to_timestamp(epoch) AT TIME ZONE 'UTC', NOW()) FROM import_ratings";
+        if (update) {
+            insert += " ON CONFLICT (user_id, item_id) DO UPDATE "
+                    + "SET rating = EXCLUDED.rating, created_at = EXCLUDED.created_at "
+                    + "WHERE ratings.rating IS DISTINCT FROM EXCLUDED.rating";
+        }
+        return copyAndInsert(
+                "CREATE TEMP TABLE import_ratings "
+                        + "(user_id BIGINT, item_id BIGINT, rating NUMERIC(2,1), epoch BIGINT) ON COMMIT DROP",
+                "COPY import_ratings (user_id, item_id, rating, epoch) FROM STDIN",
+                insert,
+                rows);
+    }
+
+    private long copyAndInsert(String createStaging, String copy, String insert, CopyData rows) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(createStaging);
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                try (PGCopyOutputStream out = new PGCopyOutputStream(pg, copy, COPY_BUFFER)) {
+                    rows.writeTo(out);
+                }
+                long written;
+                try (Statement statement = connection.createStatement()) {
+                    written = statement.executeLargeUpdate(insert);
+                }
+                connection.commit();
+                return written;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Dataset import failed", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.reco.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads whole tables for export through a server-side cursor, one row at a time,
+ * without entities: heap use does not depend on the table size.
+ */
+@Repository
+public class ExportRepository {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    public ExportRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+    }
+
+    // created_at in [from, to); null bounds are open
+    public void streamRatings(Instant from, Instant to, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder("SELECT id, user_id, item_id, rating, created_at FROM ratings WHERE TRUE");
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.from(to));
+        }
+        sql.append(" ORDER BY id");
+        stream(sql.toString(), params, handler);
+    }
+
+    // rows of one run, or of every active run when runId is null; (user_id, rank) order within a run
+    public void streamRecommendations(UUID runId, RowCallbackHandler handler) {
+        // the run list and every run are read from one snapshot: a full recomputation that swaps
+        // runs meanwhile can neither empty an exported run nor mix arms from different times
+        read(connection -> {
+            List<UUID> runs = new ArrayList<>();
+            if (runId != null) {
+                runs.add(runId);
+            } else {
+                query(connection, "SELECT run_id FROM recommendation_runs WHERE active ORDER BY algo_version",
+                        List.of(), rs -> {
+                            runs.add(rs.getObject(1, UUID.class));
+                        });
+            }
+            // one run at a time, so that each is a plain scan of idx_reco_run_user_rank
+            for (UUID run : runs) {
+                query(connection, "SELECT id, user_id, item_id, score, rank, algo_version, run_id, reason, generated_at "
+                                          + "FROM recommendations WHERE run_id = ? ORDER BY user_id, rank",
+                        List.of(run), handler);
+            }
+        });
+    }
+
+    public boolean runExists(UUID runId) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM recommendation_runs WHERE run_id = ?)", Boolean.class, runId);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private void stream(String sql, List<Object> params, RowCallbackHandler handler) {
+        read(connection -> query(connection, sql, params, handler));
+    }
+
+    // one read-only REPEATABLE READ transaction: every query of the work sees the same snapshot.
+    // The PostgreSQL driver only uses a server-side cursor (fetchSize rows per round trip)
+    // when autocommit is off; otherwise it buffers the whole result set in memory
+    private void read(ReadWork work) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            int isolation = connection.getTransactionIsolation();
+            boolean readOnly = connection.isReadOnly();
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try {
+                work.run(connection);
+            } finally {
+                connection.rollback();
+                connection.setReadOnly(readOnly);
+                connection.setTransactionIsolation(isolation);
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Export query failed", e);
+        }
+    }
+
+    private static void query(Connection connection, String sql, List<Object> params, RowCallbackHandler handler)
+            throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                sql,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            for (int k = 0; k < params.size(); k++) {
+                ps.setObject(k + 1, params.get(k));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.processRow(rs);
+                }
+            }
+        }
+    }
+
+    private interface ReadWork {
+
+        void run(Connection connection) throws SQLException;
+    }
+}
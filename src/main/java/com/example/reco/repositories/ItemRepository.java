@@ -1,7 +1,41 @@
 package com.example.reco.repositories;
 
+import com.example.reco.controllers.dto.ItemResponse;
 import com.example.reco.model.Item;
+import com.example.reco.model.ItemType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
+
+    // reads select the response columns straight into the DTO: no managed entity to track
+    String SELECT_RESPONSE = "SELECT new com.example.reco.controllers.dto.ItemResponse("
+            + "i.id, i.title, i.type, i.metadata) FROM Item i ";
+
+    // closed projection: only these columns are selected
+    interface ItemSummary {
+        Long getId();
+
+        String getTitle();
+
+        ItemType getType();
+    }
+
+    @Query(SELECT_RESPONSE + "WHERE i.id = :id")
+    Optional<ItemResponse> findResponseById(@Param("id") Long id);
+
+    // keyset page: a primary key range scan, whatever the page
+    @Query(SELECT_RESPONSE + "WHERE i.id > :afterId ORDER BY i.id")
+    List<ItemResponse> findResponsesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE i.id IN :ids")
+    List<ItemResponse> findResponsesByIdIn(@Param("ids") Collection<Long> ids);
+
+    List<ItemSummary> findByIdIn(Collection<Long> ids);
 }
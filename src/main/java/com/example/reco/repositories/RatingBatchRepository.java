@@ -0,0 +1,129 @@
+package com.example.reco.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set-based access to the ratings table for bulk ingestion, where the one
+ * entity at a time of {@link RatingRepository} costs a round trip per row (and
+ * IDENTITY ids rule out Hibernate insert batching).
+ */
+@Repository
+public class RatingBatchRepository {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String UPDATE_SQL =
+            "UPDATE ratings SET rating = ? WHERE user_id = ? AND item_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RatingBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Set<Long> findExistingUserIds(long[] ids) {
+        return existingIds("SELECT id FROM users WHERE id = ANY(?)", ids);
+    }
+
+    public Set<Long> findExistingItemIds(long[] ids) {
+        return existingIds("SELECT id FROM items WHERE id = ANY(?)", ids);
+    }
+
+    /**
+     * Returns the stored grade of every (userIds[k], itemIds[k]) pair, null where
+     * there is none, and locks those rows until the end of the transaction.
+     */
+    public BigDecimal[] lockCurrentRatings(long[] userIds, long[] itemIds) {
+        BigDecimal[] current = new BigDecimal[userIds.length];
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT t.ord, r.rating FROM UNNEST(?, ?) WITH ORDINALITY AS t(user_id, item_id, ord) "
+                                    + "JOIN ratings r ON r.user_id = t.user_id AND r.item_id = t.item_id "
+                                    + "ORDER BY t.ord FOR UPDATE OF r");
+                    ps.setArray(1, con.createArrayOf("bigint", box(userIds)));
+                    ps.setArray(2, con.createArrayOf("bigint", box(itemIds)));
+                    return ps;
+                },
+                rs -> {
+                    current[(int) rs.getLong(1) - 1] = rs.getBigDecimal(2);
+                });
+        return current;
+    }
+
+    /**
+     * Inserts the (userIds[k], itemIds[k], ratings[k]) rows that are not stored
+     * yet and leaves the others untouched: inserted[k] tells which ones were
+     * written. Pairs must be distinct.
+     */
+    public boolean[] insertMissing(long[] userIds, long[] itemIds, BigDecimal[] ratings) {
+        Map<List<Long>, Integer> rows = new HashMap<>();
+        for (int k = 0; k < userIds.length; k++) {
+            rows.put(List.of(userIds[k], itemIds[k]), k);
+        }
+        boolean[] inserted = new boolean[userIds.length];
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "INSERT INTO ratings (user_id, item_id, rating) "
+                                    + "SELECT t.user_id, t.item_id, t.rating "
+                                    + "FROM UNNEST(?, ?, ?) WITH ORDINALITY AS t(user_id, item_id, rating, ord) "
+                                    + "ORDER BY t.ord "
+                                    + "ON CONFLICT (user_id, item_id) DO NOTHING RETURNING user_id, item_id");
+                    ps.setArray(1, con.createArrayOf("bigint", box(userIds)));
+                    ps.setArray(2, con.createArrayOf("bigint", box(itemIds)));
+                    ps.setArray(3, con.createArrayOf("numeric", ratings));
+                    return ps;
+                },
+                rs -> {
+                    inserted[rows.get(List.of(rs.getLong(1), rs.getLong(2)))] = true;
+                });
+        return inserted;
+    }
+
+    /**
+     * Sets the grade of stored (userIds[k], itemIds[k]) pairs, meant for rows
+     * locked by {@link #lockCurrentRatings}.
+     */
+    public void update(long[] userIds, long[] itemIds, BigDecimal[] ratings) {
+        Integer[] rows = new Integer[userIds.length];
+        Arrays.setAll(rows, k -> k);
+        jdbcTemplate.batchUpdate(
+                UPDATE_SQL,
+                Arrays.asList(rows),
+                BATCH_SIZE,
+                (ps, k) -> {
+                    ps.setBigDecimal(1, ratings[k]);
+                    ps.setLong(2, userIds[k]);
+                    ps.setLong(3, itemIds[k]);
+                }
+        );
+    }
+
+    private Set<Long> existingIds(String sql, long[] ids) {
+        Set<Long> existing = new HashSet<>();
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setArray(1, con.createArrayOf("bigint", box(ids)));
+                    return ps;
+                },
+                rs -> {
+                    existing.add(rs.getLong(1));
+                });
+        return existing;
+    }
+
+    private static Long[] box(long[] values) {
+        return Arrays.stream(values).boxed().toArray(Long[]::new);
+    }
+}
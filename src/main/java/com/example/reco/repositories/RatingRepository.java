@@ -1,17 +1,35 @@
 package com.example.reco.repositories;
 
+import com.example.reco.controllers.dto.RatingResponse;
 import com.example.reco.model.Rating;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
+// listings are keyset pages ordered by id, served by range scans on (id), (user_id, id) and (item_id, id)
 public interface RatingRepository extends JpaRepository<Rating, Long> {
 
-    Page<Rating> findByItemId(Long itemId, Pageable pageable);
+    // reads select the response columns straight into the DTO: no entity, no user/item proxy, no dirty checking
+    String SELECT_RESPONSE = "SELECT new com.example.reco.controllers.dto.RatingResponse("
+            + "r.id, r.user.id, r.item.id, r.rating, r.createdAt) FROM Rating r ";
 
-    Page<Rating> findByUserId(Long userId, Pageable pageable);
+    @Query(SELECT_RESPONSE + "WHERE r.id = :id")
+    Optional<RatingResponse> findResponseById(@Param("id") Long id);
+
+    @Query(SELECT_RESPONSE + "WHERE r.id > :afterId ORDER BY r.id")
+    List<RatingResponse> findResponsesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE r.item.id = :itemId AND r.id > :afterId ORDER BY r.id")
+    List<RatingResponse> findResponsesByItemIdAfter(@Param("itemId") Long itemId, @Param("afterId") Long afterId,
+                                                    Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE r.user.id = :userId AND r.id > :afterId ORDER BY r.id")
+    List<RatingResponse> findResponsesByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                                    Limit limit);
 
     Optional<Object> findByUserIdAndItemId(Long userId, Long itemId);
 }
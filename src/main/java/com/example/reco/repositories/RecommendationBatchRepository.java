@@ -0,0 +1,87 @@
+package com.example.reco.repositories;
+
+import com.example.reco.controllers.dto.RecommendationResponse;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Recommendations of many users in one query, read from a cursor in
+ * (user_id, rank) order so that the caller can write each user out as soon as
+ * its rows are complete.
+ */
+@Repository
+public class RecommendationBatchRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    public RecommendationBatchRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Active recommendations of rank &lt;= limit of the given users, ordered by
+     * user_id then rank. algos[k] is the algo_version read for userIds[k], null
+     * for every active run. Each (run, user) pair is a range of
+     * idx_reco_run_user_rank.
+     */
+    public void streamTopN(long[] userIds, String[] algos, int limit, boolean includeReason,
+                           Consumer<RecommendationResponse> consumer) {
+        String sql = "SELECT r.id, r.user_id, r.item_id, r.score, r.rank, r.algo_version, r.run_id, "
+                + "CASE WHEN ? THEN r.reason::text END, r.generated_at "
+                + "FROM UNNEST(?::bigint[], ?::text[]) AS u(user_id, algo_version) "
+                + "JOIN recommendation_runs runs ON runs.active "
+                + "AND (u.algo_version IS NULL OR runs.algo_version = u.algo_version) "
+                + "JOIN recommendations r ON r.run_id = runs.run_id AND r.user_id = u.user_id "
+                + "WHERE r.rank <= ? "
+                + "ORDER BY r.user_id, r.rank";
+        // the PostgreSQL driver only uses a server-side cursor (fetchSize rows per round trip)
+        // when autocommit is off; otherwise it buffers the whole result set in memory
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    sql,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setBoolean(1, includeReason);
+                Array ids = connection.createArrayOf("bigint", Arrays.stream(userIds).boxed().toArray(Long[]::new));
+                ps.setArray(2, ids);
+                ps.setArray(3, connection.createArrayOf("text", algos));
+                ps.setInt(4, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp generatedAt = rs.getTimestamp(9);
+                        consumer.accept(new RecommendationResponse(
+                                rs.getLong(1),
+                                rs.getLong(2),
+                                rs.getLong(3),
+                                rs.getDouble(4),
+                                rs.getInt(5),
+                                rs.getString(6),
+                                rs.getObject(7, UUID.class),
+                                rs.getString(8),
+                                generatedAt != null ? generatedAt.toInstant() : null));
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read recommendations", e);
+        }
+    }
+}
@@ -1,13 +1,40 @@
 package com.example.reco.repositories;
 
+import com.example.reco.controllers.dto.RecommendationResponse;
 import com.example.reco.model.Recommendation;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
+// reads only see the active run of each algo_version (staging runs are written next to it)
 public interface RecommendationRepository extends JpaRepository<Recommendation, Long> {
 
-    Page<Recommendation> findByUserId(Long userId, Pageable pageable);
+    // reads select the response columns straight into the DTO; the jsonb reason is only read when asked for
+    String SELECT_RESPONSE = "SELECT new com.example.reco.controllers.dto.RecommendationResponse("
+            + "r.id, r.user.id, r.item.id, r.score, r.rank, r.algoVersion, r.runId, "
+            + "CASE WHEN :includeReason = true THEN r.reason ELSE NULL END, r.generatedAt) FROM Recommendation r ";
+
+    // keyset page: a primary key range scan, whatever the page
+    @Query(SELECT_RESPONSE + "WHERE r.id > :afterId AND r.runId IN "
+            + "(SELECT run.runId FROM RecommendationRun run WHERE run.active = true) ORDER BY r.id")
+    List<RecommendationResponse> findActiveAfter(@Param("afterId") Long afterId,
+                                                 @Param("includeReason") boolean includeReason,
+                                                 Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE r.user.id = :userId AND r.runId IN "
+            + "(SELECT run.runId FROM RecommendationRun run WHERE run.active = true) ORDER BY r.rank")
+    List<RecommendationResponse> findActiveByUserId(@Param("userId") Long userId,
+                                                    @Param("includeReason") boolean includeReason,
+                                                    Limit limit);
 
-    Page<Recommendation> findByUserIdAndAlgoVersion(Long userId, String algoVersion, Pageable pageable);
-}
\ No newline at end of file
+    @Query(SELECT_RESPONSE + "WHERE r.user.id = :userId AND r.algoVersion = :algoVersion AND r.runId IN "
+            + "(SELECT run.runId FROM RecommendationRun run WHERE run.active = true AND run.algoVersion = :algoVersion) "
+            + "ORDER BY r.rank")
+    List<RecommendationResponse> findActiveByUserIdAndAlgoVersion(@Param("userId") Long userId,
+                                                                  @Param("algoVersion") String algoVersion,
+                                                                  @Param("includeReason") boolean includeReason,
+                                                                  Limit limit);
+}
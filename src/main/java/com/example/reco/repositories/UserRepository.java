@@ -1,13 +1,28 @@
 package com.example.reco.repositories;
 
+import com.example.reco.controllers.dto.UserResponse;
 import com.example.reco.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // reads select the response columns straight into the DTO (and never the password hash)
+    String SELECT_RESPONSE = "SELECT new com.example.reco.controllers.dto.UserResponse(u.id, u.email) FROM User u ";
+
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
+
+    @Query(SELECT_RESPONSE + "WHERE u.id = :id")
+    Optional<UserResponse> findResponseById(@Param("id") Long id);
+
+    // keyset page: a primary key range scan, whatever the page
+    @Query(SELECT_RESPONSE + "WHERE u.id > :afterId ORDER BY u.id")
+    List<UserResponse> findResponsesAfter(@Param("afterId") Long afterId, Limit limit);
 }
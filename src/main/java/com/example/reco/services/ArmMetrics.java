@@ -0,0 +1,76 @@
+package com.example.reco.services;
+
+import com.example.reco.controllers.dto.ArmStatsResponse;
+import com.example.reco.engine.CountHistogram;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serving latency and result sizes of user recommendation reads, per algo_version
+ * ("arm"), so that the arms of an A/B split can be compared. Counters are kept
+ * since startup, in process memory.
+ */
+@Component
+public class ArmMetrics {
+
+    // reads without algo while no split is configured: every active run
+    public static final String ALL_ARMS = "*";
+
+    private final Map<String, Arm> arms = new ConcurrentHashMap<>();
+
+    /**
+     * @param allocated true when the arm was chosen by the {@link TrafficAllocator}
+     *                  rather than asked for
+     */
+    public void record(String algo, boolean allocated, long latencyNanos, int size) {
+        arms.computeIfAbsent(algo != null ? algo : ALL_ARMS, a -> new Arm())
+            .record(allocated, latencyNanos, size);
+    }
+
+    // arms in name order, with the weight they have in the split (0 when not part of it)
+    public List<ArmStatsResponse> stats(Map<String, Integer> weights) {
+        Map<String, Arm> sorted = new TreeMap<>(arms);
+        weights.keySet().forEach(algo -> sorted.putIfAbsent(algo, new Arm()));
+        List<ArmStatsResponse> stats = new ArrayList<>(sorted.size());
+        sorted.forEach((algo, arm) -> stats.add(arm.stats(algo, weights.getOrDefault(algo, 0))));
+        return stats;
+    }
+
+    private static final class Arm {
+
+        // CountHistogram is not thread-safe: every access holds the monitor of the arm
+        private final CountHistogram latencyMicros = new CountHistogram();
+        private final CountHistogram sizes = new CountHistogram();
+        private long allocated;
+        private long empty;
+        private long rows;
+
+        synchronized void record(boolean allocated, long latencyNanos, int size) {
+            latencyMicros.add(Math.max(0, latencyNanos / 1000));
+            sizes.add(size);
+            if (allocated) {
+                this.allocated++;
+            }
+            if (size == 0) {
+                empty++;
+            }
+            rows += size;
+        }
+
+        synchronized ArmStatsResponse stats(String algo, int weight) {
+            long requests = latencyMicros.size();
+            if (requests == 0) {
+                return new ArmStatsResponse(algo, weight, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+            }
+            return new ArmStatsResponse(algo, weight, requests, allocated, empty,
+                    (double) rows / requests, sizes.quantile(0.5),
+                    latencyMicros.quantile(0.5), latencyMicros.quantile(0.95), latencyMicros.quantile(0.99),
+                    latencyMicros.valueAtRank(requests - 1));
+        }
+    }
+}
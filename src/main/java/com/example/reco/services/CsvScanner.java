@@ -0,0 +1,144 @@
+package com.example.reco.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// field by field reader of comma separated lines in a (memory-mapped) buffer, without per-line strings
+final class CsvScanner {
+
+    // longer numbers may overflow a long, they are reported as malformed
+    private static final int MAX_DIGITS = 18;
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private int pos;
+    private boolean more;
+    private byte[] text = new byte[256];
+
+    CsvScanner(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.end = buffer.limit();
+    }
+
+    boolean hasLine() {
+        return pos < end;
+    }
+
+    // true if the last field read was followed by a comma
+    boolean hasField() {
+        return more;
+    }
+
+    // moves to the start of the next line, whatever is left of the current one
+    void nextLine() {
+        while (pos < end && buffer.get(pos++) != '\n') {
+        }
+        more = false;
+    }
+
+    // non-negative integer, -1 if the field is something else
+    long longField() {
+        int start = pos;
+        long value = 0;
+        while (pos < end && pos - start <= MAX_DIGITS) {
+            byte b = buffer.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            pos++;
+        }
+        if (pos == start || pos - start > MAX_DIGITS || !endField()) {
+            return -1;
+        }
+        return value;
+    }
+
+    // rating written as "4", "4.0" or "4.5", in half stars; -1 if the field is something else
+    int halfStarsField() {
+        int start = pos;
+        int whole = 0;
+        while (pos < end && pos - start < 2) {
+            byte b = buffer.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            whole = whole * 10 + (b - '0');
+            pos++;
+        }
+        if (pos == start) {
+            return -1;
+        }
+        int half = 0;
+        if (pos < end && buffer.get(pos) == '.') {
+            pos++;
+            if (pos >= end) {
+                return -1;
+            }
+            byte decimal = buffer.get(pos++);
+            if (decimal == '5') {
+                half = 1;
+            } else if (decimal != '0') {
+                return -1;
+            }
+        }
+        return endField() ? whole * 2 + half : -1;
+    }
+
+    // text field, quoted or not ("" inside quotes is a quote); null if the quotes are not closed
+    String textField() {
+        int length = 0;
+        if (pos < end && buffer.get(pos) == '"') {
+            pos++;
+            while (true) {
+                if (pos >= end) {
+                    return null;
+                }
+                byte b = buffer.get(pos++);
+                if (b == '"') {
+                    if (pos < end && buffer.get(pos) == '"') {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                length = append(length, b);
+            }
+        } else {
+            while (pos < end) {
+                byte b = buffer.get(pos);
+                if (b == ',' || b == '\n' || b == '\r') {
+                    break;
+                }
+                length = append(length, b);
+                pos++;
+            }
+        }
+        return endField() ? new String(text, 0, length, StandardCharsets.UTF_8) : null;
+    }
+
+    private int append(int length, byte b) {
+        if (length == text.length) {
+            text = Arrays.copyOf(text, length * 2);
+        }
+        text[length] = b;
+        return length + 1;
+    }
+
+    // consumes the comma after a field; false if the field is followed by anything else than a comma or a line end
+    private boolean endField() {
+        if (pos >= end) {
+            more = false;
+            return true;
+        }
+        byte b = buffer.get(pos);
+        if (b == ',') {
+            pos++;
+            more = true;
+            return true;
+        }
+        more = false;
+        return b == '\n' || b == '\r';
+    }
+}
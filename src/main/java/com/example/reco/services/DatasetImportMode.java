@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+public enum DatasetImportMode {
+    // empties users, items, ratings and recommendations first
+    REPLACE,
+    // keeps existing rows: known movies and ratings are updated, new ones added
+    INCREMENTAL
+}
@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+/**
+ * Rows written by a dataset import, and data lines that could not be imported
+ * (malformed, out of range rating, or a rating of an unknown movie).
+ */
+public record DatasetImportResult(long items, long ratings, long skippedLines) {
+}
@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+import java.nio.file.Path;
+
+public interface DatasetImportService {
+
+    DatasetImportResult importMovieLens(Path directory, DatasetImportMode mode);
+}
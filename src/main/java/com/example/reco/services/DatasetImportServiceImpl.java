@@ -0,0 +1,346 @@
+package com.example.reco.services;
+
+import com.example.reco.repositories.DatasetImportRepository;
+import com.example.reco.repositories.DatasetImportRepository.IdMapping;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MovieLens import. ratings.csv is memory-mapped and cut at line boundaries into
+ * chunks that are parsed and loaded in parallel, each on its own connection and
+ * transaction: heap use depends on the chunk size and the parallelism, not on the
+ * file size. Users and movies are matched by their MovieLens id (external_id),
+ * so an INCREMENTAL import can be run again on a newer dataset.
+ */
+@Service
+public class DatasetImportServiceImpl implements DatasetImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetImportServiceImpl.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final String MOVIES_FILE = "movies.csv";
+    private static final String RATINGS_FILE = "ratings.csv";
+    private static final String MOVIES_HEADER = "movieId,title,genres";
+    private static final String RATINGS_HEADER = "userId,movieId,rating";
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final DatasetImportRepository datasetImportRepository;
+    private final int parallelism;
+    private final long chunkBytes;
+
+    public DatasetImportServiceImpl(DatasetImportRepository datasetImportRepository,
+                                    @Value("${app.reco.import.parallelism:4}") int parallelism,
+                                    @Value("${app.reco.import.chunk-size:64MB}") DataSize chunkSize) {
+        this.datasetImportRepository = datasetImportRepository;
+        this.parallelism = Math.max(1, parallelism);
+        // a chunk is a single mapping, which is limited to 2 GB
+        this.chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(1, chunkSize.toBytes()));
+    }
+
+    @Override
+    public DatasetImportResult importMovieLens(Path directory, DatasetImportMode mode) {
+        Path movies = directory.resolve(MOVIES_FILE);
+        Path ratings = directory.resolve(RATINGS_FILE);
+        checkHeader(movies, MOVIES_HEADER);
+        checkHeader(ratings, RATINGS_HEADER);
+
+        if (mode == DatasetImportMode.REPLACE) {
+            datasetImportRepository.truncateAll();
+        }
+        long[] skipped = {0};
+        long items = datasetImportRepository.upsertMovies(out -> skipped[0] += writeMovies(movies, out));
+        log.info("Imported {} movies", items);
+
+        IdMapping movieIds = datasetImportRepository.findMovieIds();
+        ChunkResult result = importRatings(ratings, movieIds, mode == DatasetImportMode.INCREMENTAL);
+        return new DatasetImportResult(items, result.ratings(), skipped[0] + result.skippedLines());
+    }
+
+    private static void checkHeader(Path file, String expected) {
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Missing file: " + file);
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            String header = lines.findFirst().orElse("").strip();
+            if (!header.startsWith(expected)) {
+                throw new IllegalArgumentException(
+                        file.getFileName() + " must start with the columns " + expected + " (got " + header + ")");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // movies.csv is small (tens of thousands of lines): one sequential pass
+    private static long writeMovies(Path movies, OutputStream out) throws IOException {
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(movies, StandardOpenOption.READ)) {
+            CsvScanner csv = new CsvScanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            csv.nextLine();
+            while (csv.hasLine()) {
+                long movieId = csv.longField();
+                String title = movieId >= 0 && csv.hasField() ? csv.textField() : null;
+                String genres = title != null && csv.hasField() ? csv.textField() : null;
+                csv.nextLine();
+                if (genres == null) {
+                    skipped++;
+                    continue;
+                }
+                String row = movieId + "\t" + copyEscape(title) + "\t" + copyEscape(genresJson(genres)) + "\n";
+                out.write(row.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return skipped;
+    }
+
+    // same metadata as the former Python import: {"genres": [...]}
+    private static String genresJson(String genres) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("genres");
+            if (!genres.isEmpty()) {
+                for (String genre : genres.split("\\|")) {
+                    generator.writeString(genre);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return json.toString();
+    }
+
+    // COPY text format: backslash, tab and line breaks are escaped
+    private static String copyEscape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int k = 0; k < value.length(); k++) {
+            char c = value.charAt(k);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\t' -> escaped.append("\\t");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private ChunkResult importRatings(Path ratings, IdMapping movieIds, boolean update) {
+        try (FileChannel channel = FileChannel.open(ratings, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel);
+            AtomicInteger threads = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, chunks.size())),
+                    task -> new Thread(task, "dataset-import-" + threads.incrementAndGet()));
+            try {
+                List<Future<ChunkResult>> results = new ArrayList<>(chunks.size());
+                for (long[] chunk : chunks) {
+                    results.add(pool.submit(() -> importChunk(channel, chunk[0], chunk[1], movieIds, update)));
+                }
+                long written = 0;
+                long skipped = 0;
+                for (int k = 0; k < results.size(); k++) {
+                    ChunkResult result = results.get(k).get();
+                    written += result.ratings();
+                    skipped += result.skippedLines();
+                    log.info("Ratings chunk {}/{} imported ({} ratings so far)", k + 1, results.size(), written);
+                }
+                return new ChunkResult(written, skipped);
+            } catch (ExecutionException e) {
+                // chunks are separate transactions: the ones already committed stay
+                throw new IllegalStateException("Import of " + RATINGS_FILE + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Import of " + RATINGS_FILE + " interrupted", e);
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // [start, end) ranges of about chunkBytes that end right after a line break
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkBytes;
+            end = end >= size ? size : nextLineStart(channel, end, probe);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int k = 0; k < read; k++) {
+                if (probe.get(k) == '\n') {
+                    return position + k + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private ChunkResult importChunk(FileChannel channel, long start, long end, IdMapping movieIds, boolean update)
+            throws IOException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        boolean header = start == 0;
+        IdMapping userIds = datasetImportRepository.upsertUsers(distinctUsers(chunk, header));
+        long[] skipped = {0};
+        long written = datasetImportRepository.copyRatings(
+                out -> skipped[0] = writeRatings(chunk, header, userIds, movieIds, out), update);
+        return new ChunkResult(written, skipped[0]);
+    }
+
+    // first pass over a chunk: sorted distinct user ids (MovieLens files are grouped by user)
+    private static long[] distinctUsers(ByteBuffer chunk, boolean header) {
+        CsvScanner csv = new CsvScanner(chunk.duplicate());
+        if (header) {
+            csv.nextLine();
+        }
+        long[] users = new long[1024];
+        int size = 0;
+        long last = -1;
+        while (csv.hasLine()) {
+            long userId = csv.longField();
+            csv.nextLine();
+            if (userId < 0 || userId == last) {
+                continue;
+            }
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+            }
+            users[size++] = userId;
+            last = userId;
+        }
+        users = Arrays.copyOf(users, size);
+        Arrays.sort(users);
+        int distinct = 0;
+        for (int k = 0; k < size; k++) {
+            if (distinct == 0 || users[k] != users[distinct - 1]) {
+                users[distinct++] = users[k];
+            }
+        }
+        return Arrays.copyOf(users, distinct);
+    }
+
+    // second pass: COPY rows (user_id, item_id, rating, epoch); returns the number of skipped lines
+    private static long writeRatings(ByteBuffer chunk, boolean header, IdMapping userIds, IdMapping movieIds,
+                                     OutputStream out) throws IOException {
+        CsvScanner csv = new CsvScanner(chunk.duplicate());
+        if (header) {
+            csv.nextLine();
+        }
+        CopyRow row = new CopyRow();
+        long skipped = 0;
+        while (csv.hasLine()) {
+            long userId = userIds.idOf(csv.longField());
+            long itemId = csv.hasField() ? movieIds.idOf(csv.longField()) : -1;
+            int halfStars = csv.hasField() ? csv.halfStarsField() : -1;
+            long epoch = csv.hasField() ? csv.longField() : -1;
+            csv.nextLine();
+            if (userId < 0 || itemId < 0 || halfStars < 1 || halfStars > 10) {
+                skipped++;
+                continue;
+            }
+            row.clear();
+            row.append(userId).tab().append(itemId).tab().appendHalfStars(halfStars).tab();
+            if (epoch >= 0) {
+                row.append(epoch);
+            } else {
+                row.appendNull();
+            }
+            row.endLine(out);
+        }
+        return skipped;
+    }
+
+    private record ChunkResult(long ratings, long skippedLines) {
+    }
+
+    // one COPY text line, built without strings
+    private static final class CopyRow {
+
+        private final byte[] bytes = new byte[96];
+        private final byte[] digits = new byte[20];
+        private int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        CopyRow append(long value) {
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            while (n > 0) {
+                bytes[length++] = digits[--n];
+            }
+            return this;
+        }
+
+        CopyRow appendHalfStars(int halfStars) {
+            append(halfStars / 2);
+            if (halfStars % 2 != 0) {
+                bytes[length++] = '.';
+                bytes[length++] = '5';
+            }
+            return this;
+        }
+
+        CopyRow appendNull() {
+            bytes[length++] = '\\';
+            bytes[length++] = 'N';
+            return this;
+        }
+
+        CopyRow tab() {
+            bytes[length++] = '\t';
+            return this;
+        }
+
+        void endLine(OutputStream out) throws IOException {
+            bytes[length++] = '\n';
+            out.write(bytes, 0, length);
+        }
+    }
+}
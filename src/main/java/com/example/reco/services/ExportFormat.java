@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+public enum ExportFormat {
+    // one JSON object per line
+    NDJSON,
+    // RFC 4180, with a header line
+    CSV
+}
@@ -0,0 +1,13 @@
+package com.example.reco.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface ExportService {
+
+    StreamingResponseBody exportRatings(ExportFormat format, Instant from, Instant to);
+
+    StreamingResponseBody exportRecommendations(ExportFormat format, UUID runId);
+}
@@ -0,0 +1,84 @@
+package com.example.reco.services;
+
+import com.example.reco.common.exceptions.BadRequestException;
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.repositories.ExportRepository;
+import com.example.reco.services.ExportWriter.Column;
+import com.example.reco.services.ExportWriter.ColumnType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-table exports. Arguments are checked before the response starts; the
+ * returned body then copies rows from a database cursor to the response as they
+ * come, so an export runs in constant heap whatever its size.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    private static final List<Column> RATING_COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("user_id", ColumnType.LONG),
+            new Column("item_id", ColumnType.LONG),
+            new Column("rating", ColumnType.DECIMAL),
+            new Column("created_at", ColumnType.TIMESTAMP)
+    );
+    private static final List<Column> RECOMMENDATION_COLUMNS = List.of(
+            new Column("id", ColumnType.LONG),
+            new Column("user_id", ColumnType.LONG),
+            new Column("item_id", ColumnType.LONG),
+            new Column("score", ColumnType.DOUBLE),
+            new Column("rank", ColumnType.INT),
+            new Column("algo_version", ColumnType.TEXT),
+            new Column("run_id", ColumnType.TEXT),
+            new Column("reason", ColumnType.JSON),
+            new Column("generated_at", ColumnType.TIMESTAMP)
+    );
+
+    private final ExportRepository exportRepository;
+
+    public ExportServiceImpl(ExportRepository exportRepository) {
+        this.exportRepository = exportRepository;
+    }
+
+    @Override
+    public StreamingResponseBody exportRatings(ExportFormat format, Instant from, Instant to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        return out -> {
+            try (ExportWriter writer = ExportWriter.of(format, RATING_COLUMNS, out)) {
+                exportRepository.streamRatings(from, to, rs -> write(writer, rs));
+            }
+        };
+    }
+
+    @Override
+    public StreamingResponseBody exportRecommendations(ExportFormat format, UUID runId) {
+        if (runId != null && !exportRepository.runExists(runId)) {
+            throw new NotFoundException("Recommendation run with id " + runId + " not found");
+        }
+        return out -> {
+            try (ExportWriter writer = ExportWriter.of(format, RECOMMENDATION_COLUMNS, out)) {
+                exportRepository.streamRecommendations(runId, rs -> write(writer, rs));
+            }
+        };
+    }
+
+    private static void write(ExportWriter writer, ResultSet rs) throws SQLException {
+        try {
+            writer.writeRow(rs);
+        } catch (IOException e) {
+            // client gone: stop reading, the cursor is closed on the way out
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.reco.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+// writes result set rows to an export stream, one row at a time
+abstract class ExportWriter implements AutoCloseable {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    enum ColumnType {
+        LONG,
+        INT,
+        DOUBLE,
+        DECIMAL,
+        TEXT,
+        JSON,
+        TIMESTAMP
+    }
+
+    record Column(String name, ColumnType type) {
+    }
+
+    protected final List<Column> columns;
+
+    private ExportWriter(List<Column> columns) {
+        this.columns = columns;
+    }
+
+    static ExportWriter of(ExportFormat format, List<Column> columns, OutputStream out) throws IOException {
+        return format == ExportFormat.CSV ? new Csv(columns, out) : new Ndjson(columns, out);
+    }
+
+    abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    // flushes, the stream itself belongs to the caller
+    @Override
+    public abstract void close() throws IOException;
+
+    // JDBC value of column k (0-based) as text, null for SQL NULL
+    protected String text(ResultSet rs, int k) throws SQLException {
+        ColumnType type = columns.get(k).type();
+        if (type == ColumnType.TIMESTAMP) {
+            Timestamp timestamp = rs.getTimestamp(k + 1);
+            return timestamp != null ? timestamp.toInstant().toString() : null;
+        }
+        return rs.getString(k + 1);
+    }
+
+    static final class Csv extends ExportWriter {
+
+        private final Writer writer;
+
+        Csv(List<Column> columns, OutputStream out) throws IOException {
+            super(columns);
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (int k = 0; k < columns.size(); k++) {
+                if (k > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns.get(k).name());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            for (int k = 0; k < columns.size(); k++) {
+                if (k > 0) {
+                    writer.write(',');
+                }
+                String value = text(rs, k);
+                if (value == null) {
+                    continue;
+                }
+                ColumnType type = columns.get(k).type();
+                if (type == ColumnType.TEXT || type == ColumnType.JSON) {
+                    writer.write('"');
+                    writer.write(value.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(value);
+                }
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+    static final class Ndjson extends ExportWriter {
+
+        private final JsonGenerator json;
+
+        Ndjson(List<Column> columns, OutputStream out) throws IOException {
+            super(columns);
+            this.json = JSON.createGenerator(out);
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            for (int k = 0; k < columns.size(); k++) {
+                json.writeFieldName(columns.get(k).name());
+                switch (columns.get(k).type()) {
+                    case LONG -> writeOrNull(rs, rs.getLong(k + 1), v -> json.writeNumber(v));
+                    case INT -> writeOrNull(rs, rs.getInt(k + 1), v -> json.writeNumber(v));
+                    case DOUBLE -> writeOrNull(rs, rs.getDouble(k + 1), v -> json.writeNumber(v));
+                    case DECIMAL -> json.writeNumber(rs.getBigDecimal(k + 1));
+                    case JSON -> {
+                        String value = rs.getString(k + 1);
+                        if (value == null) {
+                            json.writeNull();
+                        } else {
+                            json.writeRawValue(value);
+                        }
+                    }
+                    default -> json.writeString(text(rs, k));
+                }
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        // primitive getters return 0 for NULL, wasNull() tells them apart
+        private <T> void writeOrNull(ResultSet rs, T value, IoConsumer<T> writer) throws SQLException, IOException {
+            if (rs.wasNull()) {
+                json.writeNull();
+            } else {
+                writer.accept(value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.flush();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+}
@@ -2,6 +2,8 @@ package com.example.reco.services;
 
 import com.example.reco.controllers.dto.CreateItemRequest;
 import com.example.reco.controllers.dto.ItemResponse;
+import com.example.reco.controllers.dto.SimilarItemResponse;
+import com.example.reco.model.ItemType;
 
 import java.util.List;
 
@@ -10,5 +12,9 @@ public interface ItemService {
 
     ItemResponse getItemById(Long id);
 
-    List<ItemResponse> getAllItems(int limit);
+    List<ItemResponse> getAllItems(int limit, Long after);
+
+    List<SimilarItemResponse> getSimilarItems(Long id, int limit);
+
+    List<ItemResponse> getPopularItems(ItemType type, int limit);
 }
@@ -1,15 +1,27 @@
 package com.example.reco.services;
 
+import com.example.reco.common.Transactions;
 import com.example.reco.common.exceptions.NotFoundException;
 import com.example.reco.controllers.dto.CreateItemRequest;
 import com.example.reco.controllers.dto.ItemResponse;
+import com.example.reco.controllers.dto.SimilarItemResponse;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.ItemEmbeddingIndex;
+import com.example.reco.engine.ItemSimilarityIndex;
+import com.example.reco.engine.PopularityIndex;
+import com.example.reco.engine.ScoredItem;
 import com.example.reco.model.Item;
+import com.example.reco.model.ItemType;
 import com.example.reco.repositories.ItemRepository;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -19,9 +31,18 @@ public class ItemServiceImpl implements ItemService {
     private static final int MAX_LIMIT = 50;
 
     private ItemRepository itemRepository;
+    private IdRegistry idRegistry;
+    private ItemSimilarityIndex itemSimilarityIndex;
+    private ItemEmbeddingIndex itemEmbeddingIndex;
+    private PopularityIndex popularityIndex;
 
-    public ItemServiceImpl(ItemRepository itemRepository) {
+    public ItemServiceImpl(ItemRepository itemRepository, IdRegistry idRegistry, ItemSimilarityIndex itemSimilarityIndex,
+                           ItemEmbeddingIndex itemEmbeddingIndex, PopularityIndex popularityIndex) {
         this.itemRepository = itemRepository;
+        this.idRegistry = idRegistry;
+        this.itemSimilarityIndex = itemSimilarityIndex;
+        this.itemEmbeddingIndex = itemEmbeddingIndex;
+        this.popularityIndex = popularityIndex;
     }
 
     @Override
@@ -31,26 +52,78 @@ public class ItemServiceImpl implements ItemService {
         item.setType(createItemRequest.getType());
         item.setMetadata(createItemRequest.getMetadata());
         Item saved = itemRepository.save(item);
+        Long id = saved.getId();
+        if (id != null) {
+            // reserve the dense engine index so the next model load does not have to grow, once the item surely exists
+            ItemType type = saved.getType();
+            Transactions.afterCommit(() -> idRegistry.registerItem(id, type));
+        }
         return toResponse(saved);
     }
 
     @Override
     @Transactional(readOnly = true)
     public ItemResponse getItemById(Long id) {
-        Item item = itemRepository.findById(id).orElseThrow(() -> new NotFoundException("Item with id " + id + " not found"));
-        return toResponse(item);
+        return itemRepository.findResponseById(id)
+                       .orElseThrow(() -> new NotFoundException("Item with id " + id + " not found"));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ItemResponse> getAllItems(int limit) {
+    public List<ItemResponse> getAllItems(int limit, Long after) {
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
-        List<ItemResponse> itemList = itemRepository.findAll(PageRequest.of(0, myLimit))
-                                              .stream()
-                                              .map(this::toResponse)
-                                              .toList();
-        return itemList;
+        return itemRepository.findResponsesAfter(after != null ? after : 0L, Limit.of(myLimit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SimilarItemResponse> getSimilarItems(Long id, int limit) {
+        if (!itemRepository.existsById(id)) {
+            throw new NotFoundException("Item with id " + id + " not found");
+        }
+        int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
+        myLimit = Math.min(myLimit, MAX_LIMIT);
+
+        // factor similarity once the ANN index is built, co-rating similarity otherwise
+        List<ScoredItem> similar = itemEmbeddingIndex.isAvailable()
+                ? itemEmbeddingIndex.similarTo(id, myLimit)
+                : itemSimilarityIndex.similarTo(id, myLimit);
+        Map<Long, ItemRepository.ItemSummary> items = itemRepository
+                                                              .findByIdIn(similar.stream().map(ScoredItem::getItemId).toList())
+                                                              .stream()
+                                                              .collect(Collectors.toMap(ItemRepository.ItemSummary::getId,
+                                                                      Function.identity()));
+        // keeps the index order; items deleted since the index was built are skipped
+        return similar.stream()
+                       .filter(s -> items.containsKey(s.getItemId()))
+                       .map(s -> {
+                           ItemRepository.ItemSummary item = items.get(s.getItemId());
+                           return new SimilarItemResponse(item.getId(), item.getTitle(), item.getType(), s.getScore());
+                       })
+                       .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemResponse> getPopularItems(ItemType type, int limit) {
+        int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
+        myLimit = Math.min(myLimit, MAX_LIMIT);
+
+        // the live top-P list of the type, no ratings scan
+        long[] ids = popularityIndex.topItems(type, myLimit);
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Long, ItemResponse> items = itemRepository
+                                                .findResponsesByIdIn(Arrays.stream(ids).boxed().toList())
+                                                .stream()
+                                                .collect(Collectors.toMap(ItemResponse::getId, Function.identity()));
+        // keeps the popularity order; items deleted since the last refresh are skipped
+        return Arrays.stream(ids)
+                       .filter(items::containsKey)
+                       .mapToObj(items::get)
+                       .toList();
     }
 
     private ItemResponse toResponse(Item item) {
@@ -0,0 +1,106 @@
+package com.example.reco.services;
+
+import com.example.reco.engine.JobProgress;
+import com.example.reco.model.JobStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// state of one submitted job, updated by its worker and read by status requests
+class Job implements JobProgress {
+
+    private final UUID id = UUID.randomUUID();
+    private final String type;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicInteger requests = new AtomicInteger(1);
+    private final AtomicLong processed = new AtomicLong();
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile String phase;
+    private volatile long total;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    Job(String type) {
+        this.type = type;
+    }
+
+    @Override
+    public void phase(String phase, long total) {
+        this.processed.set(0);
+        this.total = total;
+        this.phase = phase;
+    }
+
+    @Override
+    public void advance(long done) {
+        processed.addAndGet(done);
+    }
+
+    void merge() {
+        requests.incrementAndGet();
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = JobStatus.RUNNING;
+    }
+
+    void succeed() {
+        finishedAt = Instant.now();
+        status = JobStatus.SUCCEEDED;
+    }
+
+    void fail(Throwable e) {
+        error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        finishedAt = Instant.now();
+        status = JobStatus.FAILED;
+    }
+
+    UUID getId() {
+        return id;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    JobStatus getStatus() {
+        return status;
+    }
+
+    String getPhase() {
+        return phase;
+    }
+
+    long getProcessed() {
+        return processed.get();
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    Instant getStartedAt() {
+        return startedAt;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    String getError() {
+        return error;
+    }
+}
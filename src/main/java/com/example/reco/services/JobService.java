@@ -0,0 +1,12 @@
+package com.example.reco.services;
+
+import com.example.reco.controllers.dto.JobResponse;
+
+import java.util.UUID;
+
+public interface JobService {
+
+    JobResponse submitRecomputeAll();
+
+    JobResponse getJob(UUID jobId);
+}
@@ -0,0 +1,151 @@
+package com.example.reco.services;
+
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.common.exceptions.TooManyRequestsException;
+import com.example.reco.controllers.dto.JobResponse;
+import com.example.reco.engine.JobProgress;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs long jobs (full recomputations) on a small dedicated pool with a bounded
+ * queue, so they never hold request threads. A submission made while a job of
+ * the same type is still queued is merged into it: that job has not read the
+ * ratings yet, so it covers the new request too.
+ */
+@Service
+public class JobServiceImpl implements JobService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobServiceImpl.class);
+
+    private static final String RECOMPUTE_ALL = "recompute-all";
+
+    private final RecommendationService recommendationService;
+    private final ThreadPoolExecutor executor;
+    private final int retainedJobs;
+
+    private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<String, Job> queuedByType = new HashMap<>();
+    private final Deque<UUID> finished = new ArrayDeque<>();
+
+    public JobServiceImpl(RecommendationService recommendationService,
+                          @Value("${app.reco.jobs.workers:1}") int workers,
+                          @Value("${app.reco.jobs.queue-capacity:16}") int queueCapacity,
+                          @Value("${app.reco.jobs.retained:100}") int retainedJobs) {
+        this.recommendationService = recommendationService;
+        this.retainedJobs = retainedJobs;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "reco-job-" + threads.incrementAndGet()));
+    }
+
+    @Override
+    public JobResponse submitRecomputeAll() {
+        return toResponse(submit(RECOMPUTE_ALL, progress -> recommendationService.runRecommendationJob("all", progress)));
+    }
+
+    @Override
+    public JobResponse getJob(UUID jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Job with id " + jobId + " not found");
+        }
+        return toResponse(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // queued jobs are dropped, a running one is interrupted
+        executor.shutdownNow();
+    }
+
+    private synchronized Job submit(String type, Consumer<JobProgress> work) {
+        Job queued = queuedByType.get(type);
+        if (queued != null) {
+            queued.merge();
+            return queued;
+        }
+        Job job = new Job(type);
+        try {
+            executor.execute(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Job queue is full, retry later");
+        }
+        jobs.put(job.getId(), job);
+        queuedByType.put(type, job);
+        return job;
+    }
+
+    private void run(Job job, Consumer<JobProgress> work) {
+        synchronized (this) {
+            // from here on, a new submission needs a new job
+            queuedByType.remove(job.getType(), job);
+        }
+        job.start();
+        log.info("Job {} ({}) started", job.getId(), job.getType());
+        try {
+            work.accept(job);
+            job.succeed();
+            log.info("Job {} ({}) succeeded in {} ms", job.getId(), job.getType(), durationMs(job));
+        } catch (RuntimeException e) {
+            job.fail(e);
+            log.error("Job {} ({}) failed", job.getId(), job.getType(), e);
+        } finally {
+            retire(job);
+        }
+    }
+
+    private synchronized void retire(Job job) {
+        finished.addLast(job.getId());
+        while (finished.size() > retainedJobs) {
+            jobs.remove(finished.removeFirst());
+        }
+    }
+
+    private static Long durationMs(Job job) {
+        if (job.getStartedAt() == null) {
+            return null;
+        }
+        return Duration.between(job.getStartedAt(), job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now()).toMillis();
+    }
+
+    private JobResponse toResponse(Job job) {
+        long total = job.getTotal();
+        long processed = job.getProcessed();
+        return new JobResponse(
+                job.getId(),
+                job.getType(),
+                job.getStatus(),
+                job.getPhase(),
+                processed,
+                total,
+                total > 0 ? Math.min(1.0, (double) processed / total) : null,
+                job.getRequests(),
+                job.getSubmittedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt(),
+                durationMs(job),
+                job.getError()
+        );
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.reco.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs live scoring for requests that asked for it, on a few dedicated threads,
+ * and gives up on it after a deadline so that the request can still be answered
+ * from precomputed rows in time. There is no queue: with every worker busy, a
+ * request gives up at once instead of spending its budget waiting. Work that
+ * missed its deadline is interrupted, and its result dropped when it finishes
+ * anyway (scoring does not check for interrupts).
+ */
+@Component
+public class LiveScoringExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveScoringExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long deadlineNanos;
+
+    public LiveScoringExecutor(@Value("${app.reco.fresh.deadline:PT0.03S}") Duration deadline,
+                               @Value("${app.reco.fresh.workers:4}") int workers) {
+        this.deadlineNanos = deadline.toNanos();
+        AtomicInteger threads = new AtomicInteger();
+        int size = Math.max(1, workers);
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "reco-live-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The result of {@code work}, or null when it could not start right away,
+     * did not finish within the deadline, failed, or returned null itself.
+     */
+    public <T> T callWithinDeadline(Supplier<T> work) {
+        Future<T> future;
+        try {
+            future = executor.submit(work::get);
+        } catch (RejectedExecutionException e) {
+            log.debug("Live scoring skipped: every worker is busy");
+            return null;
+        }
+        try {
+            return future.get(deadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.debug("Live scoring missed its deadline of {} ms", deadlineNanos / 1_000_000);
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Live scoring failed, serving precomputed rows", e.getCause());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
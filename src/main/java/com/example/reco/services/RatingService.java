@@ -1,20 +1,24 @@
 package com.example.reco.services;
 
+import com.example.reco.controllers.dto.RatingBatchEntry;
+import com.example.reco.controllers.dto.RatingBatchResponse;
 import com.example.reco.controllers.dto.RatingResponse;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 public interface RatingService {
-    List<RatingResponse> getAllRatings(int limit);
+    List<RatingResponse> getAllRatings(int limit, Long after);
 
     RatingResponse getRatingById(Long id);
 
     RatingResponse rateItem(Long item_id, Long user_id, BigDecimal grade);
 
-    List<RatingResponse> getRatingsByUser(Long userId, int limit);
+    RatingBatchResponse rateItems(List<RatingBatchEntry> entries);
 
-    List<RatingResponse> getRatingsByItem(Long itemId, int limit);
+    List<RatingResponse> getRatingsByUser(Long userId, int limit, Long after);
+
+    List<RatingResponse> getRatingsByItem(Long itemId, int limit, Long after);
 
     RatingResponse updateRating(Long id, BigDecimal newGrade);
 
@@ -1,22 +1,36 @@
 package com.example.reco.services;
 
+import com.example.reco.common.Transactions;
 import com.example.reco.common.exceptions.BadRequestException;
 import com.example.reco.common.exceptions.ConflictException;
 import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.controllers.dto.RatingBatchEntry;
+import com.example.reco.controllers.dto.RatingBatchResponse;
+import com.example.reco.controllers.dto.RatingBatchRowResult;
 import com.example.reco.controllers.dto.RatingResponse;
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.UserNeighborIndex;
 import com.example.reco.model.Item;
 import com.example.reco.model.Rating;
+import com.example.reco.model.RatingWriteStatus;
 import com.example.reco.model.User;
 import com.example.reco.repositories.ItemRepository;
+import com.example.reco.repositories.RatingBatchRepository;
 import com.example.reco.repositories.RatingRepository;
 import com.example.reco.repositories.UserRepository;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 @Service
 @Transactional
@@ -26,61 +40,77 @@ public class RatingServiceImpl implements RatingService {
     private static final int MAX_LIMIT = 50;
     private static final BigDecimal MIN_GRADE = BigDecimal.ONE;
     private static final BigDecimal MAX_GRADE = BigDecimal.valueOf(5);
+    private static final int MAX_BATCH_SIZE = 10_000;
 
     private final RatingRepository ratingRepository;
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
+    private final BiasModel biasModel;
+    private final UserNeighborIndex userNeighborIndex;
+    private final RatingBatchRepository ratingBatchRepository;
+    private final RatingWriteBuffer ratingWriteBuffer;
 
-    public RatingServiceImpl(RatingRepository ratingRepository, ItemRepository itemRepository, UserRepository userRepository) {
+    public RatingServiceImpl(RatingRepository ratingRepository,
+                             ItemRepository itemRepository,
+                             UserRepository userRepository,
+                             BiasModel biasModel,
+                             UserNeighborIndex userNeighborIndex,
+                             RatingBatchRepository ratingBatchRepository,
+                             RatingWriteBuffer ratingWriteBuffer) {
         this.ratingRepository = ratingRepository;
         this.itemRepository = itemRepository;
         this.userRepository = userRepository;
+        this.biasModel = biasModel;
+        this.userNeighborIndex = userNeighborIndex;
+        this.ratingBatchRepository = ratingBatchRepository;
+        this.ratingWriteBuffer = ratingWriteBuffer;
     }
 
     private static void validateGrade(BigDecimal grade) {
-        if (grade == null
-                    || grade.compareTo(MIN_GRADE) < 0
-                    || grade.compareTo(MAX_GRADE) > 0) {
+        if (!isValidGrade(grade)) {
             throw new BadRequestException("Invalid grade attributed: " + grade);
         }
     }
 
+    // checked before anything is acknowledged: a write-behind rating refused by the table would be lost
+    private static boolean isValidGrade(BigDecimal grade) {
+        return grade != null
+                       && grade.compareTo(MIN_GRADE) >= 0
+                       && grade.compareTo(MAX_GRADE) <= 0
+                       // half-star step enforced by the table
+                       && grade.multiply(BigDecimal.valueOf(2)).stripTrailingZeros().scale() <= 0;
+    }
+
     @Override
     @Transactional(readOnly = true)
-    public List<RatingResponse> getAllRatings(int limit) {
+    public List<RatingResponse> getAllRatings(int limit, Long after) {
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
 
-        return ratingRepository.findAll(PageRequest.of(0, myLimit))
-                       .stream()
-                       .map(this::toResponse)
-                       .toList();
+        return ratingRepository.findResponsesAfter(after != null ? after : 0L, Limit.of(myLimit));
     }
 
     @Override
     @Transactional(readOnly = true)
     public RatingResponse getRatingById(Long id) {
-        Rating rating = ratingRepository.findById(id)
-                                .orElseThrow(() -> new NotFoundException("Rating with id " + id + " not found"));
-        return toResponse(rating);
+        return ratingRepository.findResponseById(id)
+                       .orElseThrow(() -> new NotFoundException("Rating with id " + id + " not found"));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<RatingResponse> getRatingsByUser(Long userId, int limit) { // add a safeguard?
+    public List<RatingResponse> getRatingsByUser(Long userId, int limit, Long after) { // add a safeguard?
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
-        Page<Rating> page = ratingRepository.findByUserId(userId, PageRequest.of(0, myLimit));
-        return page.stream().map(this::toResponse).toList();
+        return ratingRepository.findResponsesByUserIdAfter(userId, after != null ? after : 0L, Limit.of(myLimit));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<RatingResponse> getRatingsByItem(Long itemId, int limit) { // add a safeguard?
+    public List<RatingResponse> getRatingsByItem(Long itemId, int limit, Long after) { // add a safeguard?
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
-        Page<Rating> page = ratingRepository.findByItemId(itemId, PageRequest.of(0, myLimit));
-        return page.stream().map(this::toResponse).toList();
+        return ratingRepository.findResponsesByItemIdAfter(itemId, after != null ? after : 0L, Limit.of(myLimit));
     }
 
     @Override
@@ -96,7 +126,17 @@ public class RatingServiceImpl implements RatingService {
             throw new ConflictException("User already rated this item");
         });
 
+        if (ratingWriteBuffer.isEnabled()) {
+            // acknowledged once queued: no id nor creation time yet
+            ratingWriteBuffer.submit(userId, itemId, grade);
+            return new RatingResponse(null, user.getId(), item.getId(), grade, null);
+        }
+
         Rating saved = ratingRepository.save(new Rating(user, item, grade));
+        Transactions.afterCommit(() -> {
+            biasModel.recordRating(userId, itemId, null, grade.doubleValue());
+            userNeighborIndex.onRating(userId, itemId);
+        });
         return toResponse(saved);
     }
 
@@ -107,8 +147,152 @@ public class RatingServiceImpl implements RatingService {
         Rating rating = ratingRepository.findById(id)
                                 .orElseThrow(() -> new NotFoundException("Rating with id " + id + " not found"));
 
+        BigDecimal oldGrade = rating.getRating();
         rating.setRating(newGrade);
-        return toResponse(ratingRepository.save(rating));
+        Rating saved = ratingRepository.save(rating);
+        long userId = saved.getUser().getId();
+        long itemId = saved.getItem().getId();
+        Transactions.afterCommit(() -> {
+            biasModel.recordRating(userId, itemId, oldGrade.doubleValue(), newGrade.doubleValue());
+            userNeighborIndex.onRating(userId, itemId);
+        });
+        return toResponse(saved);
+    }
+
+    /**
+     * Inserts or updates many ratings in one transaction. Rows are checked in one
+     * pass (two id lookups for the whole batch); an invalid row is reported and
+     * skipped, it does not fail the others.
+     */
+    @Override
+    public RatingBatchResponse rateItems(List<RatingBatchEntry> entries) {
+        if (entries.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " ratings per batch, got " + entries.size());
+        }
+        int n = entries.size();
+        RatingBatchRowResult[] results = new RatingBatchRowResult[n];
+
+        List<Integer> valid = new ArrayList<>(n);
+        Map<List<Long>, Integer> firstRow = new HashMap<>();
+        for (int k = 0; k < n; k++) {
+            RatingBatchEntry entry = entries.get(k);
+            String error = validateEntry(entry);
+            if (error == null) {
+                Integer previous = firstRow.putIfAbsent(List.of(entry.getUserId(), entry.getItemId()), k);
+                if (previous != null) {
+                    error = "Duplicate of row " + previous;
+                }
+            }
+            if (error != null) {
+                results[k] = rejected(k, entry, error);
+            } else {
+                valid.add(k);
+            }
+        }
+
+        Set<Long> users = ratingBatchRepository.findExistingUserIds(
+                valid.stream().mapToLong(k -> entries.get(k).getUserId()).distinct().toArray());
+        Set<Long> items = ratingBatchRepository.findExistingItemIds(
+                valid.stream().mapToLong(k -> entries.get(k).getItemId()).distinct().toArray());
+        List<Integer> accepted = new ArrayList<>(valid.size());
+        for (int k : valid) {
+            RatingBatchEntry entry = entries.get(k);
+            if (!users.contains(entry.getUserId())) {
+                results[k] = rejected(k, entry, "User with id " + entry.getUserId() + " not found");
+            } else if (!items.contains(entry.getItemId())) {
+                results[k] = rejected(k, entry, "Item with id " + entry.getItemId() + " not found");
+            } else {
+                accepted.add(k);
+            }
+        }
+        // concurrent batches lock their rows in the same order and cannot deadlock
+        accepted.sort(Comparator.<Integer>comparingLong(k -> entries.get(k).getUserId())
+                              .thenComparingLong(k -> entries.get(k).getItemId()));
+
+        int m = accepted.size();
+        long[] userIds = new long[m];
+        long[] itemIds = new long[m];
+        BigDecimal[] grades = new BigDecimal[m];
+        for (int j = 0; j < m; j++) {
+            RatingBatchEntry entry = entries.get(accepted.get(j));
+            userIds[j] = entry.getUserId();
+            itemIds[j] = entry.getItemId();
+            grades[j] = entry.getGrade();
+        }
+        // the status of a row is what the database did with it, not what a read before the write saw:
+        // a pair inserted by a concurrent batch meanwhile is an update here, never a second insert
+        boolean[] inserted = m > 0 ? ratingBatchRepository.insertMissing(userIds, itemIds, grades) : new boolean[0];
+        int[] existing = IntStream.range(0, m).filter(j -> !inserted[j]).toArray();
+        BigDecimal[] current = new BigDecimal[m];
+        if (existing.length > 0) {
+            BigDecimal[] locked = ratingBatchRepository.lockCurrentRatings(
+                    select(userIds, existing), select(itemIds, existing));
+            for (int p = 0; p < existing.length; p++) {
+                current[existing[p]] = locked[p];
+            }
+        }
+
+        int insertedCount = 0;
+        int updated = 0;
+        int unchanged = 0;
+        List<Integer> changed = new ArrayList<>(m);
+        for (int j = 0; j < m; j++) {
+            int k = accepted.get(j);
+            RatingWriteStatus status;
+            if (inserted[j]) {
+                status = RatingWriteStatus.INSERTED;
+                insertedCount++;
+                changed.add(j);
+            } else if (current[j] == null) {
+                // deleted between the insert and the lock
+                results[k] = rejected(k, entries.get(k), "Rating was deleted concurrently, retry");
+                continue;
+            } else if (current[j].compareTo(grades[j]) != 0) {
+                status = RatingWriteStatus.UPDATED;
+                updated++;
+                changed.add(j);
+            } else {
+                status = RatingWriteStatus.UNCHANGED;
+                unchanged++;
+            }
+            results[k] = new RatingBatchRowResult(k, userIds[j], itemIds[j], status, null);
+        }
+        int[] toUpdate = changed.stream().mapToInt(Integer::intValue).filter(j -> !inserted[j]).toArray();
+        if (toUpdate.length > 0) {
+            ratingBatchRepository.update(select(userIds, toUpdate), select(itemIds, toUpdate),
+                    Arrays.stream(toUpdate).mapToObj(j -> grades[j]).toArray(BigDecimal[]::new));
+        }
+
+        Transactions.afterCommit(() -> {
+            for (int j : changed) {
+                biasModel.recordRating(userIds[j], itemIds[j],
+                        current[j] != null ? current[j].doubleValue() : null, grades[j].doubleValue());
+                userNeighborIndex.onRating(userIds[j], itemIds[j]);
+            }
+        });
+        int written = insertedCount + updated + unchanged;
+        return new RatingBatchResponse(n, insertedCount, updated, unchanged, n - written, Arrays.asList(results));
+    }
+
+    private static long[] select(long[] values, int[] rows) {
+        return Arrays.stream(rows).mapToLong(j -> values[j]).toArray();
+    }
+
+    private static String validateEntry(RatingBatchEntry entry) {
+        if (entry == null || entry.getUserId() == null || entry.getItemId() == null) {
+            return "userId and itemId are required";
+        }
+        if (!isValidGrade(entry.getGrade())) {
+            return "Invalid grade attributed: " + entry.getGrade();
+        }
+        return null;
+    }
+
+    private static RatingBatchRowResult rejected(int index, RatingBatchEntry entry, String error) {
+        return new RatingBatchRowResult(index,
+                entry != null ? entry.getUserId() : null,
+                entry != null ? entry.getItemId() : null,
+                RatingWriteStatus.REJECTED, error);
     }
 
     private RatingResponse toResponse(Rating rating) {
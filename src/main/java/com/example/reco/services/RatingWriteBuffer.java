@@ -0,0 +1,218 @@
+package com.example.reco.services;
+
+import com.example.reco.common.exceptions.ConflictException;
+import com.example.reco.common.exceptions.TooManyRequestsException;
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.UserNeighborIndex;
+import com.example.reco.repositories.RatingBatchRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind mode of {@link RatingServiceImpl#rateItem}: validated ratings are
+ * queued and acknowledged, and a single flusher thread commits them in groups
+ * (every flush-interval or flush-rows rows, whichever comes first), so that one
+ * fsync covers many ratings.
+ *
+ * A full queue rejects new ratings with 429. On shutdown, new ratings are
+ * rejected and the queue is drained before the connection pool goes away.
+ */
+@Component
+public class RatingWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingWriteBuffer.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final RatingBatchRepository ratingBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BiasModel biasModel;
+    private final UserNeighborIndex userNeighborIndex;
+    private final boolean enabled;
+    private final long flushIntervalNanos;
+    private final int flushRows;
+    private final Duration drainTimeout;
+
+    private final BlockingQueue<PendingRating> queue;
+    // (userId, itemId) of queued ratings, so that rating twice is refused like in SYNC mode
+    private final Set<List<Long>> pending = ConcurrentHashMap.newKeySet();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public RatingWriteBuffer(RatingBatchRepository ratingBatchRepository,
+                             PlatformTransactionManager transactionManager,
+                             BiasModel biasModel,
+                             UserNeighborIndex userNeighborIndex,
+                             @Value("${app.reco.ratings.write-mode:SYNC}") RatingWriteMode writeMode,
+                             @Value("${app.reco.ratings.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${app.reco.ratings.write-behind.flush-interval:PT0.05S}") Duration flushInterval,
+                             @Value("${app.reco.ratings.write-behind.flush-rows:500}") int flushRows,
+                             @Value("${app.reco.ratings.write-behind.drain-timeout:PT30S}") Duration drainTimeout) {
+        this.ratingBatchRepository = ratingBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.biasModel = biasModel;
+        this.userNeighborIndex = userNeighborIndex;
+        this.enabled = writeMode == RatingWriteMode.WRITE_BEHIND;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flushRows = Math.max(1, flushRows);
+        this.drainTimeout = drainTimeout;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (enabled) {
+            flusher = new Thread(this::flushLoop, "rating-write-behind");
+            // close() drains it; it must not keep a JVM alive that exits without closing the context
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a validated rating. Throws 409 if the same user already has a queued
+     * rating for the item, 429 if the queue is full or the buffer is shutting down.
+     */
+    public void submit(long userId, long itemId, BigDecimal grade) {
+        List<Long> key = List.of(userId, itemId);
+        if (!pending.add(key)) {
+            throw new ConflictException("User already rated this item");
+        }
+        if (closed || !queue.offer(new PendingRating(userId, itemId, grade))) {
+            pending.remove(key);
+            throw new TooManyRequestsException("Rating write buffer is full, retry later");
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        // no interrupt: it would also abort the connection borrowing of the final flushes
+        closed = true;
+        try {
+            flusher.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.error("Shutting down with {} ratings not written", queue.size());
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingRating> batch = new ArrayList<>(flushRows);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // waits for a first rating, then for more until the group is full or the interval is over
+    private void collect(List<PendingRating> batch) throws InterruptedException {
+        if (closed) {
+            queue.drainTo(batch, flushRows);
+            return;
+        }
+        // timed, so that close() is noticed while idle
+        PendingRating first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < flushRows) {
+            queue.drainTo(batch, flushRows - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushRows || remaining <= 0 || closed) {
+                return;
+            }
+            PendingRating next = queue.poll(
+                    Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS)), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void flush(List<PendingRating> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // one bad row (e.g. its user was deleted meanwhile) must not lose the others
+            log.warn("Group commit of {} ratings failed, writing them one by one", batch.size(), e);
+            for (PendingRating rating : batch) {
+                try {
+                    write(List.of(rating));
+                } catch (RuntimeException rowError) {
+                    log.error("Dropping rating of user {} for item {}: {}",
+                            rating.userId(), rating.itemId(), rowError.getMessage());
+                }
+            }
+        } finally {
+            for (PendingRating rating : batch) {
+                pending.remove(List.of(rating.userId(), rating.itemId()));
+            }
+        }
+    }
+
+    private void write(List<PendingRating> batch) {
+        List<PendingRating> sorted = new ArrayList<>(batch);
+        // same lock order as RatingServiceImpl#rateItems
+        sorted.sort(Comparator.comparingLong(PendingRating::userId).thenComparingLong(PendingRating::itemId));
+        int n = sorted.size();
+        long[] userIds = new long[n];
+        long[] itemIds = new long[n];
+        BigDecimal[] grades = new BigDecimal[n];
+        for (int k = 0; k < n; k++) {
+            userIds[k] = sorted.get(k).userId();
+            itemIds[k] = sorted.get(k).itemId();
+            grades[k] = sorted.get(k).grade();
+        }
+        // a rating committed since the 409 check of rateItem wins: overwriting it would skew the biases
+        boolean[] inserted = transactionTemplate.execute(
+                status -> ratingBatchRepository.insertMissing(userIds, itemIds, grades));
+        // committed: the in-memory models can see the ratings
+        for (int k = 0; k < n; k++) {
+            if (inserted[k]) {
+                biasModel.recordRating(userIds[k], itemIds[k], null, grades[k].doubleValue());
+                userNeighborIndex.onRating(userIds[k], itemIds[k]);
+            } else {
+                log.warn("Dropping rating of user {} for item {}: already rated", userIds[k], itemIds[k]);
+            }
+        }
+    }
+
+    private record PendingRating(long userId, long itemId, BigDecimal grade) {
+    }
+}
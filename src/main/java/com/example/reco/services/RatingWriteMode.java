@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+public enum RatingWriteMode {
+    // every rating is committed before the response
+    SYNC,
+    // ratings are acknowledged once queued and committed in groups by RatingWriteBuffer
+    WRITE_BEHIND
+}
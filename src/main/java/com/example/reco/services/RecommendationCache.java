@@ -0,0 +1,123 @@
+package com.example.reco.services;
+
+import com.example.reco.controllers.dto.CacheStatsResponse;
+import com.example.reco.controllers.dto.RecommendationResponse;
+import com.example.reco.engine.RecommendationWriteListener;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of user recommendation lists (Caffeine, W-TinyLFU eviction
+ * bounded by the total number of cached rows).
+ *
+ * Keys carry a generation that is bumped whenever an active run changes, so a
+ * list read from the previous run can never be served once the new one is active.
+ * Rewrites of one user's rows only drop that user's entries, found through a
+ * per-user key index. Runs activated by another process (the Python job) are
+ * noticed by polling recommendation_runs.
+ */
+@Component
+public class RecommendationCache implements RecommendationWriteListener {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxWeight;
+    private final Cache<Key, List<RecommendationResponse>> cache;
+    // keys are added before their value is loaded, so an invalidation never misses a load in flight
+    private final Map<Long, Set<Key>> keysByUser = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile List<String> activeRuns;
+
+    public RecommendationCache(JdbcTemplate jdbcTemplate,
+                               @Value("${app.reco.cache.recommendations.max-weight:500000}") long maxWeight) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxWeight = maxWeight;
+        this.cache = Caffeine.newBuilder()
+                             .maximumWeight(maxWeight)
+                             .weigher((Key key, List<RecommendationResponse> value) -> 1 + value.size())
+                             .evictionListener((Key key, List<RecommendationResponse> value, RemovalCause cause) -> forget(key))
+                             .recordStats()
+                             .build();
+    }
+
+    public List<RecommendationResponse> get(long userId, String algo, int limit, boolean includeReason,
+                                            Supplier<List<RecommendationResponse>> loader) {
+        Key key = new Key(userId, algo, limit, includeReason, generation.get());
+        return cache.get(key, k -> {
+            remember(k);
+            return List.copyOf(loader.get());
+        });
+    }
+
+    // cached list of the user, null when not cached (nothing is loaded)
+    public List<RecommendationResponse> getIfPresent(long userId, String algo, int limit, boolean includeReason) {
+        return cache.getIfPresent(new Key(userId, algo, limit, includeReason, generation.get()));
+    }
+
+    @Override
+    public void userRecommendationsReplaced(long userId) {
+        Set<Key> keys = keysByUser.remove(userId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    @Override
+    public void activeRunChanged(String algoVersion) {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+        keysByUser.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${app.reco.cache.recommendations.run-check-interval:PT5S}")
+    public void checkActiveRuns() {
+        List<String> runs = jdbcTemplate.queryForList(
+                "SELECT algo_version || ':' || run_id FROM recommendation_runs WHERE active ORDER BY algo_version",
+                String.class);
+        List<String> previous = activeRuns;
+        activeRuns = runs;
+        if (previous != null && !previous.equals(runs)) {
+            activeRunChanged(null);
+        }
+    }
+
+    public CacheStatsResponse stats() {
+        // applies pending writes, so that the weight is up to date
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+        return new CacheStatsResponse(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.estimatedSize(), weight, maxWeight);
+    }
+
+    private void remember(Key key) {
+        keysByUser.compute(key.userId(), (userId, keys) -> {
+            Set<Key> set = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            set.add(key);
+            return set;
+        });
+    }
+
+    private void forget(Key key) {
+        keysByUser.computeIfPresent(key.userId(), (userId, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private record Key(long userId, String algo, int limit, boolean includeReason, long generation) {
+    }
+}
@@ -1,18 +1,32 @@
 package com.example.reco.services;
 
+import com.example.reco.controllers.dto.ArmStatsResponse;
+import com.example.reco.controllers.dto.CacheStatsResponse;
 import com.example.reco.controllers.dto.RecommendationResponse;
+import com.example.reco.engine.JobProgress;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
 public interface RecommendationService {
 
-    List<RecommendationResponse> getAllRecommendations(int limit, boolean includeReason);
+    List<RecommendationResponse> getAllRecommendations(int limit, Long after, boolean includeReason);
 
     List<RecommendationResponse> getUserRecommendations(Long userId, int limit, boolean includeReason, String algo);
 
+    ServedRecommendations getFreshUserRecommendations(Long userId, int limit, boolean includeReason, String algo);
+
+    StreamingResponseBody getRecommendationsForUsers(List<Long> userIds, int limit, boolean includeReason, String algo);
+
+    CacheStatsResponse getRecommendationCacheStats();
+
+    List<ArmStatsResponse> getArmStats();
+
     List<RecommendationResponse> recomputeRecommendationsForUser(Long userId, int limit, boolean includeReason, String algo);
 
     void recomputeAllRecommendations();
 
     void runRecommendationJob(String mode);
+
+    void runRecommendationJob(String mode, JobProgress progress);
 }
@@ -1,12 +1,31 @@
 package com.example.reco.services;
 
+import com.example.reco.common.exceptions.BadRequestException;
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.config.RecoEngineProperties;
+import com.example.reco.controllers.dto.ArmStatsResponse;
+import com.example.reco.controllers.dto.CacheStatsResponse;
 import com.example.reco.controllers.dto.RecommendationResponse;
-import com.example.reco.model.Recommendation;
+import com.example.reco.controllers.dto.UserRecommendationsResponse;
+import com.example.reco.engine.EngineMode;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.engine.RecoEngine;
+import com.example.reco.engine.RecommendationRow;
+import com.example.reco.repositories.RecommendationBatchRepository;
 import com.example.reco.repositories.RecommendationRepository;
-import org.springframework.data.domain.PageRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Service
@@ -15,56 +34,172 @@ public class RecommendationServiceImpl implements RecommendationService {
 
     private static final int DEFAULT_LIMIT = 50;
     private static final int MAX_LIMIT = 50;
+    private static final int MAX_BATCH_USERS = 5000;
 
     private final RecommendationRepository recommendationRepository;
+    private final RecoEngine recoEngine;
+    private final RecoEngineProperties engineProperties;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationBatchRepository recommendationBatchRepository;
+    private final ObjectMapper objectMapper;
+    private final TrafficAllocator trafficAllocator;
+    private final ArmMetrics armMetrics;
+    private final LiveScoringExecutor liveScoringExecutor;
 
-    public RecommendationServiceImpl(RecommendationRepository recommendationRepository) {
+    public RecommendationServiceImpl(RecommendationRepository recommendationRepository,
+                                     RecoEngine recoEngine,
+                                     RecoEngineProperties engineProperties,
+                                     RecommendationCache recommendationCache,
+                                     RecommendationBatchRepository recommendationBatchRepository,
+                                     ObjectMapper objectMapper,
+                                     TrafficAllocator trafficAllocator,
+                                     ArmMetrics armMetrics,
+                                     LiveScoringExecutor liveScoringExecutor) {
         this.recommendationRepository = recommendationRepository;
+        this.recoEngine = recoEngine;
+        this.engineProperties = engineProperties;
+        this.recommendationCache = recommendationCache;
+        this.recommendationBatchRepository = recommendationBatchRepository;
+        this.objectMapper = objectMapper;
+        this.trafficAllocator = trafficAllocator;
+        this.armMetrics = armMetrics;
+        this.liveScoringExecutor = liveScoringExecutor;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<RecommendationResponse> getAllRecommendations(int limit, boolean includeReason) {
+    public List<RecommendationResponse> getAllRecommendations(int limit, Long after, boolean includeReason) {
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
-        List<RecommendationResponse> recommendationList = recommendationRepository.findAll(PageRequest.of(0, myLimit))
-                                                                  .stream()
-                                                                  .map(r -> toResponse(r, true))
-                                                                  .toList();
-        return recommendationList;
+        return recommendationRepository.findActiveAfter(after != null ? after : 0L, true, Limit.of(myLimit));
     }
 
+    /**
+     * Without algo, the user is served by its arm of the A/B split (every active
+     * run when no split is configured). Latency and size are recorded per arm.
+     */
     @Override
-    @Transactional(readOnly = true)
+    // a cache hit does not need a connection; a miss runs its query on its own
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<RecommendationResponse> getUserRecommendations(Long userId, int limit, boolean includeReason, String algo) {
+        long start = System.nanoTime();
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
-        myLimit = Math.min(myLimit, MAX_LIMIT);
+        int finalLimit = Math.min(myLimit, MAX_LIMIT);
+        String requested = (algo != null && !algo.isBlank()) ? algo : null;
+        String myAlgo = requested != null ? requested : trafficAllocator.armOf(userId);
 
-        List<Recommendation> recommendations;
-        PageRequest page = PageRequest.of(0, myLimit);
+        List<RecommendationResponse> recommendations = recommendationCache.get(userId, myAlgo, finalLimit,
+                includeReason, () -> loadUserRecommendations(userId, finalLimit, includeReason, myAlgo));
+        armMetrics.record(myAlgo, requested == null && myAlgo != null, System.nanoTime() - start,
+                recommendations.size());
+        return recommendations;
+    }
 
-        if (algo != null && !algo.isBlank()) {
-            recommendations = recommendationRepository
-                                      .findByUserIdAndAlgoVersion(userId, algo, page)
-                                      .getContent();
-        } else {
-            recommendations = recommendationRepository
-                                      .findByUserId(userId, page)
-                                      .getContent();
+    /**
+     * Scores the user from the in-memory model with their current ratings, within
+     * app.reco.fresh.deadline; falls back to {@link #getUserRecommendations} when
+     * the deadline is missed, the engine runs as a subprocess, no model is loaded
+     * yet or the algo is only produced by full runs. Live rows are not cached and
+     * have no id, run or reason.
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ServedRecommendations getFreshUserRecommendations(Long userId, int limit, boolean includeReason, String algo) {
+        long start = System.nanoTime();
+        int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
+        int finalLimit = Math.min(myLimit, MAX_LIMIT);
+        String requested = (algo != null && !algo.isBlank()) ? algo : null;
+        String myAlgo = requested != null ? requested : trafficAllocator.armOf(userId);
+
+        List<RecommendationRow> rows = engineProperties.getMode() == EngineMode.JVM
+                ? liveScoringExecutor.callWithinDeadline(() -> recoEngine.scoreUser(userId, myAlgo, finalLimit))
+                : null;
+        if (rows == null) {
+            return new ServedRecommendations(getUserRecommendations(userId, limit, includeReason, algo),
+                    RecommendationSource.PRECOMPUTED);
         }
+        Instant now = Instant.now();
+        List<RecommendationResponse> recommendations = rows.stream()
+                .map(row -> new RecommendationResponse(null, row.getUserId(), row.getItemId(), row.getScore(),
+                        row.getRank(), row.getAlgoVersion(), null, null, now))
+                .toList();
+        armMetrics.record(myAlgo, requested == null && myAlgo != null, System.nanoTime() - start,
+                recommendations.size());
+        return new ServedRecommendations(recommendations, RecommendationSource.LIVE);
+    }
 
-        return recommendations.stream()
-                       .map(r -> toResponse(r, includeReason))
-                       .toList();
+    /**
+     * One entry per distinct user, in user id order; users without recommendations
+     * (or unknown) get an empty list. Without algo, each user is read from its arm
+     * of the A/B split. Cached lists are used as they are, the other users are
+     * read by a single query whose rows are written out user by user.
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public StreamingResponseBody getRecommendationsForUsers(List<Long> userIds, int limit, boolean includeReason,
+                                                            String algo) {
+        if (userIds.size() > MAX_BATCH_USERS) {
+            throw new BadRequestException("At most " + MAX_BATCH_USERS + " users per request, got " + userIds.size());
+        }
+        int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
+        int finalLimit = Math.min(myLimit, MAX_LIMIT);
+        String myAlgo = (algo != null && !algo.isBlank()) ? algo : null;
+        long[] ids = userIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
 
+        return out -> {
+            List<List<RecommendationResponse>> cached = new ArrayList<>(ids.length);
+            long[] misses = new long[ids.length];
+            String[] missAlgos = new String[ids.length];
+            int missCount = 0;
+            for (long id : ids) {
+                String userAlgo = myAlgo != null ? myAlgo : trafficAllocator.armOf(id);
+                List<RecommendationResponse> hit = recommendationCache.getIfPresent(id, userAlgo, finalLimit, includeReason);
+                cached.add(hit);
+                if (hit == null) {
+                    misses[missCount] = id;
+                    missAlgos[missCount++] = userAlgo;
+                }
+            }
+            JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+            json.writeStartArray();
+            BatchWriter writer = new BatchWriter(json, ids, cached, finalLimit);
+            if (missCount > 0) {
+                recommendationBatchRepository.streamTopN(Arrays.copyOf(misses, missCount),
+                        Arrays.copyOf(missAlgos, missCount), finalLimit, includeReason, writer::add);
+            }
+            writer.finish();
+            json.writeEndArray();
+            json.flush();
+        };
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CacheStatsResponse getRecommendationCacheStats() {
+        return recommendationCache.stats();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<ArmStatsResponse> getArmStats() {
+        return armMetrics.stats(trafficAllocator.weights());
     }
 
     @Override
     public List<RecommendationResponse> recomputeRecommendationsForUser(Long userId, int limit, boolean includeReason, String algo) {
-        // TO DO : for V2, change so that we compute only for one user
-        // instead of recomputing all recommendations
-        runRecommendationJob("all");
-        return getUserRecommendations(userId, limit, includeReason, algo);
+        if (engineProperties.getMode() == EngineMode.SUBPROCESS) {
+            // the Python job has no per-user mode
+            runRecommendationJob("all");
+        } else {
+            if (!recoEngine.userExists(userId)) {
+                throw new NotFoundException("User with id " + userId + " not found");
+            }
+            recoEngine.recomputeUser(userId);
+        }
+        // the new rows are not committed yet: read them directly, the cache is invalidated on commit
+        int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
+        return loadUserRecommendations(userId, Math.min(myLimit, MAX_LIMIT), includeReason,
+                (algo != null && !algo.isBlank()) ? algo : trafficAllocator.armOf(userId));
     }
 
     @Override
@@ -74,6 +209,30 @@ public class RecommendationServiceImpl implements RecommendationService {
 
     @Override
     public void runRecommendationJob(String mode) {
+        runRecommendationJob(mode, JobProgress.NONE);
+    }
+
+    @Override
+    public void runRecommendationJob(String mode, JobProgress progress) {
+        if (engineProperties.getMode() == EngineMode.SUBPROCESS) {
+            // the Python job reports no progress
+            progress.phase("subprocess", 0);
+            runSubprocessJob(mode);
+            // the polling in RecommendationCache would notice too, only later
+            recommendationCache.activeRunChanged(null);
+        } else {
+            recoEngine.recomputeAll(progress);
+        }
+    }
+
+    private List<RecommendationResponse> loadUserRecommendations(Long userId, int limit, boolean includeReason, String algo) {
+        if (algo != null) {
+            return recommendationRepository.findActiveByUserIdAndAlgoVersion(userId, algo, includeReason, Limit.of(limit));
+        }
+        return recommendationRepository.findActiveByUserId(userId, includeReason, Limit.of(limit));
+    }
+
+    private void runSubprocessJob(String mode) {
         try {
             ProcessBuilder pb = createProcessBuilder(mode);
             pb.redirectErrorStream(true);
@@ -114,18 +273,67 @@ public class RecommendationServiceImpl implements RecommendationService {
         return pb.start();
     }
 
-    private RecommendationResponse toResponse(Recommendation recommendation, boolean includeReason) {
-        return new RecommendationResponse(
-                recommendation.getId(),
-                recommendation.getUser().getId(),
-                recommendation.getItem().getId(),
-                recommendation.getScore(),
-                recommendation.getRank(),
-                recommendation.getAlgoVersion(),
-                recommendation.getRunId(),
-                includeReason ? recommendation.getReason() : null,
-                recommendation.getGeneratedAt()
-        );
-    }
+    // merges the rows streamed in (user_id, rank) order with the cached lists, in user id order
+    private static final class BatchWriter {
 
+        private final JsonGenerator json;
+        private final long[] ids;
+        private final List<List<RecommendationResponse>> cached;
+        private final int limit;
+        private int next;
+        private long current = -1;
+        private List<RecommendationResponse> rows = new ArrayList<>();
+
+        BatchWriter(JsonGenerator json, long[] ids, List<List<RecommendationResponse>> cached, int limit) {
+            this.json = json;
+            this.ids = ids;
+            this.cached = cached;
+            this.limit = limit;
+        }
+
+        void add(RecommendationResponse row) {
+            long userId = row.getUserId();
+            if (userId != current) {
+                writeCurrent();
+                writeUpTo(userId);
+                current = userId;
+                next++;
+            }
+            // without algo or split, ranks of several active runs interleave: the first limit rows win
+            if (rows.size() < limit) {
+                rows.add(row);
+            }
+        }
+
+        void finish() {
+            writeCurrent();
+            writeUpTo(Long.MAX_VALUE);
+        }
+
+        // users before userId: from the cache, or without recommendations
+        private void writeUpTo(long userId) {
+            while (next < ids.length && ids[next] < userId) {
+                List<RecommendationResponse> hit = cached.get(next);
+                write(ids[next], hit != null ? hit : List.of());
+                next++;
+            }
+        }
+
+        private void writeCurrent() {
+            if (current >= 0) {
+                write(current, rows);
+                rows = new ArrayList<>();
+                current = -1;
+            }
+        }
+
+        private void write(long userId, List<RecommendationResponse> recommendations) {
+            try {
+                json.writeObject(new UserRecommendationsResponse(userId, recommendations));
+            } catch (IOException e) {
+                // client gone: stop reading, the cursor is closed on the way out
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
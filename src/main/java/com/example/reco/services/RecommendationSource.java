@@ -0,0 +1,8 @@
+package com.example.reco.services;
+
+public enum RecommendationSource {
+    // scored from the in-memory model for this request
+    LIVE,
+    // rows of the active runs (or their cached copy), when live scoring was not asked for or missed its deadline
+    PRECOMPUTED
+}
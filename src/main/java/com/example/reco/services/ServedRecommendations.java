@@ -0,0 +1,11 @@
+package com.example.reco.services;
+
+import com.example.reco.controllers.dto.RecommendationResponse;
+
+import java.util.List;
+
+/**
+ * Recommendations of one user and the path that produced them.
+ */
+public record ServedRecommendations(List<RecommendationResponse> recommendations, RecommendationSource source) {
+}
@@ -0,0 +1,102 @@
+package com.example.reco.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A/B split of the users between algo_versions ("arms"), for requests that do
+ * not ask for an algo.
+ *
+ * A user's bucket is a hash of its id and of the experiment salt, so the same
+ * user always lands in the same arm (across requests, instances and restarts)
+ * until the arms or the salt change. Without arms, nothing is allocated and
+ * readers see every active run as before.
+ */
+@Component
+public class TrafficAllocator {
+
+    private final String[] algos;
+    // cumulative weights: arm k owns the buckets [bounds[k - 1], bounds[k])
+    private final long[] bounds;
+    private final long salt;
+    private final Map<String, Integer> weights;
+
+    /**
+     * @param arms comma separated algo_version:weight pairs, e.g.
+     *             "hybrid_usercf_pop:90,mf_als:10"; empty for no split
+     */
+    public TrafficAllocator(@Value("${app.reco.experiment.arms:}") String arms,
+                            @Value("${app.reco.experiment.salt:}") String salt) {
+        List<String> names = new ArrayList<>();
+        List<Long> cumulative = new ArrayList<>();
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        long total = 0;
+        for (String arm : arms.split(",")) {
+            if (arm.isBlank()) {
+                continue;
+            }
+            int colon = arm.lastIndexOf(':');
+            String name = (colon < 0 ? arm : arm.substring(0, colon)).trim();
+            int weight;
+            try {
+                weight = colon < 0 ? 1 : Integer.parseInt(arm.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in experiment arm '" + arm + "'", e);
+            }
+            if (name.isEmpty() || weight < 0 || byName.putIfAbsent(name, weight) != null) {
+                throw new IllegalArgumentException("Invalid experiment arm '" + arm + "'");
+            }
+            if (weight > 0) {
+                total += weight;
+                names.add(name);
+                cumulative.add(total);
+            }
+        }
+        this.algos = names.toArray(String[]::new);
+        this.bounds = cumulative.stream().mapToLong(Long::longValue).toArray();
+        // String.hashCode is specified, so buckets do not move between JVMs
+        this.salt = salt.hashCode();
+        this.weights = Collections.unmodifiableMap(byName);
+    }
+
+    public boolean isEnabled() {
+        return algos.length > 0;
+    }
+
+    /**
+     * The algo_version serving the user, null when no arms are configured.
+     */
+    public String armOf(long userId) {
+        if (algos.length == 0) {
+            return null;
+        }
+        long bucket = Long.remainderUnsigned(mix(userId ^ (salt << 32)), bounds[bounds.length - 1]);
+        for (int k = 0; k < bounds.length; k++) {
+            if (bucket < bounds[k]) {
+                return algos[k];
+            }
+        }
+        throw new IllegalStateException("bucket " + bucket + " outside of every arm");
+    }
+
+    // configured arms and their weights, in configuration order
+    public Map<String, Integer> weights() {
+        return weights;
+    }
+
+    // finalizer of MurmurHash3: consecutive ids end up in unrelated buckets
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -8,7 +8,7 @@ import java.util.List;
 public interface UserService {
     UserResponse getUserById(Long id);
 
-    List<UserResponse> getAllUsers(int limit);
+    List<UserResponse> getAllUsers(int limit, Long after);
 
     UserResponse createUser(CreateUserRequest request);
 }
@@ -1,12 +1,14 @@
 package com.example.reco.services;
 
+import com.example.reco.common.Transactions;
 import com.example.reco.common.exceptions.ConflictException;
 import com.example.reco.common.exceptions.NotFoundException;
 import com.example.reco.controllers.dto.CreateUserRequest;
 import com.example.reco.controllers.dto.UserResponse;
+import com.example.reco.engine.IdRegistry;
 import com.example.reco.model.User;
 import com.example.reco.repositories.UserRepository;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,29 +22,26 @@ public class UserServiceImpl implements UserService {
     private static final int MAX_LIMIT = 50;
 
     private UserRepository userRepository;
+    private IdRegistry idRegistry;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, IdRegistry idRegistry) {
         this.userRepository = userRepository;
+        this.idRegistry = idRegistry;
     }
 
     @Override
     @Transactional(readOnly = true)
     public UserResponse getUserById(Long id) {
-        User user = userRepository.findById(id).orElseThrow(() -> new NotFoundException("User with id " + id + " not found"));
-        return toResponse(user);
+        return userRepository.findResponseById(id)
+                       .orElseThrow(() -> new NotFoundException("User with id " + id + " not found"));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<UserResponse> getAllUsers(int limit) {
+    public List<UserResponse> getAllUsers(int limit, Long after) {
         int myLimit = (limit <= 0) ? DEFAULT_LIMIT : limit;
         myLimit = Math.min(myLimit, MAX_LIMIT);
-        List<UserResponse> userList = userRepository
-                                              .findAll(PageRequest.of(0, myLimit))
-                                              .stream()
-                                              .map(this::toResponse)
-                                              .toList();
-        return userList;
+        return userRepository.findResponsesAfter(after != null ? after : 0L, Limit.of(myLimit));
     }
 
     @Override
@@ -55,6 +54,11 @@ public class UserServiceImpl implements UserService {
         user.setEmail(email);
         // TO DO : add a password that we directly hash
         User saved = userRepository.save(user);
+        Long id = saved.getId();
+        if (id != null) {
+            // reserve the dense engine index so the next model load does not have to grow, once the user surely exists
+            Transactions.afterCommit(() -> idRegistry.registerUser(id));
+        }
         return toResponse(saved);
     }
 
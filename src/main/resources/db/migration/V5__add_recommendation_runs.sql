@@ -0,0 +1,29 @@
+-- every recommendation row belongs to a run; readers only see the active run of each algo_version,
+-- so a new run can be written next to the current one and swapped in with a single UPDATE
+CREATE TABLE recommendation_runs (
+	run_id UUID PRIMARY KEY,
+	algo_version VARCHAR(255) NOT NULL,
+	active BOOLEAN NOT NULL DEFAULT FALSE,
+	row_count BIGINT NULL,
+	started_at TIMESTAMP NOT NULL DEFAULT NOW(),
+	activated_at TIMESTAMP NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_reco_runs_active ON recommendation_runs(algo_version) WHERE active;
+
+-- existing rows become the active run of their algo_version
+INSERT INTO recommendation_runs (run_id, algo_version, active, row_count, activated_at)
+SELECT gen_random_uuid(), algo_version, TRUE, COUNT(*), NOW()
+FROM recommendations
+GROUP BY algo_version;
+
+UPDATE recommendations r
+SET run_id = runs.run_id
+FROM recommendation_runs runs
+WHERE r.run_id IS NULL AND runs.algo_version = r.algo_version;
+
+ALTER TABLE recommendations DROP CONSTRAINT uniq_reco_user_item;
+ALTER TABLE recommendations ADD CONSTRAINT uniq_reco_run_user_item UNIQUE (run_id, user_id, item_id);
+
+DROP INDEX IF EXISTS idx_fk_reco_user_rank;
+CREATE INDEX IF NOT EXISTS idx_reco_run_user_rank ON recommendations(run_id, user_id, rank);
@@ -0,0 +1,8 @@
+-- Keyset pagination of the ratings of a user / an item: (x_id, id) serves
+-- "WHERE x_id = ? AND id > ? ORDER BY id LIMIT n" as a single range scan.
+-- They replace the single-column foreign key indexes, which they cover.
+CREATE INDEX idx_ratings_user_id ON ratings (user_id, id);
+CREATE INDEX idx_ratings_item_id ON ratings (item_id, id);
+
+DROP INDEX IF EXISTS idx_fk_ratings_user;
+DROP INDEX IF EXISTS idx_fk_ratings_items;
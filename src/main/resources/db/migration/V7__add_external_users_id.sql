@@ -0,0 +1,10 @@
+-- dataset users keep their source id, like items.external_id (V4), so that an
+-- import maps them back without parsing emails
+ALTER TABLE users ADD COLUMN external_id BIGINT;
+
+-- users of earlier imports were created as user<id>@example.com
+UPDATE users
+SET external_id = substring(email FROM '^user([0-9]+)@example\.com$')::BIGINT
+WHERE email ~ '^user[0-9]+@example\.com$';
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_users_external_id ON users(external_id);
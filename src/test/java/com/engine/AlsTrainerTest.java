@@ -0,0 +1,157 @@
+package com.engine;
+
+import com.example.reco.engine.AlsTrainer;
+import com.example.reco.engine.FactorModel;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.engine.MfConfig;
+import com.example.reco.engine.RatingMatrix;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import com.example.reco.engine.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlsTrainerTest {
+
+    private static final int USERS = 200;
+    private static final int ITEMS = 100;
+
+    // ratings of a rank-3 taste model, rounded to half-stars, half of them observed
+    private RatingsSnapshot buildSnapshot() {
+        Random random = new Random(7);
+        double[][] users = new double[USERS][3];
+        double[][] items = new double[ITEMS][3];
+        for (double[] row : users) {
+            for (int k = 0; k < 3; k++) {
+                row[k] = random.nextGaussian();
+            }
+        }
+        for (double[] row : items) {
+            for (int k = 0; k < 3; k++) {
+                row[k] = random.nextGaussian();
+            }
+        }
+        long[] userIds = new long[USERS];
+        long[] itemIds = new long[ITEMS];
+        for (int u = 0; u < USERS; u++) {
+            userIds[u] = 1000 + u;
+        }
+        for (int i = 0; i < ITEMS; i++) {
+            itemIds[i] = 5000 + i;
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(userIds, itemIds);
+        for (int u = 0; u < USERS; u++) {
+            for (int i = 0; i < ITEMS; i++) {
+                if (random.nextBoolean()) {
+                    double dot = users[u][0] * items[i][0] + users[u][1] * items[i][1] + users[u][2] * items[i][2];
+                    double rating = Math.max(0.5, Math.min(5.0, Math.round((3.0 + 0.6 * dot) * 2) / 2.0));
+                    builder.addRating(userIds[u], itemIds[i], rating);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static MfConfig config(int factors, int iterations) {
+        MfConfig config = new MfConfig();
+        config.setFactors(factors);
+        config.setIterations(iterations);
+        return config;
+    }
+
+    private static double rmse(RatingMatrix m, FactorModel factors, HybridModel biases) {
+        double sum = 0.0;
+        for (int u = 0; u < m.numUsers(); u++) {
+            for (int p = m.userStart(u); p < m.userEnd(u); p++) {
+                double predicted = factors != null
+                        ? factors.predict(biases, u, m.rowItem(p))
+                        : biases.baseline(u, m.rowItem(p));
+                sum += (m.rowRating(p) - predicted) * (m.rowRating(p) - predicted);
+            }
+        }
+        return Math.sqrt(sum / m.nnz());
+    }
+
+    @Test
+    void shouldFitTheResidualsOfTheBaseline() {
+        RatingsSnapshot data = buildSnapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+
+        FactorModel factors = new AlsTrainer(config(8, 10), 4).train(data.getMatrix(), biases, JobProgress.NONE);
+
+        assertEquals(8, factors.rank());
+        assertEquals(ITEMS, factors.candidateCount());
+        double baseline = rmse(data.getMatrix(), null, biases);
+        double trained = rmse(data.getMatrix(), factors, biases);
+        assertTrue(trained < 0.5 * baseline, "train RMSE " + trained + " vs baseline " + baseline);
+    }
+
+    @Test
+    void shouldTrainTheSameFactorsWhateverTheParallelism() {
+        RatingsSnapshot data = buildSnapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+
+        FactorModel sequential = new AlsTrainer(config(4, 3), 1).train(data.getMatrix(), biases, JobProgress.NONE);
+        FactorModel parallel = new AlsTrainer(config(4, 3), 8).train(data.getMatrix(), biases, JobProgress.NONE);
+
+        for (int u = 0; u < USERS; u++) {
+            for (int i = 0; i < ITEMS; i++) {
+                assertEquals(sequential.predict(biases, u, i), parallel.predict(biases, u, i));
+            }
+        }
+    }
+
+    @Test
+    void shouldRecommendUnratedItemsBestFirstAndFoldInUsersLikeTraining() {
+        RatingsSnapshot data = buildSnapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+        AlsTrainer trainer = new AlsTrainer(config(8, 20), 2);
+        FactorModel factors = trainer.train(data.getMatrix(), biases, JobProgress.NONE);
+        int u = data.userIndex(1000);
+        UserProfile profile = UserProfile.ofRow(data.getMatrix(), u);
+
+        List<ScoredItem> recs = factors.recommendForUserIndex(biases, data, u, 10);
+        float[] folded = trainer.foldIn(factors, biases, u, profile);
+        List<ScoredItem> foldedRecs = factors.recommend(biases, data, u, folded, 0, profile, 10);
+
+        assertEquals(10, recs.size());
+        for (int k = 0; k < recs.size(); k++) {
+            assertTrue(Double.isNaN(data.getMatrix().rating(u, data.itemIndex(recs.get(k).getItemId()))));
+            if (k > 0) {
+                assertTrue(recs.get(k - 1).getScore() >= recs.get(k).getScore());
+            }
+            // the last user half-step saw almost the same item factors
+            assertEquals(recs.get(k).getScore(), foldedRecs.get(k).getScore(), 0.05);
+        }
+    }
+
+    @Test
+    void shouldPredictTheSameAfterAWriteAndReadBack() throws IOException {
+        RatingsSnapshot data = buildSnapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+        FactorModel factors = new AlsTrainer(config(4, 2), 2).train(data.getMatrix(), biases, JobProgress.NONE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        factors.writeTo(out, data);
+        FactorModel read = FactorModel.readFrom(new ByteArrayInputStream(out.toByteArray()), data);
+
+        // header, then 8 bytes of id and 4 per factor for every user and item
+        assertEquals(20 + (USERS + ITEMS) * (8 + 4 * 4), out.size());
+        for (int u = 0; u < USERS; u += 7) {
+            for (int i = 0; i < ITEMS; i++) {
+                assertEquals(factors.predict(biases, u, i), read.predict(biases, u, i));
+            }
+        }
+    }
+}
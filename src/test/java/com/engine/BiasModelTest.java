@@ -0,0 +1,105 @@
+package com.engine;
+
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.RatingsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BiasModelTest {
+
+    private final HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+
+    private RatingsSnapshot snapshot(IdRegistry registry, double[][] ratings) {
+        for (double[] r : ratings) {
+            registry.registerUser((long) r[0]);
+            registry.registerItem((long) r[1]);
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(registry.users(), registry.items(), ratings.length);
+        for (int u = 0; u < registry.users().size(); u++) {
+            builder.markActive(u);
+        }
+        for (double[] r : ratings) {
+            builder.addRating((long) r[0], (long) r[1], r[2]);
+        }
+        return builder.build();
+    }
+
+    private void assertSameBiases(HybridModel expected, BiasModel actual, RatingsSnapshot data) {
+        assertEquals(expected.getMu(), actual.getMu(), 1e-12);
+        for (int i = 0; i < data.numItems(); i++) {
+            assertEquals(expected.itemBias(i), actual.itemBias(i), 1e-12);
+        }
+        for (int u = 0; u < data.numUsers(); u++) {
+            assertEquals(expected.userBias(u), actual.userBias(u), 1e-12);
+        }
+    }
+
+    @Test
+    void shouldMatchFittedBiasesAfterRebuild() {
+        IdRegistry registry = new IdRegistry();
+        BiasModel biases = new BiasModel(registry, new HybridConfig());
+        RatingsSnapshot data = snapshot(registry, new double[][]{
+                {1, 10, 5.0}, {1, 20, 1.0}, {2, 10, 4.5}, {2, 30, 3.0}, {3, 20, 2.0}});
+        HybridModel model = recommender.fit(data);
+
+        assertFalse(biases.isReady());
+        biases.rebuild(model);
+
+        assertTrue(biases.isReady());
+        assertSameBiases(model, biases, data);
+    }
+
+    @Test
+    void shouldKeepGlobalMeanAndItemBiasesExactUnderUpdates() {
+        IdRegistry registry = new IdRegistry();
+        BiasModel biases = new BiasModel(registry, new HybridConfig());
+        biases.rebuild(recommender.fit(snapshot(registry, new double[][]{
+                {1, 10, 5.0}, {1, 20, 1.0}, {2, 10, 4.5}})));
+
+        biases.recordRating(2, 20, null, 2.0);
+        biases.recordRating(1, 20, 1.0, 3.5);
+        // new user and new item created after the load
+        biases.recordRating(4, 40, null, 4.0);
+
+        IdRegistry fresh = new IdRegistry();
+        RatingsSnapshot data = snapshot(fresh, new double[][]{
+                {1, 10, 5.0}, {1, 20, 3.5}, {2, 10, 4.5}, {2, 20, 2.0}, {4, 40, 4.0}});
+        HybridModel refit = recommender.fit(data);
+
+        assertEquals(refit.getMu(), biases.getMu(), 1e-12);
+        for (long itemId : new long[]{10, 20, 40}) {
+            assertEquals(refit.itemBias(data.itemIndex(itemId)),
+                    biases.itemBias(registry.items().indexOf(itemId)), 1e-12);
+        }
+        // user terms drift, but stay close to the exact value
+        for (long userId : new long[]{1, 2, 4}) {
+            assertEquals(refit.userBias(data.userIndex(userId)),
+                    biases.userBias(registry.users().indexOf(userId)), 0.05);
+        }
+    }
+
+    @Test
+    void shouldReplayWritesMadeDuringRebuildWithoutDoubleCounting() {
+        IdRegistry registry = new IdRegistry();
+        BiasModel biases = new BiasModel(registry, new HybridConfig());
+        biases.beginRebuild();
+        // committed while the table was scanned: the snapshot already holds (1, 20)
+        biases.recordRating(1, 20, null, 1.0);
+        biases.recordRating(2, 20, null, 3.0);
+        RatingsSnapshot scanned = snapshot(registry, new double[][]{{1, 10, 5.0}, {1, 20, 1.0}, {2, 10, 4.0}});
+        biases.rebuild(recommender.fit(scanned));
+
+        RatingsSnapshot expected = snapshot(new IdRegistry(), new double[][]{
+                {1, 10, 5.0}, {1, 20, 1.0}, {2, 10, 4.0}, {2, 20, 3.0}});
+        HybridModel refit = recommender.fit(expected);
+        assertEquals(refit.getMu(), biases.getMu(), 1e-12);
+        assertEquals(refit.itemBias(expected.itemIndex(20)), biases.itemBias(registry.items().indexOf(20)), 1e-12);
+    }
+}
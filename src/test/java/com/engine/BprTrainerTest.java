@@ -0,0 +1,112 @@
+package com.engine;
+
+import com.example.reco.engine.BprConfig;
+import com.example.reco.engine.BprModel;
+import com.example.reco.engine.BprTrainer;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BprTrainerTest {
+
+    // two taste groups: users 1..100 rate items 1..50, users 101..200 rate items 51..100, about half of them
+    private RatingsSnapshot buildSnapshot() {
+        Random random = new Random(11);
+        long[] userIds = new long[200];
+        long[] itemIds = new long[100];
+        for (int k = 0; k < userIds.length; k++) {
+            userIds[k] = k + 1;
+        }
+        for (int k = 0; k < itemIds.length; k++) {
+            itemIds[k] = k + 1;
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(userIds, itemIds);
+        for (long userId = 1; userId <= 200; userId++) {
+            long first = userId <= 100 ? 1 : 51;
+            for (long itemId = first; itemId < first + 50; itemId++) {
+                if (random.nextBoolean()) {
+                    builder.addRating(userId, itemId, 0.5 * (1 + random.nextInt(10)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static BprConfig config(int epochs) {
+        BprConfig config = new BprConfig();
+        config.setFactors(8);
+        config.setEpochs(epochs);
+        return config;
+    }
+
+    @Test
+    void shouldRankUnratedItemsOfTheUsersGroupAboveTheOthers() {
+        RatingsSnapshot data = buildSnapshot();
+        AtomicLong epochs = new AtomicLong();
+        JobProgress progress = new JobProgress() {
+            @Override
+            public void advance(long done) {
+                epochs.addAndGet(done);
+            }
+        };
+
+        BprModel model = new BprTrainer(config(30), 4).train(data.getMatrix(), progress);
+
+        assertEquals(30, epochs.get());
+        // AUC of (unrated item of the group, item of the other group) pairs
+        long pairs = 0;
+        long ordered = 0;
+        for (long userId = 1; userId <= 200; userId++) {
+            int u = data.userIndex(userId);
+            long first = userId <= 100 ? 1 : 51;
+            long other = userId <= 100 ? 51 : 1;
+            for (long in = first; in < first + 50; in++) {
+                if (!Double.isNaN(data.getMatrix().rating(u, data.itemIndex(in)))) {
+                    continue;
+                }
+                for (long out = other; out < other + 50; out++) {
+                    pairs++;
+                    if (model.score(u, data.itemIndex(in)) > model.score(u, data.itemIndex(out))) {
+                        ordered++;
+                    }
+                }
+            }
+        }
+        assertTrue(ordered > 0.9 * pairs, "AUC " + (double) ordered / pairs);
+
+        List<ScoredItem> recs = model.recommendForUserIndex(data, data.userIndex(1), 10);
+        assertEquals(10, recs.size());
+        for (ScoredItem rec : recs) {
+            assertTrue(rec.getItemId() <= 50);
+            assertTrue(Double.isNaN(data.getMatrix().rating(data.userIndex(1), data.itemIndex(rec.getItemId()))));
+        }
+    }
+
+    @Test
+    void shouldStayFiniteWhenManyThreadsUpdateTheSameRows() {
+        // 2 users and 3 items: every worker writes the same rows all the time
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(new long[]{1, 2}, new long[]{10, 20, 30});
+        builder.addRating(1, 10, 5.0);
+        builder.addRating(2, 20, 4.0);
+        RatingsSnapshot data = builder.build();
+        BprConfig config = config(50);
+        config.setSamplesPerEpoch(20_000);
+
+        BprModel model = new BprTrainer(config, 8).train(data.getMatrix(), JobProgress.NONE);
+
+        for (int u = 0; u < 2; u++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(Double.isFinite(model.score(u, i)));
+            }
+        }
+        assertTrue(model.score(data.userIndex(1), data.itemIndex(10)) > model.score(data.userIndex(1), data.itemIndex(20)));
+    }
+}
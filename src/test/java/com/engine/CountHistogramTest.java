@@ -0,0 +1,50 @@
+package com.engine;
+
+import com.example.reco.engine.CountHistogram;
+import com.example.reco.engine.HybridRecommender;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountHistogramTest {
+
+    @Test
+    void shouldMatchExactQuantilesForSmallCounts() {
+        long[] counts = {1, 2, 3, 4, 10};
+        CountHistogram histogram = new CountHistogram();
+        for (long c : counts) {
+            histogram.add(c);
+        }
+
+        assertEquals((long) HybridRecommender.chooseM(counts, 0.80), histogram.quantile(0.80));
+        assertEquals(3.0, histogram.median());
+
+        histogram.move(10, 11);
+        histogram.remove(1);
+        assertEquals(4, histogram.size());
+        assertEquals(3.5, histogram.median());
+        assertThrowsExactly(IllegalStateException.class, () -> histogram.remove(1));
+    }
+
+    @Test
+    void shouldBoundRelativeErrorForLargeCounts() {
+        Random random = new Random(42);
+        long[] counts = new long[20_000];
+        CountHistogram histogram = new CountHistogram();
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] = 1 + (long) Math.exp(random.nextDouble() * 11);
+            histogram.add(counts[k]);
+        }
+
+        for (double q : new double[]{0.5, 0.8, 0.99}) {
+            double exact = HybridRecommender.chooseM(counts, q);
+            long estimate = histogram.quantile(q);
+            assertTrue(estimate <= exact && exact - estimate <= exact / 64.0,
+                    "q=" + q + " exact=" + exact + " estimate=" + estimate);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.engine;
+
+import com.example.reco.engine.HnswConfig;
+import com.example.reco.engine.HnswIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int SIZE = 3000;
+    private static final int DIM = 16;
+
+    @TempDir
+    Path tmp;
+
+    private static float[] randomVectors(Random random, int count) {
+        float[] vectors = new float[count * DIM];
+        for (int k = 0; k < vectors.length; k++) {
+            vectors[k] = (float) random.nextGaussian();
+        }
+        return vectors;
+    }
+
+    private static HnswIndex build(float[] vectors, int parallelism) {
+        long[] labels = new long[SIZE];
+        for (int node = 0; node < SIZE; node++) {
+            labels[node] = 1000 + node;
+        }
+        HnswConfig config = new HnswConfig();
+        config.setEfConstruction(100);
+        return HnswIndex.build(vectors, DIM, labels, config, parallelism);
+    }
+
+    // the k nearest nodes by scanning every vector
+    private static int[] exact(HnswIndex index, float[] query, int k) {
+        Integer[] nodes = new Integer[index.size()];
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = node;
+        }
+        Arrays.sort(nodes, (a, b) -> Float.compare(index.distance(query, a), index.distance(query, b)));
+        return Arrays.stream(nodes, 0, k).mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void shouldFindMostOfTheExactNearestNeighborsWhenBuiltInParallel() {
+        Random random = new Random(5);
+        HnswIndex index = build(randomVectors(random, SIZE), 4);
+        float[] queries = randomVectors(random, 100);
+        HnswIndex.Searcher searcher = index.newSearcher();
+
+        long found = 0;
+        int[] nodes = new int[10];
+        float[] distances = new float[10];
+        for (int q = 0; q < 100; q++) {
+            float[] query = Arrays.copyOfRange(queries, q * DIM, (q + 1) * DIM);
+            assertEquals(10, index.search(searcher, query, 10, 64, nodes, distances));
+            for (int k = 1; k < 10; k++) {
+                assertTrue(distances[k - 1] <= distances[k]);
+            }
+            int[] expected = exact(index, query, 10);
+            found += Arrays.stream(expected).filter(e -> Arrays.stream(nodes).anyMatch(n -> n == e)).count();
+        }
+        assertTrue(found >= 0.9 * 100 * 10, "recall@10 " + found / 1000.0);
+        assertEquals(1000 + 42, index.label(42));
+    }
+
+    @Test
+    void shouldAnswerTheSameOnceWrittenAndMapped() throws IOException {
+        Random random = new Random(9);
+        HnswIndex index = build(randomVectors(random, SIZE), 2);
+        Path file = tmp.resolve("index.hnsw");
+
+        index.writeTo(file);
+        HnswIndex mapped = HnswIndex.open(file);
+
+        assertEquals(index.size(), mapped.size());
+        assertEquals(index.dim(), mapped.dim());
+        HnswIndex.Searcher searcher = index.newSearcher();
+        HnswIndex.Searcher mappedSearcher = mapped.newSearcher();
+        int[] nodes = new int[20];
+        int[] mappedNodes = new int[20];
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVectors(random, 1);
+            index.search(searcher, query, 20, 50, nodes, null);
+            mapped.search(mappedSearcher, query, 20, 50, mappedNodes, null);
+            assertArrayEquals(nodes, mappedNodes);
+            assertEquals(index.label(nodes[0]), mapped.label(mappedNodes[0]));
+        }
+    }
+
+    @Test
+    void shouldRejectAFileThatIsNotAnIndex() throws IOException {
+        Path file = tmp.resolve("garbage.hnsw");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> HnswIndex.open(file));
+    }
+}
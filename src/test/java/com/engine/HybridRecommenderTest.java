@@ -0,0 +1,159 @@
+package com.engine;
+
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.RatingMatrix;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import com.example.reco.engine.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HybridRecommenderTest {
+
+    // same fixture as reco-ml/tests/unit/test_recommend_for_user.py
+    private RatingsSnapshot buildSnapshot(long... userIds) {
+        RatingsSnapshot.Builder data = RatingsSnapshot.builder(userIds, new long[]{10, 20, 30, 40});
+        data.addRating(1, 10, 5.0);
+        data.addRating(1, 20, 1.0);
+        data.addRating(2, 10, 5.0);
+        data.addRating(2, 20, 1.0);
+        data.addRating(2, 30, 4.0);
+        data.addRating(3, 10, 5.0);
+        data.addRating(3, 20, 0.5);
+        data.addRating(3, 30, 2.0);
+        return data.build();
+    }
+
+    @Test
+    void shouldChooseMFromQuantile() {
+        // quantile 0.80 => ceil(0.8*5)-1 = 3 => 4
+        assertEquals(4.0, HybridRecommender.chooseM(new long[]{1, 2, 3, 4, 10}, 0.80));
+        assertThrowsExactly(IllegalArgumentException.class, () -> HybridRecommender.chooseM(new long[0], 0.80));
+        assertThrowsExactly(IllegalArgumentException.class, () -> HybridRecommender.chooseM(new long[]{1, 2}, 1.0));
+    }
+
+    @Test
+    void shouldComputeProfileMaturityThresholdAsMedian() {
+        assertEquals(2, HybridRecommender.computeProfileMaturityThreshold(new int[]{3, 1, 2}));
+        assertEquals(2, HybridRecommender.computeProfileMaturityThreshold(new int[]{1, 2, 3, 4}));
+    }
+
+    @Test
+    void shouldBoundAndCapAlpha() {
+        assertEquals(0.0, HybridRecommender.computeAlpha(0, 10, 0.9));
+        assertEquals(0.5, HybridRecommender.computeAlpha(10, 10, 0.9));
+        assertEquals(0.9, HybridRecommender.computeAlpha(10_000, 1, 0.9));
+    }
+
+    @Test
+    void shouldComputeCosineOnCommonItemsOnly() {
+        RatingMatrix m = RatingMatrix.builder(4, 3)
+                                 .add(0, 0, RatingMatrix.toHalfStars(1.0))
+                                 .add(0, 1, RatingMatrix.toHalfStars(2.0))
+                                 .add(1, 0, RatingMatrix.toHalfStars(2.0))
+                                 .add(1, 1, RatingMatrix.toHalfStars(4.0))
+                                 .add(1, 2, RatingMatrix.toHalfStars(5.0))
+                                 .add(2, 2, RatingMatrix.toHalfStars(3.0))
+                                 .build();
+
+        assertEquals(1.0, HybridRecommender.cosineSimilarity(m, 0, 1), 1e-12); // v = k*u on shared items
+        assertEquals(0.0, HybridRecommender.cosineSimilarity(m, 0, 2));        // no common item
+        assertEquals(0.0, HybridRecommender.cosineSimilarity(m, 0, 3));        // empty profile
+    }
+
+    @Test
+    void shouldFitBiasesLikeThePythonJob() {
+        RatingsSnapshot data = buildSnapshot(1, 2, 3);
+        HybridModel model = new HybridRecommender(new HybridConfig()).fit(data);
+
+        double mu = (5.0 + 1.0 + 5.0 + 1.0 + 4.0 + 5.0 + 0.5 + 2.0) / 8;
+        assertEquals(mu, model.getMu(), 1e-12);
+        assertEquals(3 * (5.0 - mu) / (10.0 + 3), model.itemBias(data.itemIndex(10)), 1e-12);
+        assertEquals(0.0, model.popScore(data.itemIndex(40))); // never rated
+        assertEquals(3, model.getProfileThreshold()); // median of [2, 3, 3]
+    }
+
+    @Test
+    void shouldExcludeSeenItemsAndSortRecommendations() {
+        HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+        HybridModel model = recommender.fit(buildSnapshot(1, 2, 3));
+
+        List<ScoredItem> recs = recommender.recommendForUser(model, 1L, 2);
+
+        assertEquals(1, recs.size()); // only item 30 is unseen and rated
+        assertEquals(30L, recs.get(0).getItemId());
+        assertFalse(recs.stream().anyMatch(r -> r.getItemId() == 10L || r.getItemId() == 20L));
+    }
+
+    @Test
+    void shouldFallBackToPopularityForUsersWithoutRatings() {
+        RatingsSnapshot data = buildSnapshot(1, 2, 3, 4);
+        HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+        HybridModel model = recommender.fit(data);
+
+        List<ScoredItem> recs = recommender.recommendForUser(model, 4L, 10);
+
+        assertEquals(3, recs.size());
+        for (int i = 0; i < recs.size(); i++) {
+            if (i > 0) {
+                assertTrue(recs.get(i - 1).getScore() >= recs.get(i).getScore());
+            }
+            assertEquals(model.popScore(data.itemIndex(recs.get(i).getItemId())), recs.get(i).getScore(), 1e-12);
+        }
+    }
+
+    @Test
+    void shouldScoreFreshProfileAgainstExistingModel() {
+        RatingsSnapshot data = buildSnapshot(1, 2, 3, 4);
+        HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+        HybridModel model = recommender.fit(data);
+        RatingMatrix m = data.getMatrix();
+        int u1 = data.userIndex(1);
+
+        // the snapshot row of user 1 scored as a profile gives the batch result
+        List<ScoredItem> batch = recommender.recommendForUserIndex(model, u1, 10);
+        List<ScoredItem> fresh = recommender.recommendForProfile(model, u1, UserProfile.ofRow(m, u1), 10);
+        assertEquals(batch.size(), fresh.size());
+        for (int k = 0; k < batch.size(); k++) {
+            assertEquals(batch.get(k).getItemId(), fresh.get(k).getItemId());
+            assertEquals(batch.get(k).getScore(), fresh.get(k).getScore(), 1e-12);
+        }
+
+        // user 4 rated item 10 after the model was fitted: it is excluded without a refit
+        UserProfile profile = UserProfile.of(new int[]{data.itemIndex(10)}, new byte[]{RatingMatrix.toHalfStars(5.0)});
+        List<ScoredItem> recs = recommender.recommendForProfile(model, data.userIndex(4), profile, 10);
+        assertEquals(2, recs.size());
+        assertFalse(recs.stream().anyMatch(r -> r.getItemId() == 10L));
+    }
+
+    @Test
+    void shouldScoreAlikeFromAnyThreadSharingTheWorkspaces() throws Exception {
+        HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+        HybridModel model = recommender.fit(buildSnapshot(1, 2, 3, 4));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            // a fork-join pool that is not a batch pool borrows the same workspaces as this thread
+            for (long userId = 1; userId <= 4; userId++) {
+                long id = userId;
+                List<ScoredItem> shared = recommender.recommendForUser(model, id, 10);
+                List<ScoredItem> pooled = pool.submit(() -> recommender.recommendForUser(model, id, 10)).get();
+                assertEquals(pooled.size(), shared.size());
+                for (int k = 0; k < shared.size(); k++) {
+                    assertEquals(pooled.get(k).getItemId(), shared.get(k).getItemId());
+                    assertEquals(pooled.get(k).getScore(), shared.get(k).getScore(), 1e-12);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.engine;
+
+import com.example.reco.engine.IdDictionary;
+import com.example.reco.engine.RatingsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdDictionaryTest {
+
+    @Test
+    void shouldAssignDenseIndicesInInsertionOrder() {
+        IdDictionary dictionary = new IdDictionary();
+
+        assertEquals(0, dictionary.getOrAdd(1_000_000_007L));
+        assertEquals(1, dictionary.getOrAdd(3));
+        assertEquals(0, dictionary.getOrAdd(1_000_000_007L));
+
+        assertEquals(2, dictionary.size());
+        assertEquals(1, dictionary.indexOf(3));
+        assertEquals(-1, dictionary.indexOf(4));
+        assertEquals(3, dictionary.idAt(1));
+        assertTrue(dictionary.contains(1_000_000_007L));
+        assertFalse(dictionary.contains(0));
+        assertThrowsExactly(IndexOutOfBoundsException.class, () -> dictionary.idAt(2));
+    }
+
+    @Test
+    void shouldKeepIndicesStableWhenGrowing() {
+        IdDictionary dictionary = new IdDictionary(4);
+        long[] ids = new long[10_000];
+        for (int k = 0; k < ids.length; k++) {
+            // gaps like a BIGSERIAL column after deletes
+            ids[k] = 7L * k + 3;
+            assertEquals(k, dictionary.getOrAdd(ids[k]));
+        }
+
+        assertEquals(ids.length, dictionary.size());
+        for (int k = 0; k < ids.length; k++) {
+            assertEquals(k, dictionary.indexOf(ids[k]));
+            assertEquals(-1, dictionary.indexOf(ids[k] + 1));
+        }
+        assertArrayEquals(ids, dictionary.toArray());
+    }
+
+    @Test
+    void shouldIgnoreIdsAddedAfterSnapshotWasBuilt() {
+        IdDictionary users = new IdDictionary();
+        IdDictionary items = new IdDictionary();
+        users.getOrAdd(1);
+        items.getOrAdd(10);
+
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(users, items, 4);
+        builder.markActive(0);
+        users.getOrAdd(2);
+        assertTrue(builder.addRating(1, 10, 4.0));
+        assertFalse(builder.addRating(2, 10, 4.0));
+        RatingsSnapshot snapshot = builder.build();
+
+        assertEquals(1, snapshot.numUsers());
+        assertEquals(-1, snapshot.userIndex(2));
+        assertEquals(1, snapshot.activeUserCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.engine;
+
+import com.example.reco.engine.AlsTrainer;
+import com.example.reco.engine.AnnBenchmark;
+import com.example.reco.engine.FactorModel;
+import com.example.reco.engine.HnswConfig;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.ItemEmbeddingIndex;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.engine.MfConfig;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemEmbeddingIndexTest {
+
+    @TempDir
+    Path tmp;
+
+    private final IdRegistry registry = new IdRegistry();
+
+    // 300 users rating about 20 of 1000 items each, with a taste for one of 10 item groups
+    private RatingsSnapshot snapshot() {
+        Random random = new Random(13);
+        for (long userId = 1; userId <= 300; userId++) {
+            registry.registerUser(userId);
+        }
+        for (long itemId = 1; itemId <= 1000; itemId++) {
+            registry.registerItem(itemId);
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(registry.users(), registry.items(), 6000);
+        for (long userId = 1; userId <= 300; userId++) {
+            builder.markActive(registry.users().indexOf(userId));
+            long group = userId % 10;
+            for (int k = 0; k < 20; k++) {
+                long itemId = 1 + random.nextInt(1000);
+                builder.addRating(userId, itemId, itemId % 10 == group ? 4.5 : 0.5 * (1 + random.nextInt(6)));
+            }
+        }
+        return builder.build();
+    }
+
+    private static List<Long> ids(List<ScoredItem> items) {
+        return items.stream().map(ScoredItem::getItemId).toList();
+    }
+
+    private HnswConfig config(String path) {
+        HnswConfig config = new HnswConfig();
+        config.setEnabled(true);
+        config.setPath(path);
+        return config;
+    }
+
+    @Test
+    void shouldRecommendAndFindSimilarItemsLikeTheExactScan() {
+        RatingsSnapshot data = snapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+        MfConfig mfConfig = new MfConfig();
+        mfConfig.setFactors(8);
+        FactorModel factors = new AlsTrainer(mfConfig, 2).train(data.getMatrix(), biases, JobProgress.NONE);
+        ItemEmbeddingIndex index = new ItemEmbeddingIndex(registry, config(""), 2);
+
+        assertFalse(index.isAvailable());
+        index.rebuild(factors, biases, data);
+        AnnBenchmark.Report report = AnnBenchmark.run(index, factors, biases, data, 100, 10, 1);
+
+        assertTrue(index.isAvailable());
+        assertTrue(report.recall() > 0.9, report.toString());
+        assertTrue(report.similarRecall() > 0.9, report.toString());
+        List<ScoredItem> similar = index.similarTo(1, 10);
+        assertEquals(10, similar.size());
+        for (int k = 0; k < similar.size(); k++) {
+            assertTrue(similar.get(k).getItemId() != 1);
+            assertTrue(similar.get(k).getScore() <= 1.0 + 1e-6);
+            if (k > 0) {
+                assertTrue(similar.get(k - 1).getScore() >= similar.get(k).getScore());
+            }
+        }
+    }
+
+    @Test
+    void shouldServeTheIndexesWrittenByTheLastBuildAfterARestart() {
+        RatingsSnapshot data = snapshot();
+        HybridModel biases = new HybridRecommender(new HybridConfig()).fit(data);
+        MfConfig mfConfig = new MfConfig();
+        mfConfig.setFactors(8);
+        FactorModel factors = new AlsTrainer(mfConfig, 2).train(data.getMatrix(), biases, JobProgress.NONE);
+        String path = tmp.resolve("ann").toString();
+        ItemEmbeddingIndex built = new ItemEmbeddingIndex(registry, config(path), 2);
+        built.rebuild(factors, biases, data);
+
+        ItemEmbeddingIndex restarted = new ItemEmbeddingIndex(registry, config(path), 2);
+
+        assertTrue(Files.exists(tmp.resolve("ann").resolve("items-mips.hnsw")));
+        assertTrue(restarted.isAvailable());
+        int u = data.userIndex(7);
+        assertEquals(ids(built.recommendForUserIndex(factors, biases, data, u, 10)),
+                ids(restarted.recommendForUserIndex(factors, biases, data, u, 10)));
+        assertEquals(ids(built.similarTo(5, 10)), ids(restarted.similarTo(5, 10)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.engine;
+
+import com.example.reco.engine.IdDictionary;
+import com.example.reco.engine.ItemNeighbors;
+import com.example.reco.engine.RatingsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemNeighborsTest {
+
+    // users who like 10 also like 20 and dislike 30
+    private RatingsSnapshot buildSnapshot() {
+        RatingsSnapshot.Builder data = RatingsSnapshot.builder(new long[]{1, 2, 3}, new long[]{10, 20, 30});
+        data.addRating(1, 10, 5.0);
+        data.addRating(1, 20, 4.5);
+        data.addRating(1, 30, 1.0);
+        data.addRating(2, 10, 4.0);
+        data.addRating(2, 20, 5.0);
+        data.addRating(2, 30, 1.5);
+        data.addRating(3, 10, 1.0);
+        data.addRating(3, 20, 1.5);
+        data.addRating(3, 30, 4.0);
+        return data.build();
+    }
+
+    @Test
+    void shouldKeepOnlyPositivelyCorrelatedNeighborsBestFirst() {
+        RatingsSnapshot data = buildSnapshot();
+
+        ItemNeighbors index = ItemNeighbors.build(data.getMatrix(), 5, 100);
+
+        int i10 = data.itemIndex(10);
+        assertEquals(1, index.end(i10) - index.start(i10));
+        assertEquals(data.itemIndex(20), index.neighbor(index.start(i10)));
+        assertTrue(index.similarity(index.start(i10)) > 0.5f);
+        // adjusted cosine is symmetric when no rater is capped
+        int i20 = data.itemIndex(20);
+        assertEquals(index.similarity(index.start(i10)), index.similarity(index.start(i20)), 1e-6f);
+        assertEquals(0, index.end(data.itemIndex(30)) - index.start(data.itemIndex(30)));
+    }
+
+    @Test
+    void shouldTakeBothNormsOverTheSampledRatersOfACappedItem() {
+        // 20 is rated exactly like 10 by all six users, 30 is the opposite
+        double[] grades = {5.0, 1.0, 4.5, 2.0, 5.0, 1.5};
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(new long[]{1, 2, 3, 4, 5, 6}, new long[]{10, 20, 30});
+        for (int u = 0; u < grades.length; u++) {
+            builder.addRating(u + 1, 10, grades[u]);
+            builder.addRating(u + 1, 20, grades[u]);
+            builder.addRating(u + 1, 30, 6.0 - grades[u]);
+        }
+        RatingsSnapshot data = builder.build();
+
+        ItemNeighbors index = ItemNeighbors.build(data.getMatrix(), 5, 3);
+
+        // identical columns stay perfectly similar when only half of their raters are walked
+        int i10 = data.itemIndex(10);
+        assertEquals(1, index.end(i10) - index.start(i10));
+        assertEquals(data.itemIndex(20), index.neighbor(index.start(i10)));
+        assertEquals(1.0f, index.similarity(index.start(i10)), 1e-5f);
+    }
+
+    @Test
+    void shouldRemapIdsWhenReadBack() throws IOException {
+        RatingsSnapshot data = buildSnapshot();
+        ItemNeighbors index = ItemNeighbors.build(data.getMatrix(), 5, 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out, data.getItems());
+
+        // another process that registered the items in a different order
+        IdDictionary items = new IdDictionary();
+        items.getOrAdd(30);
+        items.getOrAdd(99);
+        ItemNeighbors read = ItemNeighbors.readFrom(new ByteArrayInputStream(out.toByteArray()), items);
+
+        int i10 = items.indexOf(10);
+        assertEquals(index.size(), read.size());
+        assertEquals(20L, items.idAt(read.neighbor(read.start(i10))));
+        assertEquals(index.similarity(index.start(data.itemIndex(10))), read.similarity(read.start(i10)));
+        assertEquals(0, read.end(items.indexOf(99)) - read.start(items.indexOf(99)));
+    }
+}
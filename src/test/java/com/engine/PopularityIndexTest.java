@@ -0,0 +1,80 @@
+package com.engine;
+
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.PopularityIndex;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.model.ItemType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PopularityIndexTest {
+
+    private final HybridConfig config = new HybridConfig();
+    private final IdRegistry registry = new IdRegistry();
+    private final BiasModel biasModel = new BiasModel(registry, config);
+    private final PopularityIndex index = new PopularityIndex(biasModel, registry, config);
+
+    private HybridModel load() {
+        registry.registerItem(10, ItemType.MOVIE);
+        registry.registerItem(20, ItemType.BOOK);
+        registry.registerItem(30, ItemType.MOVIE);
+        for (long userId = 1; userId <= 3; userId++) {
+            registry.registerUser(userId);
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(registry.users(), registry.items(), 8);
+        builder.addRating(1, 10, 5.0);
+        builder.addRating(1, 20, 1.0);
+        builder.addRating(2, 10, 5.0);
+        builder.addRating(2, 20, 1.0);
+        builder.addRating(2, 30, 4.0);
+        builder.addRating(3, 10, 5.0);
+        builder.addRating(3, 20, 0.5);
+        builder.addRating(3, 30, 2.0);
+        HybridModel model = new HybridRecommender(config).fit(builder.build());
+        biasModel.rebuild(model);
+        return model;
+    }
+
+    @Test
+    void shouldPublishSameScoresAsBatchFit() {
+        assertNull(index.state());
+        HybridModel model = load();
+
+        index.refresh();
+
+        PopularityIndex.State state = index.state();
+        assertArrayEquals(model.getPopTopItems(), state.getPopTopItems());
+        assertEquals(model.getProfileThreshold(), state.getProfileThreshold());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(model.popScore(i), state.popScore(i), 1e-12);
+        }
+        assertArrayEquals(new long[]{10, 30}, index.topItems(ItemType.MOVIE, 5));
+        assertArrayEquals(new long[]{20}, index.topItems(ItemType.BOOK, 5));
+        assertArrayEquals(new long[0], index.topItems(ItemType.SONG, 5));
+    }
+
+    @Test
+    void shouldOnlyRefreshWhenRatingsChanged() {
+        load();
+        index.refresh();
+        PopularityIndex.State before = index.state();
+
+        index.refreshIfStale();
+        assertEquals(before, index.state());
+
+        // item 10 loses its 5-star ratings, item 30 gains one
+        biasModel.recordRating(1, 10, 5.0, 1.0);
+        biasModel.recordRating(2, 10, 5.0, 1.0);
+        biasModel.recordRating(1, 30, null, 5.0);
+        index.refreshIfStale();
+
+        assertArrayEquals(new long[]{30, 10}, index.topItems(ItemType.MOVIE, 2));
+    }
+}
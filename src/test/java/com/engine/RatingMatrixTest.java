@@ -0,0 +1,70 @@
+package com.engine;
+
+import com.example.reco.engine.RatingMatrix;
+import com.example.reco.engine.RatingsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RatingMatrixTest {
+
+    @Test
+    void shouldSortRowsAndColumnsWhateverTheInsertionOrder() {
+        RatingMatrix m = RatingMatrix.builder(3, 4)
+                                 .add(2, 3, (byte) 9)
+                                 .add(0, 2, (byte) 4)
+                                 .add(2, 0, (byte) 1)
+                                 .add(0, 0, (byte) 10)
+                                 .add(1, 2, (byte) 7)
+                                 .build();
+
+        assertEquals(5, m.nnz());
+        assertEquals(2, m.userDegree(0));
+        assertEquals(0, m.rowItem(m.userStart(0)));
+        assertEquals(2, m.rowItem(m.userStart(0) + 1));
+        assertEquals(5.0, m.rowRating(m.userStart(0)));
+
+        assertEquals(2, m.itemDegree(2));
+        assertEquals(0, m.colUser(m.itemStart(2)));
+        assertEquals(1, m.colUser(m.itemStart(2) + 1));
+        assertEquals(3.5, m.colRating(m.itemStart(2) + 1));
+        assertEquals(0, m.itemDegree(1));
+    }
+
+    @Test
+    void shouldLookupSingleRatings() {
+        RatingMatrix m = RatingMatrix.builder(2, 2)
+                                 .add(1, 1, RatingMatrix.toHalfStars(4.5))
+                                 .build();
+
+        assertEquals(4.5, m.rating(1, 1));
+        assertTrue(Double.isNaN(m.rating(0, 1)));
+        assertTrue(Double.isNaN(m.rating(1, 0)));
+    }
+
+    @Test
+    void shouldRejectOutOfRangeIndices() {
+        RatingMatrix.Builder builder = RatingMatrix.builder(2, 2);
+
+        assertThrowsExactly(IndexOutOfBoundsException.class, () -> builder.add(2, 0, (byte) 1));
+    }
+
+    @Test
+    void shouldMapDatabaseIdsToDenseIndicesAndSkipUnknownRows() {
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(new long[]{42, 7, 42}, new long[]{1000, 3});
+
+        assertTrue(builder.addRating(42, 3, 2.5));
+        assertFalse(builder.addRating(99, 3, 2.5));
+        RatingsSnapshot snapshot = builder.build();
+
+        assertEquals(2, snapshot.numUsers());
+        assertEquals(0, snapshot.userIndex(7));
+        assertEquals(1, snapshot.userIndex(42));
+        assertEquals(-1, snapshot.userIndex(99));
+        assertEquals(2.5, snapshot.getMatrix().rating(snapshot.userIndex(42), snapshot.itemIndex(3)));
+        assertEquals(1, snapshot.getRatingCount());
+    }
+}
@@ -0,0 +1,196 @@
+package com.engine;
+
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.BprConfig;
+import com.example.reco.engine.HnswConfig;
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.ItemEmbeddingIndex;
+import com.example.reco.engine.ItemSimilarityIndex;
+import com.example.reco.engine.MfConfig;
+import com.example.reco.engine.PopularityIndex;
+import com.example.reco.engine.RatingsLoader;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.RecoEngine;
+import com.example.reco.engine.RecommendationRow;
+import com.example.reco.engine.RecommendationWriter;
+import com.example.reco.engine.ScoredItem;
+import com.example.reco.engine.UserNeighborIndex;
+import com.example.reco.engine.UserProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RecoEngineTest {
+
+    private static final int CHUNK_USERS = 7;
+
+    @Mock
+    private RatingsLoader ratingsLoader;
+
+    @Mock
+    private RecommendationWriter recommendationWriter;
+
+    private final HybridConfig config = new HybridConfig();
+    private final MfConfig mfConfig = new MfConfig();
+    private final BprConfig bprConfig = new BprConfig();
+    private final HnswConfig hnswConfig = new HnswConfig();
+    private final IdRegistry registry = new IdRegistry();
+
+    private RecoEngine engine() {
+        BiasModel biasModel = new BiasModel(registry, config);
+        return new RecoEngine(ratingsLoader, recommendationWriter, biasModel,
+                new PopularityIndex(biasModel, registry, config),
+                new ItemSimilarityIndex(registry, config, ""),
+                new ItemEmbeddingIndex(registry, hnswConfig, 4),
+                new UserNeighborIndex(ratingsLoader),
+                config, mfConfig, bprConfig, 4, CHUNK_USERS);
+    }
+
+    private RatingsSnapshot snapshot() {
+        Random random = new Random(3);
+        for (long userId = 1; userId <= 100; userId++) {
+            registry.registerUser(userId);
+        }
+        for (long itemId = 1; itemId <= 50; itemId++) {
+            registry.registerItem(itemId);
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(registry.users(), registry.items(), 1000);
+        for (long userId = 1; userId <= 100; userId++) {
+            builder.markActive(registry.users().indexOf(userId));
+            for (long itemId = 1; itemId <= 50; itemId++) {
+                if (random.nextInt(4) == 0) {
+                    builder.addRating(userId, itemId, 0.5 * (2 + random.nextInt(9)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    void shouldStreamTheSameRowsAsSequentialScoringInBoundedChunks() {
+        RatingsSnapshot data = snapshot();
+        when(ratingsLoader.load()).thenReturn(data);
+        List<List<RecommendationRow>> chunks = new ArrayList<>();
+        doAnswer(invocation -> {
+            Consumer<Consumer<List<RecommendationRow>>> producer = invocation.getArgument(1);
+            producer.accept(chunks::add);
+            return null;
+        }).when(recommendationWriter).replaceAll(eq(config.getAlgoVersion()),
+                ArgumentMatchers.<Consumer<Consumer<List<RecommendationRow>>>>any());
+
+        engine().recomputeAll();
+
+        HybridRecommender recommender = new HybridRecommender(config);
+        HybridModel model = recommender.fit(data);
+        Map<Long, List<RecommendationRow>> byUser = new HashMap<>();
+        for (List<RecommendationRow> chunk : chunks) {
+            assertTrue(chunk.size() <= CHUNK_USERS * config.getTopN());
+            for (RecommendationRow row : chunk) {
+                byUser.computeIfAbsent(row.getUserId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        assertEquals(100, byUser.size());
+        for (long userId = 1; userId <= 100; userId++) {
+            List<ScoredItem> expected = recommender.recommendForUser(model, userId, config.getTopN());
+            List<RecommendationRow> rows = byUser.get(userId);
+            assertEquals(expected.size(), rows.size());
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals(expected.get(k).getItemId(), rows.get(k).getItemId());
+                assertEquals(expected.get(k).getScore(), rows.get(k).getScore());
+                assertEquals(k + 1, rows.get(k).getRank());
+            }
+        }
+    }
+
+    @Test
+    void shouldScoreAUserLiveWithoutWritingOnceAModelIsInMemory() {
+        RatingsSnapshot data = snapshot();
+        when(ratingsLoader.load()).thenReturn(data);
+        when(ratingsLoader.loadUserProfile(eq(1L), any()))
+                .thenReturn(UserProfile.ofRow(data.getMatrix(), data.userIndex(1L)));
+        RecoEngine engine = engine();
+
+        assertNull(engine.scoreUser(1L, null, 5));
+        engine.recomputeUser(1L);
+        List<RecommendationRow> rows = engine.scoreUser(1L, null, 5);
+
+        assertEquals(5, rows.size());
+        assertEquals(config.getAlgoVersion(), rows.get(0).getAlgoVersion());
+        assertEquals(1, rows.get(0).getRank());
+        assertNull(engine.scoreUser(1L, "bpr_hogwild", 5));
+        verify(recommendationWriter, times(1)).replaceForUser(eq(1L), eq(config.getAlgoVersion()), any());
+    }
+
+    @Test
+    void shouldWriteEachEnabledModelAsItsOwnAlgoVersion() {
+        mfConfig.setEnabled(true);
+        mfConfig.setFactors(4);
+        mfConfig.setIterations(3);
+        bprConfig.setEnabled(true);
+        bprConfig.setFactors(4);
+        bprConfig.setEpochs(2);
+        RatingsSnapshot data = snapshot();
+        when(ratingsLoader.load()).thenReturn(data);
+        Map<String, List<RecommendationRow>> byAlgo = new HashMap<>();
+        doAnswer(invocation -> {
+            String algo = invocation.getArgument(0);
+            Consumer<Consumer<List<RecommendationRow>>> producer = invocation.getArgument(1);
+            producer.accept(chunk -> byAlgo.computeIfAbsent(algo, k -> new ArrayList<>()).addAll(chunk));
+            return null;
+        }).when(recommendationWriter).replaceAll(any(),
+                ArgumentMatchers.<Consumer<Consumer<List<RecommendationRow>>>>any());
+
+        engine().recomputeAll();
+
+        for (String algo : List.of("mf_als", "bpr_hogwild")) {
+            List<RecommendationRow> rows = byAlgo.get(algo);
+            assertEquals(100 * 20, rows.size());
+            for (RecommendationRow row : rows) {
+                assertEquals(algo, row.getAlgoVersion());
+                assertTrue(Double.isNaN(data.getMatrix().rating(
+                        data.userIndex(row.getUserId()), data.itemIndex(row.getItemId()))));
+            }
+        }
+        assertTrue(byAlgo.containsKey(config.getAlgoVersion()));
+    }
+
+    @Test
+    void shouldStopScoringWhenTheWriterFails() {
+        when(ratingsLoader.load()).thenReturn(snapshot());
+        doAnswer(invocation -> {
+            Consumer<Consumer<List<RecommendationRow>>> producer = invocation.getArgument(1);
+            producer.accept(chunk -> {
+                throw new IllegalStateException("connection lost");
+            });
+            return null;
+        }).when(recommendationWriter).replaceAll(eq(config.getAlgoVersion()),
+                ArgumentMatchers.<Consumer<Consumer<List<RecommendationRow>>>>any());
+
+        IllegalStateException e = assertThrowsExactly(IllegalStateException.class, () -> engine().recomputeAll());
+        assertEquals("connection lost", e.getMessage());
+    }
+}
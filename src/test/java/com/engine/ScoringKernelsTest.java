@@ -0,0 +1,66 @@
+package com.engine;
+
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.KernelMode;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScoringKernelsTest {
+
+    private static HybridRecommender recommender(KernelMode mode) {
+        HybridConfig config = new HybridConfig();
+        config.setKernels(mode);
+        return new HybridRecommender(config);
+    }
+
+    @Test
+    void shouldScoreExactlyTheSameWithVectorAndScalarKernels() {
+        Random random = new Random(7);
+        long[] userIds = new long[150];
+        long[] itemIds = new long[400];
+        for (int k = 0; k < userIds.length; k++) {
+            userIds[k] = k + 1;
+        }
+        for (int k = 0; k < itemIds.length; k++) {
+            itemIds[k] = k + 1;
+        }
+        RatingsSnapshot.Builder builder = RatingsSnapshot.builder(userIds, itemIds);
+        for (long userId : userIds) {
+            // distinct items, skewed towards the first ones so that rows overlap
+            Set<Long> rated = new HashSet<>();
+            for (int r = 0; r < 5 + random.nextInt(60); r++) {
+                long itemId = 1 + (long) (itemIds.length * Math.pow(random.nextDouble(), 2));
+                if (rated.add(itemId)) {
+                    builder.addRating(userId, itemId, 0.5 * (2 + random.nextInt(9)));
+                }
+            }
+        }
+        RatingsSnapshot data = builder.build();
+
+        HybridRecommender scalar = recommender(KernelMode.SCALAR);
+        HybridRecommender vector = recommender(KernelMode.VECTOR);
+        assertEquals(KernelMode.SCALAR, scalar.getKernelMode());
+        assertEquals(KernelMode.VECTOR, vector.getKernelMode());
+        HybridModel model = scalar.fit(data);
+
+        for (int u = 0; u < data.numUsers(); u++) {
+            List<ScoredItem> expected = scalar.recommendForUserIndex(model, u, 20);
+            List<ScoredItem> actual = vector.recommendForUserIndex(model, u, 20);
+            assertEquals(expected.size(), actual.size());
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals(expected.get(k).getItemId(), actual.get(k).getItemId());
+                assertEquals(expected.get(k).getScore(), actual.get(k).getScore());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.engine;
+
+import com.example.reco.engine.HybridConfig;
+import com.example.reco.engine.HybridModel;
+import com.example.reco.engine.HybridRecommender;
+import com.example.reco.engine.RatingsSnapshot;
+import com.example.reco.engine.ScoredItem;
+import com.example.reco.engine.UserNeighbors;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserNeighborsTest {
+
+    private RatingsSnapshot buildSnapshot() {
+        RatingsSnapshot.Builder data = RatingsSnapshot.builder(new long[]{1, 2, 3}, new long[]{10, 20, 30, 40});
+        data.addRating(1, 10, 5.0);
+        data.addRating(1, 20, 1.0);
+        data.addRating(2, 10, 5.0);
+        data.addRating(2, 20, 1.0);
+        data.addRating(2, 30, 4.0);
+        data.addRating(3, 10, 5.0);
+        data.addRating(3, 20, 0.5);
+        data.addRating(3, 30, 2.0);
+        return data.build();
+    }
+
+    @Test
+    void shouldScoreFromStoredPoolsLikeFromScratch() {
+        RatingsSnapshot data = buildSnapshot();
+        HybridRecommender recommender = new HybridRecommender(new HybridConfig());
+        HybridModel model = recommender.fit(data);
+
+        UserNeighbors neighbors = recommender.buildUserNeighbors(model);
+
+        assertTrue(neighbors.isFor(data));
+        assertFalse(neighbors.isFor(buildSnapshot()));
+        UserNeighbors.Pool pool = neighbors.pool(data.userIndex(1));
+        assertEquals(2, pool.size());
+        assertEquals(data.userIndex(2), pool.user(0));
+        assertEquals(1.0, pool.similarity(0), 1e-12);
+        for (int u = 0; u < data.numUsers(); u++) {
+            List<ScoredItem> expected = recommender.recommendForUserIndex(model, u, 10);
+            List<ScoredItem> stored = recommender.recommendForUserIndex(model, neighbors, u, 10);
+            assertEquals(expected.size(), stored.size());
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals(expected.get(k).getItemId(), stored.get(k).getItemId());
+                assertEquals(expected.get(k).getScore(), stored.get(k).getScore(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void shouldReRankInsertAndDropOnUpdate() {
+        RatingsSnapshot data = buildSnapshot();
+        HybridConfig config = new HybridConfig();
+        config.setNeighborPool(1);
+        HybridRecommender recommender = new HybridRecommender(config);
+        UserNeighbors neighbors = recommender.buildUserNeighbors(recommender.fit(data));
+        int u1 = data.userIndex(1);
+        int u2 = data.userIndex(2);
+        int u3 = data.userIndex(3);
+        assertEquals(u2, neighbors.pool(u1).user(0));
+
+        // a full pool is only entered by beating its weakest neighbor
+        neighbors.update(u1, u3, 0.5);
+        assertEquals(u2, neighbors.pool(u1).user(0));
+        neighbors.update(u1, u3, 1.5);
+        assertEquals(u3, neighbors.pool(u1).user(0));
+        assertEquals(1, neighbors.pool(u1).size());
+
+        neighbors.update(u1, u3, 0.0);
+        assertEquals(0, neighbors.pool(u1).size());
+        neighbors.update(u1, u2, 0.8);
+        assertEquals(u2, neighbors.pool(u1).user(0));
+        assertEquals(0.8, neighbors.pool(u1).similarity(0), 1e-12);
+    }
+}
@@ -0,0 +1,137 @@
+package com.services;
+
+import com.example.reco.repositories.DatasetImportRepository;
+import com.example.reco.repositories.DatasetImportRepository.CopyData;
+import com.example.reco.repositories.DatasetImportRepository.IdMapping;
+import com.example.reco.services.DatasetImportMode;
+import com.example.reco.services.DatasetImportResult;
+import com.example.reco.services.DatasetImportServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DatasetImportServiceImplTest {
+
+    @Mock
+    private DatasetImportRepository datasetImportRepository;
+
+    @TempDir
+    private Path directory;
+
+    private static String copy(CopyData data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void writeDataset(String ratings) throws Exception {
+        Files.writeString(directory.resolve("movies.csv"),
+                "movieId,title,genres\n"
+                        + "1,Toy Story (1995),Adventure|Animation\n"
+                        + "2,\"American President, The (1995)\",Comedy|Drama\n"
+                        + "3,Back\\slash,(no genres listed)\n");
+        Files.writeString(directory.resolve("ratings.csv"), ratings);
+    }
+
+    @Test
+    void shouldLoadMoviesAndRatingsInChunksWhenFilesAreValid() throws Exception {
+        writeDataset("userId,movieId,rating,timestamp\n"
+                + "1,1,4.0,964982703\n"
+                + "1,2,3.5,964981247\n"
+                + "2,1,5,964982224\n"
+                + "2,9,4.0,964983815\n"
+                + "3,2,0.5,964982931\r\n"
+                + "3,1,bad,964982931\n"
+                + "4,2,2.0\n");
+        List<String> movies = new ArrayList<>();
+        List<String> ratings = Collections.synchronizedList(new ArrayList<>());
+        List<Long> users = Collections.synchronizedList(new ArrayList<>());
+        when(datasetImportRepository.upsertMovies(any())).thenAnswer(invocation -> {
+            movies.add(copy(invocation.getArgument(0)));
+            return 3L;
+        });
+        when(datasetImportRepository.findMovieIds())
+                .thenReturn(new IdMapping(new long[]{1, 2, 3}, new long[]{101, 102, 103}));
+        when(datasetImportRepository.upsertUsers(any())).thenAnswer(invocation -> {
+            long[] externalIds = invocation.getArgument(0);
+            Arrays.stream(externalIds).forEach(users::add);
+            return new IdMapping(externalIds, Arrays.stream(externalIds).map(id -> id + 1000).toArray());
+        });
+        when(datasetImportRepository.copyRatings(any(), anyBoolean())).thenAnswer(invocation -> {
+            String rows = copy(invocation.getArgument(0));
+            rows.lines().forEach(ratings::add);
+            return rows.lines().count();
+        });
+        // a few lines per chunk
+        DatasetImportServiceImpl service =
+                new DatasetImportServiceImpl(datasetImportRepository, 2, DataSize.ofBytes(40));
+
+        DatasetImportResult result = service.importMovieLens(directory, DatasetImportMode.REPLACE);
+
+        verify(datasetImportRepository).truncateAll();
+        assertEquals("1\tToy Story (1995)\t{\"genres\":[\"Adventure\",\"Animation\"]}\n"
+                        + "2\tAmerican President, The (1995)\t{\"genres\":[\"Comedy\",\"Drama\"]}\n"
+                        + "3\tBack\\\\slash\t{\"genres\":[\"(no genres listed)\"]}\n",
+                movies.get(0));
+        assertEquals(new TreeSet<>(List.of(
+                        "1001\t101\t4\t964982703",
+                        "1001\t102\t3.5\t964981247",
+                        "1002\t101\t5\t964982224",
+                        "1003\t102\t0.5\t964982931",
+                        "1004\t102\t2\t\\N")),
+                new TreeSet<>(ratings));
+        assertEquals(new TreeSet<>(List.of(1L, 2L, 3L, 4L)), new TreeSet<>(users));
+        assertEquals(3, result.items());
+        assertEquals(5, result.ratings());
+        // unknown movie 9 and the malformed rating
+        assertEquals(2, result.skippedLines());
+    }
+
+    @Test
+    void shouldUpdateExistingRatingsWithoutTruncatingWhenIncremental() throws Exception {
+        writeDataset("userId,movieId,rating,timestamp\n1,1,4.0,964982703\n");
+        when(datasetImportRepository.findMovieIds()).thenReturn(new IdMapping(new long[]{1}, new long[]{101}));
+        when(datasetImportRepository.upsertUsers(any())).thenReturn(new IdMapping(new long[]{1}, new long[]{1001}));
+
+        new DatasetImportServiceImpl(datasetImportRepository, 4, DataSize.ofMegabytes(64))
+                .importMovieLens(directory, DatasetImportMode.INCREMENTAL);
+
+        verify(datasetImportRepository, never()).truncateAll();
+        verify(datasetImportRepository).copyRatings(any(), eq(true));
+    }
+
+    @Test
+    void shouldRejectImportWhenRatingsColumnsAreMissing() throws Exception {
+        writeDataset("movieId,userId\n1,1\n");
+        DatasetImportServiceImpl service =
+                new DatasetImportServiceImpl(datasetImportRepository, 1, DataSize.ofMegabytes(64));
+
+        assertThrowsExactly(IllegalArgumentException.class,
+                () -> service.importMovieLens(directory, DatasetImportMode.REPLACE));
+        verifyNoInteractions(datasetImportRepository);
+    }
+}
@@ -0,0 +1,111 @@
+package com.services;
+
+import com.example.reco.common.exceptions.BadRequestException;
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.repositories.ExportRepository;
+import com.example.reco.services.ExportFormat;
+import com.example.reco.services.ExportServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ExportServiceImplTest {
+
+    @Mock
+    private ExportRepository exportRepository;
+
+    @InjectMocks
+    private ExportServiceImpl exportService;
+
+    private static final Instant CREATED_AT = Instant.parse("2024-05-01T10:00:00Z");
+
+    private ResultSet ratingRow() throws Exception {
+        // each format reads the columns through different getters
+        ResultSet rs = mock(ResultSet.class);
+        lenient().when(rs.getLong(1)).thenReturn(7L);
+        lenient().when(rs.getLong(2)).thenReturn(1L);
+        lenient().when(rs.getLong(3)).thenReturn(2L);
+        lenient().when(rs.getString(1)).thenReturn("7");
+        lenient().when(rs.getString(2)).thenReturn("1");
+        lenient().when(rs.getString(3)).thenReturn("2");
+        lenient().when(rs.getString(4)).thenReturn("4.5");
+        lenient().when(rs.getBigDecimal(4)).thenReturn(new BigDecimal("4.5"));
+        lenient().when(rs.getTimestamp(5)).thenReturn(Timestamp.from(CREATED_AT));
+        return rs;
+    }
+
+    private String export(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void shouldWriteRatingsAsNdjsonWhenRowsAreStreamed() throws Exception {
+        ResultSet rs = ratingRow();
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(exportRepository).streamRatings(eq(null), eq(null), any());
+
+        String output = export(exportService.exportRatings(ExportFormat.NDJSON, null, null));
+
+        String line = "{\"id\":7,\"user_id\":1,\"item_id\":2,\"rating\":4.5,\"created_at\":\"2024-05-01T10:00:00Z\"}\n";
+        assertEquals(line + line, output);
+    }
+
+    @Test
+    void shouldWriteRatingsAsCsvWithHeaderWhenRowsAreStreamed() throws Exception {
+        ResultSet rs = ratingRow();
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(rs);
+            return null;
+        }).when(exportRepository).streamRatings(eq(null), eq(null), any());
+
+        String output = export(exportService.exportRatings(ExportFormat.CSV, null, null));
+
+        assertEquals("id,user_id,item_id,rating,created_at\n7,1,2,4.5,2024-05-01T10:00:00Z\n", output);
+    }
+
+    @Test
+    void shouldThrowBadRequestWhenRangeIsEmpty() {
+        assertThrowsExactly(BadRequestException.class,
+                () -> exportService.exportRatings(ExportFormat.CSV, CREATED_AT, CREATED_AT));
+        verifyNoInteractions(exportRepository);
+    }
+
+    @Test
+    void shouldThrowNotFoundWhenRunDoesNotExist() {
+        UUID runId = UUID.randomUUID();
+        when(exportRepository.runExists(runId)).thenReturn(false);
+
+        assertThrowsExactly(NotFoundException.class,
+                () -> exportService.exportRecommendations(ExportFormat.NDJSON, runId));
+    }
+}
@@ -3,6 +3,12 @@ package com.services;
 import com.example.reco.common.exceptions.NotFoundException;
 import com.example.reco.controllers.dto.CreateItemRequest;
 import com.example.reco.controllers.dto.ItemResponse;
+import com.example.reco.controllers.dto.SimilarItemResponse;
+import com.example.reco.engine.IdRegistry;
+import com.example.reco.engine.ItemEmbeddingIndex;
+import com.example.reco.engine.ItemSimilarityIndex;
+import com.example.reco.engine.PopularityIndex;
+import com.example.reco.engine.ScoredItem;
 import com.example.reco.model.Item;
 import com.example.reco.model.ItemType;
 import com.example.reco.repositories.ItemRepository;
@@ -13,9 +19,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -25,7 +31,9 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,18 +42,45 @@ class ItemServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private IdRegistry idRegistry;
+
+    @Mock
+    private ItemSimilarityIndex itemSimilarityIndex;
+
+    @Mock
+    private ItemEmbeddingIndex itemEmbeddingIndex;
+
+    @Mock
+    private PopularityIndex popularityIndex;
+
     @InjectMocks
     private ItemServiceImpl itemService;
 
+    private static ItemRepository.ItemSummary summary(Long id, String title, ItemType type) {
+        return new ItemRepository.ItemSummary() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public ItemType getType() {
+                return type;
+            }
+        };
+    }
+
     @Test
     void shouldReturnItemIfExists() {
-        Item item = new Item();
-        item.setId(1L);
-        item.setTitle("Titanic");
-        item.setType(ItemType.MOVIE);
-        item.setMetadata("{\"producer\":\"James Cameron\"}");
+        ItemResponse item = new ItemResponse(1L, "Titanic", ItemType.MOVIE, "{\"producer\":\"James Cameron\"}");
 
-        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(itemRepository.findResponseById(1L)).thenReturn(Optional.of(item));
 
         ItemResponse response = itemService.getItemById(1L);
 
@@ -55,47 +90,38 @@ class ItemServiceImplTest {
         assertEquals(ItemType.MOVIE, response.getType());
         assertEquals("{\"producer\":\"James Cameron\"}", response.getMetadata());
 
-        verify(itemRepository).findById(1L);
+        verify(itemRepository).findResponseById(1L);
     }
 
     @Test
     void shouldThrowExceptionIfItemNotFound() {
-        when(itemRepository.findById(10L)).thenReturn(Optional.empty());
+        when(itemRepository.findResponseById(10L)).thenReturn(Optional.empty());
 
         assertThrowsExactly(NotFoundException.class, () -> itemService.getItemById(10L));
 
-        verify(itemRepository).findById(10L);
+        verify(itemRepository).findResponseById(10L);
     }
 
     @Test
     void shouldReturnEmptyWhenEmptyItemsTable() {
-        when(itemRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(itemRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        var response = itemService.getAllItems(50);
+        var response = itemService.getAllItems(50, null);
 
         assertNotNull(response);
         assertTrue(response.isEmpty());
-        verify(itemRepository).findAll(any(Pageable.class));
+        verify(itemRepository).findResponsesAfter(eq(0L), any(Limit.class));
     }
 
     @Test
     void shouldReturnMappedItemsWhenRepositoryReturnsItems() {
-        Item item1 = new Item();
-        item1.setId(1L);
-        item1.setTitle("Item 1");
-        item1.setType(ItemType.MOVIE);
-        item1.setMetadata("{\"a\":1}");
-
-        Item item2 = new Item();
-        item2.setId(2L);
-        item2.setTitle("Item 2");
-        item2.setType(ItemType.MOVIE);
-        item2.setMetadata("{\"b\":2}");
+        ItemResponse item1 = new ItemResponse(1L, "Item 1", ItemType.MOVIE, "{\"a\":1}");
+        ItemResponse item2 = new ItemResponse(2L, "Item 2", ItemType.MOVIE, "{\"b\":2}");
 
-        when(itemRepository.findAll(any(Pageable.class)))
-                .thenReturn(new PageImpl<>(List.of(item1, item2)));
+        when(itemRepository.findResponsesAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(item1, item2));
 
-        var response = itemService.getAllItems(10);
+        var response = itemService.getAllItems(10, null);
 
         assertNotNull(response);
         assertEquals(2, response.size());
@@ -110,35 +136,33 @@ class ItemServiceImplTest {
         assertEquals(ItemType.MOVIE, response.get(1).getType());
         assertEquals("{\"b\":2}", response.get(1).getMetadata());
 
-        verify(itemRepository).findAll(any(Pageable.class));
+        verify(itemRepository).findResponsesAfter(eq(0L), any(Limit.class));
     }
 
     @Test
     void shouldCapItemsLimitWhenLimitIsTooHigh() {
-        when(itemRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(itemRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        itemService.getAllItems(99999);
+        itemService.getAllItems(99999, null);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(itemRepository).findAll(captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(itemRepository).findResponsesAfter(eq(0L), captor.capture());
 
-        Pageable pageableUsed = captor.getValue();
-        assertEquals(0, pageableUsed.getPageNumber());
-        assertEquals(50, pageableUsed.getPageSize());
+        Limit pageableUsed = captor.getValue();
+        assertEquals(50, pageableUsed.max());
     }
 
     @Test
     void shouldUseItemsDefaultLimitIfLimitInvalid() {
-        when(itemRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(itemRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        itemService.getAllItems(-1);
+        itemService.getAllItems(-1, null);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(itemRepository).findAll(captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(itemRepository).findResponsesAfter(eq(0L), captor.capture());
 
-        Pageable pageableUsed = captor.getValue();
-        assertEquals(0, pageableUsed.getPageNumber());
-        assertEquals(50, pageableUsed.getPageSize());
+        Limit pageableUsed = captor.getValue();
+        assertEquals(50, pageableUsed.max());
     }
 
     @Test
@@ -166,4 +190,89 @@ class ItemServiceImplTest {
         assertEquals(ItemType.MOVIE, response.getType());
         assertEquals("{\"year\":\"2021\"}", response.getMetadata());
     }
+
+    @Test
+    void shouldRegisterACreatedItemWithTheEngineOnlyOnceCommitted() {
+        CreateItemRequest req = new CreateItemRequest();
+        req.setTitle("Dune");
+        req.setItemType(ItemType.BOOK);
+        when(itemRepository.save(any(Item.class))).thenAnswer(invocation -> {
+            Item item = invocation.getArgument(0);
+            item.setId(7L);
+            return item;
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            itemService.createItem(req);
+            // a rollback must not leave an index reserved for an id the database never handed out
+            verifyNoInteractions(idRegistry);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(idRegistry).registerItem(7L, ItemType.BOOK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldThrowNotFoundWhenAskingSimilarItemsOfUnknownItem() {
+        when(itemRepository.existsById(99L)).thenReturn(false);
+
+        assertThrowsExactly(NotFoundException.class, () -> itemService.getSimilarItems(99L, 10));
+
+        verifyNoInteractions(itemSimilarityIndex);
+    }
+
+    @Test
+    void shouldReturnSimilarItemsInIndexOrderSkippingDeletedItems() {
+        ItemRepository.ItemSummary dune = summary(2L, "Dune", ItemType.BOOK);
+        ItemRepository.ItemSummary alien = summary(3L, "Alien", ItemType.MOVIE);
+
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(itemSimilarityIndex.similarTo(1L, 50)).thenReturn(List.of(
+                new ScoredItem(3L, 0.9), new ScoredItem(4L, 0.8), new ScoredItem(2L, 0.5)));
+        when(itemRepository.findByIdIn(List.of(3L, 4L, 2L))).thenReturn(List.of(dune, alien));
+
+        List<SimilarItemResponse> similar = itemService.getSimilarItems(1L, 500);
+
+        assertEquals(2, similar.size());
+        assertEquals(3L, similar.get(0).getItemId());
+        assertEquals("Alien", similar.get(0).getTitle());
+        assertEquals(0.9, similar.get(0).getScore());
+        assertEquals(2L, similar.get(1).getItemId());
+        assertEquals(ItemType.BOOK, similar.get(1).getType());
+    }
+
+    @Test
+    void shouldTakeSimilarItemsFromTheEmbeddingIndexOnceItIsBuilt() {
+        ItemRepository.ItemSummary dune = summary(2L, "Dune", ItemType.BOOK);
+
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(itemEmbeddingIndex.isAvailable()).thenReturn(true);
+        when(itemEmbeddingIndex.similarTo(1L, 10)).thenReturn(List.of(new ScoredItem(2L, 0.7)));
+        when(itemRepository.findByIdIn(List.of(2L))).thenReturn(List.of(dune));
+
+        List<SimilarItemResponse> similar = itemService.getSimilarItems(1L, 10);
+
+        assertEquals(1, similar.size());
+        assertEquals(2L, similar.get(0).getItemId());
+        assertEquals(0.7, similar.get(0).getScore());
+        verifyNoInteractions(itemSimilarityIndex);
+    }
+
+    @Test
+    void shouldReturnPopularItemsOfATypeInPopularityOrderSkippingDeletedItems() {
+        ItemResponse dune = new ItemResponse(2L, "Dune", ItemType.BOOK, null);
+        ItemResponse emma = new ItemResponse(5L, "Emma", ItemType.BOOK, null);
+
+        when(popularityIndex.topItems(ItemType.BOOK, 50)).thenReturn(new long[]{5L, 9L, 2L});
+        when(itemRepository.findResponsesByIdIn(List.of(5L, 9L, 2L))).thenReturn(List.of(dune, emma));
+
+        List<ItemResponse> popular = itemService.getPopularItems(ItemType.BOOK, 500);
+
+        assertEquals(2, popular.size());
+        assertEquals(5L, popular.get(0).getId());
+        assertEquals(2L, popular.get(1).getId());
+    }
 }
@@ -0,0 +1,112 @@
+package com.services;
+
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.controllers.dto.JobResponse;
+import com.example.reco.engine.JobProgress;
+import com.example.reco.model.JobStatus;
+import com.example.reco.services.JobServiceImpl;
+import com.example.reco.services.RecommendationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class JobServiceImplTest {
+
+    @Mock
+    private RecommendationService recommendationService;
+
+    private JobServiceImpl jobService;
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    private JobResponse awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            JobResponse job = jobService.getJob(jobId);
+            if (job.getStatus() == JobStatus.SUCCEEDED || job.getStatus() == JobStatus.FAILED) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("job " + jobId + " did not finish");
+    }
+
+    @Test
+    void shouldReturnImmediatelyAndMergeRequestsIntoTheQueuedJob() throws Exception {
+        jobService = new JobServiceImpl(recommendationService, 1, 4, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            JobProgress progress = invocation.getArgument(1);
+            progress.phase("scoring", 4);
+            progress.advance(1);
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(recommendationService).runRecommendationJob(eq("all"), any(JobProgress.class));
+
+        JobResponse running = jobService.submitRecomputeAll();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        JobResponse progress = jobService.getJob(running.getId());
+        assertEquals(JobStatus.RUNNING, progress.getStatus());
+        assertEquals("scoring", progress.getPhase());
+        assertEquals(0.25, progress.getProgress());
+
+        // the running job may have read the ratings already, so a new job is queued...
+        JobResponse queued = jobService.submitRecomputeAll();
+        assertNotEquals(running.getId(), queued.getId());
+        assertEquals(JobStatus.QUEUED, queued.getStatus());
+        // ...and further requests join it
+        JobResponse merged = jobService.submitRecomputeAll();
+        assertEquals(queued.getId(), merged.getId());
+        assertEquals(2, merged.getRequests());
+
+        release.countDown();
+        assertEquals(JobStatus.SUCCEEDED, awaitFinished(running.getId()).getStatus());
+        JobResponse done = awaitFinished(queued.getId());
+        assertEquals(JobStatus.SUCCEEDED, done.getStatus());
+        assertTrue(done.getDurationMs() >= 0);
+        verify(recommendationService, times(2)).runRecommendationJob(eq("all"), any(JobProgress.class));
+    }
+
+    @Test
+    void shouldReportFailedJobs() throws Exception {
+        jobService = new JobServiceImpl(recommendationService, 1, 4, 10);
+        doThrow(new IllegalStateException("connection lost"))
+                .when(recommendationService).runRecommendationJob(eq("all"), any(JobProgress.class));
+
+        JobResponse job = awaitFinished(jobService.submitRecomputeAll().getId());
+
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("connection lost", job.getError());
+    }
+
+    @Test
+    void shouldThrowWhenJobIsUnknown() {
+        jobService = new JobServiceImpl(recommendationService, 1, 4, 10);
+
+        assertThrowsExactly(NotFoundException.class, () -> jobService.getJob(UUID.randomUUID()));
+    }
+}
@@ -3,35 +3,49 @@ package com.services;
 import com.example.reco.common.exceptions.BadRequestException;
 import com.example.reco.common.exceptions.ConflictException;
 import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.controllers.dto.RatingBatchEntry;
+import com.example.reco.controllers.dto.RatingBatchResponse;
 import com.example.reco.controllers.dto.RatingResponse;
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.UserNeighborIndex;
 import com.example.reco.model.Item;
 import com.example.reco.model.Rating;
+import com.example.reco.model.RatingWriteStatus;
 import com.example.reco.model.User;
 import com.example.reco.repositories.ItemRepository;
+import com.example.reco.repositories.RatingBatchRepository;
 import com.example.reco.repositories.RatingRepository;
 import com.example.reco.repositories.UserRepository;
 import com.example.reco.services.RatingServiceImpl;
+import com.example.reco.services.RatingWriteBuffer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,39 +59,42 @@ public class RatingServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private BiasModel biasModel;
+
+    @Mock
+    private UserNeighborIndex userNeighborIndex;
+
+    @Mock
+    private RatingBatchRepository ratingBatchRepository;
+
+    @Mock
+    private RatingWriteBuffer ratingWriteBuffer;
+
     @InjectMocks
     private RatingServiceImpl ratingService;
 
     @Test
     void shouldReturnEmptyListWhenNoRatingsExist() {
-        when(ratingRepository.findAll(any(Pageable.class)))
-                .thenReturn(Page.empty());
+        when(ratingRepository.findResponsesAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of());
 
-        var response = ratingService.getAllRatings(50);
+        var response = ratingService.getAllRatings(50, null);
 
         assertNotNull(response);
         assertTrue(response.isEmpty());
-        verify(ratingRepository).findAll(any(Pageable.class));
+        verify(ratingRepository).findResponsesAfter(eq(0L), any(Limit.class));
     }
 
     @Test
     void shouldReturnMappedRatingsWhenRepositoryReturnsRatings() {
-        User user = new User();
-        user.setId(1L);
-
-        Item item = new Item();
-        item.setId(2L);
-
-        Rating rating1 = new Rating(user, item, BigDecimal.valueOf(4));
-        rating1.setId(10L);
-
-        Rating rating2 = new Rating(user, item, BigDecimal.valueOf(5));
-        rating2.setId(11L);
+        RatingResponse rating1 = new RatingResponse(10L, 1L, 2L, BigDecimal.valueOf(4), null);
+        RatingResponse rating2 = new RatingResponse(11L, 1L, 2L, BigDecimal.valueOf(5), null);
 
-        when(ratingRepository.findAll(any(Pageable.class)))
-                .thenReturn(new PageImpl<>(List.of(rating1, rating2)));
+        when(ratingRepository.findResponsesAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(rating1, rating2));
 
-        var response = ratingService.getAllRatings(10);
+        var response = ratingService.getAllRatings(10, null);
 
         assertEquals(2, response.size());
 
@@ -89,22 +106,21 @@ public class RatingServiceImplTest {
         assertEquals(11L, response.get(1).getId());
         assertEquals((short) 5, response.get(1).getRating());
 
-        verify(ratingRepository).findAll(any(Pageable.class));
+        verify(ratingRepository).findResponsesAfter(eq(0L), any(Limit.class));
     }
 
     @Test
     void shouldCapLimitWhenLimitIsTooHigh() {
-        when(ratingRepository.findAll(any(Pageable.class)))
-                .thenReturn(Page.empty());
+        when(ratingRepository.findResponsesAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of());
 
-        ratingService.getAllRatings(99999);
+        ratingService.getAllRatings(99999, null);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(ratingRepository).findAll(captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(ratingRepository).findResponsesAfter(eq(0L), captor.capture());
 
-        Pageable pageableUsed = captor.getValue();
-        assertEquals(0, pageableUsed.getPageNumber());
-        assertEquals(50, pageableUsed.getPageSize());
+        Limit pageableUsed = captor.getValue();
+        assertEquals(50, pageableUsed.max());
     }
 
     @Test
@@ -185,6 +201,8 @@ public class RatingServiceImplTest {
         assertEquals(userId, saved.getUser().getId());
         assertEquals(itemId, saved.getItem().getId());
         assertEquals(grade, saved.getRating());
+        verify(biasModel).recordRating(userId, itemId, null, 4.0);
+        verify(userNeighborIndex).onRating(userId, itemId);
 
         assertNotNull(response);
         assertEquals(userId, response.getUserId());
@@ -192,6 +210,39 @@ public class RatingServiceImplTest {
         assertEquals(grade, response.getRating());
     }
 
+    @Test
+    void shouldQueueValidRatingInWriteBehindMode() {
+        Item item = new Item();
+        item.setId(7L);
+        User user = new User();
+        user.setId(5L);
+
+        when(itemRepository.findById(7L)).thenReturn(Optional.of(item));
+        when(userRepository.findById(5L)).thenReturn(Optional.of(user));
+        when(ratingWriteBuffer.isEnabled()).thenReturn(true);
+
+        RatingResponse response = ratingService.rateItem(7L, 5L, BigDecimal.valueOf(4));
+
+        verify(ratingWriteBuffer).submit(5L, 7L, BigDecimal.valueOf(4));
+        verify(ratingRepository, never()).save(any(Rating.class));
+        // the models learn about the rating once the buffer has committed it
+        verify(biasModel, never()).recordRating(anyLong(), anyLong(), any(), anyDouble());
+        assertNull(response.getId());
+        assertEquals(BigDecimal.valueOf(4), response.getRating());
+    }
+
+    @Test
+    void shouldRefuseAGradeOffTheHalfStarStepBeforeQueueingIt() {
+        lenient().when(ratingWriteBuffer.isEnabled()).thenReturn(true);
+
+        // the table would refuse it in the flusher, after the client was told it was saved
+        assertThrowsExactly(BadRequestException.class,
+                () -> ratingService.rateItem(7L, 5L, new BigDecimal("3.3")));
+
+        verify(ratingWriteBuffer, never()).submit(anyLong(), anyLong(), any());
+        verifyNoInteractions(itemRepository, userRepository, ratingRepository);
+    }
+
     @Test
     void shouldThrowConflictWhenUserAlreadyRatedItem() {
         Long userId = 1L;
@@ -251,4 +302,101 @@ public class RatingServiceImplTest {
 
     }
 
+    @Test
+    void shouldRecordGradeChangeInBiasModelWhenUpdatingRating() {
+        User user = new User();
+        user.setId(5L);
+        Item item = new Item();
+        item.setId(7L);
+        Rating rating = new Rating(user, item, BigDecimal.valueOf(2));
+        rating.setId(10L);
+
+        when(ratingRepository.findById(10L)).thenReturn(Optional.of(rating));
+        when(ratingRepository.save(any(Rating.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RatingResponse response = ratingService.updateRating(10L, BigDecimal.valueOf(5));
+
+        assertEquals(BigDecimal.valueOf(5), response.getRating());
+        verify(biasModel).recordRating(5L, 7L, 2.0, 5.0);
+        verify(userNeighborIndex).onRating(5L, 7L);
+    }
+
+    @Test
+    void shouldReadTheRatingsOfAUserAfterTheCursor() {
+        when(ratingRepository.findResponsesByUserIdAfter(eq(5L), eq(100L), any(Limit.class)))
+                .thenReturn(List.of());
+
+        var response = ratingService.getRatingsByUser(5L, 0, 100L);
+
+        assertTrue(response.isEmpty());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(ratingRepository).findResponsesByUserIdAfter(eq(5L), eq(100L), captor.capture());
+        assertEquals(50, captor.getValue().max());
+    }
+
+    @Test
+    void shouldUpsertValidRowsAndReportEveryRowOfABatch() {
+        List<RatingBatchEntry> entries = List.of(
+                new RatingBatchEntry(1L, 10L, new BigDecimal("4.5")),
+                new RatingBatchEntry(1L, 11L, new BigDecimal("2")),
+                new RatingBatchEntry(2L, 10L, new BigDecimal("4.25")),
+                new RatingBatchEntry(1L, 10L, new BigDecimal("5")),
+                new RatingBatchEntry(9L, 10L, new BigDecimal("3")),
+                new RatingBatchEntry(2L, 11L, new BigDecimal("1.0"))
+        );
+        when(ratingBatchRepository.findExistingUserIds(any(long[].class))).thenReturn(Set.of(1L, 2L));
+        when(ratingBatchRepository.findExistingItemIds(any(long[].class))).thenReturn(Set.of(10L, 11L));
+        when(ratingBatchRepository.insertMissing(aryEq(new long[]{1, 1, 2}), aryEq(new long[]{10, 11, 11}),
+                aryEq(new BigDecimal[]{new BigDecimal("4.5"), new BigDecimal("2"), new BigDecimal("1.0")})))
+                .thenReturn(new boolean[]{false, true, false});
+        when(ratingBatchRepository.lockCurrentRatings(aryEq(new long[]{1, 2}), aryEq(new long[]{10, 11})))
+                .thenReturn(new BigDecimal[]{new BigDecimal("3.0"), new BigDecimal("1.0")});
+
+        RatingBatchResponse response = ratingService.rateItems(entries);
+
+        assertEquals(6, response.getReceived());
+        assertEquals(1, response.getInserted());
+        assertEquals(1, response.getUpdated());
+        assertEquals(1, response.getUnchanged());
+        assertEquals(3, response.getRejected());
+        assertEquals(RatingWriteStatus.UPDATED, response.getResults().get(0).getStatus());
+        assertEquals(RatingWriteStatus.INSERTED, response.getResults().get(1).getStatus());
+        assertEquals(RatingWriteStatus.REJECTED, response.getResults().get(2).getStatus());
+        assertEquals("Duplicate of row 0", response.getResults().get(3).getError());
+        assertEquals("User with id 9 not found", response.getResults().get(4).getError());
+        assertEquals(RatingWriteStatus.UNCHANGED, response.getResults().get(5).getStatus());
+
+        verify(ratingBatchRepository).update(aryEq(new long[]{1}), aryEq(new long[]{10}),
+                aryEq(new BigDecimal[]{new BigDecimal("4.5")}));
+        verify(biasModel).recordRating(1L, 10L, 3.0, 4.5);
+        verify(biasModel).recordRating(1L, 11L, null, 2.0);
+        verify(biasModel, never()).recordRating(eq(2L), eq(11L), any(), anyDouble());
+        verify(userNeighborIndex, never()).onRating(eq(2L), anyLong());
+    }
+
+    @Test
+    void shouldRejectOversizedBatch() {
+        List<RatingBatchEntry> entries = Collections.nCopies(10_001, new RatingBatchEntry(1L, 1L, BigDecimal.ONE));
+
+        assertThrowsExactly(BadRequestException.class, () -> ratingService.rateItems(entries));
+        verify(ratingBatchRepository, never()).insertMissing(any(), any(), any());
+    }
+
+    @Test
+    void shouldReportAPairInsertedByAConcurrentBatchAsAnUpdate() {
+        List<RatingBatchEntry> entries = List.of(new RatingBatchEntry(1L, 10L, new BigDecimal("4")));
+        when(ratingBatchRepository.findExistingUserIds(any(long[].class))).thenReturn(Set.of(1L));
+        when(ratingBatchRepository.findExistingItemIds(any(long[].class))).thenReturn(Set.of(10L));
+        // the other batch committed (1, 10) after this one checked the users and items
+        when(ratingBatchRepository.insertMissing(any(), any(), any())).thenReturn(new boolean[]{false});
+        when(ratingBatchRepository.lockCurrentRatings(aryEq(new long[]{1}), aryEq(new long[]{10})))
+                .thenReturn(new BigDecimal[]{new BigDecimal("2.5")});
+
+        RatingBatchResponse response = ratingService.rateItems(entries);
+
+        assertEquals(0, response.getInserted());
+        assertEquals(1, response.getUpdated());
+        verify(biasModel).recordRating(1L, 10L, 2.5, 4.0);
+        verify(biasModel, never()).recordRating(eq(1L), eq(10L), eq(null), anyDouble());
+    }
 }
@@ -0,0 +1,131 @@
+package com.services;
+
+import com.example.reco.common.exceptions.ConflictException;
+import com.example.reco.common.exceptions.TooManyRequestsException;
+import com.example.reco.engine.BiasModel;
+import com.example.reco.engine.UserNeighborIndex;
+import com.example.reco.repositories.RatingBatchRepository;
+import com.example.reco.services.RatingWriteBuffer;
+import com.example.reco.services.RatingWriteMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RatingWriteBufferTest {
+
+    @Mock
+    private RatingBatchRepository ratingBatchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BiasModel biasModel;
+
+    @Mock
+    private UserNeighborIndex userNeighborIndex;
+
+    private RatingWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+
+    private RatingWriteBuffer buffer(int capacity, Duration flushInterval, int flushRows) {
+        when(ratingBatchRepository.insertMissing(any(long[].class), any(long[].class), any(BigDecimal[].class)))
+                .thenAnswer(invocation -> {
+                    boolean[] inserted = new boolean[((long[]) invocation.getArgument(0)).length];
+                    Arrays.fill(inserted, true);
+                    return inserted;
+                });
+        return new RatingWriteBuffer(ratingBatchRepository, transactionManager, biasModel, userNeighborIndex,
+                RatingWriteMode.WRITE_BEHIND, capacity, flushInterval, flushRows, Duration.ofSeconds(10));
+    }
+
+    @Test
+    void shouldCommitQueuedRatingsAsOneGroupAndDrainOnClose() {
+        buffer = buffer(100, Duration.ofMinutes(1), 3);
+
+        buffer.submit(2L, 20L, BigDecimal.valueOf(3));
+        buffer.submit(1L, 10L, BigDecimal.valueOf(4));
+        buffer.submit(1L, 11L, BigDecimal.valueOf(5));
+
+        // a full group is written without waiting for the interval
+        verify(ratingBatchRepository, timeout(5000)).insertMissing(
+                aryEq(new long[]{1, 1, 2}), aryEq(new long[]{10, 11, 20}),
+                aryEq(new BigDecimal[]{BigDecimal.valueOf(4), BigDecimal.valueOf(5), BigDecimal.valueOf(3)}));
+        // recordRating is synchronized: a timed verify on it would hold the mock's monitor and block the flusher
+        verify(userNeighborIndex, timeout(5000)).onRating(2L, 20L);
+        verify(biasModel).recordRating(1L, 10L, null, 4.0);
+
+        buffer.submit(3L, 30L, BigDecimal.valueOf(2));
+        buffer.close();
+
+        verify(ratingBatchRepository).insertMissing(aryEq(new long[]{3}), aryEq(new long[]{30}),
+                aryEq(new BigDecimal[]{BigDecimal.valueOf(2)}));
+        assertThrowsExactly(TooManyRequestsException.class, () -> buffer.submit(4L, 40L, BigDecimal.ONE));
+    }
+
+    @Test
+    void shouldRejectWithBackpressureWhenFullAndRefuseQueuedDuplicates() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        buffer = buffer(1, Duration.ZERO, 1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return new boolean[]{true};
+        }).when(ratingBatchRepository).insertMissing(any(), any(), any());
+
+        buffer.submit(1L, 10L, BigDecimal.ONE);
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        buffer.submit(1L, 11L, BigDecimal.ONE);
+
+        assertThrowsExactly(ConflictException.class, () -> buffer.submit(1L, 11L, BigDecimal.ONE));
+        assertThrowsExactly(TooManyRequestsException.class, () -> buffer.submit(1L, 12L, BigDecimal.ONE));
+        release.countDown();
+    }
+
+    @Test
+    void shouldLeaveARatingCommittedMeanwhileAndItsBiasesAlone() {
+        buffer = buffer(100, Duration.ofMinutes(1), 2);
+        // (1, 10) was rated through another path after the 409 check
+        when(ratingBatchRepository.insertMissing(any(long[].class), any(long[].class), any(BigDecimal[].class)))
+                .thenReturn(new boolean[]{false, true});
+
+        buffer.submit(1L, 10L, BigDecimal.valueOf(4));
+        buffer.submit(1L, 11L, BigDecimal.valueOf(5));
+        buffer.close();
+
+        verify(biasModel).recordRating(1L, 11L, null, 5.0);
+        verify(userNeighborIndex).onRating(1L, 11L);
+        verify(biasModel, never()).recordRating(eq(1L), eq(10L), any(), anyDouble());
+        verify(userNeighborIndex, never()).onRating(1L, 10L);
+    }
+}
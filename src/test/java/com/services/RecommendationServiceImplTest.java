@@ -1,32 +1,58 @@
 package com.services;
 
+import com.example.reco.common.exceptions.BadRequestException;
+import com.example.reco.common.exceptions.NotFoundException;
+import com.example.reco.config.RecoEngineProperties;
+import com.example.reco.controllers.dto.ArmStatsResponse;
+import com.example.reco.controllers.dto.CacheStatsResponse;
 import com.example.reco.controllers.dto.RecommendationResponse;
-import com.example.reco.model.Item;
-import com.example.reco.model.Recommendation;
-import com.example.reco.model.User;
+import com.example.reco.engine.EngineMode;
+import com.example.reco.engine.RecoEngine;
+import com.example.reco.engine.RecommendationRow;
+import com.example.reco.repositories.RecommendationBatchRepository;
 import com.example.reco.repositories.RecommendationRepository;
+import com.example.reco.services.ArmMetrics;
+import com.example.reco.services.LiveScoringExecutor;
+import com.example.reco.services.RecommendationCache;
 import com.example.reco.services.RecommendationServiceImpl;
+import com.example.reco.services.RecommendationSource;
+import com.example.reco.services.ServedRecommendations;
+import com.example.reco.services.TrafficAllocator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -38,10 +64,34 @@ public class RecommendationServiceImplTest {
     @Mock
     private RecommendationRepository recommendationRepository;
 
+    @Mock
+    private RecoEngine recoEngine;
+
+    @Mock
+    private RecoEngineProperties engineProperties;
+
+    @Spy
+    private RecommendationCache recommendationCache = new RecommendationCache(null, 1000);
+
+    @Mock
+    private RecommendationBatchRepository recommendationBatchRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private TrafficAllocator trafficAllocator = new TrafficAllocator("", "");
+
+    @Spy
+    private ArmMetrics armMetrics = new ArmMetrics();
+
+    @Spy
+    private LiveScoringExecutor liveScoringExecutor = new LiveScoringExecutor(Duration.ofMillis(200), 1);
+
     @InjectMocks
     private RecommendationServiceImpl recommendationService;
 
-    private Recommendation buildRecommendation(
+    private RecommendationResponse buildRecommendation(
             long recoId,
             long userId,
             long itemId,
@@ -51,47 +101,31 @@ public class RecommendationServiceImplTest {
             UUID runId,
             String reason
     ) {
-        User u = new User();
-        u.setId(userId);
-
-        Item it = new Item();
-        it.setId(itemId);
-
-        Recommendation r = new Recommendation();
-        r.setId(recoId);
-        r.setUser(u);
-        r.setItem(it);
-        r.setScore(score);
-        r.setRank(rank);
-        r.setAlgoVersion(algoVersion);
-        r.setRunId(runId);
-        r.setReason(reason);
-        r.setGeneratedAt(Instant.now());
-        return r;
+        return new RecommendationResponse(recoId, userId, itemId, score, rank, algoVersion, runId, reason, Instant.now());
     }
 
     // getAllRecommendations
 
     @Test
     void shouldReturnEmptyWhenEmptyRecommendationTable() {
-        when(recommendationRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(recommendationRepository.findActiveAfter(eq(0L), eq(true), any(Limit.class))).thenReturn(List.of());
 
-        List<RecommendationResponse> response = recommendationService.getAllRecommendations(50, false);
+        List<RecommendationResponse> response = recommendationService.getAllRecommendations(50, null, false);
 
         assertNotNull(response);
         assertEquals(0, response.size());
-        verify(recommendationRepository).findAll(any(Pageable.class));
+        verify(recommendationRepository).findActiveAfter(eq(0L), eq(true), any(Limit.class));
     }
 
 
     @Test
     void shouldReturnRecommendationsWhenRepositoryContainsRecommendations() {
-        Recommendation r1 = buildRecommendation(10L, 1L, 100L, 0.91, 1, "v1", UUID.randomUUID(), "because A");
-        Recommendation r2 = buildRecommendation(11L, 2L, 297L, 0.70, 2, "v1", UUID.randomUUID(), "because B");
+        RecommendationResponse r1 = buildRecommendation(10L, 1L, 100L, 0.91, 1, "v1", UUID.randomUUID(), "because A");
+        RecommendationResponse r2 = buildRecommendation(11L, 2L, 297L, 0.70, 2, "v1", UUID.randomUUID(), "because B");
 
-        when(recommendationRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(r1, r2)));
+        when(recommendationRepository.findActiveAfter(eq(0L), eq(true), any(Limit.class))).thenReturn(List.of(r1, r2));
 
-        List<RecommendationResponse> response = recommendationService.getAllRecommendations(10, false);
+        List<RecommendationResponse> response = recommendationService.getAllRecommendations(10, null, false);
 
         assertNotNull(response);
         assertEquals(2, response.size());
@@ -104,21 +138,20 @@ public class RecommendationServiceImplTest {
         assertEquals(2L, response.get(1).getUserId());
         assertEquals(297L, response.get(1).getItemId());
 
-        verify(recommendationRepository).findAll(any(Pageable.class));
+        verify(recommendationRepository).findActiveAfter(eq(0L), eq(true), any(Limit.class));
     }
 
     @Test
     void shouldCapAllRecommendationsLimitWhenLimitTooHigh() {
-        when(recommendationRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(recommendationRepository.findActiveAfter(eq(0L), eq(true), any(Limit.class))).thenReturn(List.of());
 
-        recommendationService.getAllRecommendations(99999, false);
+        recommendationService.getAllRecommendations(99999, null, false);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(recommendationRepository).findAll(captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(recommendationRepository).findActiveAfter(eq(0L), eq(true), captor.capture());
 
-        Pageable used = captor.getValue();
-        assertEquals(0, used.getPageNumber());
-        assertEquals(50, used.getPageSize());
+        Limit used = captor.getValue();
+        assertEquals(50, used.max());
     }
 
     // getRecommendationForUser
@@ -127,7 +160,7 @@ public class RecommendationServiceImplTest {
     void shouldReturnEmptyListIfNoRecommendationForUser() {
         Long userId = 42L;
 
-        when(recommendationRepository.findByUserId(eq(userId), any(Pageable.class))).thenReturn(Page.empty());
+        when(recommendationRepository.findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class))).thenReturn(List.of());
 
         List<RecommendationResponse> response =
                 recommendationService.getUserRecommendations(userId, 10, true, null);
@@ -135,30 +168,17 @@ public class RecommendationServiceImplTest {
         assertNotNull(response);
         assertEquals(0, response.size());
 
-        verify(recommendationRepository).findByUserId(eq(userId), any(Pageable.class));
+        verify(recommendationRepository).findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class));
     }
 
     @Test
     void shouldReturnMappedRecommendationsWhenRepositoryReturnsData() {
         Long userId = 1L;
-        User u = new User();
-        u.setId(userId);
-        Item it = new Item();
-        it.setId(100L);
-
-        Recommendation r = new Recommendation();
-        r.setId(10L);
-        r.setUser(u);
-        r.setItem(it);
-        r.setScore(0.9);
-        r.setRank(1);
-        r.setAlgoVersion("v1");
-        r.setRunId(UUID.randomUUID());
-        r.setGeneratedAt(Instant.now());
         // for the v1 : reason is null
+        RecommendationResponse r = buildRecommendation(10L, userId, 100L, 0.9, 1, "v1", UUID.randomUUID(), null);
 
-        when(recommendationRepository.findByUserId(eq(userId), any(Pageable.class)))
-                .thenReturn(new PageImpl<>(List.of(r)));
+        when(recommendationRepository.findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class)))
+                .thenReturn(List.of(r));
 
         var res = recommendationService.getUserRecommendations(userId, 10, true, null);
 
@@ -170,65 +190,235 @@ public class RecommendationServiceImplTest {
         assertEquals(1, res.get(0).getRank());
         assertNull(res.get(0).getReason()); // V1
 
-        verify(recommendationRepository).findByUserId(eq(userId), any(Pageable.class));
+        verify(recommendationRepository).findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class));
+    }
+
+    @Test
+    void shouldOnlySelectTheReasonWhenItIsRequested() {
+        when(recommendationRepository.findActiveByUserId(eq(1L), anyBoolean(), any(Limit.class))).thenReturn(List.of());
+
+        recommendationService.getUserRecommendations(1L, 10, false, null);
+        recommendationService.getUserRecommendations(1L, 10, true, null);
+
+        verify(recommendationRepository).findActiveByUserId(eq(1L), eq(false), any(Limit.class));
+        verify(recommendationRepository).findActiveByUserId(eq(1L), eq(true), any(Limit.class));
     }
 
     @Test
     void shouldUseDefaultLimitWhenLimitInvalid() {
         Long userId = 1L;
 
-        when(recommendationRepository.findByUserId(eq(userId), any(Pageable.class))).thenReturn(Page.empty());
+        when(recommendationRepository.findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class))).thenReturn(List.of());
 
         recommendationService.getUserRecommendations(userId, 0, true, null);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(recommendationRepository).findByUserId(eq(userId), captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(recommendationRepository).findActiveByUserId(eq(userId), anyBoolean(), captor.capture());
 
-        Pageable used = captor.getValue();
-        assertEquals(0, used.getPageNumber());
-        assertEquals(50, used.getPageSize()); // DEFAULT_LIMIT
+        Limit used = captor.getValue();
+        assertEquals(50, used.max()); // DEFAULT_LIMIT
     }
 
     @Test
     void shouldCapLimitWhenLimitTooHigh() {
         Long userId = 1L;
 
-        when(recommendationRepository.findByUserId(eq(userId), any(Pageable.class))).thenReturn(Page.empty());
+        when(recommendationRepository.findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class))).thenReturn(List.of());
 
         recommendationService.getUserRecommendations(userId, 9999, true, null);
 
-        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(recommendationRepository).findByUserId(eq(userId), captor.capture());
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(recommendationRepository).findActiveByUserId(eq(userId), anyBoolean(), captor.capture());
+
+        Limit used = captor.getValue();
+        assertEquals(50, used.max()); // MAX_LIMIT
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromCache() {
+        Long userId = 1L;
+        RecommendationResponse r = buildRecommendation(10L, userId, 100L, 0.9, 1, "v1", UUID.randomUUID(), null);
+
+        when(recommendationRepository.findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class)))
+                .thenReturn(List.of(r));
 
-        Pageable used = captor.getValue();
-        assertEquals(50, used.getPageSize()); // MAX_LIMIT
+        recommendationService.getUserRecommendations(userId, 10, false, null);
+        var res = recommendationService.getUserRecommendations(userId, 10, false, " ");
+
+        assertEquals(1, res.size());
+        verify(recommendationRepository, times(1)).findActiveByUserId(eq(userId), anyBoolean(), any(Limit.class));
+
+        CacheStatsResponse stats = recommendationService.getRecommendationCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+        assertEquals(2, stats.getWeight());
+    }
+
+    @Test
+    void shouldReloadOnlyTheUserWhoseRecommendationsWereReplaced() {
+        when(recommendationRepository.findActiveByUserId(anyLong(), anyBoolean(), any(Limit.class))).thenReturn(List.of());
+
+        recommendationService.getUserRecommendations(1L, 10, false, null);
+        recommendationService.getUserRecommendations(2L, 10, false, null);
+        recommendationCache.userRecommendationsReplaced(1L);
+        recommendationService.getUserRecommendations(1L, 10, false, null);
+        recommendationService.getUserRecommendations(2L, 10, false, null);
+
+        verify(recommendationRepository, times(2)).findActiveByUserId(eq(1L), anyBoolean(), any(Limit.class));
+        verify(recommendationRepository, times(1)).findActiveByUserId(eq(2L), anyBoolean(), any(Limit.class));
+    }
+
+    @Test
+    void shouldReloadEveryoneWhenTheActiveRunChanges() {
+        when(recommendationRepository.findActiveByUserId(anyLong(), anyBoolean(), any(Limit.class))).thenReturn(List.of());
+
+        recommendationService.getUserRecommendations(1L, 10, false, null);
+        recommendationCache.activeRunChanged("v1");
+        recommendationService.getUserRecommendations(1L, 10, false, null);
+
+        verify(recommendationRepository, times(2)).findActiveByUserId(eq(1L), anyBoolean(), any(Limit.class));
+    }
+
+    @Test
+    void shouldServeUsersWithoutAlgoFromTheirArmAndReportEachArm() {
+        UUID runId = UUID.randomUUID();
+        doReturn("v2").when(trafficAllocator).armOf(1L);
+        when(recommendationRepository.findActiveByUserIdAndAlgoVersion(eq(1L), eq("v2"), eq(false), any(Limit.class)))
+                .thenReturn(List.of(buildRecommendation(10L, 1L, 100L, 0.9, 1, "v2", runId, null)));
+        when(recommendationRepository.findActiveByUserIdAndAlgoVersion(eq(1L), eq("v1"), eq(false), any(Limit.class)))
+                .thenReturn(List.of());
+
+        List<RecommendationResponse> allocated = recommendationService.getUserRecommendations(1L, 10, false, null);
+        recommendationService.getUserRecommendations(1L, 10, false, "v1");
+
+        assertEquals("v2", allocated.get(0).getAlgoVersion());
+        verify(recommendationRepository, never()).findActiveByUserId(anyLong(), anyBoolean(), any(Limit.class));
+        List<ArmStatsResponse> arms = recommendationService.getArmStats();
+        assertEquals(List.of("v1", "v2"), arms.stream().map(ArmStatsResponse::getAlgo).toList());
+        assertEquals(1, arms.get(0).getRequests());
+        assertEquals(0, arms.get(0).getAllocatedRequests());
+        assertEquals(1, arms.get(0).getEmptyResponses());
+        assertEquals(1, arms.get(1).getAllocatedRequests());
+        assertEquals(1.0, arms.get(1).getMeanSize());
+    }
+
+    // getFreshUserRecommendations
+
+    @Test
+    void shouldServeFreshRecommendationsScoredLiveWithoutReadingTheRuns() {
+        when(engineProperties.getMode()).thenReturn(EngineMode.JVM);
+        when(recoEngine.scoreUser(1L, null, 10)).thenReturn(List.of(
+                new RecommendationRow(1L, 100L, 4.5, "hybrid", 1), new RecommendationRow(1L, 101L, 4.1, "hybrid", 2)));
+
+        ServedRecommendations served = recommendationService.getFreshUserRecommendations(1L, 10, false, null);
+
+        assertEquals(RecommendationSource.LIVE, served.source());
+        assertEquals(2, served.recommendations().size());
+        assertEquals(101L, served.recommendations().get(1).getItemId());
+        assertEquals(2, served.recommendations().get(1).getRank());
+        assertNull(served.recommendations().get(0).getRunId());
+        verifyNoInteractions(recommendationRepository);
+    }
+
+    @Test
+    void shouldFallBackToPrecomputedRowsWhenLiveScoringMissesItsDeadline() {
+        UUID runId = UUID.randomUUID();
+        when(engineProperties.getMode()).thenReturn(EngineMode.JVM);
+        when(recoEngine.scoreUser(1L, null, 10)).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return List.of();
+        });
+        when(recommendationRepository.findActiveByUserId(eq(1L), eq(false), any(Limit.class)))
+                .thenReturn(List.of(buildRecommendation(10L, 1L, 100L, 0.9, 1, "hybrid", runId, null)));
+
+        long start = System.nanoTime();
+        ServedRecommendations served = recommendationService.getFreshUserRecommendations(1L, 10, false, null);
+
+        assertEquals(RecommendationSource.PRECOMPUTED, served.source());
+        assertEquals(runId, served.recommendations().get(0).getRunId());
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    void shouldServePrecomputedRowsWhenTheEngineCannotScoreLive() {
+        when(engineProperties.getMode()).thenReturn(EngineMode.JVM);
+        when(recoEngine.scoreUser(1L, "bpr_hogwild", 10)).thenReturn(null);
+        when(recommendationRepository.findActiveByUserIdAndAlgoVersion(eq(1L), eq("bpr_hogwild"), eq(false), any(Limit.class)))
+                .thenReturn(List.of());
+
+        ServedRecommendations served = recommendationService.getFreshUserRecommendations(1L, 10, false, "bpr_hogwild");
+
+        assertEquals(RecommendationSource.PRECOMPUTED, served.source());
+        assertEquals(0, served.recommendations().size());
+    }
+
+    // getRecommendationsForUsers
+
+    @Test
+    void shouldAnswerCachedUsersFromMemoryAndOthersWithOneQueryInUserOrder() throws Exception {
+        UUID runId = UUID.randomUUID();
+        when(recommendationRepository.findActiveByUserId(eq(2L), eq(false), any(Limit.class)))
+                .thenReturn(List.of(buildRecommendation(20L, 2L, 200L, 0.5, 1, "v1", runId, null)));
+        // user 2 is cached now
+        recommendationService.getUserRecommendations(2L, 2, false, null);
+        doAnswer(invocation -> {
+            Consumer<RecommendationResponse> consumer = invocation.getArgument(4);
+            consumer.accept(buildRecommendation(30L, 3L, 300L, 0.9, 1, "v1", runId, null));
+            consumer.accept(buildRecommendation(31L, 3L, 301L, 0.8, 1, "v2", runId, null));
+            consumer.accept(buildRecommendation(32L, 3L, 302L, 0.7, 2, "v1", runId, null));
+            return null;
+        }).when(recommendationBatchRepository).streamTopN(any(), any(), anyInt(), anyBoolean(), any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recommendationService.getRecommendationsForUsers(List.of(3L, 2L, 1L, 3L), 2, false, " ").writeTo(out);
+
+        verify(recommendationBatchRepository).streamTopN(aryEq(new long[]{1L, 3L}), aryEq(new String[2]), eq(2), eq(false), any());
+        JsonNode users = objectMapper.readTree(out.toByteArray());
+        assertEquals(3, users.size());
+        assertEquals(1L, users.get(0).get("userId").asLong());
+        assertEquals(0, users.get(0).get("recommendations").size());
+        assertEquals(2L, users.get(1).get("userId").asLong());
+        assertEquals(200L, users.get(1).get("recommendations").get(0).get("itemId").asLong());
+        assertEquals(3L, users.get(2).get("userId").asLong());
+        // two active runs interleave their ranks: only the first 2 rows are kept
+        assertEquals(2, users.get(2).get("recommendations").size());
+        assertEquals(301L, users.get(2).get("recommendations").get(1).get("itemId").asLong());
+    }
+
+    @Test
+    void shouldRejectTooManyUsersInOneBatch() {
+        List<Long> userIds = LongStream.rangeClosed(1, 5001).boxed().toList();
+
+        assertThrowsExactly(BadRequestException.class,
+                () -> recommendationService.getRecommendationsForUsers(userIds, 10, false, null));
+        verifyNoInteractions(recommendationBatchRepository);
     }
 
     // recomputeRecommendationsForUser
 
     @Test
-    void shouldRunJobTAndReturnUserRecommendations() {
+    void shouldRecomputeOnlyThisUserAndReturnUserRecommendations() {
         Long userId = 1L;
 
-        // spy to stub the method that would normally run Docker
         RecommendationServiceImpl spyService = Mockito.spy(recommendationService);
 
-        // we stub the job runner so that we don't actually execute Docker during unit tests
-        doNothing().when(spyService).runRecommendationJob("all");
+        when(recoEngine.userExists(userId)).thenReturn(true);
 
-        Recommendation r1 = buildRecommendation(10L, userId, 100L, 0.91, 1, "v1", UUID.randomUUID(), null);
-        Recommendation r2 = buildRecommendation(11L, userId, 101L, 0.80, 2, "v1", UUID.randomUUID(), null);
+        RecommendationResponse r1 = buildRecommendation(10L, userId, 100L, 0.91, 1, "whatever", UUID.randomUUID(), null);
+        RecommendationResponse r2 = buildRecommendation(11L, userId, 101L, 0.80, 2, "whatever", UUID.randomUUID(), null);
 
-        when(recommendationRepository.findByUserId(eq(userId), any(Pageable.class)))
-                .thenReturn(new PageImpl<>(List.of(r1, r2)));
+        when(recommendationRepository.findActiveByUserIdAndAlgoVersion(eq(userId), eq("whatever"), anyBoolean(), any(Limit.class)))
+                .thenReturn(List.of(r1, r2));
 
         // Act : trigger recompute for this user
         List<RecommendationResponse> res =
                 spyService.recomputeRecommendationsForUser(userId, 10, true, "whatever");
 
-        // Assert that the repository fetched recommendations
-        verify(spyService, times(1)).runRecommendationJob("all");
-        verify(recommendationRepository, times(1)).findByUserId(eq(userId), any(Pageable.class));
+        // only this user is scored, the full job never runs
+        verify(recoEngine, times(1)).recomputeUser(userId);
+        verify(spyService, never()).runRecommendationJob(any());
+        verify(recommendationRepository, times(1)).findActiveByUserIdAndAlgoVersion(eq(userId), eq("whatever"), anyBoolean(), any(Limit.class));
 
         assertNotNull(res);
         assertEquals(2, res.size());
@@ -237,6 +427,17 @@ public class RecommendationServiceImplTest {
         assertEquals(100L, res.get(0).getItemId());
     }
 
+    @Test
+    void shouldThrowWhenRecomputingUnknownUser() {
+        when(recoEngine.userExists(99L)).thenReturn(false);
+
+        assertThrowsExactly(NotFoundException.class,
+                () -> recommendationService.recomputeRecommendationsForUser(99L, 10, false, null));
+
+        verify(recoEngine, never()).recomputeUser(anyLong());
+        verifyNoInteractions(recommendationRepository);
+    }
+
 
     // recomputeAllRecommendations
 
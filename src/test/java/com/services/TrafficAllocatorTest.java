@@ -0,0 +1,66 @@
+package com.services;
+
+import com.example.reco.services.TrafficAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrafficAllocatorTest {
+
+    @Test
+    void shouldNotAllocateWhenNoArmsAreConfigured() {
+        TrafficAllocator allocator = new TrafficAllocator(" ", "");
+
+        assertFalse(allocator.isEnabled());
+        assertNull(allocator.armOf(1L));
+    }
+
+    @Test
+    void shouldSplitUsersDeterministicallyAccordingToWeights() {
+        TrafficAllocator allocator = new TrafficAllocator("a:90, b:10, c:0", "exp-1");
+        Map<String, Integer> counts = new HashMap<>();
+        for (long userId = 1; userId <= 100_000; userId++) {
+            counts.merge(allocator.armOf(userId), 1, Integer::sum);
+        }
+
+        assertTrue(allocator.isEnabled());
+        assertEquals(Map.of("a", 90, "b", 10, "c", 0), allocator.weights());
+        assertEquals(90_000, counts.get("a"), 1000);
+        assertEquals(10_000, counts.get("b"), 1000);
+        assertFalse(counts.containsKey("c"));
+        // same user, same arm, whatever the instance
+        TrafficAllocator other = new TrafficAllocator("a:90,b:10,c:0", "exp-1");
+        for (long userId = 1; userId <= 1000; userId++) {
+            assertEquals(allocator.armOf(userId), other.armOf(userId));
+        }
+    }
+
+    @Test
+    void shouldReshuffleUsersWhenTheSaltChanges() {
+        TrafficAllocator first = new TrafficAllocator("a:1,b:1", "exp-1");
+        TrafficAllocator second = new TrafficAllocator("a:1,b:1", "exp-2");
+        int moved = 0;
+        for (long userId = 1; userId <= 10_000; userId++) {
+            if (!first.armOf(userId).equals(second.armOf(userId))) {
+                moved++;
+            }
+        }
+
+        assertEquals(5000, moved, 500);
+    }
+
+    @Test
+    void shouldRejectInvalidArms() {
+        assertThrowsExactly(IllegalArgumentException.class, () -> new TrafficAllocator("a:x", ""));
+        assertThrowsExactly(IllegalArgumentException.class, () -> new TrafficAllocator("a:1,a:2", ""));
+        assertThrowsExactly(IllegalArgumentException.class, () -> new TrafficAllocator(":1", ""));
+        assertThrowsExactly(IllegalArgumentException.class, () -> new TrafficAllocator("a:-1", ""));
+    }
+}
@@ -4,6 +4,7 @@ package com.services;
 import com.example.reco.common.exceptions.NotFoundException;
 import com.example.reco.controllers.dto.CreateUserRequest;
 import com.example.reco.controllers.dto.UserResponse;
+import com.example.reco.engine.IdRegistry;
 import com.example.reco.model.User;
 import com.example.reco.repositories.UserRepository;
 import com.example.reco.services.UserServiceImpl;
@@ -13,9 +14,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,16 +33,17 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private IdRegistry idRegistry;
+
     @InjectMocks
     private UserServiceImpl userService;
 
     @Test
     void shouldReturnUserIfExists() {
         // mock user
-        User user = new User();
-        user.setEmail("email@test");
-        user.setId(1L);
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        UserResponse user = new UserResponse(1L, "email@test");
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(user));
 
         // simulate
         var response = userService.getUserById(1L);
@@ -50,29 +51,29 @@ public class UserServiceImplTest {
         // check the return
         assertEquals(1L, response.getId());
         assertEquals("email@test", response.getEmail());
-        verify(userRepository).findById(1L);
+        verify(userRepository).findResponseById(1L);
 
     }
 
     @Test
     void shouldThrowExceptionIfUserNotFound() {
 
-        when(userRepository.findById(10L)).thenReturn(Optional.empty());
+        when(userRepository.findResponseById(10L)).thenReturn(Optional.empty());
 
         assertThrowsExactly(NotFoundException.class, () -> userService.getUserById(10L), "User with id" + 10L + " not found");
-        verify(userRepository).findById(10L);
+        verify(userRepository).findResponseById(10L);
     }
 
     @Test
     void shouldReturnEmptyWhenEmptyUsersTable() {
 
-        when(userRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(userRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        var response = userService.getAllUsers(50);
+        var response = userService.getAllUsers(50, null);
 
         assertNotNull(response);
         assertEquals(0, response.size());
-        verify(userRepository).findAll(any(Pageable.class));
+        verify(userRepository).findResponsesAfter(eq(0L), any(Limit.class));
 
     }
 
@@ -80,17 +81,12 @@ public class UserServiceImplTest {
     void shouldReturnMappedUsersWhenRepositoryReturnsUsers() {
 
         // mock several users
-        User user1 = new User();
-        user1.setEmail("user1@test");
-        user1.setId(1L);
-
-        User user2 = new User();
-        user2.setEmail("user2@test");
-        user2.setId(2L);
+        UserResponse user1 = new UserResponse(1L, "user1@test");
+        UserResponse user2 = new UserResponse(2L, "user2@test");
 
-        when(userRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(user1, user2)));
+        when(userRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of(user1, user2));
 
-        var response = userService.getAllUsers(10);
+        var response = userService.getAllUsers(10, null);
 
         assertNotNull(response);
         assertEquals(2, response.size());
@@ -98,42 +94,50 @@ public class UserServiceImplTest {
         assertEquals("user1@test", response.get(0).getEmail());
         assertEquals(2L, response.get(1).getId());
         assertEquals("user2@test", response.get(1).getEmail());
-        verify(userRepository).findAll(any(Pageable.class));
+        verify(userRepository).findResponsesAfter(eq(0L), any(Limit.class));
 
     }
 
+    @Test
+    void shouldReadTheUsersAfterTheCursor() {
+        UserResponse user = new UserResponse(43L, "user43@test");
+
+        when(userRepository.findResponsesAfter(eq(42L), any(Limit.class))).thenReturn(List.of(user));
+
+        var response = userService.getAllUsers(10, 42L);
+
+        assertEquals(1, response.size());
+        assertEquals(43L, response.get(0).getId());
+    }
+
     @Test
     void shouldCapUsersLimitWhenLimitIsTooHigh() {
 
         // we test HOW the repository is called, not the result
-        when(userRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(userRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        userService.getAllUsers(99999);
+        userService.getAllUsers(99999, null);
 
         // we capture the argument that was used when calling the repository
-        ArgumentCaptor<Pageable> argumentCaptor = ArgumentCaptor.forClass(Pageable.class);
+        ArgumentCaptor<Limit> argumentCaptor = ArgumentCaptor.forClass(Limit.class);
 
-        verify(userRepository).findAll(argumentCaptor.capture());
-        Pageable pageableUsed = argumentCaptor.getValue();
-
-        assertEquals(0, pageableUsed.getPageNumber());
-        assertEquals(50, pageableUsed.getPageSize());
+        verify(userRepository).findResponsesAfter(eq(0L), argumentCaptor.capture());
+        Limit pageableUsed = argumentCaptor.getValue();
+        assertEquals(50, pageableUsed.max());
 
     }
 
     @Test
     void shouldUseUsersDefaultLimitIfLimitInvalid() {
-        when(userRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
-
-        userService.getAllUsers(-1);
+        when(userRepository.findResponsesAfter(eq(0L), any(Limit.class))).thenReturn(List.of());
 
-        ArgumentCaptor<Pageable> argumentCaptor = ArgumentCaptor.forClass(Pageable.class);
-        verify(userRepository).findAll(argumentCaptor.capture());
+        userService.getAllUsers(-1, null);
 
-        Pageable pageableUsed = argumentCaptor.getValue();
+        ArgumentCaptor<Limit> argumentCaptor = ArgumentCaptor.forClass(Limit.class);
+        verify(userRepository).findResponsesAfter(eq(0L), argumentCaptor.capture());
 
-        assertEquals(0, pageableUsed.getPageNumber());
-        assertEquals(50, pageableUsed.getPageSize()); // default limit
+        Limit pageableUsed = argumentCaptor.getValue();
+        assertEquals(50, pageableUsed.max()); // default limit
 
     }
 